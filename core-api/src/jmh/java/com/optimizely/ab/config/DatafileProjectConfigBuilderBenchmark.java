@@ -0,0 +1,60 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.config;
+
+import com.optimizely.ab.config.parser.ConfigParseException;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares building a config from scratch with rebuilding it from the config in use, for a datafile that changed
+ * only one experiment.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(2)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@State(Scope.Benchmark)
+public class DatafileProjectConfigBuilderBenchmark {
+    ProjectConfig previousConfig;
+    String datafile;
+
+    @Setup
+    public void setUp() throws IOException, ConfigParseException {
+        String previousDatafile = DatafileProjectConfigTestUtils.validConfigJsonV4();
+        previousConfig = new DatafileProjectConfig.Builder().withDatafile(previousDatafile).build();
+        datafile = previousDatafile.replace("\"Tom Riddle\": \"B\"\n      }", "\"Tom Riddle\": \"A\"\n      }");
+    }
+
+    @Benchmark
+    public ProjectConfig build() throws ConfigParseException {
+        return new DatafileProjectConfig.Builder()
+            .withDatafile(datafile)
+            .build();
+    }
+
+    @Benchmark
+    public ProjectConfig rebuild() throws ConfigParseException {
+        return new DatafileProjectConfig.Builder()
+            .withDatafile(datafile)
+            .withPreviousConfig(previousConfig)
+            .build();
+    }
+}
@@ -18,9 +18,11 @@ package com.optimizely.ab.config.parser;
 
 import com.optimizely.ab.config.ProjectConfig;
 import com.optimizely.ab.config.DatafileProjectConfigTestUtils;
+import com.optimizely.ab.config.ProjectConfigSnapshot;
 import org.openjdk.jmh.annotations.*;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.concurrent.TimeUnit;
 
 @BenchmarkMode(Mode.AverageTime)
@@ -31,16 +33,24 @@ import java.util.concurrent.TimeUnit;
 @State(Scope.Benchmark)
 public class JacksonConfigParserBenchmark {
     JacksonConfigParser parser;
+    JacksonStreamingConfigParser streamingParser;
+    GsonConfigParser gsonParser;
     String jsonV2;
     String jsonV3;
     String jsonV4;
+    ByteBuffer snapshotV4;
 
     @Setup
-    public void setUp() throws IOException {
+    public void setUp() throws IOException, ConfigParseException {
         parser = new JacksonConfigParser();
+        streamingParser = new JacksonStreamingConfigParser();
+        gsonParser = new GsonConfigParser();
         jsonV2 = DatafileProjectConfigTestUtils.validConfigJsonV2();
         jsonV3 = DatafileProjectConfigTestUtils.validConfigJsonV3();
         jsonV4 = DatafileProjectConfigTestUtils.validConfigJsonV4();
+        byte[] snapshot = new ProjectConfigSnapshot(parser.parseProjectConfig(jsonV4), null).toByteArray();
+        snapshotV4 = ByteBuffer.allocateDirect(snapshot.length);
+        snapshotV4.put(snapshot).flip();
     }
 
     @Benchmark
@@ -57,4 +67,29 @@ public class JacksonConfigParserBenchmark {
     public ProjectConfig parseV4() throws ConfigParseException {
         return parser.parseProjectConfig(jsonV4);
     }
+
+    @Benchmark
+    public ProjectConfig streamingParseV2() throws ConfigParseException {
+        return streamingParser.parseProjectConfig(jsonV2);
+    }
+
+    @Benchmark
+    public ProjectConfig streamingParseV3() throws ConfigParseException {
+        return streamingParser.parseProjectConfig(jsonV3);
+    }
+
+    @Benchmark
+    public ProjectConfig streamingParseV4() throws ConfigParseException {
+        return streamingParser.parseProjectConfig(jsonV4);
+    }
+
+    @Benchmark
+    public ProjectConfig gsonParseV4() throws ConfigParseException {
+        return gsonParser.parseProjectConfig(jsonV4);
+    }
+
+    @Benchmark
+    public ProjectConfig snapshotReadV4() throws ConfigParseException {
+        return ProjectConfigSnapshot.read(snapshotV4).getProjectConfig();
+    }
 }
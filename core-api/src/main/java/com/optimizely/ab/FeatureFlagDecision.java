@@ -0,0 +1,86 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab;
+
+import com.optimizely.ab.bucketing.FeatureDecision;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The decision made for a single feature flag by {@link Optimizely#getAllFeatureDecisions(String, Map)}:
+ * whether the feature is enabled and the values of all of its variables.
+ */
+@Immutable
+public class FeatureFlagDecision {
+
+    private final String featureKey;
+    private final boolean featureEnabled;
+    private final FeatureDecision.DecisionSource source;
+    private final Map<String, ?> variableValues;
+
+    public FeatureFlagDecision(@Nonnull String featureKey,
+                               boolean featureEnabled,
+                               @Nonnull FeatureDecision.DecisionSource source,
+                               @Nonnull Map<String, ?> variableValues) {
+        this.featureKey = featureKey;
+        this.featureEnabled = featureEnabled;
+        this.source = source;
+        this.variableValues = Collections.unmodifiableMap(variableValues);
+    }
+
+    @Nonnull
+    public String getFeatureKey() {
+        return featureKey;
+    }
+
+    public boolean isFeatureEnabled() {
+        return featureEnabled;
+    }
+
+    @Nonnull
+    public FeatureDecision.DecisionSource getSource() {
+        return source;
+    }
+
+    /**
+     * The values of the feature variables by variable key, converted to the type of each variable.
+     * The default values are used when the feature is not enabled for the user.
+     */
+    @Nonnull
+    public Map<String, ?> getVariableValues() {
+        return variableValues;
+    }
+
+    @Nullable
+    public Object getVariableValue(@Nonnull String variableKey) {
+        return variableValues.get(variableKey);
+    }
+
+    @Override
+    public String toString() {
+        return "FeatureFlagDecision{" +
+            "featureKey='" + featureKey + '\'' +
+            ", featureEnabled=" + featureEnabled +
+            ", source=" + source +
+            ", variableValues=" + variableValues +
+            '}';
+    }
+}
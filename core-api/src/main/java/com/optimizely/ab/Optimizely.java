@@ -25,10 +25,13 @@ import com.optimizely.ab.config.parser.ConfigParseException;
 import com.optimizely.ab.error.ErrorHandler;
 import com.optimizely.ab.error.NoOpErrorHandler;
 import com.optimizely.ab.event.EventHandler;
+import com.optimizely.ab.event.EventProcessor;
+import com.optimizely.ab.event.ForwardingEventProcessor;
 import com.optimizely.ab.event.LogEvent;
 import com.optimizely.ab.event.NoopEventHandler;
 import com.optimizely.ab.event.internal.BuildVersionInfo;
 import com.optimizely.ab.event.internal.EventFactory;
+import com.optimizely.ab.event.internal.UserEvent;
 import com.optimizely.ab.event.internal.payload.EventBatch.ClientEngine;
 import com.optimizely.ab.notification.*;
 import org.slf4j.Logger;
@@ -41,6 +44,7 @@ import java.io.Closeable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -81,6 +85,8 @@ public class Optimizely implements AutoCloseable {
     @VisibleForTesting
     final EventHandler eventHandler;
     @VisibleForTesting
+    final EventProcessor eventProcessor;
+    @VisibleForTesting
     final ErrorHandler errorHandler;
 
     private final ProjectConfigManager projectConfigManager;
@@ -92,6 +98,7 @@ public class Optimizely implements AutoCloseable {
     private final UserProfileService userProfileService;
 
     private Optimizely(@Nonnull EventHandler eventHandler,
+                       @Nonnull EventProcessor eventProcessor,
                        @Nonnull EventFactory eventFactory,
                        @Nonnull ErrorHandler errorHandler,
                        @Nonnull DecisionService decisionService,
@@ -101,6 +108,7 @@ public class Optimizely implements AutoCloseable {
     ) {
         this.decisionService = decisionService;
         this.eventHandler = eventHandler;
+        this.eventProcessor = eventProcessor;
         this.eventFactory = eventFactory;
         this.errorHandler = errorHandler;
         this.userProfileService = userProfileService;
@@ -135,13 +143,15 @@ public class Optimizely implements AutoCloseable {
     }
 
     /**
-     * Checks if eventHandler {@link EventHandler} and projectConfigManager {@link ProjectConfigManager}
-     * are Closeable {@link Closeable} and calls close on them.
+     * Checks if eventProcessor {@link EventProcessor}, eventHandler {@link EventHandler} and
+     * projectConfigManager {@link ProjectConfigManager} are Closeable {@link Closeable} and calls close on them.
+     * The eventProcessor is closed first so that any buffered events are flushed to the eventHandler.
      *
      * <b>NOTE:</b> There is a chance that this could be long running if the implementations of close are long running.
      */
     @Override
     public void close() {
+        tryClose(eventProcessor);
         tryClose(eventHandler);
         tryClose(projectConfigManager);
     }
@@ -231,12 +241,13 @@ public class Optimizely implements AutoCloseable {
                                 @Nonnull Map<String, ?> filteredAttributes,
                                 @Nonnull Variation variation) {
         if (experiment.isRunning()) {
-            LogEvent impressionEvent = eventFactory.createImpressionEvent(
+            UserEvent userEvent = eventFactory.createImpressionUserEvent(
                 projectConfig,
                 experiment,
                 variation,
                 userId,
                 filteredAttributes);
+            LogEvent impressionEvent = eventFactory.createLogEvent(userEvent);
             logger.info("Activating user \"{}\" in experiment \"{}\".", userId, experiment.getKey());
 
             if (logger.isDebugEnabled()) {
@@ -246,7 +257,7 @@ public class Optimizely implements AutoCloseable {
             }
 
             try {
-                eventHandler.dispatchEvent(impressionEvent);
+                eventProcessor.process(userEvent);
             } catch (Exception e) {
                 logger.error("Unexpected exception in event dispatcher", e);
             }
@@ -310,13 +321,14 @@ public class Optimizely implements AutoCloseable {
         }
 
         // create the conversion event request parameters, then dispatch
-        LogEvent conversionEvent = eventFactory.createConversionEvent(
+        UserEvent userEvent = eventFactory.createConversionUserEvent(
             projectConfig,
             userId,
             eventType.getId(),
             eventType.getKey(),
             copiedAttributes,
             eventTags);
+        LogEvent conversionEvent = eventFactory.createLogEvent(userEvent);
 
         logger.info("Tracking event \"{}\" for user \"{}\".", eventName, userId);
 
@@ -326,7 +338,7 @@ public class Optimizely implements AutoCloseable {
         }
 
         try {
-            eventHandler.dispatchEvent(conversionEvent);
+            eventProcessor.process(userEvent);
         } catch (Exception e) {
             logger.error("Unexpected exception in event dispatcher", e);
         }
@@ -785,6 +797,104 @@ public class Optimizely implements AutoCloseable {
         return enabledFeaturesList;
     }
 
+    /**
+     * Decide every feature flag for the user in a single pass.
+     * Send an impression event for each feature test the user is bucketed into.
+     * <p>
+     * Unlike calling {@link #isFeatureEnabled(String, String, Map)} and the feature variable getters per flag, the
+     * attributes are copied once, the {@link UserProfileService} is consulted once and a single
+     * {@link DecisionNotification} of type {@link NotificationCenter.DecisionNotificationType#ALL_FEATURES} is sent.
+     *
+     * @param userId     The ID of the user.
+     * @param attributes The user's attributes.
+     * @return The decision of each feature flag by feature key. Empty if the userId is null or the Optimizely
+     * instance is not valid.
+     */
+    @Nonnull
+    public Map<String, FeatureFlagDecision> getAllFeatureDecisions(@Nonnull String userId,
+                                                                   @Nonnull Map<String, ?> attributes) {
+        return getAllFeatureDecisions(userId, attributes, true);
+    }
+
+    /**
+     * Decide every feature flag for the user in a single pass.
+     *
+     * @param userId         The ID of the user.
+     * @param attributes     The user's attributes.
+     * @param sendImpression Whether or not send an impression.
+     * @return The decision of each feature flag by feature key. Empty if the userId is null or the Optimizely
+     * instance is not valid.
+     * @see #getAllFeatureDecisions(String, Map)
+     */
+    @Nonnull
+    public Map<String, FeatureFlagDecision> getAllFeatureDecisions(@Nonnull String userId,
+                                                                   @Nonnull Map<String, ?> attributes,
+                                                                   boolean sendImpression) {
+        Map<String, FeatureFlagDecision> featureFlagDecisions = new LinkedHashMap<String, FeatureFlagDecision>();
+        if (!validateUserId(userId)) {
+            return featureFlagDecisions;
+        }
+
+        ProjectConfig projectConfig = getProjectConfig();
+        if (projectConfig == null) {
+            logger.error("Optimizely instance is not valid, failing getAllFeatureDecisions call.");
+            return featureFlagDecisions;
+        }
+
+        Map<String, ?> copiedAttributes = copyAttributes(attributes);
+        List<FeatureFlag> featureFlags = projectConfig.getFeatureFlags();
+        Map<String, FeatureDecision> featureDecisions =
+            decisionService.getVariationsForFeatures(featureFlags, userId, copiedAttributes, projectConfig);
+
+        DecisionNotification.AllFeaturesDecisionNotificationBuilder notificationBuilder =
+            DecisionNotification.newAllFeaturesDecisionNotificationBuilder()
+                .withUserId(userId)
+                .withAttributes(copiedAttributes);
+
+        for (FeatureFlag featureFlag : featureFlags) {
+            String featureKey = featureFlag.getKey();
+            FeatureDecision featureDecision = featureDecisions.get(featureKey);
+            FeatureDecision.DecisionSource decisionSource = FeatureDecision.DecisionSource.ROLLOUT;
+            boolean featureEnabled = false;
+
+            if (featureDecision.variation != null) {
+                if (FeatureDecision.DecisionSource.FEATURE_TEST.equals(featureDecision.decisionSource)) {
+                    if (sendImpression) {
+                        sendImpression(
+                            projectConfig,
+                            featureDecision.experiment,
+                            userId,
+                            copiedAttributes,
+                            featureDecision.variation);
+                    }
+                    decisionSource = featureDecision.decisionSource;
+                }
+                featureEnabled = featureDecision.variation.getFeatureEnabled();
+            }
+
+            Map<String, Object> variableValues = new HashMap<String, Object>(featureFlag.getVariables().size());
+            for (FeatureVariable variable : featureFlag.getVariables()) {
+                String variableValue = variable.getDefaultValue();
+                if (featureEnabled) {
+                    FeatureVariableUsageInstance featureVariableUsageInstance =
+                        featureDecision.variation.getVariableIdToFeatureVariableUsageInstanceMap().get(variable.getId());
+                    if (featureVariableUsageInstance != null) {
+                        variableValue = featureVariableUsageInstance.getValue();
+                    }
+                }
+                variableValues.put(variable.getKey(), convertStringToType(variableValue, variable.getType()));
+            }
+
+            featureFlagDecisions.put(featureKey,
+                new FeatureFlagDecision(featureKey, featureEnabled, decisionSource, variableValues));
+            notificationBuilder.withFeature(featureKey, featureEnabled, featureDecision, variableValues);
+        }
+
+        notificationCenter.send(notificationBuilder.build());
+
+        return featureFlagDecisions;
+    }
+
     //======== getVariation calls ========//
 
     @Nullable
@@ -1045,6 +1155,7 @@ public class Optimizely implements AutoCloseable {
         private DecisionService decisionService;
         private ErrorHandler errorHandler;
         private EventHandler eventHandler;
+        private EventProcessor eventProcessor;
         private EventFactory eventFactory;
         private ClientEngine clientEngine;
         private String clientVersion;
@@ -1075,6 +1186,16 @@ public class Optimizely implements AutoCloseable {
             return this;
         }
 
+        /**
+         * Configure the {@link EventProcessor} responsible for batching and dispatching events, for example a
+         * {@link com.optimizely.ab.event.BatchEventProcessor}. Defaults to a {@link ForwardingEventProcessor}
+         * which dispatches each event immediately through the configured {@link EventHandler}.
+         */
+        public Builder withEventProcessor(EventProcessor eventProcessor) {
+            this.eventProcessor = eventProcessor;
+            return this;
+        }
+
         public Builder withUserProfileService(UserProfileService userProfileService) {
             this.userProfileService = userProfileService;
             return this;
@@ -1143,6 +1264,10 @@ public class Optimizely implements AutoCloseable {
                 eventHandler = new NoopEventHandler();
             }
 
+            if (eventProcessor == null) {
+                eventProcessor = new ForwardingEventProcessor(eventHandler);
+            }
+
             if (bucketer == null) {
                 bucketer = new Bucketer();
             }
@@ -1174,7 +1299,7 @@ public class Optimizely implements AutoCloseable {
                 notificationCenter = new NotificationCenter();
             }
 
-            return new Optimizely(eventHandler, eventFactory, errorHandler, decisionService, userProfileService, projectConfigManager, notificationCenter);
+            return new Optimizely(eventHandler, eventProcessor, eventFactory, errorHandler, decisionService, userProfileService, projectConfigManager, notificationCenter);
         }
     }
 }
@@ -0,0 +1,514 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.bucketing;
+
+import com.optimizely.ab.internal.PropertyUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * AsyncUserProfileService is a {@link BatchUserProfileService} that wraps another {@link UserProfileService}
+ * to take its writes off the decision path.
+ *
+ * Saves are write-behind: the latest profile of each user is kept in memory and a background thread writes the
+ * pending profiles to the wrapped service in batches, using {@link BatchUserProfileService#saveAll(Collection)}
+ * when it is available. Lookups are answered from the pending profiles first so that a user always sees their own
+ * decisions, and concurrent lookups of the same user are coalesced into a single call to the wrapped service.
+ *
+ * The queue of users waiting to be written is bounded. When it is full, or once the service is closed, profiles
+ * are saved synchronously on the calling thread rather than dropped. A profile the wrapped service fails to save
+ * stays pending and is written again with the next flush, up to {@link #MAX_SAVE_ATTEMPTS} times in total, after
+ * which it is dropped and counted by {@link #getDroppedSaveCount()}.
+ */
+public class AsyncUserProfileService implements BatchUserProfileService, AutoCloseable {
+
+    public static final String CONFIG_BATCH_SIZE     = "user.profile.service.batch.size";
+    public static final String CONFIG_BATCH_INTERVAL = "user.profile.service.batch.interval";
+    public static final String CONFIG_QUEUE_CAPACITY = "user.profile.service.queue.capacity";
+    public static final String CONFIG_CLOSE_TIMEOUT  = "user.profile.service.close.timeout";
+
+    public static final int DEFAULT_BATCH_SIZE = 10;
+    public static final long DEFAULT_BATCH_INTERVAL = TimeUnit.SECONDS.toMillis(1);
+    public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+    public static final long DEFAULT_TIMEOUT_INTERVAL = TimeUnit.SECONDS.toMillis(5);
+    public static final int MAX_SAVE_ATTEMPTS = 3;
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncUserProfileService.class);
+
+    private static final Object SHUTDOWN_SIGNAL = new Object();
+    private static final Object FLUSH_SIGNAL = new Object();
+
+    private final UserProfileService userProfileService;
+    private final BlockingQueue<Object> saveQueue;
+    private final ConcurrentMap<String, Map<String, Object>> pendingSaves = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CompletableFuture<Map<String, Object>>> pendingLookups = new ConcurrentHashMap<>();
+    private final LongAdder droppedSaveCount = new LongAdder();
+
+    private final int batchSize;
+    private final long flushInterval;
+    private final long timeoutMillis;
+    private final ExecutorService executor;
+
+    private Future<?> future;
+    private volatile boolean isStarted = false;
+    private volatile boolean isClosed = false;
+
+    private AsyncUserProfileService(UserProfileService userProfileService, BlockingQueue<Object> saveQueue, int batchSize, long flushInterval, long timeoutMillis, ExecutorService executor) {
+        this.userProfileService = userProfileService;
+        this.saveQueue = saveQueue;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.timeoutMillis = timeoutMillis;
+        this.executor = executor;
+    }
+
+    public synchronized void start() {
+        if (isStarted) {
+            logger.info("Executor already started.");
+            return;
+        }
+
+        isStarted = true;
+        future = executor.submit(new ProfileWriter());
+    }
+
+    @Override
+    public Map<String, Object> lookup(String userId) throws Exception {
+        Map<String, Object> pendingProfile = pendingSaves.get(userId);
+        if (pendingProfile != null) {
+            return pendingProfile;
+        }
+
+        CompletableFuture<Map<String, Object>> lookup = new CompletableFuture<>();
+        CompletableFuture<Map<String, Object>> inFlightLookup = pendingLookups.putIfAbsent(userId, lookup);
+        if (inFlightLookup != null) {
+            logger.debug("Waiting on the lookup of user \"{}\" already in flight.", userId);
+            return await(inFlightLookup);
+        }
+
+        try {
+            Map<String, Object> userProfile = userProfileService.lookup(userId);
+            lookup.complete(userProfile);
+            return userProfile;
+        } catch (Exception e) {
+            lookup.completeExceptionally(e);
+            throw e;
+        } finally {
+            pendingLookups.remove(userId, lookup);
+        }
+    }
+
+    @Override
+    public Map<String, Map<String, Object>> lookupAll(Collection<String> userIds) throws Exception {
+        Map<String, Map<String, Object>> userProfiles = new HashMap<>();
+        List<String> remainingUserIds = new ArrayList<>(userIds.size());
+        for (String userId : userIds) {
+            Map<String, Object> pendingProfile = pendingSaves.get(userId);
+            if (pendingProfile != null) {
+                userProfiles.put(userId, pendingProfile);
+            } else {
+                remainingUserIds.add(userId);
+            }
+        }
+
+        if (remainingUserIds.isEmpty()) {
+            return userProfiles;
+        }
+
+        if (userProfileService instanceof BatchUserProfileService) {
+            userProfiles.putAll(((BatchUserProfileService) userProfileService).lookupAll(remainingUserIds));
+        } else {
+            for (String userId : remainingUserIds) {
+                Map<String, Object> userProfile = lookup(userId);
+                if (userProfile != null) {
+                    userProfiles.put(userId, userProfile);
+                }
+            }
+        }
+
+        return userProfiles;
+    }
+
+    @Override
+    public void save(Map<String, Object> userProfile) throws Exception {
+        Object userId = userProfile.get(userIdKey);
+        if (!isStarted || isClosed || !(userId instanceof String)) {
+            userProfileService.save(userProfile);
+            return;
+        }
+
+        // only the first pending profile of a user takes a slot in the queue, later ones replace it in place.
+        if (pendingSaves.put((String) userId, userProfile) == null && !saveQueue.offer(userId)) {
+            logger.warn("Save not accepted by the queue, saving synchronously. Current size: {}", saveQueue.size());
+            Map<String, Object> pendingProfile = pendingSaves.remove(userId);
+            if (pendingProfile != null) {
+                userProfileService.save(pendingProfile);
+            }
+            return;
+        }
+
+        // the writer may have drained for the last time while this profile was being queued.
+        if (isClosed && pendingSaves.remove(userId, userProfile)) {
+            userProfileService.save(userProfile);
+        }
+    }
+
+    @Override
+    public void saveAll(Collection<Map<String, Object>> userProfiles) throws Exception {
+        for (Map<String, Object> userProfile : userProfiles) {
+            save(userProfile);
+        }
+    }
+
+    /**
+     * Signals the service to write all pending profiles without waiting for the flush interval.
+     */
+    public void flush() {
+        if (!saveQueue.offer(FLUSH_SIGNAL)) {
+            logger.warn("Flush signal not accepted by the queue. Current size: {}", saveQueue.size());
+        }
+    }
+
+    /**
+     * Stops queueing new saves and writes all pending profiles. This method blocks until the pending profiles
+     * have been handed off to the wrapped {@link UserProfileService} or the close timeout expires.
+     */
+    @Override
+    public synchronized void close() {
+        if (!isStarted) {
+            return;
+        }
+
+        logger.info("Start close");
+        // saves from here on are synchronous, so nothing is queued behind the final drain.
+        isClosed = true;
+        isStarted = false;
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+
+        try {
+            if (saveQueue.offer(SHUTDOWN_SIGNAL, timeoutMillis, TimeUnit.MILLISECONDS)) {
+                future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            } else {
+                logger.error("Shutdown signal not accepted by the queue within {} ms", timeoutMillis);
+                future.cancel(true);
+            }
+        } catch (InterruptedException e) {
+            logger.warn("Interrupted while awaiting termination.");
+            Thread.currentThread().interrupt();
+        } catch (TimeoutException e) {
+            logger.error("Timeout exceeded attempting to close for {} ms", timeoutMillis);
+        } catch (ExecutionException e) {
+            logger.error("Profile writer failed.", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public boolean isRunning() {
+        return isStarted;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public long getFlushInterval() {
+        return flushInterval;
+    }
+
+    public UserProfileService getUserProfileService() {
+        return userProfileService;
+    }
+
+    /**
+     * @return the number of profiles dropped after the wrapped service failed to save them {@link #MAX_SAVE_ATTEMPTS} times.
+     */
+    public long getDroppedSaveCount() {
+        return droppedSaveCount.sum();
+    }
+
+    private static Map<String, Object> await(CompletableFuture<Map<String, Object>> lookup) throws Exception {
+        try {
+            return lookup.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+
+    //======== Helper classes ========//
+
+    /**
+     * Single consumer of the save queue responsible for writing the pending profiles in batches.
+     */
+    private class ProfileWriter implements Runnable {
+
+        private final Set<String> batch = new LinkedHashSet<>();
+        // users whose profile failed to save, written again with the next flush rather than right away.
+        private final Set<String> retries = new LinkedHashSet<>();
+        private final Map<String, Integer> failedAttempts = new HashMap<>();
+        private long deadline = System.currentTimeMillis() + flushInterval;
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    if (System.currentTimeMillis() >= deadline) {
+                        logger.debug("Deadline exceeded writing pending profiles.");
+                        flushAll();
+                    }
+
+                    Object item = saveQueue.poll(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+                    if (item == null) {
+                        continue;
+                    }
+
+                    if (item == SHUTDOWN_SIGNAL) {
+                        logger.info("Received shutdown signal.");
+                        break;
+                    }
+
+                    if (item == FLUSH_SIGNAL) {
+                        logger.debug("Received flush signal.");
+                        flushAll();
+                        continue;
+                    }
+
+                    batch.add((String) item);
+                    if (batch.size() >= batchSize) {
+                        write();
+                    }
+                }
+            } catch (InterruptedException e) {
+                logger.info("Interrupted while processing pending profiles.");
+            } catch (Exception e) {
+                logger.error("Uncaught exception processing pending profiles.", e);
+            } finally {
+                logger.info("Exiting processing loop. Attempting to write pending profiles.");
+                // drain whatever was queued before the shutdown signal, plus profiles replaced while in flight.
+                while (!batch.isEmpty() || !pendingSaves.isEmpty()) {
+                    batch.addAll(pendingSaves.keySet());
+                    write();
+                }
+            }
+        }
+
+        private void flushAll() {
+            batch.addAll(retries);
+            retries.clear();
+            while (!batch.isEmpty()) {
+                write();
+            }
+
+            deadline = System.currentTimeMillis() + flushInterval;
+        }
+
+        private void write() {
+            Map<String, Map<String, Object>> userProfiles = new LinkedHashMap<>(batch.size());
+            for (String userId : batch) {
+                Map<String, Object> userProfile = pendingSaves.get(userId);
+                if (userProfile != null) {
+                    userProfiles.put(userId, userProfile);
+                }
+            }
+            batch.clear();
+
+            if (userProfiles.isEmpty()) {
+                return;
+            }
+
+            try {
+                if (userProfileService instanceof BatchUserProfileService) {
+                    ((BatchUserProfileService) userProfileService).saveAll(userProfiles.values());
+                } else {
+                    for (Map<String, Object> userProfile : userProfiles.values()) {
+                        userProfileService.save(userProfile);
+                    }
+                }
+            } catch (Exception e) {
+                logger.error("Error saving {} user profiles.", userProfiles.size(), e);
+                retry(userProfiles);
+                return;
+            }
+
+            for (Map.Entry<String, Map<String, Object>> entry : userProfiles.entrySet()) {
+                failedAttempts.remove(entry.getKey());
+                // a newer profile saved while this one was in flight did not take a queue slot, so write it next.
+                if (!pendingSaves.remove(entry.getKey(), entry.getValue())) {
+                    batch.add(entry.getKey());
+                }
+            }
+        }
+
+        /**
+         * Keeps the profiles pending so lookups still see them, until they failed {@link #MAX_SAVE_ATTEMPTS} times.
+         */
+        private void retry(Map<String, Map<String, Object>> userProfiles) {
+            for (Map.Entry<String, Map<String, Object>> entry : userProfiles.entrySet()) {
+                String userId = entry.getKey();
+                int attempts = failedAttempts.merge(userId, 1, Integer::sum);
+                if (attempts < MAX_SAVE_ATTEMPTS) {
+                    retries.add(userId);
+                    continue;
+                }
+
+                failedAttempts.remove(userId);
+                if (pendingSaves.remove(userId, entry.getValue())) {
+                    logger.error("Dropping the profile of user \"{}\" after {} failed saves.", userId, attempts);
+                    droppedSaveCount.increment();
+                } else {
+                    // replaced by a newer profile, which gets attempts of its own.
+                    batch.add(userId);
+                }
+            }
+        }
+    }
+
+    //======== Builder ========//
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private UserProfileService userProfileService;
+        private BlockingQueue<Object> saveQueue;
+        private ExecutorService executor;
+
+        int batchSize = PropertyUtils.getInteger(CONFIG_BATCH_SIZE, DEFAULT_BATCH_SIZE);
+        long flushInterval = PropertyUtils.getLong(CONFIG_BATCH_INTERVAL, DEFAULT_BATCH_INTERVAL);
+        int queueCapacity = PropertyUtils.getInteger(CONFIG_QUEUE_CAPACITY, DEFAULT_QUEUE_CAPACITY);
+        long timeoutMillis = PropertyUtils.getLong(CONFIG_CLOSE_TIMEOUT, DEFAULT_TIMEOUT_INTERVAL);
+
+        public Builder withUserProfileService(UserProfileService userProfileService) {
+            this.userProfileService = userProfileService;
+            return this;
+        }
+
+        public Builder withSaveQueue(BlockingQueue<Object> saveQueue) {
+            this.saveQueue = saveQueue;
+            return this;
+        }
+
+        public Builder withBatchSize(Integer batchSize) {
+            if (batchSize == null || batchSize <= 0) {
+                logger.warn("Batch size cannot be null or <= 0. Keeping default value: {}", this.batchSize);
+                return this;
+            }
+
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        public Builder withFlushInterval(Long flushInterval, TimeUnit timeUnit) {
+            if (flushInterval == null || flushInterval <= 0 || timeUnit == null) {
+                logger.warn("Flush interval cannot be null or <= 0. Keeping default value: {} ms", this.flushInterval);
+                return this;
+            }
+
+            this.flushInterval = timeUnit.toMillis(flushInterval);
+            return this;
+        }
+
+        public Builder withQueueCapacity(Integer queueCapacity) {
+            if (queueCapacity == null || queueCapacity <= 0) {
+                logger.warn("Queue capacity cannot be null or <= 0. Keeping default value: {}", this.queueCapacity);
+                return this;
+            }
+
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        public Builder withExecutor(ExecutorService executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public Builder withCloseTimeout(long duration, TimeUnit timeUnit) {
+            this.timeoutMillis = timeUnit.toMillis(duration);
+            return this;
+        }
+
+        /**
+         * Builds and starts the AsyncUserProfileService.
+         */
+        public AsyncUserProfileService build() {
+            return build(true);
+        }
+
+        /**
+         * @param shouldStart When false the returned service saves synchronously until {@link AsyncUserProfileService#start()} is called.
+         */
+        public AsyncUserProfileService build(boolean shouldStart) {
+            if (userProfileService == null) {
+                throw new IllegalArgumentException("UserProfileService was not configured");
+            }
+
+            if (batchSize <= 0) {
+                logger.warn("Invalid batch size {}. Defaulting to {}", batchSize, DEFAULT_BATCH_SIZE);
+                batchSize = DEFAULT_BATCH_SIZE;
+            }
+
+            if (flushInterval <= 0) {
+                logger.warn("Invalid flush interval {}. Defaulting to {}", flushInterval, DEFAULT_BATCH_INTERVAL);
+                flushInterval = DEFAULT_BATCH_INTERVAL;
+            }
+
+            if (saveQueue == null) {
+                if (queueCapacity <= 0) {
+                    logger.warn("Invalid queue capacity {}. Defaulting to {}", queueCapacity, DEFAULT_QUEUE_CAPACITY);
+                    queueCapacity = DEFAULT_QUEUE_CAPACITY;
+                }
+
+                saveQueue = new ArrayBlockingQueue<>(queueCapacity);
+            }
+
+            if (executor == null) {
+                final ThreadFactory threadFactory = Executors.defaultThreadFactory();
+                executor = Executors.newSingleThreadExecutor(runnable -> {
+                    Thread thread = threadFactory.newThread(runnable);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+
+            AsyncUserProfileService asyncUserProfileService = new AsyncUserProfileService(userProfileService, saveQueue, batchSize, flushInterval, timeoutMillis, executor);
+
+            if (shouldStart) {
+                asyncUserProfileService.start();
+            }
+
+            return asyncUserProfileService;
+        }
+    }
+}
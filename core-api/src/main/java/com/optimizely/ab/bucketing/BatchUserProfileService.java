@@ -0,0 +1,62 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.bucketing;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link UserProfileService} able to read and write the profiles of many users in one call.
+ *
+ * Implement this interface when the backing store supports multi-key reads and writes so that
+ * {@link AsyncUserProfileService} can flush its pending saves in batches. The default methods fall back to
+ * one {@link #lookup(String)} or {@link #save(Map)} per user.
+ */
+public interface BatchUserProfileService extends UserProfileService {
+
+    /**
+     * Fetch the user profile maps of several users.
+     *
+     * @param userIds The IDs of the users whose profiles will be retrieved.
+     * @return the profile maps found, by user ID. Users without a profile are left out.
+     * @throws Exception Passes on whatever exceptions the implementation may throw.
+     */
+    default Map<String, Map<String, Object>> lookupAll(Collection<String> userIds) throws Exception {
+        Map<String, Map<String, Object>> userProfiles = new HashMap<String, Map<String, Object>>();
+        for (String userId : userIds) {
+            Map<String, Object> userProfile = lookup(userId);
+            if (userProfile != null) {
+                userProfiles.put(userId, userProfile);
+            }
+        }
+
+        return userProfiles;
+    }
+
+    /**
+     * Save all the user profile maps sent to this method.
+     *
+     * @param userProfiles The Maps representing the users' profiles.
+     * @throws Exception Can throw an exception if the user profiles were not saved properly.
+     */
+    default void saveAll(Collection<Map<String, Object>> userProfiles) throws Exception {
+        for (Map<String, Object> userProfile : userProfiles) {
+            save(userProfile);
+        }
+    }
+}
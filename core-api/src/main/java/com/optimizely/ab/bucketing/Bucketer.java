@@ -21,7 +21,6 @@ import com.optimizely.ab.bucketing.internal.MurmurHash3;
 import com.optimizely.ab.config.Experiment;
 import com.optimizely.ab.config.Group;
 import com.optimizely.ab.config.ProjectConfig;
-import com.optimizely.ab.config.TrafficAllocation;
 import com.optimizely.ab.config.Variation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,7 +28,6 @@ import org.slf4j.LoggerFactory;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
-import java.util.List;
 
 /**
  * Default Optimizely bucketing algorithm that evenly distributes users using the Murmur3 hash of some provided
@@ -53,41 +51,15 @@ public class Bucketer {
     @VisibleForTesting
     static final int MAX_TRAFFIC_VALUE = 10000;
 
-    private String bucketToEntity(int bucketValue, List<TrafficAllocation> trafficAllocations) {
-        int currentEndOfRange;
-        for (TrafficAllocation currAllocation : trafficAllocations) {
-            currentEndOfRange = currAllocation.getEndOfRange();
-            if (bucketValue < currentEndOfRange) {
-                // for mutually exclusive bucketing, de-allocated space is represented by an empty string
-                if (currAllocation.getEntityId().isEmpty()) {
-                    return null;
-                }
-                return currAllocation.getEntityId();
-            }
-        }
-
-        return null;
-    }
-
     private Experiment bucketToExperiment(@Nonnull Group group,
-                                          @Nonnull String bucketingId,
-                                          @Nonnull ProjectConfig projectConfig) {
+                                          @Nonnull String bucketingId) {
         // "salt" the bucket id using the group id
-        String bucketKey = bucketingId + group.getId();
-
-        List<TrafficAllocation> trafficAllocations = group.getTrafficAllocation();
-
-        int hashCode = MurmurHash3.murmurhash3_x86_32(bucketKey, 0, bucketKey.length(), MURMUR_HASH_SEED);
+        int hashCode = hashBucketKey(bucketingId, group.getId());
         int bucketValue = generateBucketValue(hashCode);
         logger.debug("Assigned bucket {} to user with bucketingId \"{}\" during experiment bucketing.", bucketValue, bucketingId);
 
-        String bucketedExperimentId = bucketToEntity(bucketValue, trafficAllocations);
-        if (bucketedExperimentId != null) {
-            return projectConfig.getExperimentIdMapping().get(bucketedExperimentId);
-        }
-
-        // user was not bucketed to an experiment in the group
-        return null;
+        // null when the user was not bucketed to an experiment in the group
+        return group.getTrafficAllocationIndex().lookup(bucketValue);
     }
 
     private Variation bucketToVariation(@Nonnull Experiment experiment,
@@ -95,17 +67,13 @@ public class Bucketer {
         // "salt" the bucket id using the experiment id
         String experimentId = experiment.getId();
         String experimentKey = experiment.getKey();
-        String combinedBucketId = bucketingId + experimentId;
-
-        List<TrafficAllocation> trafficAllocations = experiment.getTrafficAllocation();
 
-        int hashCode = MurmurHash3.murmurhash3_x86_32(combinedBucketId, 0, combinedBucketId.length(), MURMUR_HASH_SEED);
+        int hashCode = hashBucketKey(bucketingId, experimentId);
         int bucketValue = generateBucketValue(hashCode);
         logger.debug("Assigned bucket {} to user with bucketingId \"{}\" when bucketing to a variation.", bucketValue, bucketingId);
 
-        String bucketedVariationId = bucketToEntity(bucketValue, trafficAllocations);
-        if (bucketedVariationId != null) {
-            Variation bucketedVariation = experiment.getVariationIdToVariationMap().get(bucketedVariationId);
+        Variation bucketedVariation = experiment.getTrafficAllocationIndex().lookup(bucketValue);
+        if (bucketedVariation != null) {
             String variationKey = bucketedVariation.getKey();
             logger.info("User with bucketingId \"{}\" is in variation \"{}\" of experiment \"{}\".", bucketingId, variationKey,
                 experimentKey);
@@ -136,7 +104,7 @@ public class Bucketer {
             Group experimentGroup = projectConfig.getGroupIdMapping().get(groupId);
             // bucket to an experiment only if group entities are to be mutually exclusive
             if (experimentGroup.getPolicy().equals(Group.RANDOM_POLICY)) {
-                Experiment bucketedExperiment = bucketToExperiment(experimentGroup, bucketingId, projectConfig);
+                Experiment bucketedExperiment = bucketToExperiment(experimentGroup, bucketingId);
                 if (bucketedExperiment == null) {
                     logger.info("User with bucketingId \"{}\" is not in any experiment of group {}.", bucketingId, experimentGroup.getId());
                     return null;
@@ -162,6 +130,14 @@ public class Bucketer {
 
     //======== Helper methods ========//
 
+    /**
+     * Hash the bucketing id salted with the given entity id, without concatenating them into a new String.
+     * A null bucketing id hashes as "null", the same as the concatenation did.
+     */
+    private static int hashBucketKey(String bucketingId, @Nonnull String salt) {
+        return MurmurHash3.murmurhash3_x86_32(String.valueOf(bucketingId), salt, MURMUR_HASH_SEED);
+    }
+
     /**
      * Map the given 32-bit hashcode into the range [0, {@link #MAX_TRAFFIC_VALUE}).
      *
@@ -170,9 +146,9 @@ public class Bucketer {
      */
     @VisibleForTesting
     int generateBucketValue(int hashCode) {
-        // map the hashCode into the range [0, BucketAlgorithm.MAX_TRAFFIC_VALUE)
-        double ratio = (double) (hashCode & 0xFFFFFFFFL) / Math.pow(2, 32);
-        return (int) Math.floor(MAX_TRAFFIC_VALUE * ratio);
+        // map the hashCode into the range [0, BucketAlgorithm.MAX_TRAFFIC_VALUE), i.e.
+        // floor(MAX_TRAFFIC_VALUE * (hashCode as unsigned) / 2^32) without going through a double
+        return (int) (((hashCode & 0xFFFFFFFFL) * MAX_TRAFFIC_VALUE) >>> 32);
     }
 
 
@@ -0,0 +1,319 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.bucketing;
+
+import com.optimizely.ab.internal.PropertyUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * CachingUserProfileService is a {@link UserProfileService} that keeps the recently used profiles of another
+ * {@link UserProfileService} in memory.
+ *
+ * Profiles are cached already decoded, so {@link DecisionService} reads them through
+ * {@link #lookupUserProfile(String)} without converting the profile map again. Lookups don't lock: once the cache
+ * grows past {@code maxSize} users, one thread evicts the least recently used ones in a batch, down to nine tenths
+ * of {@code maxSize}. Entries are also forgotten once they are older than the configured timeout. Saves are written
+ * through to the wrapped service before the cache is updated, and a profile read on a miss never replaces one
+ * cached by a concurrent save. Users without a stored profile are cached as well, until their first save.
+ */
+public class CachingUserProfileService implements TypedUserProfileService {
+
+    public static final String CONFIG_CACHE_SIZE    = "user.profile.service.cache.size";
+    public static final String CONFIG_CACHE_TIMEOUT = "user.profile.service.cache.timeout";
+
+    public static final int DEFAULT_CACHE_SIZE = 10000;
+    public static final long DEFAULT_CACHE_TIMEOUT = TimeUnit.MINUTES.toMillis(10);
+
+    private static final Logger logger = LoggerFactory.getLogger(CachingUserProfileService.class);
+
+    private final UserProfileService userProfileService;
+    private final TypedUserProfileService typedUserProfileService;
+    private final int maxSize;
+    private final long timeoutMillis;
+    private final ConcurrentMap<String, CacheEntry> cache = new ConcurrentHashMap<String, CacheEntry>();
+    private final AtomicBoolean isEvicting = new AtomicBoolean(false);
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    private CachingUserProfileService(UserProfileService userProfileService, int maxSize, long timeoutMillis) {
+        this.userProfileService = userProfileService;
+        this.typedUserProfileService = UserProfileServiceAdapter.adapt(userProfileService);
+        this.maxSize = maxSize;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Fetch the decoded profile of the user, from the cache when possible.
+     *
+     * @param userId The ID of the user whose profile will be retrieved.
+     * @return a copy of the user's profile that the caller is free to modify, or null if the user has no valid profile.
+     * @throws Exception Passes on whatever exceptions the wrapped service may throw.
+     */
+    @Nullable
+    @Override
+    public UserProfile lookupUserProfile(@Nonnull String userId) throws Exception {
+        CacheEntry entry = get(userId);
+        if (entry != null) {
+            hitCount.increment();
+            return copyOf(entry.userProfile);
+        }
+
+        missCount.increment();
+        UserProfile userProfile = typedUserProfileService.lookupUserProfile(userId);
+        // a profile saved while this one was being read is newer, so keep it
+        CacheEntry savedEntry = cache.putIfAbsent(userId, newEntry(userProfile));
+        if (savedEntry != null) {
+            return copyOf(savedEntry.userProfile);
+        }
+
+        evictIfFull();
+        return copyOf(userProfile);
+    }
+
+    @Override
+    public void saveUserProfile(@Nonnull UserProfile userProfile) throws Exception {
+        try {
+            typedUserProfileService.saveUserProfile(userProfile);
+        } catch (Exception e) {
+            invalidate(userProfile.userId);
+            throw e;
+        }
+
+        // the caller may keep modifying its profile
+        cache.put(userProfile.userId, newEntry(copyOf(userProfile)));
+        evictIfFull();
+    }
+
+    /**
+     * Drop the cached profile of the user so that the next lookup reads it from the wrapped service.
+     */
+    public void invalidate(@Nonnull String userId) {
+        cache.remove(userId);
+    }
+
+    /**
+     * Drop all cached profiles.
+     */
+    public void invalidateAll() {
+        cache.clear();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * @return the number of profiles removed from the cache because it was full or they had expired.
+     */
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public UserProfileService getUserProfileService() {
+        return userProfileService;
+    }
+
+    @Nullable
+    private CacheEntry get(String userId) {
+        CacheEntry entry = cache.get(userId);
+        if (entry == null) {
+            return null;
+        }
+
+        if (entry.expiresAt <= System.currentTimeMillis()) {
+            if (cache.remove(userId, entry)) {
+                evictionCount.increment();
+            }
+            return null;
+        }
+
+        entry.lastAccess = System.nanoTime();
+        return entry;
+    }
+
+    private CacheEntry newEntry(@Nullable UserProfile userProfile) {
+        return new CacheEntry(userProfile, System.currentTimeMillis() + timeoutMillis, System.nanoTime());
+    }
+
+    /**
+     * Evicts the least recently used profiles once the cache is over its size. Evicting a batch at a time keeps the
+     * scan of the cache off most inserts, and threads that find another one already evicting carry on.
+     */
+    private void evictIfFull() {
+        if (cache.size() <= maxSize || !isEvicting.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            // the access times keep changing, so sort a snapshot of them
+            List<EvictionCandidate> candidates = new ArrayList<EvictionCandidate>(cache.size());
+            for (Map.Entry<String, CacheEntry> entry : cache.entrySet()) {
+                candidates.add(new EvictionCandidate(entry.getKey(), entry.getValue()));
+            }
+            Collections.sort(candidates);
+
+            int excess = cache.size() - (maxSize - maxSize / 10);
+            for (int i = 0; i < candidates.size() && excess > 0; i++) {
+                EvictionCandidate candidate = candidates.get(i);
+                if (cache.remove(candidate.userId, candidate.entry)) {
+                    evictionCount.increment();
+                    excess--;
+                }
+            }
+        } finally {
+            isEvicting.set(false);
+        }
+    }
+
+    @Nullable
+    private static UserProfile copyOf(@Nullable UserProfile userProfile) {
+        if (userProfile == null) {
+            return null;
+        }
+
+        Map<String, Decision> experimentBucketMap = new HashMap<String, Decision>(userProfile.experimentBucketMap.size());
+        for (Map.Entry<String, Decision> entry : userProfile.experimentBucketMap.entrySet()) {
+            experimentBucketMap.put(entry.getKey(), new Decision(entry.getValue().variationId));
+        }
+
+        return new UserProfile(userProfile.userId, experimentBucketMap);
+    }
+
+    //======== Helper classes ========//
+
+    private static class CacheEntry {
+
+        @Nullable
+        private final UserProfile userProfile;
+        private final long expiresAt;
+        private volatile long lastAccess;
+
+        private CacheEntry(@Nullable UserProfile userProfile, long expiresAt, long lastAccess) {
+            this.userProfile = userProfile;
+            this.expiresAt = expiresAt;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    private static class EvictionCandidate implements Comparable<EvictionCandidate> {
+
+        private final String userId;
+        private final CacheEntry entry;
+        private final long lastAccess;
+
+        private EvictionCandidate(String userId, CacheEntry entry) {
+            this.userId = userId;
+            this.entry = entry;
+            this.lastAccess = entry.lastAccess;
+        }
+
+        @Override
+        public int compareTo(EvictionCandidate other) {
+            // nanoTime values are only ordered by their difference
+            return Long.signum(lastAccess - other.lastAccess);
+        }
+    }
+
+    //======== Builder ========//
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private UserProfileService userProfileService;
+
+        int maxSize = PropertyUtils.getInteger(CONFIG_CACHE_SIZE, DEFAULT_CACHE_SIZE);
+        long timeoutMillis = PropertyUtils.getLong(CONFIG_CACHE_TIMEOUT, DEFAULT_CACHE_TIMEOUT);
+
+        public Builder withUserProfileService(UserProfileService userProfileService) {
+            this.userProfileService = userProfileService;
+            return this;
+        }
+
+        public Builder withMaxSize(Integer maxSize) {
+            if (maxSize == null || maxSize <= 0) {
+                logger.warn("Cache size cannot be null or <= 0. Keeping default value: {}", this.maxSize);
+                return this;
+            }
+
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        public Builder withTimeout(Long timeout, TimeUnit timeUnit) {
+            if (timeout == null || timeout <= 0 || timeUnit == null) {
+                logger.warn("Cache timeout cannot be null or <= 0. Keeping default value: {} ms", this.timeoutMillis);
+                return this;
+            }
+
+            this.timeoutMillis = timeUnit.toMillis(timeout);
+            return this;
+        }
+
+        public CachingUserProfileService build() {
+            if (userProfileService == null) {
+                throw new IllegalArgumentException("UserProfileService was not configured");
+            }
+
+            if (maxSize <= 0) {
+                logger.warn("Invalid cache size {}. Defaulting to {}", maxSize, DEFAULT_CACHE_SIZE);
+                maxSize = DEFAULT_CACHE_SIZE;
+            }
+
+            if (timeoutMillis <= 0) {
+                logger.warn("Invalid cache timeout {}. Defaulting to {}", timeoutMillis, DEFAULT_CACHE_TIMEOUT);
+                timeoutMillis = DEFAULT_CACHE_TIMEOUT;
+            }
+
+            return new CachingUserProfileService(userProfileService, maxSize, timeoutMillis);
+        }
+    }
+}
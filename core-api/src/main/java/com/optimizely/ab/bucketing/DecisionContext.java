@@ -0,0 +1,88 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.bucketing;
+
+import com.optimizely.ab.config.audience.AudienceEvaluationCache;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Per-user state shared by all the decisions made by {@link DecisionService} for a single API call.
+ * <p>
+ * The {@link UserProfile} is looked up at most once per context, and the decisions made while the context is in use
+ * are accumulated on that same profile until they are saved together when the top-level decision is finished. Each {@link com.optimizely.ab.config.audience.Audience} is evaluated at most
+ * once per context. A DecisionContext is confined to the calling thread.
+ */
+final class DecisionContext {
+
+    @Nonnull
+    final String userId;
+    @Nonnull
+    final Map<String, ?> filteredAttributes;
+    @Nonnull
+    final AudienceEvaluationCache audienceEvaluationCache = new AudienceEvaluationCache();
+
+    private boolean userProfileLoaded;
+    private UserProfile userProfile;
+    private Map<String, String> unsavedDecisions;
+
+    DecisionContext(@Nonnull String userId, @Nonnull Map<String, ?> filteredAttributes) {
+        this.userId = userId;
+        this.filteredAttributes = filteredAttributes;
+    }
+
+    boolean isUserProfileLoaded() {
+        return userProfileLoaded;
+    }
+
+    @Nullable
+    UserProfile getUserProfile() {
+        return userProfile;
+    }
+
+    void setUserProfile(@Nullable UserProfile userProfile) {
+        this.userProfile = userProfile;
+        this.userProfileLoaded = true;
+    }
+
+    void addUnsavedDecision(@Nonnull String experimentId, @Nonnull String variationId) {
+        if (unsavedDecisions == null) {
+            unsavedDecisions = new LinkedHashMap<String, String>();
+        }
+        unsavedDecisions.put(experimentId, variationId);
+    }
+
+    boolean hasUnsavedDecisions() {
+        return unsavedDecisions != null && !unsavedDecisions.isEmpty();
+    }
+
+    /**
+     * @return the variation ids of the decisions not saved to the user profile yet, by experiment id.
+     */
+    @Nonnull
+    Map<String, String> getUnsavedDecisions() {
+        return unsavedDecisions == null ? Collections.<String, String>emptyMap() : unsavedDecisions;
+    }
+
+    void clearUnsavedDecisions() {
+        unsavedDecisions = null;
+    }
+}
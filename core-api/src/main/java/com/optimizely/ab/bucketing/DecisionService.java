@@ -18,6 +18,7 @@ package com.optimizely.ab.bucketing;
 import com.optimizely.ab.OptimizelyRuntimeException;
 import com.optimizely.ab.config.*;
 import com.optimizely.ab.config.audience.Audience;
+import com.optimizely.ab.config.audience.AudienceEvaluationCache;
 import com.optimizely.ab.error.ErrorHandler;
 import com.optimizely.ab.internal.ExperimentUtils;
 import com.optimizely.ab.internal.ControlAttribute;
@@ -25,9 +26,13 @@ import com.optimizely.ab.internal.ControlAttribute;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -46,7 +51,9 @@ public class DecisionService {
 
     private final Bucketer bucketer;
     private final ErrorHandler errorHandler;
-    private final UserProfileService userProfileService;
+    private final TypedUserProfileService userProfileService;
+    private final LongAdder audienceEvaluationCacheHits = new LongAdder();
+    private final LongAdder audienceEvaluationCacheMisses = new LongAdder();
     private static final Logger logger = LoggerFactory.getLogger(DecisionService.class);
 
     /**
@@ -70,7 +77,8 @@ public class DecisionService {
                            @Nullable UserProfileService userProfileService) {
         this.bucketer = bucketer;
         this.errorHandler = errorHandler;
-        this.userProfileService = userProfileService;
+        // map based services are adapted so decisions always work with typed profiles
+        this.userProfileService = userProfileService == null ? null : UserProfileServiceAdapter.adapt(userProfileService);
     }
 
     /**
@@ -86,6 +94,18 @@ public class DecisionService {
                                   @Nonnull String userId,
                                   @Nonnull Map<String, ?> filteredAttributes,
                                   @Nonnull ProjectConfig projectConfig) {
+        DecisionContext context = new DecisionContext(userId, filteredAttributes);
+        Variation variation = getVariation(experiment, projectConfig, context);
+        finishDecision(context);
+        return variation;
+    }
+
+    @Nullable
+    Variation getVariation(@Nonnull Experiment experiment,
+                           @Nonnull ProjectConfig projectConfig,
+                           @Nonnull DecisionContext context) {
+        String userId = context.userId;
+        Map<String, ?> filteredAttributes = context.filteredAttributes;
 
         if (!ExperimentUtils.isExperimentActive(experiment)) {
             return null;
@@ -103,24 +123,11 @@ public class DecisionService {
             return variation;
         }
 
-        // fetch the user profile map from the user profile service
-        UserProfile userProfile = null;
-
-        if (userProfileService != null) {
-            try {
-                Map<String, Object> userProfileMap = userProfileService.lookup(userId);
-                if (userProfileMap == null) {
-                    logger.info("We were unable to get a user profile map from the UserProfileService.");
-                } else if (UserProfileUtils.isValidUserProfileMap(userProfileMap)) {
-                    userProfile = UserProfileUtils.convertMapToUserProfile(userProfileMap);
-                } else {
-                    logger.warn("The UserProfileService returned an invalid map.");
-                }
-            } catch (Exception exception) {
-                logger.error(exception.getMessage());
-                errorHandler.handleError(new OptimizelyRuntimeException(exception));
-            }
+        // fetch the user profile map from the user profile service, once per decision context
+        if (!context.isUserProfileLoaded()) {
+            context.setUserProfile(lookupUserProfile(userId));
         }
+        UserProfile userProfile = context.getUserProfile();
 
         // check if user exists in user profile
         if (userProfile != null) {
@@ -131,15 +138,21 @@ public class DecisionService {
             }
         } else { // if we could not find a user profile, make a new one
             userProfile = new UserProfile(userId, new HashMap<String, Decision>());
+            if (userProfileService != null) {
+                // later decisions in this context are saved to the same profile
+                context.setUserProfile(userProfile);
+            }
         }
 
-        if (ExperimentUtils.isUserInExperiment(projectConfig, experiment, filteredAttributes)) {
+        if (ExperimentUtils.isUserInExperiment(projectConfig, experiment, filteredAttributes, context.audienceEvaluationCache)) {
             String bucketingId = getBucketingId(userId, filteredAttributes);
             variation = bucketer.bucket(experiment, bucketingId, projectConfig);
 
             if (variation != null) {
                 if (userProfileService != null) {
-                    saveVariation(experiment, variation, userProfile);
+                    // the profile is written back once, when the top-level decision is finished
+                    recordVariation(experiment, variation, userProfile);
+                    context.addUnsavedDecision(experiment.getId(), variation.getId());
                 } else {
                     logger.debug("This decision will not be saved since the UserProfileService is null.");
                 }
@@ -152,6 +165,28 @@ public class DecisionService {
         return null;
     }
 
+    /**
+     * Fetch the {@link UserProfile} of the user from the {@link UserProfileService}.
+     *
+     * @param userId The userId of the user.
+     * @return The user profile, or null if there is no UserProfileService or no valid profile was found.
+     */
+    @Nullable
+    private UserProfile lookupUserProfile(@Nonnull String userId) {
+        if (userProfileService == null) {
+            return null;
+        }
+
+        try {
+            return userProfileService.lookupUserProfile(userId);
+        } catch (Exception exception) {
+            logger.error(exception.getMessage());
+            errorHandler.handleError(new OptimizelyRuntimeException(exception));
+        }
+
+        return null;
+    }
+
     /**
      * Get the variation the user is bucketed into for the FeatureFlag
      *
@@ -165,10 +200,50 @@ public class DecisionService {
                                                   @Nonnull String userId,
                                                   @Nonnull Map<String, ?> filteredAttributes,
                                                   @Nonnull ProjectConfig projectConfig) {
+        DecisionContext context = new DecisionContext(userId, filteredAttributes);
+        FeatureDecision featureDecision = getVariationForFeature(featureFlag, projectConfig, context);
+        finishDecision(context);
+        return featureDecision;
+    }
+
+    /**
+     * Get the variations the user is bucketed into for each of the FeatureFlags.
+     * <p>
+     * The decisions share a single {@link UserProfile} lookup, so deciding many flags at once costs one
+     * {@link UserProfileService#lookup(String)} and at most one {@link UserProfileService#save(Map)} rather than
+     * one of each per experiment, and each audience is evaluated at most once across all the flags.
+     *
+     * @param featureFlags       The feature flags to decide.
+     * @param userId             User Identifier
+     * @param filteredAttributes A map of filtered attributes.
+     * @return the {@link FeatureDecision} of each feature flag by feature key, in the order of the given flags.
+     */
+    @Nonnull
+    public Map<String, FeatureDecision> getVariationsForFeatures(@Nonnull List<FeatureFlag> featureFlags,
+                                                                 @Nonnull String userId,
+                                                                 @Nonnull Map<String, ?> filteredAttributes,
+                                                                 @Nonnull ProjectConfig projectConfig) {
+        DecisionContext context = new DecisionContext(userId, filteredAttributes);
+        Map<String, FeatureDecision> featureDecisions = new LinkedHashMap<String, FeatureDecision>(featureFlags.size());
+        for (FeatureFlag featureFlag : featureFlags) {
+            featureDecisions.put(featureFlag.getKey(), getVariationForFeature(featureFlag, projectConfig, context));
+        }
+        finishDecision(context);
+
+        return featureDecisions;
+    }
+
+    @Nonnull
+    private FeatureDecision getVariationForFeature(@Nonnull FeatureFlag featureFlag,
+                                                   @Nonnull ProjectConfig projectConfig,
+                                                   @Nonnull DecisionContext context) {
+        String userId = context.userId;
+        Map<String, ?> filteredAttributes = context.filteredAttributes;
+
         if (!featureFlag.getExperimentIds().isEmpty()) {
             for (String experimentId : featureFlag.getExperimentIds()) {
                 Experiment experiment = projectConfig.getExperimentIdMapping().get(experimentId);
-                Variation variation = getVariation(experiment, userId, filteredAttributes, projectConfig);
+                Variation variation = getVariation(experiment, projectConfig, context);
                 if (variation != null) {
                     return new FeatureDecision(experiment, variation, FeatureDecision.DecisionSource.FEATURE_TEST);
                 }
@@ -177,7 +252,7 @@ public class DecisionService {
             logger.info("The feature flag \"{}\" is not used in any experiments.", featureFlag.getKey());
         }
 
-        FeatureDecision featureDecision = getVariationForFeatureInRollout(featureFlag, userId, filteredAttributes, projectConfig);
+        FeatureDecision featureDecision = getVariationForFeatureInRollout(featureFlag, projectConfig, context);
         if (featureDecision.variation == null) {
             logger.info("The user \"{}\" was not bucketed into a rollout for feature flag \"{}\".",
                 userId, featureFlag.getKey());
@@ -203,6 +278,19 @@ public class DecisionService {
                                                     @Nonnull String userId,
                                                     @Nonnull Map<String, ?> filteredAttributes,
                                                     @Nonnull ProjectConfig projectConfig) {
+        DecisionContext context = new DecisionContext(userId, filteredAttributes);
+        FeatureDecision featureDecision = getVariationForFeatureInRollout(featureFlag, projectConfig, context);
+        finishDecision(context);
+        return featureDecision;
+    }
+
+    @Nonnull
+    FeatureDecision getVariationForFeatureInRollout(@Nonnull FeatureFlag featureFlag,
+                                                    @Nonnull ProjectConfig projectConfig,
+                                                    @Nonnull DecisionContext context) {
+        String userId = context.userId;
+        Map<String, ?> filteredAttributes = context.filteredAttributes;
+
         // use rollout to get variation for feature
         if (featureFlag.getRolloutId().isEmpty()) {
             logger.info("The feature flag \"{}\" is not used in a rollout.", featureFlag.getKey());
@@ -222,7 +310,7 @@ public class DecisionService {
         for (int i = 0; i < rolloutRulesLength - 1; i++) {
             Experiment rolloutRule = rollout.getExperiments().get(i);
             Audience audience = projectConfig.getAudienceIdMapping().get(rolloutRule.getAudienceIds().get(0));
-            if (ExperimentUtils.isUserInExperiment(projectConfig, rolloutRule, filteredAttributes)) {
+            if (ExperimentUtils.isUserInExperiment(projectConfig, rolloutRule, filteredAttributes, context.audienceEvaluationCache)) {
                 variation = bucketer.bucket(rolloutRule, bucketingId, projectConfig);
                 if (variation == null) {
                     break;
@@ -237,7 +325,7 @@ public class DecisionService {
 
         // get last rule which is the fall back rule
         Experiment finalRule = rollout.getExperiments().get(rolloutRulesLength - 1);
-        if (ExperimentUtils.isUserInExperiment(projectConfig, finalRule, filteredAttributes)) {
+        if (ExperimentUtils.isUserInExperiment(projectConfig, finalRule, filteredAttributes, context.audienceEvaluationCache)) {
             variation = bucketer.bucket(finalRule, bucketingId, projectConfig);
             if (variation != null) {
                 return new FeatureDecision(finalRule, variation,
@@ -329,29 +417,90 @@ public class DecisionService {
                        @Nonnull UserProfile userProfile) {
         // only save if the user has implemented a user profile service
         if (userProfileService != null) {
-            String experimentId = experiment.getId();
-            String variationId = variation.getId();
-            Decision decision;
-            if (userProfile.experimentBucketMap.containsKey(experimentId)) {
-                decision = userProfile.experimentBucketMap.get(experimentId);
-                decision.variationId = variationId;
-            } else {
-                decision = new Decision(variationId);
-            }
-            userProfile.experimentBucketMap.put(experimentId, decision);
+            recordVariation(experiment, variation, userProfile);
+            saveUserProfile(userProfile, Collections.singletonMap(experiment.getId(), variation.getId()));
+        }
+    }
+
+    /**
+     * Record a {@link Variation} of an {@link Experiment} in the user profile without saving it.
+     */
+    private static void recordVariation(@Nonnull Experiment experiment,
+                                        @Nonnull Variation variation,
+                                        @Nonnull UserProfile userProfile) {
+        String experimentId = experiment.getId();
+        String variationId = variation.getId();
+        Decision decision = userProfile.experimentBucketMap.get(experimentId);
+        if (decision != null) {
+            decision.variationId = variationId;
+        } else {
+            userProfile.experimentBucketMap.put(experimentId, new Decision(variationId));
+        }
+    }
 
-            try {
-                userProfileService.save(userProfile.toMap());
+    /**
+     * Write the user profile back to the {@link UserProfileService} in a single save.
+     *
+     * @param userProfile The user profile holding all of the decisions.
+     * @param decisions   The variation ids of the decisions made since the profile was last saved, by experiment id.
+     */
+    private void saveUserProfile(@Nonnull UserProfile userProfile, @Nonnull Map<String, String> decisions) {
+        try {
+            userProfileService.saveUserProfile(userProfile);
+            for (Map.Entry<String, String> decision : decisions.entrySet()) {
                 logger.info("Saved variation \"{}\" of experiment \"{}\" for user \"{}\".",
-                    variationId, experimentId, userProfile.userId);
-            } catch (Exception exception) {
+                    decision.getValue(), decision.getKey(), userProfile.userId);
+            }
+        } catch (Exception exception) {
+            for (Map.Entry<String, String> decision : decisions.entrySet()) {
                 logger.warn("Failed to save variation \"{}\" of experiment \"{}\" for user \"{}\".",
-                    variationId, experimentId, userProfile.userId);
-                errorHandler.handleError(new OptimizelyRuntimeException(exception));
+                    decision.getValue(), decision.getKey(), userProfile.userId);
             }
+            errorHandler.handleError(new OptimizelyRuntimeException(exception));
         }
     }
 
+    /**
+     * Save the decisions of a finished top-level decision to the user profile, and add its audience
+     * evaluations to the totals of this service.
+     */
+    private void finishDecision(@Nonnull DecisionContext context) {
+        UserProfile userProfile = context.getUserProfile();
+        if (userProfileService != null && userProfile != null && context.hasUnsavedDecisions()) {
+            saveUserProfile(userProfile, context.getUnsavedDecisions());
+            context.clearUnsavedDecisions();
+        }
+
+        recordAudienceEvaluations(context);
+    }
+
+    /**
+     * Add the audience evaluations of a finished decision to the totals of this service.
+     */
+    private void recordAudienceEvaluations(@Nonnull DecisionContext context) {
+        AudienceEvaluationCache audienceEvaluationCache = context.audienceEvaluationCache;
+        if (audienceEvaluationCache.getHitCount() > 0) {
+            audienceEvaluationCacheHits.add(audienceEvaluationCache.getHitCount());
+        }
+        if (audienceEvaluationCache.getMissCount() > 0) {
+            audienceEvaluationCacheMisses.add(audienceEvaluationCache.getMissCount());
+        }
+    }
+
+    /**
+     * @return the number of audience evaluations answered from the per-decision cache since this service was created.
+     */
+    public long getAudienceEvaluationCacheHits() {
+        return audienceEvaluationCacheHits.sum();
+    }
+
+    /**
+     * @return the number of audiences evaluated since this service was created.
+     */
+    public long getAudienceEvaluationCacheMisses() {
+        return audienceEvaluationCacheMisses.sum();
+    }
+
     /**
      * Get the bucketingId of a user if a bucketingId exists in attributes, or else default to userId.
      *
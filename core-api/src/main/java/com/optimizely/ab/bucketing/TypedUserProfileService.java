@@ -0,0 +1,65 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.bucketing;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Map;
+
+/**
+ * A {@link UserProfileService} that stores {@link UserProfile} instances directly.
+ *
+ * {@link DecisionService} talks to a TypedUserProfileService without converting profiles to and from their
+ * {@code Map} form. The {@code Map} based methods are bridged to the typed ones so an implementation only needs to
+ * provide {@link #lookupUserProfile(String)} and {@link #saveUserProfile(UserProfile)}. Stores that keep profiles
+ * as bytes can use {@link UserProfileCodec} to encode them.
+ */
+public interface TypedUserProfileService extends UserProfileService {
+
+    /**
+     * Fetch the profile of the user.
+     *
+     * @param userId The ID of the user whose profile will be retrieved.
+     * @return the user's profile, or null if the user has no profile. The caller is free to modify it.
+     * @throws Exception Passes on whatever exceptions the implementation may throw.
+     */
+    @Nullable
+    UserProfile lookupUserProfile(@Nonnull String userId) throws Exception;
+
+    /**
+     * Save the profile of the user.
+     *
+     * @param userProfile The user's profile.
+     * @throws Exception Can throw an exception if the user profile was not saved properly.
+     */
+    void saveUserProfile(@Nonnull UserProfile userProfile) throws Exception;
+
+    @Override
+    default Map<String, Object> lookup(String userId) throws Exception {
+        UserProfile userProfile = lookupUserProfile(userId);
+        return userProfile == null ? null : userProfile.toMap();
+    }
+
+    @Override
+    default void save(Map<String, Object> userProfile) throws Exception {
+        if (!UserProfileUtils.isValidUserProfileMap(userProfile)) {
+            throw new IllegalArgumentException("Invalid user profile map.");
+        }
+
+        saveUserProfile(UserProfileUtils.convertMapToUserProfile(userProfile));
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.bucketing;
+
+import javax.annotation.Nonnull;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of a {@link UserProfile} for {@link TypedUserProfileService} implementations backed by
+ * a byte store.
+ *
+ * The encoding is a version byte, the user ID, the number of decisions as a varint and then each experiment ID
+ * followed by its variation ID. Strings are written in modified UTF-8 as by {@link DataOutputStream#writeUTF(String)}.
+ */
+public final class UserProfileCodec {
+
+    private static final int VERSION = 1;
+
+    private UserProfileCodec() {
+    }
+
+    @Nonnull
+    public static byte[] encode(@Nonnull UserProfile userProfile) {
+        // two bytes of length and roughly ten characters for each id
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + userProfile.experimentBucketMap.size() * 24);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(VERSION);
+            out.writeUTF(userProfile.userId);
+            writeVarInt(out, userProfile.experimentBucketMap.size());
+            for (Map.Entry<String, Decision> entry : userProfile.experimentBucketMap.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeUTF(entry.getValue().variationId);
+            }
+        } catch (IOException e) {
+            // only thrown for ids longer than 65535 bytes, the in-memory stream itself cannot fail
+            throw new IllegalArgumentException("Unable to encode the profile of user \"" + userProfile.userId + "\".", e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the bytes are not a profile encoded by {@link #encode(UserProfile)}.
+     */
+    @Nonnull
+    public static UserProfile decode(@Nonnull byte[] encoded) {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded));
+        try {
+            int version = in.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported user profile encoding version " + version + ".");
+            }
+
+            String userId = in.readUTF();
+            int size = readVarInt(in);
+            if (size < 0) {
+                throw new IOException("Negative number of decisions.");
+            }
+            // each decision takes at least four bytes, which bounds the map of a corrupt size
+            int expectedSize = Math.min(size, encoded.length / 4);
+            Map<String, Decision> experimentBucketMap = new HashMap<String, Decision>((int) (expectedSize / 0.75f) + 1);
+            for (int i = 0; i < size; i++) {
+                String experimentId = in.readUTF();
+                experimentBucketMap.put(experimentId, new Decision(in.readUTF()));
+            }
+
+            return new UserProfile(userId, experimentBucketMap);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed user profile encoding.", e);
+        }
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint.");
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.bucketing;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Map;
+
+/**
+ * Bridges a {@code Map} based {@link UserProfileService} to the {@link TypedUserProfileService} contract.
+ */
+final class UserProfileServiceAdapter implements TypedUserProfileService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserProfileServiceAdapter.class);
+
+    private final UserProfileService userProfileService;
+
+    private UserProfileServiceAdapter(@Nonnull UserProfileService userProfileService) {
+        this.userProfileService = userProfileService;
+    }
+
+    /**
+     * @return the given service if it is already typed, or else an adapter around it.
+     */
+    @Nonnull
+    static TypedUserProfileService adapt(@Nonnull UserProfileService userProfileService) {
+        if (userProfileService instanceof TypedUserProfileService) {
+            return (TypedUserProfileService) userProfileService;
+        }
+
+        return new UserProfileServiceAdapter(userProfileService);
+    }
+
+    @Nullable
+    @Override
+    public UserProfile lookupUserProfile(@Nonnull String userId) throws Exception {
+        Map<String, Object> userProfileMap = userProfileService.lookup(userId);
+        if (userProfileMap == null) {
+            logger.info("We were unable to get a user profile map from the UserProfileService.");
+            return null;
+        }
+
+        if (!UserProfileUtils.isValidUserProfileMap(userProfileMap)) {
+            logger.warn("The UserProfileService returned an invalid map.");
+            return null;
+        }
+
+        return UserProfileUtils.convertMapToUserProfile(userProfileMap);
+    }
+
+    @Override
+    public void saveUserProfile(@Nonnull UserProfile userProfile) throws Exception {
+        userProfileService.save(userProfile.toMap());
+    }
+
+    @Override
+    public Map<String, Object> lookup(String userId) throws Exception {
+        return userProfileService.lookup(userId);
+    }
+
+    @Override
+    public void save(Map<String, Object> userProfile) throws Exception {
+        userProfileService.save(userProfile);
+    }
+}
@@ -96,6 +96,23 @@ public final class MurmurHash3 {
      * the string to a temporary buffer
      */
     public static int murmurhash3_x86_32(CharSequence data, int offset, int len, int seed) {
+        return murmurhash3_x86_32(data, offset, len, "", seed);
+    }
+
+    /**
+     * Hashes {@code data} followed by {@code salt} as if they were a single String, without building the
+     * concatenation.
+     *
+     * @param data the origin data
+     * @param salt the data appended to the origin data
+     * @param seed the murmur hash seed
+     * @return the MurmurHash3_x86_32 hash of the UTF-8 bytes of {@code data + salt}
+     */
+    public static int murmurhash3_x86_32(CharSequence data, CharSequence salt, int seed) {
+        return murmurhash3_x86_32(data, 0, data.length(), salt, seed);
+    }
+
+    private static int murmurhash3_x86_32(CharSequence data, int offset, int len, CharSequence salt, int seed) {
 
         final int c1 = 0xcc9e2d51;
         final int c2 = 0x1b873593;
@@ -103,7 +120,8 @@ public final class MurmurHash3 {
         int h1 = seed;
 
         int pos = offset;
-        int end = offset + len;
+        int dataEnd = offset + len;
+        int end = dataEnd + salt.length();
         int k1 = 0;
         int k2;
         int shift = 0;
@@ -112,7 +130,8 @@ public final class MurmurHash3 {
 
 
         while (pos < end) {
-            int code = data.charAt(pos++);
+            int code = pos < dataEnd ? data.charAt(pos) : salt.charAt(pos - dataEnd);
+            pos++;
             if (code < 0x80) {
                 k2 = code;
                 bits = 8;
@@ -153,7 +172,8 @@ public final class MurmurHash3 {
             } else {
                 // surrogate pair
                 // int utf32 = pos < end ? (int) data.charAt(pos++) : 0;
-                int utf32 = (int) data.charAt(pos++);
+                int utf32 = pos < dataEnd ? data.charAt(pos) : salt.charAt(pos - dataEnd);
+                pos++;
                 utf32 = ((code - 0xD7C0) << 10) + (utf32 & 0x3FF);
                 k2 = (0xff & (0xF0 | (utf32 >> 18)))
                     | ((0x80 | ((utf32 >> 12) & 0x3F))) << 8
@@ -19,8 +19,16 @@ package com.optimizely.ab.config;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.optimizely.ab.UnknownEventTypeException;
 import com.optimizely.ab.UnknownExperimentException;
+import com.optimizely.ab.config.audience.AndCondition;
 import com.optimizely.ab.config.audience.Audience;
+import com.optimizely.ab.config.audience.AudienceIdCondition;
+import com.optimizely.ab.config.audience.Condition;
+import com.optimizely.ab.config.audience.EmptyCondition;
+import com.optimizely.ab.config.audience.NotCondition;
+import com.optimizely.ab.config.audience.NullCondition;
+import com.optimizely.ab.config.audience.OrCondition;
 import com.optimizely.ab.config.parser.ConfigParseException;
+import com.optimizely.ab.config.parser.ConfigParser;
 import com.optimizely.ab.config.parser.DefaultConfigParser;
 import com.optimizely.ab.error.ErrorHandler;
 import com.optimizely.ab.error.NoOpErrorHandler;
@@ -32,6 +40,8 @@ import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -88,6 +98,9 @@ public class DatafileProjectConfig implements ProjectConfig {
     // other mappings
     private final Map<String, Experiment> variationIdToExperimentMapping;
 
+    // differences with the config this one was rebuilt from, if any
+    private final ProjectConfigChanges changes;
+
     // v2 constructor
     public DatafileProjectConfig(String accountId, String projectId, String version, String revision, List<Group> groups,
                                  List<Experiment> experiments, List<Attribute> attributes, List<EventType> eventType,
@@ -132,6 +145,41 @@ public class DatafileProjectConfig implements ProjectConfig {
                                  List<FeatureFlag> featureFlags,
                                  List<Group> groups,
                                  List<Rollout> rollouts) {
+        this(accountId, anonymizeIP, botFiltering, projectId, revision, version, attributes, audiences, typedAudiences,
+            events, experiments, featureFlags, groups, rollouts, null);
+    }
+
+    /**
+     * Builds a config that shares the entities left unchanged since the previous config, along with the indexes
+     * they hold, instead of keeping equal copies of them. Used by the parsers, see
+     * {@link ConfigParser#withPreviousConfig(ProjectConfig)}.
+     *
+     * @param previousConfig the config to share entities with, ignored unless it is a {@code DatafileProjectConfig}
+     */
+    public DatafileProjectConfig(String accountId,
+                                 boolean anonymizeIP,
+                                 Boolean botFiltering,
+                                 String projectId,
+                                 String revision,
+                                 String version,
+                                 List<Attribute> attributes,
+                                 List<Audience> audiences,
+                                 List<Audience> typedAudiences,
+                                 List<EventType> events,
+                                 List<Experiment> experiments,
+                                 List<FeatureFlag> featureFlags,
+                                 List<Group> groups,
+                                 List<Rollout> rollouts,
+                                 @Nullable ProjectConfig previousConfig) {
+
+        DatafileProjectConfig previous = previousConfig instanceof DatafileProjectConfig
+            ? (DatafileProjectConfig) previousConfig
+            : null;
+        if (previous != null) {
+            audiences = shareAudiences(audiences, previous.audienceIdMapping);
+            typedAudiences = typedAudiences == null ? null : shareAudiences(typedAudiences, previous.audienceIdMapping);
+            featureFlags = featureFlags == null ? null : shareFeatureFlags(featureFlags, previous.featureKeyMapping);
+        }
 
         this.accountId = accountId;
         this.projectId = projectId;
@@ -155,17 +203,30 @@ public class DatafileProjectConfig implements ProjectConfig {
         } else {
             this.featureFlags = Collections.unmodifiableList(featureFlags);
         }
+
+        // generate audience id to audience mapping
+        if (typedAudiences == null) {
+            this.audienceIdMapping = ProjectConfigUtils.generateIdMapping(audiences);
+        } else {
+            List<Audience> combinedList = new ArrayList<>(audiences);
+            combinedList.addAll(typedAudiences);
+            this.audienceIdMapping = ProjectConfigUtils.generateIdMapping(combinedList);
+        }
+
+        PreviousEntities previousEntities = previous == null ? null : new PreviousEntities(previous, audienceIdMapping);
+
+        // link audience conditions to their audiences once so evaluation doesn't look them up per call
         if (rollouts == null) {
             this.rollouts = Collections.emptyList();
         } else {
-            this.rollouts = Collections.unmodifiableList(rollouts);
+            this.rollouts = Collections.unmodifiableList(resolveRolloutAudiences(rollouts, previousEntities));
         }
 
-        this.groups = Collections.unmodifiableList(groups);
+        this.groups = Collections.unmodifiableList(resolveGroupAudiences(groups, previousEntities));
 
         List<Experiment> allExperiments = new ArrayList<Experiment>();
-        allExperiments.addAll(experiments);
-        allExperiments.addAll(aggregateGroupExperiments(groups));
+        allExperiments.addAll(resolveExperimentAudiences(experiments, previousEntities));
+        allExperiments.addAll(aggregateGroupExperiments(this.groups));
         this.experiments = Collections.unmodifiableList(allExperiments);
 
         Map<String, Experiment> variationIdToExperimentMap = new HashMap<String, Experiment>();
@@ -182,20 +243,14 @@ public class DatafileProjectConfig implements ProjectConfig {
         this.experimentKeyMapping = ProjectConfigUtils.generateNameMapping(this.experiments);
         this.featureKeyMapping = ProjectConfigUtils.generateNameMapping(this.featureFlags);
 
-        // generate audience id to audience mapping
-        if (typedAudiences == null) {
-            this.audienceIdMapping = ProjectConfigUtils.generateIdMapping(audiences);
-        } else {
-            List<Audience> combinedList = new ArrayList<>(audiences);
-            combinedList.addAll(typedAudiences);
-            this.audienceIdMapping = ProjectConfigUtils.generateIdMapping(combinedList);
-        }
         this.experimentIdMapping = ProjectConfigUtils.generateIdMapping(this.experiments);
-        this.groupIdMapping = ProjectConfigUtils.generateIdMapping(groups);
+        this.groupIdMapping = ProjectConfigUtils.generateIdMapping(this.groups);
         this.rolloutIdMapping = ProjectConfigUtils.generateIdMapping(this.rollouts);
 
         // Generate experiment to featureFlag list mapping to identify if experiment is AB-Test experiment or Feature-Test Experiment.
         this.experimentFeatureKeyMapping = ProjectConfigUtils.generateExperimentFeatureMapping(this.featureFlags);
+
+        this.changes = previous == null ? null : diff(previous);
     }
 
     /**
@@ -261,6 +316,324 @@ public class DatafileProjectConfig implements ProjectConfig {
         return this.variationIdToExperimentMapping.get(variationId);
     }
 
+    private List<Experiment> resolveExperimentAudiences(List<Experiment> experiments,
+                                                        @Nullable PreviousEntities previousEntities) {
+        List<Experiment> resolvedExperiments = new ArrayList<Experiment>(experiments.size());
+        for (Experiment experiment : experiments) {
+            Experiment previousExperiment = previousEntities == null ? null : previousEntities.experiment(experiment);
+            resolvedExperiments.add(previousExperiment != null
+                ? previousExperiment
+                : experiment.withResolvedAudiences(audienceIdMapping));
+        }
+
+        return resolvedExperiments;
+    }
+
+    private List<Group> resolveGroupAudiences(List<Group> groups, @Nullable PreviousEntities previousEntities) {
+        List<Group> resolvedGroups = new ArrayList<Group>(groups.size());
+        for (Group group : groups) {
+            List<Experiment> experiments = resolveExperimentAudiences(group.getExperiments(), previousEntities);
+            Group previousGroup = previousEntities == null ? null : previousEntities.group(group, experiments);
+            resolvedGroups.add(previousGroup != null
+                ? previousGroup
+                : new Group(group.getId(), group.getPolicy(), experiments, group.getTrafficAllocation()));
+        }
+
+        return resolvedGroups;
+    }
+
+    private List<Rollout> resolveRolloutAudiences(List<Rollout> rollouts, @Nullable PreviousEntities previousEntities) {
+        List<Rollout> resolvedRollouts = new ArrayList<Rollout>(rollouts.size());
+        for (Rollout rollout : rollouts) {
+            List<Experiment> experiments = resolveExperimentAudiences(rollout.getExperiments(), previousEntities);
+            Rollout previousRollout = previousEntities == null ? null : previousEntities.rollout(rollout, experiments);
+            resolvedRollouts.add(previousRollout != null ? previousRollout : new Rollout(rollout.getId(), experiments));
+        }
+
+        return resolvedRollouts;
+    }
+
+    private static List<Audience> shareAudiences(List<Audience> audiences, Map<String, Audience> previousAudiences) {
+        List<Audience> sharedAudiences = new ArrayList<Audience>(audiences.size());
+        for (Audience audience : audiences) {
+            Audience previousAudience = previousAudiences.get(audience.getId());
+            sharedAudiences.add(previousAudience != null && PreviousEntities.sameAudience(previousAudience, audience)
+                ? previousAudience
+                : audience);
+        }
+
+        return sharedAudiences;
+    }
+
+    private static List<FeatureFlag> shareFeatureFlags(List<FeatureFlag> featureFlags,
+                                                       Map<String, FeatureFlag> previousFeatureFlags) {
+        List<FeatureFlag> sharedFeatureFlags = new ArrayList<FeatureFlag>(featureFlags.size());
+        for (FeatureFlag featureFlag : featureFlags) {
+            FeatureFlag previousFeatureFlag = previousFeatureFlags.get(featureFlag.getKey());
+            boolean unchanged = previousFeatureFlag != null
+                && PreviousEntities.sameFeatureFlag(previousFeatureFlag, featureFlag);
+            sharedFeatureFlags.add(unchanged ? previousFeatureFlag : featureFlag);
+        }
+
+        return sharedFeatureFlags;
+    }
+
+    /**
+     * Entities are shared with the previous config, so any entity that is not the same instance changed.
+     */
+    private ProjectConfigChanges diff(DatafileProjectConfig previous) {
+        Set<String> changedExperimentKeys = changedKeys(previous.experimentKeyMapping, experimentKeyMapping);
+
+        Set<String> changedFeatureKeys = changedKeys(previous.featureKeyMapping, featureKeyMapping);
+        for (FeatureFlag featureFlag : featureFlags) {
+            if (changedFeatureKeys.contains(featureFlag.getKey())) {
+                continue;
+            }
+
+            String rolloutId = featureFlag.getRolloutId();
+            boolean changed = previous.rolloutIdMapping.get(rolloutId) != rolloutIdMapping.get(rolloutId);
+            for (String experimentId : featureFlag.getExperimentIds()) {
+                changed |= previous.experimentIdMapping.get(experimentId) != experimentIdMapping.get(experimentId);
+            }
+            if (changed) {
+                changedFeatureKeys.add(featureFlag.getKey());
+            }
+        }
+
+        return new ProjectConfigChanges(previous.revision, changedExperimentKeys, changedFeatureKeys);
+    }
+
+    private static <T> Set<String> changedKeys(Map<String, T> previousMapping, Map<String, T> mapping) {
+        Set<String> changedKeys = new TreeSet<String>();
+        for (Map.Entry<String, T> entry : mapping.entrySet()) {
+            if (previousMapping.get(entry.getKey()) != entry.getValue()) {
+                changedKeys.add(entry.getKey());
+            }
+        }
+        for (String key : previousMapping.keySet()) {
+            if (!mapping.containsKey(key)) {
+                changedKeys.add(key);
+            }
+        }
+
+        return changedKeys;
+    }
+
+    /**
+     * The entities of the previous config that a new config may share. An entity is shared when it is equal to the
+     * new one, and so are the audiences and experiments it links to.
+     */
+    private static class PreviousEntities {
+        private final Map<String, Experiment> experimentIdMapping = new HashMap<String, Experiment>();
+        private final Map<String, Group> groupIdMapping;
+        private final Map<String, Rollout> rolloutIdMapping;
+        private final Set<String> changedAudienceIds = new HashSet<String>();
+
+        PreviousEntities(DatafileProjectConfig previous, Map<String, Audience> audienceIdMapping) {
+            experimentIdMapping.putAll(previous.experimentIdMapping);
+            for (Rollout rollout : previous.rollouts) {
+                for (Experiment experiment : rollout.getExperiments()) {
+                    experimentIdMapping.put(experiment.getId(), experiment);
+                }
+            }
+            groupIdMapping = previous.groupIdMapping;
+            rolloutIdMapping = previous.rolloutIdMapping;
+
+            for (Map.Entry<String, Audience> entry : audienceIdMapping.entrySet()) {
+                if (previous.audienceIdMapping.get(entry.getKey()) != entry.getValue()) {
+                    changedAudienceIds.add(entry.getKey());
+                }
+            }
+            for (String audienceId : previous.audienceIdMapping.keySet()) {
+                if (!audienceIdMapping.containsKey(audienceId)) {
+                    changedAudienceIds.add(audienceId);
+                }
+            }
+        }
+
+        @Nullable
+        Experiment experiment(Experiment experiment) {
+            Experiment previousExperiment = experimentIdMapping.get(experiment.getId());
+            if (previousExperiment == null || !sameExperiment(previousExperiment, experiment)) {
+                return null;
+            }
+
+            // the previous experiment is linked to the previous audiences
+            for (String audienceId : experiment.getAudienceIds()) {
+                if (changedAudienceIds.contains(audienceId)) {
+                    return null;
+                }
+            }
+            if (linksChangedAudience(experiment.getAudienceConditions())) {
+                return null;
+            }
+
+            return previousExperiment;
+        }
+
+        @Nullable
+        Group group(Group group, List<Experiment> experiments) {
+            Group previousGroup = groupIdMapping.get(group.getId());
+            if (previousGroup == null
+                || !Objects.equals(previousGroup.getPolicy(), group.getPolicy())
+                || !sameTrafficAllocation(previousGroup.getTrafficAllocation(), group.getTrafficAllocation())
+                || !sameInstances(previousGroup.getExperiments(), experiments)) {
+                return null;
+            }
+
+            return previousGroup;
+        }
+
+        @Nullable
+        Rollout rollout(Rollout rollout, List<Experiment> experiments) {
+            Rollout previousRollout = rolloutIdMapping.get(rollout.getId());
+            if (previousRollout == null || !sameInstances(previousRollout.getExperiments(), experiments)) {
+                return null;
+            }
+
+            return previousRollout;
+        }
+
+        private boolean linksChangedAudience(@Nullable Condition condition) {
+            if (condition instanceof AudienceIdCondition) {
+                return changedAudienceIds.contains(((AudienceIdCondition) condition).getAudienceId());
+            } else if (condition instanceof AndCondition) {
+                return linksChangedAudience(((AndCondition) condition).getConditions());
+            } else if (condition instanceof OrCondition) {
+                return linksChangedAudience(((OrCondition) condition).getConditions());
+            } else if (condition instanceof NotCondition) {
+                return linksChangedAudience(((NotCondition) condition).getCondition());
+            }
+
+            return false;
+        }
+
+        private boolean linksChangedAudience(@Nullable List<Condition> conditions) {
+            if (conditions != null) {
+                for (Condition condition : conditions) {
+                    if (linksChangedAudience(condition)) {
+                        return true;
+                    }
+                }
+            }
+
+            return false;
+        }
+
+        static boolean sameAudience(Audience previous, Audience audience) {
+            return previous.getClass() == audience.getClass()
+                && Objects.equals(previous.getId(), audience.getId())
+                && Objects.equals(previous.getName(), audience.getName())
+                && sameCondition(previous.getConditions(), audience.getConditions());
+        }
+
+        static boolean sameFeatureFlag(FeatureFlag previous, FeatureFlag featureFlag) {
+            return Objects.equals(previous.getId(), featureFlag.getId())
+                && Objects.equals(previous.getKey(), featureFlag.getKey())
+                && Objects.equals(previous.getRolloutId(), featureFlag.getRolloutId())
+                && previous.getExperimentIds().equals(featureFlag.getExperimentIds())
+                && previous.getVariables().equals(featureFlag.getVariables());
+        }
+
+        /**
+         * Compares the condition trees node by node; leaf conditions are compared with their own equals.
+         */
+        private static boolean sameCondition(@Nullable Condition previous, @Nullable Condition condition) {
+            if (previous == null || condition == null || previous.getClass() != condition.getClass()) {
+                return previous == condition;
+            } else if (condition instanceof AndCondition) {
+                return sameConditions(((AndCondition) previous).getConditions(),
+                    ((AndCondition) condition).getConditions());
+            } else if (condition instanceof OrCondition) {
+                return sameConditions(((OrCondition) previous).getConditions(),
+                    ((OrCondition) condition).getConditions());
+            } else if (condition instanceof NotCondition) {
+                return sameCondition(((NotCondition) previous).getCondition(),
+                    ((NotCondition) condition).getCondition());
+            } else if (condition instanceof EmptyCondition || condition instanceof NullCondition) {
+                return true;
+            }
+
+            return previous.equals(condition);
+        }
+
+        private static boolean sameConditions(List<Condition> previous, List<Condition> conditions) {
+            if (previous.size() != conditions.size()) {
+                return false;
+            }
+
+            for (int i = 0; i < conditions.size(); i++) {
+                if (!sameCondition(previous.get(i), conditions.get(i))) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        private static boolean sameExperiment(Experiment previous, Experiment experiment) {
+            return Objects.equals(previous.getKey(), experiment.getKey())
+                && Objects.equals(previous.getStatus(), experiment.getStatus())
+                && Objects.equals(previous.getLayerId(), experiment.getLayerId())
+                && Objects.equals(previous.getGroupId(), experiment.getGroupId())
+                && previous.getAudienceIds().equals(experiment.getAudienceIds())
+                && sameCondition(previous.getAudienceConditions(), experiment.getAudienceConditions())
+                && previous.getUserIdToVariationKeyMap().equals(experiment.getUserIdToVariationKeyMap())
+                && sameTrafficAllocation(previous.getTrafficAllocation(), experiment.getTrafficAllocation())
+                && sameVariations(previous.getVariations(), experiment.getVariations());
+        }
+
+        private static boolean sameVariations(List<Variation> previous, List<Variation> variations) {
+            if (previous.size() != variations.size()) {
+                return false;
+            }
+
+            for (int i = 0; i < variations.size(); i++) {
+                Variation previousVariation = previous.get(i);
+                Variation variation = variations.get(i);
+                if (!Objects.equals(previousVariation.getId(), variation.getId())
+                    || !Objects.equals(previousVariation.getKey(), variation.getKey())
+                    || !Objects.equals(previousVariation.getFeatureEnabled(), variation.getFeatureEnabled())
+                    || !Objects.equals(previousVariation.getFeatureVariableUsageInstances(),
+                    variation.getFeatureVariableUsageInstances())) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        private static boolean sameTrafficAllocation(List<TrafficAllocation> previous,
+                                                     List<TrafficAllocation> trafficAllocation) {
+            if (previous.size() != trafficAllocation.size()) {
+                return false;
+            }
+
+            for (int i = 0; i < trafficAllocation.size(); i++) {
+                if (!Objects.equals(previous.get(i).getEntityId(), trafficAllocation.get(i).getEntityId())
+                    || previous.get(i).getEndOfRange() != trafficAllocation.get(i).getEndOfRange()) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        private static <T> boolean sameInstances(List<T> previous, List<T> entities) {
+            if (previous.size() != entities.size()) {
+                return false;
+            }
+
+            for (int i = 0; i < entities.size(); i++) {
+                if (previous.get(i) != entities.get(i)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+
     private List<Experiment> aggregateGroupExperiments(List<Group> groups) {
         List<Experiment> groupExperiments = new ArrayList<Experiment>();
         for (Group group : groups) {
@@ -432,6 +805,15 @@ public class DatafileProjectConfig implements ProjectConfig {
         return experimentFeatureKeyMapping;
     }
 
+    /**
+     * @return the experiments and feature flags that changed since the config this one was rebuilt from with
+     * {@link Builder#withPreviousConfig(ProjectConfig)}, or null when it was built from scratch.
+     */
+    @Nullable
+    public ProjectConfigChanges getChanges() {
+        return changes;
+    }
+
     @Override
     public String toString() {
         return "ProjectConfig{" +
@@ -462,26 +844,96 @@ public class DatafileProjectConfig implements ProjectConfig {
     }
 
     public static class Builder {
+        private ProjectConfig previousConfig;
         private String datafile;
+        private byte[] datafileBytes;
+        private ByteBuffer datafileBuffer;
+        private InputStream datafileStream;
 
         public Builder withDatafile(String datafile) {
+            clearDatafile();
             this.datafile = datafile;
             return this;
         }
 
         /**
-         * @return a {@link DatafileProjectConfig} instance given a JSON string datafile
+         * @param datafile the UTF-8 encoded datafile, parsed without decoding it to a {@code String} first when
+         *                 the json parser allows it
+         */
+        public Builder withDatafile(byte[] datafile) {
+            clearDatafile();
+            this.datafileBytes = datafile;
+            return this;
+        }
+
+        /**
+         * @param datafile the remaining bytes of a UTF-8 encoded datafile, such as a memory-mapped file
+         */
+        public Builder withDatafile(ByteBuffer datafile) {
+            clearDatafile();
+            this.datafileBuffer = datafile;
+            return this;
+        }
+
+        /**
+         * @param datafile a UTF-8 encoded datafile, read until the end of the stream by {@link #build()}. The
+         *                 stream is not closed.
+         */
+        public Builder withDatafile(InputStream datafile) {
+            clearDatafile();
+            this.datafileStream = datafile;
+            return this;
+        }
+
+        /**
+         * Rebuilds the config from the given one, usually the config in use: the experiments, audiences, groups,
+         * rollouts and feature flags that did not change are shared with it rather than duplicated, and the
+         * differences are reported by {@link DatafileProjectConfig#getChanges()}.
+         */
+        public Builder withPreviousConfig(@Nullable ProjectConfig previousConfig) {
+            this.previousConfig = previousConfig;
+            return this;
+        }
+
+        private void clearDatafile() {
+            datafile = null;
+            datafileBytes = null;
+            datafileBuffer = null;
+            datafileStream = null;
+        }
+
+        /**
+         * @return a {@link DatafileProjectConfig} instance given a JSON datafile
          */
         public ProjectConfig build() throws ConfigParseException {
-            if (datafile == null) {
-                throw new ConfigParseException("Unable to parse null datafile.");
+            ConfigParser configParser = DefaultConfigParser.getInstance();
+            if (previousConfig != null) {
+                configParser = configParser.withPreviousConfig(previousConfig);
             }
-            if (datafile.isEmpty()) {
-                throw new ConfigParseException("Unable to parse empty datafile.");
+            ProjectConfig projectConfig;
+
+            if (datafileBytes != null) {
+                if (datafileBytes.length == 0) {
+                    throw new ConfigParseException("Unable to parse empty datafile.");
+                }
+                projectConfig = configParser.parseProjectConfig(datafileBytes);
+            } else if (datafileBuffer != null) {
+                if (!datafileBuffer.hasRemaining()) {
+                    throw new ConfigParseException("Unable to parse empty datafile.");
+                }
+                projectConfig = configParser.parseProjectConfig(datafileBuffer);
+            } else if (datafileStream != null) {
+                projectConfig = configParser.parseProjectConfig(datafileStream);
+            } else {
+                if (datafile == null) {
+                    throw new ConfigParseException("Unable to parse null datafile.");
+                }
+                if (datafile.isEmpty()) {
+                    throw new ConfigParseException("Unable to parse empty datafile.");
+                }
+                projectConfig = configParser.parseProjectConfig(datafile);
             }
 
-            ProjectConfig projectConfig = DefaultConfigParser.getInstance().parseProjectConfig(datafile);
-
             if (!supportedVersions.contains(projectConfig.getVersion())) {
                 throw new ConfigParseException("This version of the Java SDK does not support the given datafile version: " + projectConfig.getVersion());
             }
@@ -17,12 +17,16 @@
 package com.optimizely.ab.config;
 
 import com.fasterxml.jackson.annotation.*;
+import com.optimizely.ab.config.audience.Audience;
 import com.optimizely.ab.config.audience.AudienceIdCondition;
 import com.optimizely.ab.config.audience.Condition;
+import com.optimizely.ab.config.audience.OrCondition;
+import com.optimizely.ab.internal.ConditionUtils;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -44,12 +48,14 @@ public class Experiment implements IdKeyMapped {
 
     private final List<String> audienceIds;
     private final Condition<AudienceIdCondition> audienceConditions;
+    private final Condition<AudienceIdCondition> implicitAudienceCondition;
     private final List<Variation> variations;
     private final List<TrafficAllocation> trafficAllocation;
 
     private final Map<String, Variation> variationKeyToVariationMap;
     private final Map<String, Variation> variationIdToVariationMap;
     private final Map<String, String> userIdToVariationKeyMap;
+    private final TrafficAllocationIndex<Variation> trafficAllocationIndex;
 
     public enum ExperimentStatus {
         RUNNING("Running"),
@@ -98,12 +104,42 @@ public class Experiment implements IdKeyMapped {
         this.layerId = layerId;
         this.audienceIds = Collections.unmodifiableList(audienceIds);
         this.audienceConditions = audienceConditions;
+        this.implicitAudienceCondition = createImplicitAudienceCondition(audienceIds);
         this.variations = Collections.unmodifiableList(variations);
         this.trafficAllocation = Collections.unmodifiableList(trafficAllocation);
         this.groupId = groupId;
         this.userIdToVariationKeyMap = userIdToVariationKeyMap;
         this.variationKeyToVariationMap = ProjectConfigUtils.generateNameMapping(variations);
         this.variationIdToVariationMap = ProjectConfigUtils.generateIdMapping(variations);
+        this.trafficAllocationIndex = TrafficAllocationIndex.create(this.trafficAllocation, variationIdToVariationMap);
+    }
+
+    private Experiment(@Nonnull Experiment experiment,
+                       @Nullable Condition audienceConditions,
+                       @Nonnull Condition implicitAudienceCondition) {
+        this.id = experiment.id;
+        this.key = experiment.key;
+        this.status = experiment.status;
+        this.layerId = experiment.layerId;
+        this.audienceIds = experiment.audienceIds;
+        this.audienceConditions = audienceConditions;
+        this.implicitAudienceCondition = implicitAudienceCondition;
+        this.variations = experiment.variations;
+        this.trafficAllocation = experiment.trafficAllocation;
+        this.groupId = experiment.groupId;
+        this.userIdToVariationKeyMap = experiment.userIdToVariationKeyMap;
+        this.variationKeyToVariationMap = experiment.variationKeyToVariationMap;
+        this.variationIdToVariationMap = experiment.variationIdToVariationMap;
+        this.trafficAllocationIndex = experiment.trafficAllocationIndex;
+    }
+
+    /**
+     * Returns a copy of this experiment whose {@link AudienceIdCondition}s are linked to the given audiences.
+     */
+    Experiment withResolvedAudiences(@Nonnull Map<String, Audience> audienceIdMapping) {
+        return new Experiment(this,
+            ConditionUtils.resolveAudienceIdConditions(audienceConditions, audienceIdMapping),
+            ConditionUtils.resolveAudienceIdConditions(implicitAudienceCondition, audienceIdMapping));
     }
 
     public String getId() {
@@ -130,6 +166,14 @@ public class Experiment implements IdKeyMapped {
         return audienceConditions;
     }
 
+    /**
+     * The implicit OR of the legacy {@link #getAudienceIds() audienceIds}, built once per experiment
+     * so it doesn't need to be assembled for each audience evaluation.
+     */
+    public Condition getImplicitAudienceCondition() {
+        return implicitAudienceCondition;
+    }
+
     public List<Variation> getVariations() {
         return variations;
     }
@@ -150,6 +194,14 @@ public class Experiment implements IdKeyMapped {
         return trafficAllocation;
     }
 
+    /**
+     * The {@link #getTrafficAllocation() traffic allocation} resolved to variations, built once per experiment
+     * so bucketing doesn't scan the allocations or look variations up by id.
+     */
+    public TrafficAllocationIndex<Variation> getTrafficAllocationIndex() {
+        return trafficAllocationIndex;
+    }
+
     public String getGroupId() {
         return groupId;
     }
@@ -167,6 +219,15 @@ public class Experiment implements IdKeyMapped {
         return status.equals(ExperimentStatus.LAUNCHED.toString());
     }
 
+    private static Condition<AudienceIdCondition> createImplicitAudienceCondition(List<String> audienceIds) {
+        List<Condition> conditions = new ArrayList<Condition>(audienceIds.size());
+        for (String audienceId : audienceIds) {
+            conditions.add(new AudienceIdCondition(audienceId));
+        }
+
+        return new OrCondition<AudienceIdCondition>(conditions);
+    }
+
     @Override
     public String toString() {
         return "Experiment{" +
@@ -37,6 +37,7 @@ public class Group implements IdMapped {
     private final String policy;
     private final List<TrafficAllocation> trafficAllocation;
     private final List<Experiment> experiments;
+    private final TrafficAllocationIndex<Experiment> trafficAllocationIndex;
 
     public static final String RANDOM_POLICY = "random";
 
@@ -67,6 +68,8 @@ public class Group implements IdMapped {
             }
             this.experiments.add(experiment);
         }
+        this.trafficAllocationIndex = TrafficAllocationIndex.create(trafficAllocation,
+            ProjectConfigUtils.generateIdMapping(this.experiments));
     }
 
     public String getId() {
@@ -85,6 +88,13 @@ public class Group implements IdMapped {
         return experiments;
     }
 
+    /**
+     * The {@link #getTrafficAllocation() traffic allocation} resolved to the experiments of this group.
+     */
+    public TrafficAllocationIndex<Experiment> getTrafficAllocationIndex() {
+        return trafficAllocationIndex;
+    }
+
     @Override
     public String toString() {
         return "Group{" +
@@ -97,12 +97,22 @@ public abstract class PollingProjectConfigManager implements ProjectConfigManage
         }
 
         logger.info("New datafile set with revision: {}. Old revision: {}", projectConfig.getRevision(), previousRevision);
+        if (projectConfig instanceof DatafileProjectConfig && ((DatafileProjectConfig) projectConfig).getChanges() != null) {
+            logger.debug("Datafile changes: {}", ((DatafileProjectConfig) projectConfig).getChanges());
+        }
 
         currentProjectConfig.set(projectConfig);
         countDownLatch.countDown();
         notificationCenter.send(SIGNAL);
     }
 
+    /**
+     * @return the current ProjectConfig, without waiting for one to be set.
+     */
+    protected ProjectConfig getCachedConfig() {
+        return currentProjectConfig.get();
+    }
+
     public NotificationCenter getNotificationCenter() {
         return notificationCenter;
     }
@@ -0,0 +1,71 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.config;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * The experiments and feature flags whose configuration differs between two revisions of a datafile, as reported
+ * by {@link DatafileProjectConfig#getChanges()}. Added and removed entities count as changed.
+ */
+@Immutable
+public final class ProjectConfigChanges {
+
+    private final String previousRevision;
+    private final Set<String> changedExperimentKeys;
+    private final Set<String> changedFeatureKeys;
+
+    ProjectConfigChanges(String previousRevision, Set<String> changedExperimentKeys, Set<String> changedFeatureKeys) {
+        this.previousRevision = previousRevision;
+        this.changedExperimentKeys = Collections.unmodifiableSet(changedExperimentKeys);
+        this.changedFeatureKeys = Collections.unmodifiableSet(changedFeatureKeys);
+    }
+
+    public String getPreviousRevision() {
+        return previousRevision;
+    }
+
+    /**
+     * @return the keys of the experiments, in groups or not, that were added, removed or modified.
+     */
+    public Set<String> getChangedExperimentKeys() {
+        return changedExperimentKeys;
+    }
+
+    /**
+     * @return the keys of the feature flags that were added, removed or modified, or whose rollout, experiments or
+     * audiences were.
+     */
+    public Set<String> getChangedFeatureKeys() {
+        return changedFeatureKeys;
+    }
+
+    public boolean isEmpty() {
+        return changedExperimentKeys.isEmpty() && changedFeatureKeys.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "ProjectConfigChanges{" +
+            "previousRevision='" + previousRevision + '\'' +
+            ", changedExperimentKeys=" + changedExperimentKeys +
+            ", changedFeatureKeys=" + changedFeatureKeys +
+            '}';
+    }
+}
@@ -0,0 +1,383 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.config;
+
+import com.optimizely.ab.config.audience.Audience;
+import com.optimizely.ab.config.audience.Condition;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Estimated heap footprint of a {@link ProjectConfig}, broken down by entity type.
+ *
+ * Every object reachable from the config is counted once, towards the closest entity that holds it: the strings and
+ * collections of an experiment count towards {@code Experiment}, its variations towards {@code Variation}. Objects
+ * shared by several entities count towards the first one reached, and the lookup maps of the config itself towards
+ * {@code ProjectConfig}. Sizes are estimated for a 64-bit JVM with compressed references, from the fields of the
+ * SDK classes and the typical layout of the JDK collections.
+ *
+ * Equal strings held as separate instances are reported as duplicates, which is what a string pool would save.
+ */
+@Immutable
+public final class ProjectConfigFootprint {
+
+    private static final int HEADER = 12;
+    private static final int REFERENCE = 4;
+    private static final int ALIGNMENT = 8;
+
+    private static final String PROJECT_CONFIG = "ProjectConfig";
+
+    // checked in order, so subtypes come first
+    private static final List<Class<?>> ENTITY_TYPES = Collections.<Class<?>>unmodifiableList(Arrays.asList(
+        Experiment.class,
+        Variation.class,
+        TrafficAllocation.class,
+        Group.class,
+        Rollout.class,
+        FeatureFlag.class,
+        FeatureVariable.class,
+        FeatureVariableUsageInstance.class,
+        Attribute.class,
+        EventType.class,
+        Audience.class,
+        Condition.class
+    ));
+
+    private static final Map<Class<?>, List<Field>> referenceFields = new ConcurrentHashMap<Class<?>, List<Field>>();
+    private static final Map<Class<?>, Long> shallowSizes = new ConcurrentHashMap<Class<?>, Long>();
+
+    private final String revision;
+    private final Map<String, Long> retainedBytes;
+    private final Map<String, Integer> instanceCounts;
+    private final long totalBytes;
+    private final int stringCount;
+    private final int duplicateStringCount;
+    private final long duplicateStringBytes;
+
+    private ProjectConfigFootprint(String revision,
+                                   Map<String, Long> retainedBytes,
+                                   Map<String, Integer> instanceCounts,
+                                   int stringCount,
+                                   int duplicateStringCount,
+                                   long duplicateStringBytes) {
+        this.revision = revision;
+        this.retainedBytes = Collections.unmodifiableMap(retainedBytes);
+        this.instanceCounts = Collections.unmodifiableMap(instanceCounts);
+        long total = 0;
+        for (Long bytes : retainedBytes.values()) {
+            total += bytes;
+        }
+        this.totalBytes = total;
+        this.stringCount = stringCount;
+        this.duplicateStringCount = duplicateStringCount;
+        this.duplicateStringBytes = duplicateStringBytes;
+    }
+
+    /**
+     * Walks the object graph of the given config, which can take a few milliseconds for large projects.
+     */
+    @Nonnull
+    public static ProjectConfigFootprint of(@Nonnull ProjectConfig projectConfig) {
+        return new Walker().walk(projectConfig);
+    }
+
+    public String getRevision() {
+        return revision;
+    }
+
+    /**
+     * @return the estimated bytes held by each entity type, largest first.
+     */
+    public Map<String, Long> getRetainedBytes() {
+        return retainedBytes;
+    }
+
+    /**
+     * @return the number of instances of each entity type.
+     */
+    public Map<String, Integer> getInstanceCounts() {
+        return instanceCounts;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public int getStringCount() {
+        return stringCount;
+    }
+
+    /**
+     * @return the number of strings equal to another string of the config.
+     */
+    public int getDuplicateStringCount() {
+        return duplicateStringCount;
+    }
+
+    /**
+     * @return the estimated bytes held by the strings equal to another string of the config.
+     */
+    public long getDuplicateStringBytes() {
+        return duplicateStringBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "ProjectConfigFootprint{" +
+            "revision='" + revision + '\'' +
+            ", totalBytes=" + totalBytes +
+            ", retainedBytes=" + retainedBytes +
+            ", instanceCounts=" + instanceCounts +
+            ", stringCount=" + stringCount +
+            ", duplicateStringCount=" + duplicateStringCount +
+            ", duplicateStringBytes=" + duplicateStringBytes +
+            '}';
+    }
+
+    private static class Walker {
+        private final Map<Object, Boolean> visited = new IdentityHashMap<Object, Boolean>();
+        private final Map<String, String> strings = new HashMap<String, String>();
+        private final Map<String, Long> retainedBytes = new HashMap<String, Long>();
+        private final Map<String, Integer> instanceCounts = new HashMap<String, Integer>();
+        private final Deque<Object> objects = new ArrayDeque<Object>();
+        private final Deque<String> owners = new ArrayDeque<String>();
+        private int duplicateStringCount;
+        private long duplicateStringBytes;
+
+        ProjectConfigFootprint walk(ProjectConfig projectConfig) {
+            push(projectConfig, PROJECT_CONFIG);
+            while (!objects.isEmpty()) {
+                visit(objects.pop(), owners.pop());
+            }
+
+            List<Map.Entry<String, Long>> entries = new ArrayList<Map.Entry<String, Long>>(retainedBytes.entrySet());
+            Collections.sort(entries, (left, right) -> Long.compare(right.getValue(), left.getValue()));
+            Map<String, Long> sortedBytes = new LinkedHashMap<String, Long>();
+            for (Map.Entry<String, Long> entry : entries) {
+                sortedBytes.put(entry.getKey(), entry.getValue());
+            }
+
+            return new ProjectConfigFootprint(projectConfig.getRevision(), sortedBytes, instanceCounts,
+                strings.size() + duplicateStringCount, duplicateStringCount, duplicateStringBytes);
+        }
+
+        private void push(Object object, String owner) {
+            if (object != null && !visited.containsKey(object)) {
+                visited.put(object, Boolean.TRUE);
+                objects.push(object);
+                owners.push(owner);
+            }
+        }
+
+        private void visit(Object object, String owner) {
+            Class<?> type = object.getClass();
+            for (Class<?> entityType : ENTITY_TYPES) {
+                if (entityType.isInstance(object)) {
+                    owner = entityType.getSimpleName();
+                    Integer count = instanceCounts.get(owner);
+                    instanceCounts.put(owner, count == null ? 1 : count + 1);
+                    break;
+                }
+            }
+
+            long size;
+            if (object instanceof String) {
+                size = stringSize((String) object);
+                String equal = strings.get(object);
+                if (equal == null) {
+                    strings.put((String) object, (String) object);
+                } else {
+                    duplicateStringCount++;
+                    duplicateStringBytes += size;
+                }
+            } else if (type.isArray()) {
+                size = arraySize(type.getComponentType(), Array.getLength(object));
+                if (object instanceof Object[]) {
+                    for (Object element : (Object[]) object) {
+                        push(element, owner);
+                    }
+                }
+            } else if (object instanceof Collection) {
+                Collection<?> collection = (Collection<?>) object;
+                size = collectionSize(collection);
+                for (Object element : collection) {
+                    push(element, owner);
+                }
+            } else if (object instanceof Map) {
+                Map<?, ?> map = (Map<?, ?>) object;
+                size = mapSize(map);
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    push(entry.getKey(), owner);
+                    push(entry.getValue(), owner);
+                }
+            } else if (type.getName().startsWith("com.optimizely.") && !type.isEnum()) {
+                size = shallowSize(type);
+                for (Field field : referenceFields(type)) {
+                    try {
+                        push(field.get(object), owner);
+                    } catch (IllegalAccessException e) {
+                        // counted as a leaf
+                    }
+                }
+            } else {
+                size = otherSize(object);
+            }
+
+            Long bytes = retainedBytes.get(owner);
+            retainedBytes.put(owner, bytes == null ? size : bytes + size);
+        }
+    }
+
+    private static long align(long size) {
+        return (size + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    private static long stringSize(String string) {
+        boolean latin1 = true;
+        for (int i = 0; i < string.length() && latin1; i++) {
+            latin1 = string.charAt(i) < 256;
+        }
+
+        // value, hash, coder and hashIsZero, then the backing byte array
+        return align(HEADER + REFERENCE + 4 + 2) + align(16 + (latin1 ? 1 : 2) * (long) string.length());
+    }
+
+    private static long arraySize(Class<?> componentType, int length) {
+        return align(16 + (long) fieldSize(componentType) * length);
+    }
+
+    private static long collectionSize(Collection<?> collection) {
+        long size = collection.getClass().getName().contains("Unmodifiable") ? align(HEADER + 2 * REFERENCE) : 0;
+        if (collection.isEmpty()) {
+            return size + align(HEADER);
+        }
+        if (collection instanceof Set) {
+            // a HashSet over a HashMap whose values are all the same
+            return size + align(HEADER + REFERENCE) + hashMapSize(collection.size(), false);
+        }
+
+        // an ArrayList with no spare capacity
+        return size + align(HEADER + REFERENCE + 8) + arraySize(Object.class, collection.size());
+    }
+
+    private static long mapSize(Map<?, ?> map) {
+        long size = map.getClass().getName().contains("Unmodifiable") ? align(HEADER + 4 * REFERENCE) : 0;
+        if (map.isEmpty()) {
+            return size + align(HEADER);
+        }
+
+        return size + hashMapSize(map.size(), map instanceof LinkedHashMap);
+    }
+
+    private static long hashMapSize(int entries, boolean linked) {
+        int buckets = 16;
+        while (buckets * 3 / 4 < entries) {
+            buckets *= 2;
+        }
+
+        long map = align(HEADER + 4 * REFERENCE + 4 * 4 + (linked ? 2 * REFERENCE + 1 : 0));
+        long node = align(HEADER + 4 + 3 * REFERENCE + (linked ? 2 * REFERENCE : 0));
+        return map + arraySize(Object.class, buckets) + node * entries;
+    }
+
+    private static long otherSize(Object object) {
+        if (object instanceof Long || object instanceof Double) {
+            return align(HEADER + 8);
+        }
+        if (object instanceof BigInteger || object instanceof BigDecimal) {
+            return align(HEADER + REFERENCE + 5 * 4) + arraySize(int.class, ((Number) object).toString().length() / 9 + 1);
+        }
+        if (object instanceof Enum) {
+            // constants are shared with every other config
+            return 0;
+        }
+
+        return align(HEADER + 4);
+    }
+
+    private static long shallowSize(Class<?> type) {
+        Long size = shallowSizes.get(type);
+        if (size == null) {
+            long fields = 0;
+            for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers())) {
+                        fields += fieldSize(field.getType());
+                    }
+                }
+            }
+            size = align(HEADER + fields);
+            shallowSizes.put(type, size);
+        }
+
+        return size;
+    }
+
+    private static List<Field> referenceFields(Class<?> type) {
+        List<Field> fields = referenceFields.get(type);
+        if (fields == null) {
+            fields = new ArrayList<Field>();
+            for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers()) && !field.getType().isPrimitive()) {
+                        field.setAccessible(true);
+                        fields.add(field);
+                    }
+                }
+            }
+            referenceFields.put(type, fields);
+        }
+
+        return fields;
+    }
+
+    private static int fieldSize(Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        }
+        if (type == int.class || type == float.class) {
+            return 4;
+        }
+        if (type == short.class || type == char.class) {
+            return 2;
+        }
+        if (type == byte.class || type == boolean.class) {
+            return 1;
+        }
+
+        return REFERENCE;
+    }
+}
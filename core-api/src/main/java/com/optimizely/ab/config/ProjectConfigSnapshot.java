@@ -0,0 +1,770 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.config;
+
+import com.optimizely.ab.config.audience.AndCondition;
+import com.optimizely.ab.config.audience.Audience;
+import com.optimizely.ab.config.audience.AudienceIdCondition;
+import com.optimizely.ab.config.audience.Condition;
+import com.optimizely.ab.config.audience.EmptyCondition;
+import com.optimizely.ab.config.audience.NotCondition;
+import com.optimizely.ab.config.audience.NullCondition;
+import com.optimizely.ab.config.audience.OrCondition;
+import com.optimizely.ab.config.audience.TypedAudience;
+import com.optimizely.ab.config.audience.UserAttribute;
+import com.optimizely.ab.config.parser.ConfigParseException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * A built {@link DatafileProjectConfig} in a compact binary form, to be written to disk once a datafile has been
+ * fetched and read back on the next start without parsing any JSON.
+ *
+ * The snapshot holds every string once in a table that the entities refer to by index, and audience conditions as
+ * trees of tagged nodes. It is tied to its format version and checksummed, so a snapshot written by another version
+ * or damaged on disk is rejected with a {@link ConfigParseException} and the datafile has to be parsed instead.
+ */
+@Immutable
+public final class ProjectConfigSnapshot {
+
+    public static final int FORMAT_VERSION = 1;
+
+    // "OPTS"
+    private static final int MAGIC = 0x4F505453;
+    // magic, format version, creation time, payload length and checksum
+    private static final int HEADER_LENGTH = 4 + 2 + 8 + 4 + 8;
+
+    private static final int NULL_INDEX = -1;
+
+    private static final byte CONDITION_NULL = 0;
+    private static final byte CONDITION_AND = 1;
+    private static final byte CONDITION_OR = 2;
+    private static final byte CONDITION_NOT = 3;
+    private static final byte CONDITION_AUDIENCE_ID = 4;
+    private static final byte CONDITION_USER_ATTRIBUTE = 5;
+    private static final byte CONDITION_EMPTY = 6;
+    private static final byte CONDITION_NULL_CONDITION = 7;
+
+    private static final byte VALUE_NULL = 0;
+    private static final byte VALUE_STRING = 1;
+    private static final byte VALUE_BOOLEAN = 2;
+    private static final byte VALUE_INTEGER = 3;
+    private static final byte VALUE_LONG = 4;
+    private static final byte VALUE_BIG_INTEGER = 5;
+    private static final byte VALUE_DOUBLE = 6;
+    private static final byte VALUE_LIST = 7;
+    private static final byte VALUE_MAP = 8;
+
+    private final DatafileProjectConfig projectConfig;
+    private final long createdAt;
+    private final byte[] datafileHash;
+
+    /**
+     * @param projectConfig the config to snapshot
+     * @param datafileHash  a digest of the datafile the config was built from, or null when it is not known
+     */
+    public ProjectConfigSnapshot(@Nonnull ProjectConfig projectConfig, @Nullable byte[] datafileHash) {
+        this(asDatafileProjectConfig(projectConfig), System.currentTimeMillis(), datafileHash);
+    }
+
+    private ProjectConfigSnapshot(DatafileProjectConfig projectConfig, long createdAt, @Nullable byte[] datafileHash) {
+        this.projectConfig = projectConfig;
+        this.createdAt = createdAt;
+        this.datafileHash = datafileHash == null ? null : datafileHash.clone();
+    }
+
+    private static DatafileProjectConfig asDatafileProjectConfig(ProjectConfig projectConfig) {
+        if (!(projectConfig instanceof DatafileProjectConfig)) {
+            throw new IllegalArgumentException("Only a DatafileProjectConfig can be snapshotted.");
+        }
+
+        return (DatafileProjectConfig) projectConfig;
+    }
+
+    @Nonnull
+    public ProjectConfig getProjectConfig() {
+        return projectConfig;
+    }
+
+    /**
+     * @return the time the snapshot was taken, in milliseconds since the epoch.
+     */
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    @Nullable
+    public byte[] getDatafileHash() {
+        return datafileHash == null ? null : datafileHash.clone();
+    }
+
+    /**
+     * Writes the snapshot to the given file. The snapshot is written next to it first and then moved in place, so a
+     * reader never sees a partial snapshot.
+     */
+    public void writeTo(@Nonnull Path file) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream outputStream = Files.newOutputStream(temporary)) {
+                writeTo(outputStream);
+            }
+            try {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Writes the snapshot to the given stream, which is left open.
+     *
+     * @throws IllegalArgumentException when an audience condition holds a value of a type snapshots don't support
+     */
+    public void writeTo(@Nonnull OutputStream outputStream) throws IOException {
+        Writer writer = new Writer();
+        writer.writeBytes(datafileHash);
+        writer.writeConfig(projectConfig);
+        byte[] payload = writer.toPayload();
+
+        CRC32 checksum = new CRC32();
+        checksum.update(payload);
+
+        DataOutputStream out = new DataOutputStream(outputStream);
+        out.writeInt(MAGIC);
+        out.writeShort(FORMAT_VERSION);
+        out.writeLong(createdAt);
+        out.writeInt(payload.length);
+        out.writeLong(checksum.getValue());
+        out.write(payload);
+        out.flush();
+    }
+
+    public byte[] toByteArray() {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try {
+            writeTo(outputStream);
+        } catch (IOException e) {
+            // a ByteArrayOutputStream does not throw
+            throw new IllegalStateException(e);
+        }
+
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Reads the given snapshot file. The file is not kept open, so it can be replaced right after.
+     */
+    @Nonnull
+    public static ProjectConfigSnapshot read(@Nonnull Path file) throws ConfigParseException {
+        try {
+            return read(ByteBuffer.wrap(Files.readAllBytes(file)));
+        } catch (IOException e) {
+            throw new ConfigParseException("Unable to read project config snapshot.", e);
+        }
+    }
+
+    /**
+     * Reads a snapshot from the remaining bytes of the given buffer, whose position is left unchanged.
+     */
+    @Nonnull
+    public static ProjectConfigSnapshot read(@Nonnull ByteBuffer snapshot) throws ConfigParseException {
+        ByteBuffer buffer = snapshot.duplicate();
+        if (buffer.remaining() < HEADER_LENGTH || buffer.getInt() != MAGIC) {
+            throw new ConfigParseException("Not a project config snapshot.");
+        }
+
+        int formatVersion = buffer.getShort();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new ConfigParseException("Unsupported project config snapshot format version: " + formatVersion);
+        }
+
+        long createdAt = buffer.getLong();
+        int payloadLength = buffer.getInt();
+        long expectedChecksum = buffer.getLong();
+        if (payloadLength != buffer.remaining()) {
+            throw new ConfigParseException("Truncated project config snapshot.");
+        }
+
+        CRC32 checksum = new CRC32();
+        checksum.update(buffer.duplicate());
+        if (checksum.getValue() != expectedChecksum) {
+            throw new ConfigParseException("Corrupt project config snapshot.");
+        }
+
+        try {
+            Reader reader = new Reader(buffer);
+            byte[] datafileHash = reader.readBytes();
+            DatafileProjectConfig projectConfig = reader.readConfig();
+            return new ProjectConfigSnapshot(projectConfig, createdAt, datafileHash);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new ConfigParseException("Corrupt project config snapshot.", e);
+        }
+    }
+
+    private static class Writer {
+        private final Map<String, Integer> stringIndexes = new LinkedHashMap<String, Integer>();
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(body);
+
+        byte[] toPayload() throws IOException {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream(body.size() + stringIndexes.size() * 16);
+            DataOutputStream payloadOut = new DataOutputStream(payload);
+            payloadOut.writeInt(stringIndexes.size());
+            for (String string : stringIndexes.keySet()) {
+                byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                payloadOut.writeInt(bytes.length);
+                payloadOut.write(bytes);
+            }
+            body.writeTo(payloadOut);
+            payloadOut.flush();
+
+            return payload.toByteArray();
+        }
+
+        void writeConfig(DatafileProjectConfig config) throws IOException {
+            writeString(config.getAccountId());
+            writeString(config.getProjectId());
+            writeString(config.getRevision());
+            writeString(config.getVersion());
+            out.writeBoolean(config.getAnonymizeIP());
+            Boolean botFiltering = config.getBotFiltering();
+            out.writeByte(botFiltering == null ? 0 : botFiltering ? 2 : 1);
+
+            out.writeInt(config.getAttributes().size());
+            for (Attribute attribute : config.getAttributes()) {
+                writeString(attribute.getId());
+                writeString(attribute.getKey());
+                writeString(attribute.getSegmentId());
+            }
+
+            writeAudiences(config.getAudiences());
+            writeAudiences(config.getTypedAudiences());
+
+            out.writeInt(config.getEventTypes().size());
+            for (EventType eventType : config.getEventTypes()) {
+                writeString(eventType.getId());
+                writeString(eventType.getKey());
+                writeStrings(eventType.getExperimentIds());
+            }
+
+            // group experiments are added back from the groups
+            List<Experiment> ungroupedExperiments = new ArrayList<Experiment>();
+            for (Experiment experiment : config.getExperiments()) {
+                if (!config.getGroupIdMapping().containsKey(experiment.getGroupId())) {
+                    ungroupedExperiments.add(experiment);
+                }
+            }
+            writeExperiments(ungroupedExperiments);
+
+            out.writeInt(config.getGroups().size());
+            for (Group group : config.getGroups()) {
+                writeString(group.getId());
+                writeString(group.getPolicy());
+                writeExperiments(group.getExperiments());
+                writeTrafficAllocation(group.getTrafficAllocation());
+            }
+
+            out.writeInt(config.getFeatureFlags().size());
+            for (FeatureFlag featureFlag : config.getFeatureFlags()) {
+                writeString(featureFlag.getId());
+                writeString(featureFlag.getKey());
+                writeString(featureFlag.getRolloutId());
+                writeStrings(featureFlag.getExperimentIds());
+                out.writeInt(featureFlag.getVariables().size());
+                for (FeatureVariable variable : featureFlag.getVariables()) {
+                    writeString(variable.getId());
+                    writeString(variable.getKey());
+                    writeString(variable.getDefaultValue());
+                    writeString(variable.getStatus() == null ? null : variable.getStatus().getVariableStatus());
+                    writeString(variable.getType() == null ? null : variable.getType().getVariableType());
+                }
+            }
+
+            out.writeInt(config.getRollouts().size());
+            for (Rollout rollout : config.getRollouts()) {
+                writeString(rollout.getId());
+                writeExperiments(rollout.getExperiments());
+            }
+        }
+
+        private void writeAudiences(List<Audience> audiences) throws IOException {
+            out.writeInt(audiences.size());
+            for (Audience audience : audiences) {
+                writeString(audience.getId());
+                writeString(audience.getName());
+                writeCondition(audience.getConditions());
+            }
+        }
+
+        private void writeExperiments(List<Experiment> experiments) throws IOException {
+            out.writeInt(experiments.size());
+            for (Experiment experiment : experiments) {
+                writeString(experiment.getId());
+                writeString(experiment.getKey());
+                writeString(experiment.getStatus());
+                writeString(experiment.getLayerId());
+                writeString(experiment.getGroupId());
+                writeStrings(experiment.getAudienceIds());
+                writeCondition(experiment.getAudienceConditions());
+
+                out.writeInt(experiment.getVariations().size());
+                for (Variation variation : experiment.getVariations()) {
+                    writeString(variation.getId());
+                    writeString(variation.getKey());
+                    out.writeBoolean(variation.getFeatureEnabled());
+                    out.writeInt(variation.getFeatureVariableUsageInstances().size());
+                    for (FeatureVariableUsageInstance usageInstance : variation.getFeatureVariableUsageInstances()) {
+                        writeString(usageInstance.getId());
+                        writeString(usageInstance.getValue());
+                    }
+                }
+
+                Map<String, String> forcedVariations = experiment.getUserIdToVariationKeyMap() == null
+                    ? Collections.<String, String>emptyMap()
+                    : experiment.getUserIdToVariationKeyMap();
+                out.writeInt(forcedVariations.size());
+                for (Map.Entry<String, String> forcedVariation : forcedVariations.entrySet()) {
+                    writeString(forcedVariation.getKey());
+                    writeString(forcedVariation.getValue());
+                }
+
+                writeTrafficAllocation(experiment.getTrafficAllocation());
+            }
+        }
+
+        private void writeTrafficAllocation(List<TrafficAllocation> trafficAllocation) throws IOException {
+            out.writeInt(trafficAllocation.size());
+            for (TrafficAllocation allocation : trafficAllocation) {
+                writeString(allocation.getEntityId());
+                out.writeInt(allocation.getEndOfRange());
+            }
+        }
+
+        private void writeCondition(@Nullable Condition condition) throws IOException {
+            if (condition == null) {
+                out.writeByte(CONDITION_NULL);
+            } else if (condition instanceof AndCondition) {
+                out.writeByte(CONDITION_AND);
+                writeConditions(((AndCondition) condition).getConditions());
+            } else if (condition instanceof OrCondition) {
+                out.writeByte(CONDITION_OR);
+                writeConditions(((OrCondition) condition).getConditions());
+            } else if (condition instanceof NotCondition) {
+                out.writeByte(CONDITION_NOT);
+                writeCondition(((NotCondition) condition).getCondition());
+            } else if (condition instanceof AudienceIdCondition) {
+                out.writeByte(CONDITION_AUDIENCE_ID);
+                writeString(((AudienceIdCondition) condition).getAudienceId());
+            } else if (condition instanceof UserAttribute) {
+                UserAttribute userAttribute = (UserAttribute) condition;
+                out.writeByte(CONDITION_USER_ATTRIBUTE);
+                writeString(userAttribute.getName());
+                writeString(userAttribute.getType());
+                writeString(userAttribute.getMatch());
+                writeValue(userAttribute.getValue());
+            } else if (condition instanceof EmptyCondition) {
+                out.writeByte(CONDITION_EMPTY);
+            } else if (condition instanceof NullCondition) {
+                out.writeByte(CONDITION_NULL_CONDITION);
+            } else {
+                throw new IllegalArgumentException("Unsupported condition type: " + condition.getClass().getName());
+            }
+        }
+
+        private void writeConditions(List<Condition> conditions) throws IOException {
+            out.writeInt(conditions.size());
+            for (Condition condition : conditions) {
+                writeCondition(condition);
+            }
+        }
+
+        private void writeValue(@Nullable Object value) throws IOException {
+            if (value == null) {
+                out.writeByte(VALUE_NULL);
+            } else if (value instanceof String) {
+                out.writeByte(VALUE_STRING);
+                writeString((String) value);
+            } else if (value instanceof Boolean) {
+                out.writeByte(VALUE_BOOLEAN);
+                out.writeBoolean((Boolean) value);
+            } else if (value instanceof Integer) {
+                out.writeByte(VALUE_INTEGER);
+                out.writeInt((Integer) value);
+            } else if (value instanceof Long) {
+                out.writeByte(VALUE_LONG);
+                out.writeLong((Long) value);
+            } else if (value instanceof BigInteger) {
+                out.writeByte(VALUE_BIG_INTEGER);
+                writeBytes(((BigInteger) value).toByteArray());
+            } else if (value instanceof Double) {
+                out.writeByte(VALUE_DOUBLE);
+                out.writeDouble((Double) value);
+            } else if (value instanceof List) {
+                List<?> list = (List<?>) value;
+                out.writeByte(VALUE_LIST);
+                out.writeInt(list.size());
+                for (Object element : list) {
+                    writeValue(element);
+                }
+            } else if (value instanceof Map) {
+                Map<?, ?> map = (Map<?, ?>) value;
+                out.writeByte(VALUE_MAP);
+                out.writeInt(map.size());
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    writeString(String.valueOf(entry.getKey()));
+                    writeValue(entry.getValue());
+                }
+            } else {
+                throw new IllegalArgumentException("Unsupported condition value type: " + value.getClass().getName());
+            }
+        }
+
+        private void writeStrings(List<String> strings) throws IOException {
+            out.writeInt(strings.size());
+            for (String string : strings) {
+                writeString(string);
+            }
+        }
+
+        private void writeString(@Nullable String string) throws IOException {
+            if (string == null) {
+                out.writeInt(NULL_INDEX);
+                return;
+            }
+
+            Integer index = stringIndexes.get(string);
+            if (index == null) {
+                index = stringIndexes.size();
+                stringIndexes.put(string, index);
+            }
+            out.writeInt(index);
+        }
+
+        void writeBytes(@Nullable byte[] bytes) throws IOException {
+            if (bytes == null) {
+                out.writeInt(NULL_INDEX);
+                return;
+            }
+
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static class Reader {
+        private final ByteBuffer buffer;
+        private final String[] strings;
+
+        Reader(ByteBuffer buffer) {
+            this.buffer = buffer;
+            this.strings = new String[readCount()];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] bytes = readBytes();
+                if (bytes == null) {
+                    throw new IllegalArgumentException("Missing string at index " + i);
+                }
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+        }
+
+        DatafileProjectConfig readConfig() {
+            String accountId = readString();
+            String projectId = readString();
+            String revision = readString();
+            String version = readString();
+            boolean anonymizeIP = readBoolean();
+            byte botFiltering = buffer.get();
+
+            int attributeCount = readCount();
+            List<Attribute> attributes = new ArrayList<Attribute>(attributeCount);
+            for (int i = 0; i < attributeCount; i++) {
+                attributes.add(new Attribute(readString(), readString(), readString()));
+            }
+
+            List<Audience> audiences = readAudiences(false);
+            List<Audience> typedAudiences = readAudiences(true);
+
+            int eventCount = readCount();
+            List<EventType> events = new ArrayList<EventType>(eventCount);
+            for (int i = 0; i < eventCount; i++) {
+                events.add(new EventType(readString(), readString(), readStrings()));
+            }
+
+            List<Experiment> experiments = readExperiments();
+
+            int groupCount = readCount();
+            List<Group> groups = new ArrayList<Group>(groupCount);
+            for (int i = 0; i < groupCount; i++) {
+                groups.add(new Group(readString(), readString(), readExperiments(), readTrafficAllocation()));
+            }
+
+            int featureFlagCount = readCount();
+            List<FeatureFlag> featureFlags = new ArrayList<FeatureFlag>(featureFlagCount);
+            for (int i = 0; i < featureFlagCount; i++) {
+                String id = readString();
+                String key = readString();
+                String rolloutId = readString();
+                List<String> experimentIds = readStrings();
+                int variableCount = readCount();
+                List<FeatureVariable> variables = new ArrayList<FeatureVariable>(variableCount);
+                for (int j = 0; j < variableCount; j++) {
+                    variables.add(new FeatureVariable(
+                        readString(),
+                        readString(),
+                        readString(),
+                        FeatureVariable.VariableStatus.fromString(readString()),
+                        FeatureVariable.VariableType.fromString(readString())));
+                }
+                featureFlags.add(new FeatureFlag(id, key, rolloutId, experimentIds, variables));
+            }
+
+            int rolloutCount = readCount();
+            List<Rollout> rollouts = new ArrayList<Rollout>(rolloutCount);
+            for (int i = 0; i < rolloutCount; i++) {
+                rollouts.add(new Rollout(readString(), readExperiments()));
+            }
+
+            if (buffer.hasRemaining()) {
+                throw new IllegalArgumentException("Unexpected trailing bytes.");
+            }
+
+            return new DatafileProjectConfig(
+                accountId,
+                anonymizeIP,
+                botFiltering == 0 ? null : botFiltering == 2,
+                projectId,
+                revision,
+                version,
+                attributes,
+                audiences,
+                typedAudiences,
+                events,
+                experiments,
+                featureFlags,
+                groups,
+                rollouts
+            );
+        }
+
+        private List<Audience> readAudiences(boolean typed) {
+            int count = readCount();
+            List<Audience> audiences = new ArrayList<Audience>(count);
+            for (int i = 0; i < count; i++) {
+                String id = readString();
+                String name = readString();
+                Condition conditions = readCondition();
+                audiences.add(typed ? new TypedAudience(id, name, conditions) : new Audience(id, name, conditions));
+            }
+
+            return audiences;
+        }
+
+        private List<Experiment> readExperiments() {
+            int count = readCount();
+            List<Experiment> experiments = new ArrayList<Experiment>(count);
+            for (int i = 0; i < count; i++) {
+                String id = readString();
+                String key = readString();
+                String status = readString();
+                String layerId = readString();
+                String groupId = readString();
+                List<String> audienceIds = readStrings();
+                Condition audienceConditions = readCondition();
+
+                int variationCount = readCount();
+                List<Variation> variations = new ArrayList<Variation>(variationCount);
+                for (int j = 0; j < variationCount; j++) {
+                    String variationId = readString();
+                    String variationKey = readString();
+                    boolean featureEnabled = readBoolean();
+                    int usageInstanceCount = readCount();
+                    List<FeatureVariableUsageInstance> usageInstances =
+                        new ArrayList<FeatureVariableUsageInstance>(usageInstanceCount);
+                    for (int k = 0; k < usageInstanceCount; k++) {
+                        usageInstances.add(new FeatureVariableUsageInstance(readString(), readString()));
+                    }
+                    variations.add(new Variation(variationId, variationKey, featureEnabled, usageInstances));
+                }
+
+                int forcedVariationCount = readCount();
+                Map<String, String> forcedVariations = new LinkedHashMap<String, String>();
+                for (int j = 0; j < forcedVariationCount; j++) {
+                    forcedVariations.put(readString(), readString());
+                }
+
+                experiments.add(new Experiment(id, key, status, layerId, audienceIds, audienceConditions, variations,
+                    forcedVariations, readTrafficAllocation(), groupId));
+            }
+
+            return experiments;
+        }
+
+        private List<TrafficAllocation> readTrafficAllocation() {
+            int count = readCount();
+            List<TrafficAllocation> trafficAllocation = new ArrayList<TrafficAllocation>(count);
+            for (int i = 0; i < count; i++) {
+                trafficAllocation.add(new TrafficAllocation(readString(), buffer.getInt()));
+            }
+
+            return trafficAllocation;
+        }
+
+        @Nullable
+        private Condition readCondition() {
+            byte tag = buffer.get();
+            switch (tag) {
+                case CONDITION_NULL:
+                    return null;
+                case CONDITION_AND:
+                    return new AndCondition(readConditions());
+                case CONDITION_OR:
+                    return new OrCondition(readConditions());
+                case CONDITION_NOT:
+                    return new NotCondition(readCondition());
+                case CONDITION_AUDIENCE_ID:
+                    return new AudienceIdCondition(readString());
+                case CONDITION_USER_ATTRIBUTE:
+                    return new UserAttribute(readString(), readString(), readString(), readValue());
+                case CONDITION_EMPTY:
+                    return new EmptyCondition();
+                case CONDITION_NULL_CONDITION:
+                    return new NullCondition();
+                default:
+                    throw new IllegalArgumentException("Unknown condition tag: " + tag);
+            }
+        }
+
+        private List<Condition> readConditions() {
+            int count = readCount();
+            List<Condition> conditions = new ArrayList<Condition>(count);
+            for (int i = 0; i < count; i++) {
+                conditions.add(readCondition());
+            }
+
+            return conditions;
+        }
+
+        @Nullable
+        private Object readValue() {
+            byte tag = buffer.get();
+            switch (tag) {
+                case VALUE_NULL:
+                    return null;
+                case VALUE_STRING:
+                    return readString();
+                case VALUE_BOOLEAN:
+                    return readBoolean();
+                case VALUE_INTEGER:
+                    return buffer.getInt();
+                case VALUE_LONG:
+                    return buffer.getLong();
+                case VALUE_BIG_INTEGER:
+                    return new BigInteger(readBytes());
+                case VALUE_DOUBLE:
+                    return buffer.getDouble();
+                case VALUE_LIST:
+                    int size = readCount();
+                    List<Object> list = new ArrayList<Object>(size);
+                    for (int i = 0; i < size; i++) {
+                        list.add(readValue());
+                    }
+                    return list;
+                case VALUE_MAP:
+                    int entryCount = readCount();
+                    Map<String, Object> map = new LinkedHashMap<String, Object>();
+                    for (int i = 0; i < entryCount; i++) {
+                        map.put(readString(), readValue());
+                    }
+                    return map;
+                default:
+                    throw new IllegalArgumentException("Unknown value tag: " + tag);
+            }
+        }
+
+        private List<String> readStrings() {
+            int count = readCount();
+            if (count == 0) {
+                return Collections.emptyList();
+            }
+
+            String[] values = new String[count];
+            for (int i = 0; i < count; i++) {
+                values[i] = readString();
+            }
+
+            return Arrays.asList(values);
+        }
+
+        @Nullable
+        private String readString() {
+            int index = buffer.getInt();
+            return index == NULL_INDEX ? null : strings[index];
+        }
+
+        private boolean readBoolean() {
+            return buffer.get() != 0;
+        }
+
+        @Nullable
+        byte[] readBytes() {
+            int length = buffer.getInt();
+            if (length == NULL_INDEX) {
+                return null;
+            }
+            if (length < 0 || length > buffer.remaining()) {
+                throw new IllegalArgumentException("Invalid length: " + length);
+            }
+
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            return bytes;
+        }
+
+        private int readCount() {
+            int count = buffer.getInt();
+            if (count < 0 || count > buffer.remaining()) {
+                throw new IllegalArgumentException("Invalid count: " + count);
+            }
+
+            return count;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.config;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lookup table mapping a bucket value to the entity allocated to it by a list of {@link TrafficAllocation}s.
+ * <p>
+ * The end of range of each allocation is stored in an int[] next to a direct reference to the allocated entity, so
+ * bucketing is a binary search and doesn't need to resolve entity ids. De-allocated traffic (an empty entity id) and
+ * entity ids that don't resolve are stored as null.
+ */
+@Immutable
+public final class TrafficAllocationIndex<T> {
+
+    private final int[] endOfRanges;
+    private final Object[] entities;
+
+    private TrafficAllocationIndex(int[] endOfRanges, Object[] entities) {
+        this.endOfRanges = endOfRanges;
+        this.entities = entities;
+    }
+
+    /**
+     * Build the lookup table for the given traffic allocations.
+     *
+     * @param trafficAllocations the traffic allocations in datafile order
+     * @param entityIdMapping    the allocatable entities by id
+     * @param <T>                the type of the allocated entity
+     * @return the lookup table
+     */
+    public static <T> TrafficAllocationIndex<T> create(@Nonnull List<TrafficAllocation> trafficAllocations,
+                                                       @Nonnull Map<String, T> entityIdMapping) {
+        int size = trafficAllocations.size();
+        int[] endOfRanges = new int[size];
+        Object[] entities = new Object[size];
+
+        int maxEndOfRange = Integer.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            TrafficAllocation trafficAllocation = trafficAllocations.get(i);
+            // keep the ranges non-decreasing so a binary search matches the first allocation a linear scan would,
+            // even if the datafile lists them out of order.
+            maxEndOfRange = Math.max(maxEndOfRange, trafficAllocation.getEndOfRange());
+            endOfRanges[i] = maxEndOfRange;
+            entities[i] = entityIdMapping.get(trafficAllocation.getEntityId());
+        }
+
+        return new TrafficAllocationIndex<T>(endOfRanges, entities);
+    }
+
+    /**
+     * Find the entity allocated to the given bucket value.
+     *
+     * @param bucketValue a value in the range [0, 10000)
+     * @return the entity of the first allocation whose end of range is greater than the bucket value, or null if
+     * the bucket value isn't allocated
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public T lookup(int bucketValue) {
+        int low = 0;
+        int high = endOfRanges.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (endOfRanges[mid] > bucketValue) {
+                high = mid - 1;
+            } else {
+                low = mid + 1;
+            }
+        }
+
+        return low < entities.length ? (T) entities[low] : null;
+    }
+}
@@ -50,7 +50,8 @@ public class AndCondition<T> implements Condition<T> {
         // true and false is false
         // true and true is true
         // null and null is null
-        for (Condition condition : conditions) {
+        for (int i = 0; i < conditions.size(); i++) {
+            Condition condition = conditions.get(i);
             Boolean conditionEval = condition.evaluate(config, attributes);
             if (conditionEval == null) {
                 foundNull = true;
@@ -67,6 +68,29 @@ public class AndCondition<T> implements Condition<T> {
         return true; // otherwise, return true
     }
 
+    @Nullable
+    @Override
+    public Boolean evaluate(ProjectConfig config, Map<String, ?> attributes, @Nonnull AudienceEvaluationCache cache) {
+        if (conditions == null) return null;
+        boolean foundNull = false;
+        for (int i = 0; i < conditions.size(); i++) {
+            Condition condition = conditions.get(i);
+            Boolean conditionEval = condition.evaluate(config, attributes, cache);
+            if (conditionEval == null) {
+                foundNull = true;
+            } else if (!conditionEval) { // false with nulls or trues is false.
+                return false;
+            }
+            // true and nulls with no false will be null.
+        }
+
+        if (foundNull) { // true and null or all null returns null
+            return null;
+        }
+
+        return true; // otherwise, return true
+    }
+
     @Override
     public String toString() {
         StringBuilder s = new StringBuilder();
@@ -0,0 +1,78 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.config.audience;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Results of the {@link Audience}s evaluated for one user, keyed by audience id, so that each audience is
+ * evaluated at most once per decision however many experiments and rollout rules reference it.
+ * <p>
+ * A cache is only valid for a single set of user attributes and is meant to be confined to the thread making the
+ * decision.
+ */
+@NotThreadSafe
+public class AudienceEvaluationCache {
+
+    private final Map<String, Boolean> results = new HashMap<String, Boolean>();
+    private int hitCount;
+    private int missCount;
+
+    /**
+     * @return whether a result, possibly null, was recorded for the audience.
+     */
+    public boolean contains(@Nonnull String audienceId) {
+        return results.containsKey(audienceId);
+    }
+
+    /**
+     * Returns the recorded result of the audience and counts a cache hit.
+     */
+    @Nullable
+    public Boolean get(@Nonnull String audienceId) {
+        hitCount++;
+        return results.get(audienceId);
+    }
+
+    /**
+     * Records the result of an audience that had to be evaluated and counts a cache miss.
+     */
+    public void put(@Nonnull String audienceId, @Nullable Boolean result) {
+        missCount++;
+        results.put(audienceId, result);
+    }
+
+    public int getHitCount() {
+        return hitCount;
+    }
+
+    public int getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return the ratio of audience lookups answered from the cache, or 0 if nothing was looked up.
+     */
+    public double getHitRatio() {
+        int lookupCount = hitCount + missCount;
+        return lookupCount == 0 ? 0 : (double) hitCount / lookupCount;
+    }
+}
@@ -24,6 +24,7 @@ import com.optimizely.ab.internal.InvalidAudienceCondition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 import java.util.Map;
@@ -33,11 +34,14 @@ import java.util.Objects;
  * The AudienceIdCondition is a holder for the audience id in
  * {@link com.optimizely.ab.config.Experiment#audienceConditions auienceConditions}.
  * If the audienceId is not resolved at evaluation time, the
- * condition will fail.  AudienceIdConditions are resolved when the ProjectConfig is passed into evaluate.
+ * condition will fail.  AudienceIdConditions are resolved once when the
+ * {@link com.optimizely.ab.config.DatafileProjectConfig} is constructed; unresolved conditions fall back to
+ * looking up the audience in the ProjectConfig passed into evaluate.
  */
+@Immutable
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class AudienceIdCondition<T> implements Condition<T> {
-    private Audience audience;
+    final private Audience audience;
     final private String audienceId;
 
     final private static Logger logger = LoggerFactory.getLogger("AudienceIdCondition");
@@ -49,15 +53,32 @@ public class AudienceIdCondition<T> implements Condition<T> {
      */
     @JsonCreator
     public AudienceIdCondition(String audienceId) {
+        this(audienceId, null);
+    }
+
+    /**
+     * Constructor used to link the audienceId to its {@link Audience} once the datafile has been parsed.
+     *
+     * @param audienceId
+     * @param audience the resolved audience, or null if it is not in the datafile
+     */
+    public AudienceIdCondition(String audienceId, @Nullable Audience audience) {
         this.audienceId = audienceId;
+        this.audience = audience;
     }
 
+    @Nullable
     public Audience getAudience() {
         return audience;
     }
 
+    /**
+     * Does nothing: the audience is linked once, when the condition is created.
+     *
+     * @deprecated audiences are linked when the {@link com.optimizely.ab.config.DatafileProjectConfig} is built
+     */
+    @Deprecated
     public void setAudience(Audience audience) {
-        this.audience = audience;
     }
 
     public String getAudienceId() {
@@ -67,7 +88,8 @@ public class AudienceIdCondition<T> implements Condition<T> {
     @Nullable
     @Override
     public Boolean evaluate(ProjectConfig config, Map<String, ?> attributes) {
-        if (config != null) {
+        Audience audience = this.audience;
+        if (audience == null && config != null) {
             audience = config.getAudienceIdMapping().get(audienceId);
         }
         if (audience == null) {
@@ -80,21 +102,32 @@ public class AudienceIdCondition<T> implements Condition<T> {
         return result;
     }
 
+    @Nullable
+    @Override
+    public Boolean evaluate(ProjectConfig config, Map<String, ?> attributes, @Nonnull AudienceEvaluationCache cache) {
+        if (cache.contains(audienceId)) {
+            Boolean result = cache.get(audienceId);
+            logger.debug("Audience {} evaluated to {} earlier in this decision.", audienceId, result);
+            return result;
+        }
+
+        Boolean result = evaluate(config, attributes);
+        cache.put(audienceId, result);
+        return result;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         AudienceIdCondition condition = (AudienceIdCondition) o;
-        return ((audience == null) ? (null == condition.audience) :
-            (audience.getId().equals(condition.audience != null ? condition.audience.getId() : null))) &&
-            ((audienceId == null) ? (null == condition.audienceId) :
-                (audienceId.equals(condition.audienceId)));
+        // the linked audience is derived from the audienceId so it is not part of the identity.
+        return Objects.equals(audienceId, condition.audienceId);
     }
 
     @Override
     public int hashCode() {
-
-        return Objects.hash(audience, audienceId);
+        return Objects.hashCode(audienceId);
     }
 
     @Override
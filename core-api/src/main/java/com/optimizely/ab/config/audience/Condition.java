@@ -18,6 +18,7 @@ package com.optimizely.ab.config.audience;
 
 import com.optimizely.ab.config.ProjectConfig;
 
+import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.Map;
 
@@ -28,4 +29,13 @@ public interface Condition<T> {
 
     @Nullable
     Boolean evaluate(ProjectConfig config, Map<String, ?> attributes);
+
+    /**
+     * Evaluate the condition, reusing the results of audiences that were already evaluated for the same user.
+     * Conditions that don't reference audiences evaluate as usual.
+     */
+    @Nullable
+    default Boolean evaluate(ProjectConfig config, Map<String, ?> attributes, @Nonnull AudienceEvaluationCache cache) {
+        return evaluate(config, attributes);
+    }
 }
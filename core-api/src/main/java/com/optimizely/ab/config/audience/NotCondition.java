@@ -47,6 +47,14 @@ public class NotCondition<T> implements Condition<T> {
         return (conditionEval == null ? null : !conditionEval);
     }
 
+    @Nullable
+    @Override
+    public Boolean evaluate(ProjectConfig config, Map<String, ?> attributes, @Nonnull AudienceEvaluationCache cache) {
+
+        Boolean conditionEval = condition == null ? null : condition.evaluate(config, attributes, cache);
+        return (conditionEval == null ? null : !conditionEval);
+    }
+
     @Override
     public String toString() {
         StringBuilder s = new StringBuilder();
@@ -48,7 +48,8 @@ public class OrCondition<T> implements Condition<T> {
     public Boolean evaluate(ProjectConfig config, Map<String, ?> attributes) {
         if (conditions == null) return null;
         boolean foundNull = false;
-        for (Condition condition : conditions) {
+        for (int i = 0; i < conditions.size(); i++) {
+            Condition condition = conditions.get(i);
             Boolean conditionEval = condition.evaluate(config, attributes);
             if (conditionEval == null) { // true with falses and nulls is still true
                 foundNull = true;
@@ -65,6 +66,29 @@ public class OrCondition<T> implements Condition<T> {
         return false;
     }
 
+    @Nullable
+    @Override
+    public Boolean evaluate(ProjectConfig config, Map<String, ?> attributes, @Nonnull AudienceEvaluationCache cache) {
+        if (conditions == null) return null;
+        boolean foundNull = false;
+        for (int i = 0; i < conditions.size(); i++) {
+            Condition condition = conditions.get(i);
+            Boolean conditionEval = condition.evaluate(config, attributes, cache);
+            if (conditionEval == null) { // true with falses and nulls is still true
+                foundNull = true;
+            } else if (conditionEval) {
+                return true;
+            }
+        }
+
+        // if found null and false return null.  all false return false
+        if (foundNull) {
+            return null;
+        }
+
+        return false;
+    }
+
     @Override
     public String toString() {
         StringBuilder s = new StringBuilder();
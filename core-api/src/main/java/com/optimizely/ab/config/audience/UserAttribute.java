@@ -46,6 +46,10 @@ public class UserAttribute<T> implements Condition<T> {
     private final String match;
     private final Object value;
 
+    // Resolved once so evaluation doesn't rebuild the matcher for every user.
+    private final Match matcher;
+    private final String matcherError;
+
     @JsonCreator
     public UserAttribute(@JsonProperty("name") @Nonnull String name,
                          @JsonProperty("type") @Nonnull String type,
@@ -55,6 +59,16 @@ public class UserAttribute<T> implements Condition<T> {
         this.type = type;
         this.match = match;
         this.value = value;
+
+        Match resolvedMatcher = null;
+        String resolvedError = null;
+        try {
+            resolvedMatcher = MatchType.getMatchType(match, value).getMatcher();
+        } catch (UnknownMatchTypeException | UnexpectedValueTypeException ex) {
+            resolvedError = ex.getMessage();
+        }
+        this.matcher = resolvedMatcher;
+        this.matcherError = resolvedError;
     }
 
     public String getName() {
@@ -85,10 +99,14 @@ public class UserAttribute<T> implements Condition<T> {
             logger.warn("Audience condition \"{}\" has an unknown condition type. You may need to upgrade to a newer release of the Optimizely SDK", this);
             return null; // unknown type
         }
+        if (matcher == null) {
+            logger.warn("Audience condition \"{}\" " + matcherError,
+                this);
+            return null;
+        }
         // check user attribute value is equal
         try {
-            Match matchType = MatchType.getMatchType(match, value).getMatcher();
-            Boolean result = matchType.eval(userAttributeValue);
+            Boolean result = matcher.eval(userAttributeValue);
 
             if (result == null) {
                 if (!attributes.containsKey(name)) {
@@ -111,9 +129,6 @@ public class UserAttribute<T> implements Condition<T> {
                 }
             }
             return result;
-        } catch (UnknownMatchTypeException | UnexpectedValueTypeException ex) {
-            logger.warn("Audience condition \"{}\" " + ex.getMessage(),
-                this);
         } catch (NullPointerException np) {
             logger.error("attribute or value null for match {}", match != null ? match : "legacy condition", np);
         }
@@ -19,7 +19,7 @@ package com.optimizely.ab.config.audience.match;
 import javax.annotation.Nullable;
 
 class ExactMatch<T> extends AttributeMatch<T> {
-    T value;
+    final T value;
 
     protected ExactMatch(T value) {
         this.value = value;
@@ -16,8 +16,6 @@
  */
 package com.optimizely.ab.config.audience.match;
 
-import com.optimizely.ab.config.ProjectConfig;
-
 import javax.annotation.Nullable;
 
 import static com.optimizely.ab.internal.AttributesUtil.isValidNumber;
@@ -27,19 +25,16 @@ import static com.optimizely.ab.internal.AttributesUtil.isValidNumber;
 // Integer which would fail in our normal exact match.  So, we are special casing for now.  We have already filtered
 // out other Number types.
 public class ExactNumberMatch extends AttributeMatch<Number> {
-    Number value;
+    final double value;
 
     protected ExactNumberMatch(Number value) {
-        this.value = value;
+        this.value = value.doubleValue();
     }
 
     @Nullable
     public Boolean eval(Object attributeValue) {
-        try {
-            if(isValidNumber(attributeValue)) {
-                return value.doubleValue() == castToValueType(attributeValue, value).doubleValue();
-            }
-        } catch (Exception e) {
+        if (isValidNumber(attributeValue)) {
+            return value == ((Number) attributeValue).doubleValue();
         }
 
         return null;
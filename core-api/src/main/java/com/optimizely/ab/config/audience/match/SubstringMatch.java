@@ -19,7 +19,7 @@ package com.optimizely.ab.config.audience.match;
 import javax.annotation.Nullable;
 
 class SubstringMatch extends AttributeMatch<String> {
-    String value;
+    final String value;
 
     protected SubstringMatch(String value) {
         this.value = value;
@@ -33,11 +33,10 @@ class SubstringMatch extends AttributeMatch<String> {
      */
     @Nullable
     public Boolean eval(Object attributeValue) {
-        try {
-            return castToValueType(attributeValue, value).contains(value);
-        } catch (Exception e) {
-            return null;
+        if (attributeValue instanceof String) {
+            return ((String) attributeValue).contains(value);
         }
+        return null;
     }
 }
 
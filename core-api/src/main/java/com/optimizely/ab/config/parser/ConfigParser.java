@@ -1,6 +1,6 @@
 /**
  *
- *    Copyright 2016-2017, Optimizely and contributors
+ *    Copyright 2016-2017, 2019, Optimizely and contributors
  *
  *    Licensed under the Apache License, Version 2.0 (the "License");
  *    you may not use this file except in compliance with the License.
@@ -16,17 +16,25 @@
  */
 package com.optimizely.ab.config.parser;
 
+import com.optimizely.ab.config.DatafileProjectConfig;
 import com.optimizely.ab.config.ProjectConfig;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Config parser wrapper to allow multiple library implementations to be used.
  *
  * @see GsonConfigParser
  * @see JacksonConfigParser
+ * @see JacksonStreamingConfigParser
  * @see JsonConfigParser
- * @see JsonConfigParser
+ * @see JsonSimpleConfigParser
  *
  * @see <a href="http://developers.optimizely.com/server/reference/index.html#json">Project JSON</a>
  */
@@ -38,4 +46,71 @@ public interface ConfigParser {
      * @throws ConfigParseException when there's an issue parsing the provided project config
      */
     ProjectConfig parseProjectConfig(@Nonnull String json) throws ConfigParseException;
+
+    /**
+     * Parses a UTF-8 encoded datafile. Implementations able to read bytes directly override this to spare
+     * decoding the whole datafile to a {@code String} first.
+     *
+     * @param json the UTF-8 encoded json to parse
+     * @return generates a {@code ProjectConfig} configuration from the provided json
+     * @throws ConfigParseException when there's an issue parsing the provided project config
+     */
+    default ProjectConfig parseProjectConfig(@Nonnull byte[] json) throws ConfigParseException {
+        if (json == null) {
+            throw new ConfigParseException("Unable to parse null datafile.");
+        }
+        return parseProjectConfig(new String(json, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parses the remaining bytes of a UTF-8 encoded datafile, such as a memory-mapped file. The position of the
+     * buffer is left unchanged.
+     *
+     * @param json the UTF-8 encoded json to parse
+     * @return generates a {@code ProjectConfig} configuration from the provided json
+     * @throws ConfigParseException when there's an issue parsing the provided project config
+     */
+    default ProjectConfig parseProjectConfig(@Nonnull ByteBuffer json) throws ConfigParseException {
+        if (json == null) {
+            throw new ConfigParseException("Unable to parse null datafile.");
+        }
+        return parseProjectConfig(StandardCharsets.UTF_8.decode(json.duplicate()).toString());
+    }
+
+    /**
+     * Parses a UTF-8 encoded datafile read until the end of the stream. The stream is not closed.
+     *
+     * @param json the UTF-8 encoded json to parse
+     * @return generates a {@code ProjectConfig} configuration from the provided json
+     * @throws ConfigParseException when there's an issue reading or parsing the provided project config
+     */
+    default ProjectConfig parseProjectConfig(@Nonnull InputStream json) throws ConfigParseException {
+        if (json == null) {
+            throw new ConfigParseException("Unable to parse null datafile.");
+        }
+
+        ByteArrayOutputStream datafile = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        try {
+            int read;
+            while ((read = json.read(buffer)) != -1) {
+                datafile.write(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            throw new ConfigParseException("Unable to read datafile.", e);
+        }
+        return parseProjectConfig(datafile.toByteArray());
+    }
+
+    /**
+     * Returns a parser whose configs share the entities left unchanged since the given config, see
+     * {@link DatafileProjectConfig.Builder#withPreviousConfig(ProjectConfig)}. Implementations that don't support
+     * it return themselves, and build every config from scratch.
+     *
+     * @param previousConfig the config to share entities with, usually the config in use
+     * @return a parser passing the given config to the {@link DatafileProjectConfig} it builds
+     */
+    default ConfigParser withPreviousConfig(@Nullable ProjectConfig previousConfig) {
+        return this;
+    }
 }
@@ -26,6 +26,7 @@ import com.optimizely.ab.config.*;
 import com.optimizely.ab.config.audience.Audience;
 import com.optimizely.ab.config.audience.TypedAudience;
 
+import javax.annotation.Nullable;
 import java.lang.reflect.Type;
 import java.util.Collections;
 import java.util.List;
@@ -35,6 +36,20 @@ import java.util.List;
  */
 public class DatafileGsonDeserializer implements JsonDeserializer<ProjectConfig> {
 
+    private final ProjectConfig previousConfig;
+
+    public DatafileGsonDeserializer() {
+        this(null);
+    }
+
+    /**
+     * @param previousConfig the config the deserialized configs share unchanged entities with, see
+     *                       {@link ConfigParser#withPreviousConfig(ProjectConfig)}
+     */
+    public DatafileGsonDeserializer(@Nullable ProjectConfig previousConfig) {
+        this.previousConfig = previousConfig;
+    }
+
     @Override
     public ProjectConfig deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context)
         throws JsonParseException {
@@ -111,7 +126,8 @@ public class DatafileGsonDeserializer implements JsonDeserializer<ProjectConfig>
             experiments,
             featureFlags,
             groups,
-            rollouts
+            rollouts,
+            previousConfig
         );
     }
 }
@@ -30,6 +30,11 @@ import java.util.Collections;
 import java.util.List;
 
 class DatafileJacksonDeserializer extends JsonDeserializer<DatafileProjectConfig> {
+    /**
+     * Attribute holding the config the deserialized config shares unchanged entities with, if any.
+     */
+    static final String PREVIOUS_CONFIG = "previousConfig";
+
     @Override
     public DatafileProjectConfig deserialize(JsonParser parser, DeserializationContext context) throws IOException {
         ObjectCodec codec = parser.getCodec();
@@ -86,7 +91,8 @@ class DatafileJacksonDeserializer extends JsonDeserializer<DatafileProjectConfig
             experiments,
             featureFlags,
             groups,
-            rollouts
+            rollouts,
+            (ProjectConfig) context.getAttribute(PREVIOUS_CONFIG)
         );
     }
 
@@ -16,6 +16,8 @@
  */
 package com.optimizely.ab.config.parser;
 
+import com.optimizely.ab.annotations.VisibleForTesting;
+import com.optimizely.ab.internal.PropertyUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -23,9 +25,14 @@ import javax.annotation.Nonnull;
 
 /**
  * Factory for generating {@link ConfigParser} instances, based on the json parser available on the classpath.
+ *
+ * The streaming {@link JacksonStreamingConfigParser} is opt-in, by setting {@link #CONFIG_STREAMING_PARSER} to
+ * {@code true}.
  */
 public final class DefaultConfigParser {
 
+    public static final String CONFIG_STREAMING_PARSER = "config.parser.streaming";
+
     private static final Logger logger = LoggerFactory.getLogger(DefaultConfigParser.class);
 
     private DefaultConfigParser() {
@@ -43,11 +50,15 @@ public final class DefaultConfigParser {
      * @return the created config parser
      * @throws MissingJsonParserException if there are no supported json parsers available on the classpath
      */
-    private static @Nonnull
+    @VisibleForTesting
+    static @Nonnull
     ConfigParser create() {
         ConfigParser configParser;
 
-        if (isPresent("com.fasterxml.jackson.databind.ObjectMapper")) {
+        if (Boolean.parseBoolean(PropertyUtils.get(CONFIG_STREAMING_PARSER))
+            && isPresent("com.fasterxml.jackson.core.JsonFactory")) {
+            configParser = new JacksonStreamingConfigParser();
+        } else if (isPresent("com.fasterxml.jackson.databind.ObjectMapper")) {
             configParser = new JacksonConfigParser();
         } else if (isPresent("com.google.gson.Gson")) {
             configParser = new GsonConfigParser();
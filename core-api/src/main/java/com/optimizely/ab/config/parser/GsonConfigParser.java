@@ -23,12 +23,28 @@ import com.optimizely.ab.config.audience.Audience;
 import com.optimizely.ab.config.audience.TypedAudience;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 /**
  * {@link Gson}-based config parser implementation.
  */
 final class GsonConfigParser implements ConfigParser {
 
+    private final ProjectConfig previousConfig;
+
+    public GsonConfigParser() {
+        this(null);
+    }
+
+    private GsonConfigParser(@Nullable ProjectConfig previousConfig) {
+        this.previousConfig = previousConfig;
+    }
+
+    @Override
+    public ConfigParser withPreviousConfig(@Nullable ProjectConfig previousConfig) {
+        return new GsonConfigParser(previousConfig);
+    }
+
     @Override
     public ProjectConfig parseProjectConfig(@Nonnull String json) throws ConfigParseException {
         if (json == null) {
@@ -43,7 +59,7 @@ final class GsonConfigParser implements ConfigParser {
             .registerTypeAdapter(Experiment.class, new ExperimentGsonDeserializer())
             .registerTypeAdapter(FeatureFlag.class, new FeatureFlagGsonDeserializer())
             .registerTypeAdapter(Group.class, new GroupGsonDeserializer())
-            .registerTypeAdapter(DatafileProjectConfig.class, new DatafileGsonDeserializer())
+            .registerTypeAdapter(DatafileProjectConfig.class, new DatafileGsonDeserializer(previousConfig))
             .create();
 
         try {
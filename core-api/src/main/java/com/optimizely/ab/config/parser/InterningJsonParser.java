@@ -0,0 +1,65 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.config.parser;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.JsonParserDelegate;
+
+import java.io.IOException;
+
+/**
+ * {@link JsonParser} that returns string values from a {@link StringPool}. Field names need no pooling, the
+ * {@code JsonFactory} already canonicalizes them.
+ */
+final class InterningJsonParser extends JsonParserDelegate {
+
+    private final StringPool stringPool;
+
+    InterningJsonParser(JsonParser parser, StringPool stringPool) {
+        super(parser);
+        this.stringPool = stringPool;
+    }
+
+    /**
+     * @return the given parser, sharing the pool of {@code source} when it has one.
+     */
+    static JsonParser sharingPool(JsonParser parser, JsonParser source) {
+        return source instanceof InterningJsonParser
+            ? new InterningJsonParser(parser, ((InterningJsonParser) source).stringPool)
+            : parser;
+    }
+
+    @Override
+    public String getText() throws IOException {
+        return delegate.getCurrentToken() == JsonToken.VALUE_STRING ? pooledText() : delegate.getText();
+    }
+
+    @Override
+    public String getValueAsString() throws IOException {
+        return delegate.getCurrentToken() == JsonToken.VALUE_STRING ? pooledText() : delegate.getValueAsString();
+    }
+
+    @Override
+    public String getValueAsString(String defaultValue) throws IOException {
+        return delegate.getCurrentToken() == JsonToken.VALUE_STRING ? pooledText() : delegate.getValueAsString(defaultValue);
+    }
+
+    private String pooledText() throws IOException {
+        return stringPool.intern(delegate.getTextCharacters(), delegate.getTextOffset(), delegate.getTextLength());
+    }
+}
@@ -16,7 +16,9 @@
  */
 package com.optimizely.ab.config.parser;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.optimizely.ab.config.DatafileProjectConfig;
 import com.optimizely.ab.config.ProjectConfig;
@@ -25,12 +27,19 @@ import com.optimizely.ab.config.audience.Condition;
 import com.optimizely.ab.config.audience.TypedAudience;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 /**
  * {@code Jackson}-based config parser implementation.
+ *
+ * String values are pooled per datafile, see {@link StringPool}.
  */
 final class JacksonConfigParser implements ConfigParser {
     private ObjectMapper objectMapper;
+    private final ObjectReader objectReader;
 
     public JacksonConfigParser() {
         this(new ObjectMapper());
@@ -39,17 +48,72 @@ final class JacksonConfigParser implements ConfigParser {
     JacksonConfigParser(ObjectMapper objectMapper) {
         this.objectMapper = objectMapper;
         this.objectMapper.registerModule(new ProjectConfigModule());
+        this.objectReader = objectMapper.readerFor(DatafileProjectConfig.class);
+    }
+
+    private JacksonConfigParser(ObjectMapper objectMapper, ObjectReader objectReader) {
+        this.objectMapper = objectMapper;
+        this.objectReader = objectReader;
+    }
+
+    @Override
+    public ConfigParser withPreviousConfig(@Nullable ProjectConfig previousConfig) {
+        return new JacksonConfigParser(objectMapper,
+            objectReader.withAttribute(DatafileJacksonDeserializer.PREVIOUS_CONFIG, previousConfig));
     }
 
     @Override
     public ProjectConfig parseProjectConfig(@Nonnull String json) throws ConfigParseException {
-        try {
-            return objectMapper.readValue(json, DatafileProjectConfig.class);
+        try (JsonParser parser = objectMapper.getFactory().createParser(json)) {
+            return read(parser);
         } catch (Exception e) {
             throw new ConfigParseException("Unable to parse datafile: " + json, e);
         }
     }
 
+    @Override
+    public ProjectConfig parseProjectConfig(@Nonnull byte[] json) throws ConfigParseException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(json)) {
+            return read(parser);
+        } catch (Exception e) {
+            throw new ConfigParseException("Unable to parse datafile.", e);
+        }
+    }
+
+    @Override
+    public ProjectConfig parseProjectConfig(@Nonnull ByteBuffer json) throws ConfigParseException {
+        if (json == null) {
+            throw new ConfigParseException("Unable to parse null datafile.");
+        }
+        if (json.hasArray()) {
+            try (JsonParser parser = objectMapper.getFactory()
+                .createParser(json.array(), json.arrayOffset() + json.position(), json.remaining())) {
+                return read(parser);
+            } catch (Exception e) {
+                throw new ConfigParseException("Unable to parse datafile.", e);
+            }
+        }
+        return parseProjectConfig(new ByteBufferInputStream(json));
+    }
+
+    @Override
+    public ProjectConfig parseProjectConfig(@Nonnull InputStream json) throws ConfigParseException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(json)) {
+            // the stream belongs to the caller
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            return read(parser);
+        } catch (Exception e) {
+            throw new ConfigParseException("Unable to parse datafile.", e);
+        }
+    }
+
+    /**
+     * Reads the config with string values pooled per datafile, see {@link StringPool}.
+     */
+    private ProjectConfig read(JsonParser parser) throws IOException {
+        return objectReader.readValue(new InterningJsonParser(parser, new StringPool()));
+    }
+
     class ProjectConfigModule extends SimpleModule {
         private final static String NAME = "ProjectConfigModule";
 
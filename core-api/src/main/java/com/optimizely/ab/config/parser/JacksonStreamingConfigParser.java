@@ -0,0 +1,858 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.config.parser;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.optimizely.ab.config.*;
+import com.optimizely.ab.config.audience.AndCondition;
+import com.optimizely.ab.config.audience.Audience;
+import com.optimizely.ab.config.audience.AudienceIdCondition;
+import com.optimizely.ab.config.audience.Condition;
+import com.optimizely.ab.config.audience.EmptyCondition;
+import com.optimizely.ab.config.audience.NotCondition;
+import com.optimizely.ab.config.audience.NullCondition;
+import com.optimizely.ab.config.audience.OrCondition;
+import com.optimizely.ab.config.audience.TypedAudience;
+import com.optimizely.ab.config.audience.UserAttribute;
+import com.optimizely.ab.internal.ConditionUtils;
+import com.optimizely.ab.internal.InvalidAudienceCondition;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@code Jackson} streaming config parser implementation.
+ *
+ * Unlike {@link JacksonConfigParser}, the datafile is never materialized as a tree: the entities, including the
+ * compiled audience conditions, are built directly from the tokens in a single pass over the datafile. It only needs
+ * {@code jackson-core} on the classpath.
+ *
+ * String values are pooled per datafile, see {@link StringPool}.
+ */
+final class JacksonStreamingConfigParser implements ConfigParser {
+
+    private final JsonFactory jsonFactory;
+    private final ProjectConfig previousConfig;
+
+    public JacksonStreamingConfigParser() {
+        this(new JsonFactory());
+    }
+
+    JacksonStreamingConfigParser(JsonFactory jsonFactory) {
+        this(jsonFactory, null);
+    }
+
+    private JacksonStreamingConfigParser(JsonFactory jsonFactory, @Nullable ProjectConfig previousConfig) {
+        this.jsonFactory = jsonFactory;
+        this.previousConfig = previousConfig;
+    }
+
+    @Override
+    public ConfigParser withPreviousConfig(@Nullable ProjectConfig previousConfig) {
+        return new JacksonStreamingConfigParser(jsonFactory, previousConfig);
+    }
+
+    @Override
+    public ProjectConfig parseProjectConfig(@Nonnull String json) throws ConfigParseException {
+        try (JsonParser parser = jsonFactory.createParser(json)) {
+            parser.nextToken();
+            return parseDatafile(parser);
+        } catch (Exception e) {
+            throw new ConfigParseException("Unable to parse datafile: " + json, e);
+        }
+    }
+
+    @Override
+    public ProjectConfig parseProjectConfig(@Nonnull byte[] json) throws ConfigParseException {
+        try (JsonParser parser = jsonFactory.createParser(json)) {
+            parser.nextToken();
+            return parseDatafile(parser);
+        } catch (Exception e) {
+            throw new ConfigParseException("Unable to parse datafile.", e);
+        }
+    }
+
+    @Override
+    public ProjectConfig parseProjectConfig(@Nonnull ByteBuffer json) throws ConfigParseException {
+        if (json == null) {
+            throw new ConfigParseException("Unable to parse null datafile.");
+        }
+        if (json.hasArray()) {
+            try (JsonParser parser = jsonFactory.createParser(json.array(), json.arrayOffset() + json.position(), json.remaining())) {
+                parser.nextToken();
+                return parseDatafile(parser);
+            } catch (Exception e) {
+                throw new ConfigParseException("Unable to parse datafile.", e);
+            }
+        }
+        return parseProjectConfig(new ByteBufferInputStream(json));
+    }
+
+    @Override
+    public ProjectConfig parseProjectConfig(@Nonnull InputStream json) throws ConfigParseException {
+        try (JsonParser parser = jsonFactory.createParser(json)) {
+            // the stream belongs to the caller
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            parser.nextToken();
+            return parseDatafile(parser);
+        } catch (Exception e) {
+            throw new ConfigParseException("Unable to parse datafile.", e);
+        }
+    }
+
+    //======== Helper methods ========//
+
+    private ProjectConfig parseDatafile(JsonParser source) throws IOException {
+        // the ids and keys repeated across entities are held once, by a pool that goes away with the parse
+        JsonParser parser = new InterningJsonParser(source, new StringPool());
+        expect(parser, JsonToken.START_OBJECT);
+
+        String accountId = null;
+        String projectId = null;
+        String revision = null;
+        String version = null;
+        Boolean anonymizeIP = null;
+        Boolean botFiltering = null;
+        List<Group> groups = null;
+        List<Experiment> experiments = null;
+        List<Attribute> attributes = null;
+        List<EventType> events = null;
+        List<Audience> audiences = Collections.emptyList();
+        List<Audience> typedAudiences = null;
+        List<FeatureFlag> featureFlags = null;
+        List<Rollout> rollouts = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            switch (field) {
+                case "accountId":
+                    accountId = parser.getValueAsString();
+                    break;
+                case "projectId":
+                    projectId = parser.getValueAsString();
+                    break;
+                case "revision":
+                    revision = parser.getValueAsString();
+                    break;
+                case "version":
+                    version = parser.getValueAsString();
+                    break;
+                case "anonymizeIP":
+                    anonymizeIP = parseBoolean(parser);
+                    break;
+                case "botFiltering":
+                    botFiltering = parseBoolean(parser);
+                    break;
+                case "groups":
+                    groups = parseGroups(parser);
+                    break;
+                case "experiments":
+                    experiments = parseExperiments(parser, "");
+                    break;
+                case "attributes":
+                    attributes = parseAttributes(parser);
+                    break;
+                case "events":
+                    events = parseEvents(parser);
+                    break;
+                case "audiences":
+                    audiences = parseAudiences(parser, false);
+                    break;
+                case "typedAudiences":
+                    if (token != JsonToken.VALUE_NULL) {
+                        typedAudiences = parseAudiences(parser, true);
+                    }
+                    break;
+                case "featureFlags":
+                    featureFlags = parseFeatureFlags(parser);
+                    break;
+                case "rollouts":
+                    rollouts = parseRollouts(parser);
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+
+        int datafileVersion = Integer.parseInt(require(version, "version"));
+
+        boolean anonymize = false;
+        if (datafileVersion >= Integer.parseInt(DatafileProjectConfig.Version.V3.toString())) {
+            anonymize = require(anonymizeIP, "anonymizeIP");
+        }
+
+        if (datafileVersion >= Integer.parseInt(DatafileProjectConfig.Version.V4.toString())) {
+            require(featureFlags, "featureFlags");
+            require(rollouts, "rollouts");
+        } else {
+            featureFlags = null;
+            rollouts = null;
+            botFiltering = null;
+        }
+
+        return new DatafileProjectConfig(
+            require(accountId, "accountId"),
+            anonymize,
+            botFiltering,
+            require(projectId, "projectId"),
+            require(revision, "revision"),
+            version,
+            require(attributes, "attributes"),
+            audiences,
+            typedAudiences,
+            require(events, "events"),
+            require(experiments, "experiments"),
+            featureFlags,
+            require(groups, "groups"),
+            rollouts,
+            previousConfig
+        );
+    }
+
+    private List<Group> parseGroups(JsonParser parser) throws IOException {
+        expect(parser, JsonToken.START_ARRAY);
+        List<Group> groups = new ArrayList<Group>();
+
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String id = null;
+            String policy = null;
+            List<Experiment> experiments = null;
+            List<TrafficAllocation> trafficAllocation = null;
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                switch (field) {
+                    case "id":
+                        id = parser.getValueAsString();
+                        break;
+                    case "policy":
+                        policy = parser.getValueAsString();
+                        break;
+                    case "experiments":
+                        // the group id may come after its experiments, Group assigns it then
+                        experiments = parseExperiments(parser, id == null ? "" : id);
+                        break;
+                    case "trafficAllocation":
+                        trafficAllocation = parseTrafficAllocation(parser);
+                        break;
+                    default:
+                        parser.skipChildren();
+                        break;
+                }
+            }
+
+            groups.add(new Group(require(id, "id"), policy, require(experiments, "experiments"),
+                require(trafficAllocation, "trafficAllocation")));
+        }
+
+        expect(parser, JsonToken.END_ARRAY);
+        return groups;
+    }
+
+    private List<Experiment> parseExperiments(JsonParser parser, String groupId) throws IOException {
+        expect(parser, JsonToken.START_ARRAY);
+        List<Experiment> experiments = new ArrayList<Experiment>();
+
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String id = null;
+            String key = null;
+            String status = null;
+            String layerId = null;
+            List<String> audienceIds = null;
+            Condition audienceConditions = null;
+            List<Variation> variations = null;
+            Map<String, String> userIdToVariationKeyMap = null;
+            List<TrafficAllocation> trafficAllocation = null;
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                switch (field) {
+                    case "id":
+                        id = parser.getValueAsString();
+                        break;
+                    case "key":
+                        key = parser.getValueAsString();
+                        break;
+                    case "status":
+                        status = parser.getValueAsString();
+                        break;
+                    case "layerId":
+                        layerId = parser.getValueAsString();
+                        break;
+                    case "audienceIds":
+                        audienceIds = parseStrings(parser);
+                        break;
+                    case "audienceConditions":
+                        if (token != JsonToken.VALUE_NULL) {
+                            audienceConditions = parseCondition(parser, AudienceIdCondition.class);
+                        }
+                        break;
+                    case "variations":
+                        variations = parseVariations(parser);
+                        break;
+                    case "forcedVariations":
+                        userIdToVariationKeyMap = parseForcedVariations(parser);
+                        break;
+                    case "trafficAllocation":
+                        trafficAllocation = parseTrafficAllocation(parser);
+                        break;
+                    default:
+                        parser.skipChildren();
+                        break;
+                }
+            }
+
+            experiments.add(new Experiment(require(id, "id"), require(key, "key"), status, layerId,
+                require(audienceIds, "audienceIds"), audienceConditions, require(variations, "variations"),
+                require(userIdToVariationKeyMap, "forcedVariations"), require(trafficAllocation, "trafficAllocation"),
+                groupId));
+        }
+
+        expect(parser, JsonToken.END_ARRAY);
+        return experiments;
+    }
+
+    private List<Variation> parseVariations(JsonParser parser) throws IOException {
+        expect(parser, JsonToken.START_ARRAY);
+        List<Variation> variations = new ArrayList<Variation>();
+
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String id = null;
+            String key = null;
+            Boolean featureEnabled = null;
+            List<FeatureVariableUsageInstance> featureVariableUsageInstances = null;
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                switch (field) {
+                    case "id":
+                        id = parser.getValueAsString();
+                        break;
+                    case "key":
+                        key = parser.getValueAsString();
+                        break;
+                    case "featureEnabled":
+                        featureEnabled = parseBoolean(parser);
+                        break;
+                    case "variables":
+                        if (token != JsonToken.VALUE_NULL) {
+                            featureVariableUsageInstances = parseFeatureVariableInstances(parser);
+                        }
+                        break;
+                    default:
+                        parser.skipChildren();
+                        break;
+                }
+            }
+
+            variations.add(new Variation(require(id, "id"), require(key, "key"), featureEnabled,
+                featureVariableUsageInstances));
+        }
+
+        expect(parser, JsonToken.END_ARRAY);
+        return variations;
+    }
+
+    private List<FeatureVariableUsageInstance> parseFeatureVariableInstances(JsonParser parser) throws IOException {
+        expect(parser, JsonToken.START_ARRAY);
+        List<FeatureVariableUsageInstance> featureVariableUsageInstances = new ArrayList<FeatureVariableUsageInstance>();
+
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String id = null;
+            String value = null;
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                switch (field) {
+                    case "id":
+                        id = parser.getValueAsString();
+                        break;
+                    case "value":
+                        value = parser.getValueAsString();
+                        break;
+                    default:
+                        parser.skipChildren();
+                        break;
+                }
+            }
+
+            featureVariableUsageInstances.add(new FeatureVariableUsageInstance(require(id, "id"), value));
+        }
+
+        expect(parser, JsonToken.END_ARRAY);
+        return featureVariableUsageInstances;
+    }
+
+    private Map<String, String> parseForcedVariations(JsonParser parser) throws IOException {
+        expect(parser, JsonToken.START_OBJECT);
+        Map<String, String> userIdToVariationKeyMap = new HashMap<String, String>();
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String userId = parser.getCurrentName();
+            parser.nextToken();
+            userIdToVariationKeyMap.put(userId, parser.getValueAsString());
+        }
+
+        return userIdToVariationKeyMap;
+    }
+
+    private List<TrafficAllocation> parseTrafficAllocation(JsonParser parser) throws IOException {
+        expect(parser, JsonToken.START_ARRAY);
+        List<TrafficAllocation> trafficAllocation = new ArrayList<TrafficAllocation>();
+
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String entityId = null;
+            Integer endOfRange = null;
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                switch (field) {
+                    case "entityId":
+                        entityId = parser.getValueAsString();
+                        break;
+                    case "endOfRange":
+                        endOfRange = parser.getValueAsInt();
+                        break;
+                    default:
+                        parser.skipChildren();
+                        break;
+                }
+            }
+
+            trafficAllocation.add(new TrafficAllocation(entityId, require(endOfRange, "endOfRange")));
+        }
+
+        expect(parser, JsonToken.END_ARRAY);
+        return trafficAllocation;
+    }
+
+    private List<Attribute> parseAttributes(JsonParser parser) throws IOException {
+        expect(parser, JsonToken.START_ARRAY);
+        List<Attribute> attributes = new ArrayList<Attribute>();
+
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String id = null;
+            String key = null;
+            String segmentId = null;
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                switch (field) {
+                    case "id":
+                        id = parser.getValueAsString();
+                        break;
+                    case "key":
+                        key = parser.getValueAsString();
+                        break;
+                    case "segmentId":
+                        segmentId = parser.getValueAsString();
+                        break;
+                    default:
+                        parser.skipChildren();
+                        break;
+                }
+            }
+
+            attributes.add(new Attribute(require(id, "id"), require(key, "key"), segmentId));
+        }
+
+        expect(parser, JsonToken.END_ARRAY);
+        return attributes;
+    }
+
+    private List<EventType> parseEvents(JsonParser parser) throws IOException {
+        expect(parser, JsonToken.START_ARRAY);
+        List<EventType> events = new ArrayList<EventType>();
+
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String id = null;
+            String key = null;
+            List<String> experimentIds = null;
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                switch (field) {
+                    case "id":
+                        id = parser.getValueAsString();
+                        break;
+                    case "key":
+                        key = parser.getValueAsString();
+                        break;
+                    case "experimentIds":
+                        experimentIds = parseStrings(parser);
+                        break;
+                    default:
+                        parser.skipChildren();
+                        break;
+                }
+            }
+
+            events.add(new EventType(require(id, "id"), require(key, "key"), require(experimentIds, "experimentIds")));
+        }
+
+        expect(parser, JsonToken.END_ARRAY);
+        return events;
+    }
+
+    /**
+     * The conditions of typed audiences are inlined in the datafile, those of legacy audiences are serialized in a
+     * string. Both are compiled straight to a {@link Condition}.
+     */
+    private List<Audience> parseAudiences(JsonParser parser, boolean typed) throws IOException {
+        expect(parser, JsonToken.START_ARRAY);
+        List<Audience> audiences = new ArrayList<Audience>();
+
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String id = null;
+            String name = null;
+            Condition conditions = null;
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                switch (field) {
+                    case "id":
+                        id = parser.getValueAsString();
+                        break;
+                    case "name":
+                        name = parser.getValueAsString();
+                        break;
+                    case "conditions":
+                        if (!typed && token == JsonToken.VALUE_STRING) {
+                            try (JsonParser conditionsParser = InterningJsonParser.sharingPool(jsonFactory.createParser(parser.getText()), parser)) {
+                                conditionsParser.nextToken();
+                                conditions = parseCondition(conditionsParser, UserAttribute.class);
+                            }
+                        } else {
+                            conditions = parseCondition(parser, UserAttribute.class);
+                        }
+                        break;
+                    default:
+                        parser.skipChildren();
+                        break;
+                }
+            }
+
+            require(id, "id");
+            audiences.add(typed ? new TypedAudience(id, name, conditions) : new Audience(id, name, conditions));
+        }
+
+        expect(parser, JsonToken.END_ARRAY);
+        return audiences;
+    }
+
+    private List<FeatureFlag> parseFeatureFlags(JsonParser parser) throws IOException {
+        expect(parser, JsonToken.START_ARRAY);
+        List<FeatureFlag> featureFlags = new ArrayList<FeatureFlag>();
+
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String id = null;
+            String key = null;
+            String rolloutId = null;
+            List<String> experimentIds = null;
+            List<FeatureVariable> variables = null;
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                switch (field) {
+                    case "id":
+                        id = parser.getValueAsString();
+                        break;
+                    case "key":
+                        key = parser.getValueAsString();
+                        break;
+                    case "rolloutId":
+                        rolloutId = parser.getValueAsString();
+                        break;
+                    case "experimentIds":
+                        experimentIds = parseStrings(parser);
+                        break;
+                    case "variables":
+                        variables = parseFeatureVariables(parser);
+                        break;
+                    default:
+                        parser.skipChildren();
+                        break;
+                }
+            }
+
+            featureFlags.add(new FeatureFlag(require(id, "id"), require(key, "key"), rolloutId,
+                require(experimentIds, "experimentIds"), require(variables, "variables")));
+        }
+
+        expect(parser, JsonToken.END_ARRAY);
+        return featureFlags;
+    }
+
+    private List<FeatureVariable> parseFeatureVariables(JsonParser parser) throws IOException {
+        expect(parser, JsonToken.START_ARRAY);
+        List<FeatureVariable> featureVariables = new ArrayList<FeatureVariable>();
+
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String id = null;
+            String key = null;
+            String defaultValue = null;
+            FeatureVariable.VariableStatus status = null;
+            FeatureVariable.VariableType type = null;
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                switch (field) {
+                    case "id":
+                        id = parser.getValueAsString();
+                        break;
+                    case "key":
+                        key = parser.getValueAsString();
+                        break;
+                    case "defaultValue":
+                        defaultValue = parser.getValueAsString();
+                        break;
+                    case "status":
+                        status = FeatureVariable.VariableStatus.fromString(parser.getValueAsString());
+                        break;
+                    case "type":
+                        type = FeatureVariable.VariableType.fromString(parser.getValueAsString());
+                        break;
+                    default:
+                        parser.skipChildren();
+                        break;
+                }
+            }
+
+            featureVariables.add(new FeatureVariable(require(id, "id"), require(key, "key"), defaultValue, status, type));
+        }
+
+        expect(parser, JsonToken.END_ARRAY);
+        return featureVariables;
+    }
+
+    private List<Rollout> parseRollouts(JsonParser parser) throws IOException {
+        expect(parser, JsonToken.START_ARRAY);
+        List<Rollout> rollouts = new ArrayList<Rollout>();
+
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String id = null;
+            List<Experiment> experiments = null;
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                switch (field) {
+                    case "id":
+                        id = parser.getValueAsString();
+                        break;
+                    case "experiments":
+                        experiments = parseExperiments(parser, "");
+                        break;
+                    default:
+                        parser.skipChildren();
+                        break;
+                }
+            }
+
+            rollouts.add(new Rollout(require(id, "id"), require(experiments, "experiments")));
+        }
+
+        expect(parser, JsonToken.END_ARRAY);
+        return rollouts;
+    }
+
+    private List<String> parseStrings(JsonParser parser) throws IOException {
+        expect(parser, JsonToken.START_ARRAY);
+        List<String> strings = new ArrayList<String>();
+
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            strings.add(parser.getValueAsString());
+        }
+
+        return strings;
+    }
+
+    //======== Conditions ========//
+
+    /**
+     * Compiles the condition starting at the current token, following the same rules as
+     * {@link ConditionUtils#parseConditions(Class, List)}. Like {@link ConditionJacksonDeserializer}, any other value
+     * compiles to null.
+     */
+    static <T> Condition parseCondition(JsonParser parser, Class<T> clazz) throws IOException {
+        switch (parser.getCurrentToken()) {
+            case START_ARRAY:
+                return parseConditions(parser, clazz);
+            case VALUE_STRING:
+                if (clazz != AudienceIdCondition.class) {
+                    throw new InvalidAudienceCondition(String.format("Expected AudienceIdCondition got %s", clazz.getCanonicalName()));
+                }
+                return new AudienceIdCondition<T>(parser.getText());
+            case START_OBJECT:
+                if (clazz != UserAttribute.class) {
+                    throw new InvalidAudienceCondition(String.format("Expected UserAttributes got %s", clazz.getCanonicalName()));
+                }
+                return parseUserAttribute(parser);
+            default:
+                parser.skipChildren();
+                return null;
+        }
+    }
+
+    private static <T> Condition parseConditions(JsonParser parser, Class<T> clazz) throws IOException {
+        if (parser.nextToken() == JsonToken.END_ARRAY) {
+            return new EmptyCondition();
+        }
+
+        String operand = null;
+        if (parser.getCurrentToken() == JsonToken.VALUE_STRING) {
+            operand = ConditionUtils.operand(parser.getText());
+        }
+
+        List<Condition> conditions = new ArrayList<Condition>();
+        if (operand != null) {
+            parser.nextToken();
+        } else {
+            operand = "or";
+        }
+
+        for (; parser.getCurrentToken() != JsonToken.END_ARRAY; parser.nextToken()) {
+            conditions.add(parseCondition(parser, clazz));
+        }
+
+        switch (operand) {
+            case "and":
+                return new AndCondition(conditions);
+            case "not":
+                return new NotCondition(conditions.isEmpty() ? new NullCondition() : conditions.get(0));
+            default:
+                return new OrCondition(conditions);
+        }
+    }
+
+    private static UserAttribute parseUserAttribute(JsonParser parser) throws IOException {
+        String name = null;
+        String type = null;
+        String match = null;
+        Object value = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "name":
+                    name = parser.getValueAsString();
+                    break;
+                case "type":
+                    type = parser.getValueAsString();
+                    break;
+                case "match":
+                    match = parser.getValueAsString();
+                    break;
+                case "value":
+                    value = parseValue(parser);
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+
+        return new UserAttribute(name, type, match, value);
+    }
+
+    /**
+     * Reads the value at the current token as the {@code ObjectMapper} would for an untyped property.
+     */
+    @Nullable
+    private static Object parseValue(JsonParser parser) throws IOException {
+        switch (parser.getCurrentToken()) {
+            case VALUE_STRING:
+                return parser.getText();
+            case VALUE_NUMBER_INT:
+                return parser.getNumberValue();
+            case VALUE_NUMBER_FLOAT:
+                return parser.getDoubleValue();
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+            case START_ARRAY:
+                List<Object> list = new ArrayList<Object>();
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    list.add(parseValue(parser));
+                }
+                return list;
+            case START_OBJECT:
+                Map<String, Object> map = new LinkedHashMap<String, Object>();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    parser.nextToken();
+                    map.put(field, parseValue(parser));
+                }
+                return map;
+            default:
+                return null;
+        }
+    }
+
+    @Nullable
+    private static Boolean parseBoolean(JsonParser parser) throws IOException {
+        switch (parser.getCurrentToken()) {
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+            case VALUE_NULL:
+                return null;
+            default:
+                return parser.getValueAsBoolean();
+        }
+    }
+
+    private static void expect(JsonParser parser, JsonToken token) throws JsonParseException {
+        if (parser.getCurrentToken() != token) {
+            throw new JsonParseException(parser, "Expected " + token + " got " + parser.getCurrentToken());
+        }
+    }
+
+    private static <T> T require(@Nullable T value, String field) {
+        if (value == null) {
+            throw new IllegalArgumentException("Missing required field: " + field);
+        }
+        return value;
+    }
+}
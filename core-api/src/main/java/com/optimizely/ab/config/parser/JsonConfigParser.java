@@ -28,6 +28,7 @@ import org.json.JSONObject;
 import org.json.JSONTokener;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -40,6 +41,21 @@ import java.util.Set;
  */
 final class JsonConfigParser implements ConfigParser {
 
+    private final ProjectConfig previousConfig;
+
+    public JsonConfigParser() {
+        this(null);
+    }
+
+    private JsonConfigParser(@Nullable ProjectConfig previousConfig) {
+        this.previousConfig = previousConfig;
+    }
+
+    @Override
+    public ConfigParser withPreviousConfig(@Nullable ProjectConfig previousConfig) {
+        return new JsonConfigParser(previousConfig);
+    }
+
     @Override
     public ProjectConfig parseProjectConfig(@Nonnull String json) throws ConfigParseException {
         try {
@@ -99,7 +115,8 @@ final class JsonConfigParser implements ConfigParser {
                 experiments,
                 featureFlags,
                 groups,
-                rollouts
+                rollouts,
+                previousConfig
             );
         } catch (Exception e) {
             throw new ConfigParseException("Unable to parse datafile: " + json, e);
@@ -31,6 +31,7 @@ import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -44,6 +45,21 @@ import java.util.logging.Logger;
  */
 final class JsonSimpleConfigParser implements ConfigParser {
 
+    private final ProjectConfig previousConfig;
+
+    public JsonSimpleConfigParser() {
+        this(null);
+    }
+
+    private JsonSimpleConfigParser(@Nullable ProjectConfig previousConfig) {
+        this.previousConfig = previousConfig;
+    }
+
+    @Override
+    public ConfigParser withPreviousConfig(@Nullable ProjectConfig previousConfig) {
+        return new JsonSimpleConfigParser(previousConfig);
+    }
+
     @Override
     public ProjectConfig parseProjectConfig(@Nonnull String json) throws ConfigParseException {
         try {
@@ -104,7 +120,8 @@ final class JsonSimpleConfigParser implements ConfigParser {
                 experiments,
                 featureFlags,
                 groups,
-                rollouts
+                rollouts,
+                previousConfig
             );
         } catch (RuntimeException ex) {
             throw new ConfigParseException("Unable to parse datafile: " + json, ex);
@@ -0,0 +1,89 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.config.parser;
+
+/**
+ * Pool of the strings read from one datafile, so that an id or key repeated across entities is held once by the
+ * config. Strings are looked up by their characters, so a string that is already pooled is never allocated again.
+ *
+ * Unlike {@link String#intern()}, the pool goes away with the parse and the strings with the config.
+ */
+final class StringPool {
+
+    private String[] table = new String[256];
+    private int size;
+
+    String intern(char[] chars, int offset, int length) {
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + chars[i];
+        }
+
+        int mask = table.length - 1;
+        int index = spread(hash) & mask;
+        for (String pooled = table[index]; pooled != null; pooled = table[index]) {
+            if (pooled.hashCode() == hash && matches(pooled, chars, offset, length)) {
+                return pooled;
+            }
+            index = (index + 1) & mask;
+        }
+
+        String string = new String(chars, offset, length);
+        add(index, string);
+        return string;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void add(int index, String string) {
+        table[index] = string;
+        // keep the table at most half full so probe sequences stay short
+        if (++size * 2 > table.length) {
+            String[] previous = table;
+            table = new String[previous.length * 2];
+            int mask = table.length - 1;
+            for (String pooled : previous) {
+                if (pooled != null) {
+                    int i = spread(pooled.hashCode()) & mask;
+                    while (table[i] != null) {
+                        i = (i + 1) & mask;
+                    }
+                    table[i] = pooled;
+                }
+            }
+        }
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean matches(String string, char[] chars, int offset, int length) {
+        if (string.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (string.charAt(i) != chars[offset + i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,410 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.event;
+
+import com.optimizely.ab.event.internal.EventContext;
+import com.optimizely.ab.event.internal.EventFactory;
+import com.optimizely.ab.event.internal.UserEvent;
+import com.optimizely.ab.internal.PropertyUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * BatchEventProcessor is an {@link EventProcessor} that buffers {@link UserEvent}s and dispatches them
+ * in batches, greatly reducing the number of outbound requests.
+ *
+ * Events are grouped by their {@link EventContext} (account, project, revision, anonymizeIP and client)
+ * since only events sharing a context can be sent in the same {@link com.optimizely.ab.event.internal.payload.EventBatch}.
+ * A batch is flushed to the {@link EventHandler} once it reaches the configured batch size, and all pending
+ * batches are flushed when the flush interval elapses, when {@link #flush()} is called, or on {@link #close()}.
+ * The {@link EventHandler} is left open on close, it is closed by its owner such as {@link com.optimizely.ab.Optimizely#close()}.
+ */
+public class BatchEventProcessor implements EventProcessor, AutoCloseable {
+
+    public static final String CONFIG_BATCH_SIZE     = "event.processor.batch.size";
+    public static final String CONFIG_BATCH_INTERVAL = "event.processor.batch.interval";
+    public static final String CONFIG_QUEUE_CAPACITY = "event.processor.queue.capacity";
+    public static final String CONFIG_CLOSE_TIMEOUT  = "event.processor.close.timeout";
+
+    public static final int DEFAULT_BATCH_SIZE = 10;
+    public static final long DEFAULT_BATCH_INTERVAL = TimeUnit.SECONDS.toMillis(30);
+    public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+    public static final long DEFAULT_TIMEOUT_INTERVAL = TimeUnit.SECONDS.toMillis(5);
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchEventProcessor.class);
+
+    private static final Object SHUTDOWN_SIGNAL = new Object();
+    private static final Object FLUSH_SIGNAL = new Object();
+
+    private final BlockingQueue<Object> eventQueue;
+    private final EventHandler eventHandler;
+
+    private final int batchSize;
+    private final long flushInterval;
+    private final long timeoutMillis;
+    private final ExecutorService executor;
+    // an executor given to the builder belongs to the caller and is left running on close
+    private final boolean ownsExecutor;
+
+    private Future<?> future;
+    private volatile boolean isStarted = false;
+    private volatile boolean isClosed = false;
+
+    private BatchEventProcessor(BlockingQueue<Object> eventQueue, EventHandler eventHandler, int batchSize, long flushInterval, long timeoutMillis, ExecutorService executor, boolean ownsExecutor) {
+        this.eventQueue = eventQueue;
+        this.eventHandler = eventHandler;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.timeoutMillis = timeoutMillis;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    public synchronized void start() {
+        if (isClosed) {
+            logger.warn("Processor closed, not starting.");
+            return;
+        }
+
+        if (isStarted) {
+            logger.info("Executor already started.");
+            return;
+        }
+
+        isStarted = true;
+        EventConsumer runnable = new EventConsumer();
+        future = executor.submit(runnable);
+    }
+
+    @Override
+    public void process(UserEvent userEvent) {
+        logger.debug("Received userEvent: {}", userEvent);
+
+        if (isClosed || executor.isShutdown()) {
+            logger.warn("Executor shutdown, not accepting tasks.");
+            return;
+        }
+
+        if (!eventQueue.offer(userEvent)) {
+            logger.warn("Payload not accepted by the queue. Current size: {}", eventQueue.size());
+        }
+    }
+
+    /**
+     * Signals the processor to dispatch all pending batches without waiting for the flush interval.
+     */
+    public void flush() {
+        if (!eventQueue.offer(FLUSH_SIGNAL)) {
+            logger.warn("Flush signal not accepted by the queue. Current size: {}", eventQueue.size());
+        }
+    }
+
+    /**
+     * Stops accepting new events and dispatches all pending batches, also those queued before the processor was
+     * started. This method blocks until the pending batches have been handed off to the {@link EventHandler} or the
+     * close timeout expires.
+     */
+    @Override
+    public synchronized void close() {
+        if (isClosed) {
+            return;
+        }
+
+        logger.info("Start close");
+        isClosed = true;
+
+        try {
+            if (isStarted) {
+                isStarted = false;
+                awaitConsumer();
+            } else {
+                // no consumer ever ran, so the queued events are dispatched on the calling thread
+                new EventConsumer().drain();
+            }
+        } finally {
+            if (ownsExecutor) {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    private void awaitConsumer() {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+
+        try {
+            // the queue may stay full if the consumer died, so waiting for room is bounded too
+            if (eventQueue.offer(SHUTDOWN_SIGNAL, timeoutMillis, TimeUnit.MILLISECONDS)) {
+                future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            } else {
+                logger.error("Shutdown signal not accepted by the queue within {} ms", timeoutMillis);
+                future.cancel(true);
+            }
+        } catch (InterruptedException e) {
+            logger.warn("Interrupted while awaiting termination.");
+            Thread.currentThread().interrupt();
+        } catch (TimeoutException e) {
+            logger.error("Timeout exceeded attempting to close for {} ms", timeoutMillis);
+            future.cancel(true);
+        } catch (ExecutionException e) {
+            logger.error("Event consumer failed.", e.getCause());
+        }
+    }
+
+    public boolean isRunning() {
+        return isStarted;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public long getFlushInterval() {
+        return flushInterval;
+    }
+
+    public EventHandler getEventHandler() {
+        return eventHandler;
+    }
+
+    //======== Helper classes ========//
+
+    /**
+     * Single consumer of the event queue responsible for accumulating and flushing batches.
+     */
+    private class EventConsumer implements Runnable {
+
+        private final Map<EventContext, List<UserEvent>> batches = new LinkedHashMap<>();
+        private long deadline = System.currentTimeMillis() + flushInterval;
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    if (System.currentTimeMillis() >= deadline) {
+                        logger.debug("Deadline exceeded flushing current batches.");
+                        flushAll();
+                    }
+
+                    Object item = eventQueue.poll(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+                    if (item == null) {
+                        continue;
+                    }
+
+                    if (item == SHUTDOWN_SIGNAL) {
+                        logger.info("Received shutdown signal.");
+                        break;
+                    }
+
+                    if (item == FLUSH_SIGNAL) {
+                        logger.debug("Received flush signal.");
+                        flushAll();
+                        continue;
+                    }
+
+                    addToBatch((UserEvent) item);
+                }
+            } catch (InterruptedException e) {
+                logger.info("Interrupted while processing buffer.");
+            } catch (Exception e) {
+                logger.error("Uncaught exception processing buffer.", e);
+            } finally {
+                logger.info("Exiting processing loop. Attempting to flush pending events.");
+                flushAll();
+            }
+        }
+
+        /**
+         * Dispatches the queued events without waiting for more, used when the consumer was never started.
+         */
+        private void drain() {
+            Object item;
+            while ((item = eventQueue.poll()) != null) {
+                if (item instanceof UserEvent) {
+                    addToBatch((UserEvent) item);
+                }
+            }
+
+            flushAll();
+        }
+
+        private void addToBatch(UserEvent userEvent) {
+            EventContext eventContext = userEvent.getEventContext();
+            List<UserEvent> batch = batches.get(eventContext);
+            if (batch == null) {
+                batch = new ArrayList<>(batchSize);
+                batches.put(eventContext, batch);
+            }
+
+            batch.add(userEvent);
+
+            if (batch.size() >= batchSize) {
+                batches.remove(eventContext);
+                dispatch(batch);
+            }
+        }
+
+        private void flushAll() {
+            for (List<UserEvent> batch : batches.values()) {
+                dispatch(batch);
+            }
+
+            batches.clear();
+            deadline = System.currentTimeMillis() + flushInterval;
+        }
+
+        private void dispatch(List<UserEvent> batch) {
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            LogEvent logEvent = EventFactory.createLogEvent(batch);
+
+            try {
+                eventHandler.dispatchEvent(logEvent);
+            } catch (Exception e) {
+                logger.error("Error dispatching event: {}", logEvent, e);
+            }
+        }
+    }
+
+    //======== Builder ========//
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private BlockingQueue<Object> eventQueue;
+        private EventHandler eventHandler;
+        private ExecutorService executor;
+
+        int batchSize = PropertyUtils.getInteger(CONFIG_BATCH_SIZE, DEFAULT_BATCH_SIZE);
+        long flushInterval = PropertyUtils.getLong(CONFIG_BATCH_INTERVAL, DEFAULT_BATCH_INTERVAL);
+        int queueCapacity = PropertyUtils.getInteger(CONFIG_QUEUE_CAPACITY, DEFAULT_QUEUE_CAPACITY);
+        long timeoutMillis = PropertyUtils.getLong(CONFIG_CLOSE_TIMEOUT, DEFAULT_TIMEOUT_INTERVAL);
+
+        public Builder withEventHandler(EventHandler eventHandler) {
+            this.eventHandler = eventHandler;
+            return this;
+        }
+
+        public Builder withEventQueue(BlockingQueue<Object> eventQueue) {
+            this.eventQueue = eventQueue;
+            return this;
+        }
+
+        public Builder withBatchSize(Integer batchSize) {
+            if (batchSize == null || batchSize <= 0) {
+                logger.warn("Batch size cannot be null or <= 0. Keeping default value: {}", this.batchSize);
+                return this;
+            }
+
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        public Builder withFlushInterval(Long flushInterval, TimeUnit timeUnit) {
+            if (flushInterval == null || flushInterval <= 0 || timeUnit == null) {
+                logger.warn("Flush interval cannot be null or <= 0. Keeping default value: {} ms", this.flushInterval);
+                return this;
+            }
+
+            this.flushInterval = timeUnit.toMillis(flushInterval);
+            return this;
+        }
+
+        public Builder withQueueCapacity(Integer queueCapacity) {
+            if (queueCapacity == null || queueCapacity <= 0) {
+                logger.warn("Queue capacity cannot be null or <= 0. Keeping default value: {}", this.queueCapacity);
+                return this;
+            }
+
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        public Builder withExecutor(ExecutorService executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public Builder withCloseTimeout(long duration, TimeUnit timeUnit) {
+            this.timeoutMillis = timeUnit.toMillis(duration);
+            return this;
+        }
+
+        /**
+         * Builds and starts the BatchEventProcessor.
+         */
+        public BatchEventProcessor build() {
+            return build(true);
+        }
+
+        /**
+         * @param shouldStart When false the returned processor must be started with {@link BatchEventProcessor#start()}.
+         */
+        public BatchEventProcessor build(boolean shouldStart) {
+            if (eventHandler == null) {
+                throw new IllegalArgumentException("EventHandler was not configured");
+            }
+
+            if (batchSize <= 0) {
+                logger.warn("Invalid batch size {}. Defaulting to {}", batchSize, DEFAULT_BATCH_SIZE);
+                batchSize = DEFAULT_BATCH_SIZE;
+            }
+
+            if (flushInterval <= 0) {
+                logger.warn("Invalid flush interval {}. Defaulting to {}", flushInterval, DEFAULT_BATCH_INTERVAL);
+                flushInterval = DEFAULT_BATCH_INTERVAL;
+            }
+
+            if (eventQueue == null) {
+                if (queueCapacity <= 0) {
+                    logger.warn("Invalid queue capacity {}. Defaulting to {}", queueCapacity, DEFAULT_QUEUE_CAPACITY);
+                    queueCapacity = DEFAULT_QUEUE_CAPACITY;
+                }
+
+                eventQueue = new ArrayBlockingQueue<>(queueCapacity);
+            }
+
+            boolean ownsExecutor = executor == null;
+            if (ownsExecutor) {
+                final ThreadFactory threadFactory = Executors.defaultThreadFactory();
+                executor = Executors.newSingleThreadExecutor(runnable -> {
+                    Thread thread = threadFactory.newThread(runnable);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+
+            BatchEventProcessor batchEventProcessor = new BatchEventProcessor(eventQueue, eventHandler, batchSize, flushInterval, timeoutMillis, executor, ownsExecutor);
+
+            if (shouldStart) {
+                batchEventProcessor.start();
+            }
+
+            return batchEventProcessor;
+        }
+    }
+}
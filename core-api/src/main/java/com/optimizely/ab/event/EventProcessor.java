@@ -0,0 +1,28 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.event;
+
+import com.optimizely.ab.event.internal.UserEvent;
+
+/**
+ * EventProcessor sits between {@link com.optimizely.ab.Optimizely} and the {@link EventHandler} and is
+ * responsible for turning {@link UserEvent}s into {@link LogEvent}s and handing them off for dispatch.
+ */
+public interface EventProcessor {
+
+    void process(UserEvent userEvent);
+}
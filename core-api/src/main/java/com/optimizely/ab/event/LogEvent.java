@@ -17,19 +17,23 @@
 package com.optimizely.ab.event;
 
 import com.optimizely.ab.event.internal.payload.EventBatch;
-import com.optimizely.ab.event.internal.serializer.DefaultJsonSerializer;
-import com.optimizely.ab.event.internal.serializer.Serializer;
+import com.optimizely.ab.event.internal.serializer.EventBatchWriter;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.Objects;
 
 import javax.annotation.Nonnull;
-import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
 
 /**
  * Represents Optimizely tracking and activation events.
+ *
+ * The body is encoded by {@link EventBatchWriter} the first time it is requested and kept for later calls, so the
+ * {@link EventBatch} must not be modified once the event is created.
  */
-@Immutable
+@ThreadSafe
 public class LogEvent {
 
     private final RequestMethod requestMethod;
@@ -37,6 +41,9 @@ public class LogEvent {
     private final Map<String, String> requestParams;
     private final EventBatch eventBatch;
 
+    private volatile byte[] bodyBytes;
+    private volatile String body;
+
     public LogEvent(@Nonnull RequestMethod requestMethod,
                     @Nonnull String endpointUrl,
                     @Nonnull Map<String, String> requestParams,
@@ -47,6 +54,19 @@ public class LogEvent {
         this.eventBatch = eventBatch;
     }
 
+    /**
+     * Restores an event from its already encoded body, for example one read back from storage. Such an event has
+     * no {@link EventBatch}.
+     */
+    public static LogEvent fromBody(@Nonnull RequestMethod requestMethod,
+                                    @Nonnull String endpointUrl,
+                                    @Nonnull Map<String, String> requestParams,
+                                    @Nonnull byte[] bodyBytes) {
+        LogEvent logEvent = new LogEvent(requestMethod, endpointUrl, requestParams, null);
+        logEvent.bodyBytes = bodyBytes;
+        return logEvent;
+    }
+
     //======== Getters ========//
 
     public RequestMethod getRequestMethod() {
@@ -62,12 +82,26 @@ public class LogEvent {
     }
 
     public String getBody() {
-        if (eventBatch == null) {
-            return "";
+        String body = this.body;
+        if (body == null) {
+            body = new String(getBodyBytes(), StandardCharsets.UTF_8);
+            this.body = body;
+        }
+
+        return body;
+    }
+
+    /**
+     * @return the UTF-8 encoded body. The returned array is shared and must not be modified.
+     */
+    public byte[] getBodyBytes() {
+        byte[] bodyBytes = this.bodyBytes;
+        if (bodyBytes == null) {
+            bodyBytes = eventBatch == null ? new byte[0] : EventBatchWriter.write(eventBatch);
+            this.bodyBytes = bodyBytes;
         }
 
-        Serializer serializer = DefaultJsonSerializer.getInstance();
-        return serializer.serialize(eventBatch);
+        return bodyBytes;
     }
 
     public EventBatch getEventBatch() {
@@ -94,7 +128,8 @@ public class LogEvent {
         return requestMethod == logEvent.requestMethod &&
             Objects.equals(endpointUrl, logEvent.endpointUrl) &&
             Objects.equals(requestParams, logEvent.requestParams) &&
-            Objects.equals(eventBatch, logEvent.eventBatch);
+            Objects.equals(eventBatch, logEvent.eventBatch) &&
+            (eventBatch != null || Arrays.equals(getBodyBytes(), logEvent.getBodyBytes()));
     }
 
     @Override
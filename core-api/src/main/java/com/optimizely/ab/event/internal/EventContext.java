@@ -0,0 +1,104 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.event.internal;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.Objects;
+
+/**
+ * EventContext holds the envelope fields of an {@link com.optimizely.ab.event.internal.payload.EventBatch}.
+ *
+ * Two {@link UserEvent}s can only be sent within the same batch if their contexts are equal.
+ */
+@Immutable
+public class EventContext {
+
+    private final String accountId;
+    private final String projectId;
+    private final String revision;
+    private final Boolean anonymizeIp;
+    private final String clientName;
+    private final String clientVersion;
+
+    public EventContext(String accountId,
+                        String projectId,
+                        String revision,
+                        Boolean anonymizeIp,
+                        String clientName,
+                        String clientVersion) {
+        this.accountId = accountId;
+        this.projectId = projectId;
+        this.revision = revision;
+        this.anonymizeIp = anonymizeIp;
+        this.clientName = clientName;
+        this.clientVersion = clientVersion;
+    }
+
+    public String getAccountId() {
+        return accountId;
+    }
+
+    public String getProjectId() {
+        return projectId;
+    }
+
+    public String getRevision() {
+        return revision;
+    }
+
+    public Boolean getAnonymizeIp() {
+        return anonymizeIp;
+    }
+
+    public String getClientName() {
+        return clientName;
+    }
+
+    public String getClientVersion() {
+        return clientVersion;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        EventContext that = (EventContext) o;
+        return Objects.equals(accountId, that.accountId) &&
+            Objects.equals(projectId, that.projectId) &&
+            Objects.equals(revision, that.revision) &&
+            Objects.equals(anonymizeIp, that.anonymizeIp) &&
+            Objects.equals(clientName, that.clientName) &&
+            Objects.equals(clientVersion, that.clientVersion);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(accountId, projectId, revision, anonymizeIp, clientName, clientVersion);
+    }
+
+    @Override
+    public String toString() {
+        return "EventContext{" +
+            "accountId='" + accountId + '\'' +
+            ", projectId='" + projectId + '\'' +
+            ", revision='" + revision + '\'' +
+            ", anonymizeIp=" + anonymizeIp +
+            ", clientName='" + clientName + '\'' +
+            ", clientVersion='" + clientVersion + '\'' +
+            '}';
+    }
+}
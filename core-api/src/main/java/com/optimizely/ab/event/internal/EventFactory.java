@@ -66,6 +66,25 @@ public class EventFactory {
                                           @Nonnull String userId,
                                           @Nonnull Map<String, ?> attributes) {
 
+        return createLogEvent(createImpressionUserEvent(projectConfig, activatedExperiment, variation, userId, attributes));
+    }
+
+    public LogEvent createConversionEvent(@Nonnull ProjectConfig projectConfig,
+                                          @Nonnull String userId,
+                                          @Nonnull String eventId, // Why is this not used?
+                                          @Nonnull String eventName,
+                                          @Nonnull Map<String, ?> attributes,
+                                          @Nonnull Map<String, ?> eventTags) {
+
+        return createLogEvent(createConversionUserEvent(projectConfig, userId, eventId, eventName, attributes, eventTags));
+    }
+
+    public UserEvent createImpressionUserEvent(@Nonnull ProjectConfig projectConfig,
+                                               @Nonnull Experiment activatedExperiment,
+                                               @Nonnull Variation variation,
+                                               @Nonnull String userId,
+                                               @Nonnull Map<String, ?> attributes) {
+
         Decision decision = new Decision.Builder()
             .setCampaignId(activatedExperiment.getLayerId())
             .setExperimentId(activatedExperiment.getId())
@@ -92,25 +111,15 @@ public class EventFactory {
             .setSnapshots(Collections.singletonList((snapshot)))
             .build();
 
-        EventBatch eventBatch = new EventBatch.Builder()
-            .setClientName(clientEngine.getClientEngineValue())
-            .setClientVersion(clientVersion)
-            .setAccountId(projectConfig.getAccountId())
-            .setVisitors(Collections.singletonList(visitor))
-            .setAnonymizeIp(projectConfig.getAnonymizeIP())
-            .setProjectId(projectConfig.getProjectId())
-            .setRevision(projectConfig.getRevision())
-            .build();
-
-        return new LogEvent(LogEvent.RequestMethod.POST, EVENT_ENDPOINT, Collections.<String, String>emptyMap(), eventBatch);
+        return new UserEvent(createEventContext(projectConfig), visitor);
     }
 
-    public LogEvent createConversionEvent(@Nonnull ProjectConfig projectConfig,
-                                          @Nonnull String userId,
-                                          @Nonnull String eventId, // Why is this not used?
-                                          @Nonnull String eventName,
-                                          @Nonnull Map<String, ?> attributes,
-                                          @Nonnull Map<String, ?> eventTags) {
+    public UserEvent createConversionUserEvent(@Nonnull ProjectConfig projectConfig,
+                                               @Nonnull String userId,
+                                               @Nonnull String eventId,
+                                               @Nonnull String eventName,
+                                               @Nonnull Map<String, ?> attributes,
+                                               @Nonnull Map<String, ?> eventTags) {
 
         EventType eventType = projectConfig.getEventNameMapping().get(eventName);
 
@@ -135,19 +144,49 @@ public class EventFactory {
             .setSnapshots(Collections.singletonList(snapshot))
             .build();
 
+        return new UserEvent(createEventContext(projectConfig), visitor);
+    }
+
+    public LogEvent createLogEvent(@Nonnull UserEvent userEvent) {
+        return createLogEvent(Collections.singletonList(userEvent));
+    }
+
+    /**
+     * Combines the given {@link UserEvent}s into a single {@link LogEvent} with one {@link Visitor} per UserEvent.
+     * All of the UserEvents are expected to share the same {@link EventContext}, the context of the first
+     * UserEvent is used for the batch envelope.
+     */
+    public static LogEvent createLogEvent(@Nonnull List<UserEvent> userEvents) {
+        EventContext eventContext = userEvents.get(0).getEventContext();
+
+        List<Visitor> visitors = new ArrayList<Visitor>(userEvents.size());
+        for (UserEvent userEvent : userEvents) {
+            visitors.add(userEvent.getVisitor());
+        }
+
         EventBatch eventBatch = new EventBatch.Builder()
-            .setClientName(clientEngine.getClientEngineValue())
-            .setClientVersion(clientVersion)
-            .setAccountId(projectConfig.getAccountId())
-            .setVisitors(Collections.singletonList(visitor))
-            .setAnonymizeIp(projectConfig.getAnonymizeIP())
-            .setProjectId(projectConfig.getProjectId())
-            .setRevision(projectConfig.getRevision())
+            .setClientName(eventContext.getClientName())
+            .setClientVersion(eventContext.getClientVersion())
+            .setAccountId(eventContext.getAccountId())
+            .setVisitors(visitors)
+            .setAnonymizeIp(eventContext.getAnonymizeIp())
+            .setProjectId(eventContext.getProjectId())
+            .setRevision(eventContext.getRevision())
             .build();
 
         return new LogEvent(LogEvent.RequestMethod.POST, EVENT_ENDPOINT, Collections.<String, String>emptyMap(), eventBatch);
     }
 
+    private EventContext createEventContext(ProjectConfig projectConfig) {
+        return new EventContext(
+            projectConfig.getAccountId(),
+            projectConfig.getProjectId(),
+            projectConfig.getRevision(),
+            projectConfig.getAnonymizeIP(),
+            clientEngine.getClientEngineValue(),
+            clientVersion);
+    }
+
     private List<Attribute> buildAttributeList(ProjectConfig projectConfig, Map<String, ?> attributes) {
         List<Attribute> attributesList = new ArrayList<Attribute>();
 
@@ -0,0 +1,56 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.event.internal;
+
+import com.optimizely.ab.event.internal.payload.Visitor;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * UserEvent is a single impression or conversion that has not yet been wrapped in an
+ * {@link com.optimizely.ab.event.internal.payload.EventBatch}.
+ *
+ * See {@link EventFactory#createLogEvent(java.util.List)} for combining UserEvents into a single payload.
+ */
+@Immutable
+public class UserEvent {
+
+    private final EventContext eventContext;
+    private final Visitor visitor;
+
+    public UserEvent(@Nonnull EventContext eventContext, @Nonnull Visitor visitor) {
+        this.eventContext = eventContext;
+        this.visitor = visitor;
+    }
+
+    public EventContext getEventContext() {
+        return eventContext;
+    }
+
+    public Visitor getVisitor() {
+        return visitor;
+    }
+
+    @Override
+    public String toString() {
+        return "UserEvent{" +
+            "eventContext=" + eventContext +
+            ", visitorId='" + visitor.getVisitorId() + '\'' +
+            '}';
+    }
+}
@@ -0,0 +1,495 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.event.internal.serializer;
+
+import com.optimizely.ab.event.internal.payload.Attribute;
+import com.optimizely.ab.event.internal.payload.Decision;
+import com.optimizely.ab.event.internal.payload.Event;
+import com.optimizely.ab.event.internal.payload.EventBatch;
+import com.optimizely.ab.event.internal.payload.Snapshot;
+import com.optimizely.ab.event.internal.payload.Visitor;
+
+import javax.annotation.Nonnull;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Writes an {@link EventBatch} as UTF-8 encoded JSON without going through a general purpose JSON library.
+ *
+ * The output has the same shape as the {@link Serializer}s returned by {@link DefaultJsonSerializer}: snake_case
+ * field names with null fields left out. The batch is written straight into a per-thread buffer that is reused
+ * across calls, and the envelope fields shared by all batches of a project (account_id, project_id, revision,
+ * client_name, client_version, anonymize_ip and enrich_decisions) are encoded once and reused for as long as they
+ * stay the same. Envelopes are kept in a small table keyed by project and revision, so clients of different projects
+ * in the same process don't evict each other's.
+ */
+public final class EventBatchWriter {
+
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+    // buffers grown past this size by an unusually large batch are not kept for reuse
+    private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+    // a power of two
+    private static final int ENVELOPE_SLOTS = 16;
+
+    private static final byte[] NULL = ascii("null");
+    private static final byte[] TRUE = ascii("true");
+    private static final byte[] FALSE = ascii("false");
+    private static final byte[] HEX_DIGITS = ascii("0123456789abcdef");
+
+    private static final byte[] VISITORS = fieldName("visitors");
+    private static final byte[] VISITOR_ID = fieldName("visitor_id");
+    private static final byte[] SESSION_ID = fieldName("session_id");
+    private static final byte[] ATTRIBUTES = fieldName("attributes");
+    private static final byte[] SNAPSHOTS = fieldName("snapshots");
+    private static final byte[] ENTITY_ID = fieldName("entity_id");
+    private static final byte[] KEY = fieldName("key");
+    private static final byte[] TYPE = fieldName("type");
+    private static final byte[] VALUE = fieldName("value");
+    private static final byte[] DECISIONS = fieldName("decisions");
+    private static final byte[] EVENTS = fieldName("events");
+    private static final byte[] ACTIVATION_TIMESTAMP = fieldName("activation_timestamp");
+    private static final byte[] CAMPAIGN_ID = fieldName("campaign_id");
+    private static final byte[] EXPERIMENT_ID = fieldName("experiment_id");
+    private static final byte[] VARIATION_ID = fieldName("variation_id");
+    private static final byte[] IS_CAMPAIGN_HOLDBACK = fieldName("is_campaign_holdback");
+    private static final byte[] TIMESTAMP = fieldName("timestamp");
+    private static final byte[] UUID = fieldName("uuid");
+    private static final byte[] QUANTITY = fieldName("quantity");
+    private static final byte[] REVENUE = fieldName("revenue");
+    private static final byte[] TAGS = fieldName("tags");
+
+    private static final ThreadLocal<Buffer> buffers = ThreadLocal.withInitial(() -> new Buffer(INITIAL_BUFFER_SIZE));
+
+    private static final AtomicReferenceArray<Envelope> envelopes = new AtomicReferenceArray<Envelope>(ENVELOPE_SLOTS);
+
+    private EventBatchWriter() {
+    }
+
+    /**
+     * @return the JSON encoding of the batch in UTF-8.
+     */
+    @Nonnull
+    public static byte[] write(@Nonnull EventBatch eventBatch) {
+        Buffer buffer = buffers.get();
+        buffer.reset();
+
+        byte[] envelope = envelope(eventBatch);
+        buffer.write('{');
+        buffer.write(envelope);
+
+        List<Visitor> visitors = eventBatch.getVisitors();
+        if (visitors != null) {
+            if (envelope.length > 0) {
+                buffer.write(',');
+            }
+            buffer.write(VISITORS);
+            buffer.write('[');
+            for (int i = 0; i < visitors.size(); i++) {
+                if (i > 0) {
+                    buffer.write(',');
+                }
+                writeVisitor(buffer, visitors.get(i));
+            }
+            buffer.write(']');
+        }
+        buffer.write('}');
+
+        byte[] bytes = buffer.toByteArray();
+        if (buffer.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+            buffers.remove();
+        }
+
+        return bytes;
+    }
+
+    //======== Envelope ========//
+
+    private static byte[] envelope(EventBatch eventBatch) {
+        int slot = (31 * Objects.hashCode(eventBatch.getProjectId()) + Objects.hashCode(eventBatch.getRevision()))
+            & (ENVELOPE_SLOTS - 1);
+        Envelope envelope = envelopes.get(slot);
+        if (envelope != null && envelope.matches(eventBatch)) {
+            return envelope.encoded;
+        }
+
+        envelope = new Envelope(eventBatch);
+        envelopes.set(slot, envelope);
+        return envelope.encoded;
+    }
+
+    /**
+     * The fields of an {@link EventBatch} other than its visitors, with their encoding.
+     */
+    private static final class Envelope {
+
+        private final String accountId;
+        private final Boolean enrichDecisions;
+        private final Boolean anonymizeIp;
+        private final String clientName;
+        private final String clientVersion;
+        private final String projectId;
+        private final String revision;
+        private final byte[] encoded;
+
+        private Envelope(EventBatch eventBatch) {
+            this.accountId = eventBatch.getAccountId();
+            this.enrichDecisions = eventBatch.getEnrichDecisions();
+            this.anonymizeIp = eventBatch.getAnonymizeIp();
+            this.clientName = eventBatch.getClientName();
+            this.clientVersion = eventBatch.getClientVersion();
+            this.projectId = eventBatch.getProjectId();
+            this.revision = eventBatch.getRevision();
+
+            Buffer buffer = new Buffer(256);
+            boolean first = writeField(buffer, true, "account_id", accountId);
+            first = writeField(buffer, first, "enrich_decisions", enrichDecisions);
+            first = writeField(buffer, first, "anonymize_ip", anonymizeIp);
+            first = writeField(buffer, first, "client_name", clientName);
+            first = writeField(buffer, first, "client_version", clientVersion);
+            first = writeField(buffer, first, "project_id", projectId);
+            writeField(buffer, first, "revision", revision);
+            this.encoded = buffer.toByteArray();
+        }
+
+        private boolean matches(EventBatch eventBatch) {
+            return Objects.equals(accountId, eventBatch.getAccountId()) &&
+                Objects.equals(enrichDecisions, eventBatch.getEnrichDecisions()) &&
+                Objects.equals(anonymizeIp, eventBatch.getAnonymizeIp()) &&
+                Objects.equals(clientName, eventBatch.getClientName()) &&
+                Objects.equals(clientVersion, eventBatch.getClientVersion()) &&
+                Objects.equals(projectId, eventBatch.getProjectId()) &&
+                Objects.equals(revision, eventBatch.getRevision());
+        }
+
+        private static boolean writeField(Buffer buffer, boolean first, String name, Object value) {
+            if (value == null) {
+                return first;
+            }
+
+            if (!first) {
+                buffer.write(',');
+            }
+            buffer.write(fieldName(name));
+            writeValue(buffer, value);
+            return false;
+        }
+    }
+
+    //======== Payload objects ========//
+
+    private static void writeVisitor(Buffer buffer, Visitor visitor) {
+        buffer.write('{');
+        boolean first = field(buffer, true, VISITOR_ID, visitor.getVisitorId());
+        first = field(buffer, first, SESSION_ID, visitor.getSessionId());
+
+        List<Attribute> attributes = visitor.getAttributes();
+        if (attributes != null) {
+            first = fieldName(buffer, first, ATTRIBUTES);
+            buffer.write('[');
+            for (int i = 0; i < attributes.size(); i++) {
+                if (i > 0) {
+                    buffer.write(',');
+                }
+                writeAttribute(buffer, attributes.get(i));
+            }
+            buffer.write(']');
+        }
+
+        List<Snapshot> snapshots = visitor.getSnapshots();
+        if (snapshots != null) {
+            fieldName(buffer, first, SNAPSHOTS);
+            buffer.write('[');
+            for (int i = 0; i < snapshots.size(); i++) {
+                if (i > 0) {
+                    buffer.write(',');
+                }
+                writeSnapshot(buffer, snapshots.get(i));
+            }
+            buffer.write(']');
+        }
+        buffer.write('}');
+    }
+
+    private static void writeAttribute(Buffer buffer, Attribute attribute) {
+        buffer.write('{');
+        boolean first = field(buffer, true, ENTITY_ID, attribute.getEntityId());
+        first = field(buffer, first, KEY, attribute.getKey());
+        first = field(buffer, first, TYPE, attribute.getType());
+        field(buffer, first, VALUE, attribute.getValue());
+        buffer.write('}');
+    }
+
+    private static void writeSnapshot(Buffer buffer, Snapshot snapshot) {
+        buffer.write('{');
+        boolean first = true;
+
+        List<Decision> decisions = snapshot.getDecisions();
+        if (decisions != null) {
+            first = fieldName(buffer, first, DECISIONS);
+            buffer.write('[');
+            for (int i = 0; i < decisions.size(); i++) {
+                if (i > 0) {
+                    buffer.write(',');
+                }
+                writeDecision(buffer, decisions.get(i));
+            }
+            buffer.write(']');
+        }
+
+        List<Event> events = snapshot.getEvents();
+        if (events != null) {
+            first = fieldName(buffer, first, EVENTS);
+            buffer.write('[');
+            for (int i = 0; i < events.size(); i++) {
+                if (i > 0) {
+                    buffer.write(',');
+                }
+                writeEvent(buffer, events.get(i));
+            }
+            buffer.write(']');
+        }
+
+        field(buffer, first, ACTIVATION_TIMESTAMP, snapshot.getActivationTimestamp());
+        buffer.write('}');
+    }
+
+    private static void writeDecision(Buffer buffer, Decision decision) {
+        buffer.write('{');
+        boolean first = field(buffer, true, CAMPAIGN_ID, decision.getCampaignId());
+        first = field(buffer, first, EXPERIMENT_ID, decision.getExperimentId());
+        first = field(buffer, first, VARIATION_ID, decision.getVariationId());
+        fieldName(buffer, first, IS_CAMPAIGN_HOLDBACK);
+        buffer.write(decision.getIsCampaignHoldback() ? TRUE : FALSE);
+        buffer.write('}');
+    }
+
+    private static void writeEvent(Buffer buffer, Event event) {
+        buffer.write('{');
+        fieldName(buffer, true, TIMESTAMP);
+        buffer.writeAscii(Long.toString(event.getTimestamp()));
+        boolean first = field(buffer, false, UUID, event.getUuid());
+        first = field(buffer, first, ENTITY_ID, event.getEntityId());
+        first = field(buffer, first, KEY, event.getKey());
+        first = field(buffer, first, QUANTITY, event.getQuantity());
+        first = field(buffer, first, REVENUE, event.getRevenue());
+        first = field(buffer, first, TAGS, event.getTags());
+        first = field(buffer, first, TYPE, event.getType());
+        field(buffer, first, VALUE, event.getValue());
+        buffer.write('}');
+    }
+
+    //======== JSON values ========//
+
+    /**
+     * Writes the field when its value is not null.
+     *
+     * @return whether no field has been written to the object yet.
+     */
+    private static boolean field(Buffer buffer, boolean first, byte[] name, Object value) {
+        if (value == null) {
+            return first;
+        }
+
+        fieldName(buffer, first, name);
+        writeValue(buffer, value);
+        return false;
+    }
+
+    private static boolean fieldName(Buffer buffer, boolean first, byte[] name) {
+        if (!first) {
+            buffer.write(',');
+        }
+        buffer.write(name);
+        return false;
+    }
+
+    private static void writeValue(Buffer buffer, Object value) {
+        if (value == null) {
+            buffer.write(NULL);
+        } else if (value instanceof String) {
+            writeString(buffer, (String) value);
+        } else if (value instanceof Boolean) {
+            buffer.write((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Number) {
+            writeNumber(buffer, (Number) value);
+        } else if (value instanceof Map) {
+            buffer.write('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!first) {
+                    buffer.write(',');
+                }
+                writeString(buffer, String.valueOf(entry.getKey()));
+                buffer.write(':');
+                writeValue(buffer, entry.getValue());
+                first = false;
+            }
+            buffer.write('}');
+        } else if (value instanceof Iterable) {
+            buffer.write('[');
+            boolean first = true;
+            for (Object element : (Iterable<?>) value) {
+                if (!first) {
+                    buffer.write(',');
+                }
+                writeValue(buffer, element);
+                first = false;
+            }
+            buffer.write(']');
+        } else if (value instanceof Object[]) {
+            writeValue(buffer, Arrays.asList((Object[]) value));
+        } else {
+            writeString(buffer, value.toString());
+        }
+    }
+
+    private static void writeNumber(Buffer buffer, Number number) {
+        if ((number instanceof Double && !Double.isFinite(number.doubleValue())) ||
+            (number instanceof Float && !Float.isFinite(number.floatValue()))) {
+            // not representable as a JSON number, quoted like the Jackson serializer does
+            writeString(buffer, number.toString());
+            return;
+        }
+
+        buffer.writeAscii(number.toString());
+    }
+
+    private static void writeString(Buffer buffer, String value) {
+        buffer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (c == '"' || c == '\\') {
+                    buffer.write('\\');
+                    buffer.write(c);
+                } else if (c >= 0x20) {
+                    buffer.write(c);
+                } else {
+                    writeControlCharacter(buffer, c);
+                }
+            } else if (c < 0x800) {
+                buffer.write(0xC0 | (c >> 6));
+                buffer.write(0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer.write(0xF0 | (codePoint >> 18));
+                buffer.write(0x80 | ((codePoint >> 12) & 0x3F));
+                buffer.write(0x80 | ((codePoint >> 6) & 0x3F));
+                buffer.write(0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // unpaired surrogate, replaced like String.getBytes(UTF_8) does
+                buffer.write('?');
+            } else {
+                buffer.write(0xE0 | (c >> 12));
+                buffer.write(0x80 | ((c >> 6) & 0x3F));
+                buffer.write(0x80 | (c & 0x3F));
+            }
+        }
+        buffer.write('"');
+    }
+
+    private static void writeControlCharacter(Buffer buffer, char c) {
+        buffer.write('\\');
+        switch (c) {
+            case '\b':
+                buffer.write('b');
+                break;
+            case '\f':
+                buffer.write('f');
+                break;
+            case '\n':
+                buffer.write('n');
+                break;
+            case '\r':
+                buffer.write('r');
+                break;
+            case '\t':
+                buffer.write('t');
+                break;
+            default:
+                buffer.write('u');
+                buffer.write('0');
+                buffer.write('0');
+                buffer.write(HEX_DIGITS[c >> 4]);
+                buffer.write(HEX_DIGITS[c & 0xF]);
+        }
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] fieldName(String name) {
+        return ascii("\"" + name + "\":");
+    }
+
+    //======== Helper classes ========//
+
+    /**
+     * Growable byte buffer, like {@link java.io.ByteArrayOutputStream} without the synchronization.
+     */
+    private static final class Buffer {
+
+        private byte[] bytes;
+        private int size;
+
+        private Buffer(int capacity) {
+            this.bytes = new byte[capacity];
+        }
+
+        private void write(int b) {
+            ensureCapacity(size + 1);
+            bytes[size++] = (byte) b;
+        }
+
+        private void write(byte[] b) {
+            ensureCapacity(size + b.length);
+            System.arraycopy(b, 0, bytes, size, b.length);
+            size += b.length;
+        }
+
+        private void writeAscii(String value) {
+            ensureCapacity(size + value.length());
+            for (int i = 0; i < value.length(); i++) {
+                bytes[size++] = (byte) value.charAt(i);
+            }
+        }
+
+        private void reset() {
+            size = 0;
+        }
+
+        private int capacity() {
+            return bytes.length;
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length * 2));
+            }
+        }
+    }
+}
@@ -19,6 +19,8 @@ package com.optimizely.ab.internal;
 
 public class AttributesUtil {
 
+    private static final double MAX_NUMBER_LIMIT = Math.pow(2, 53);
+
     /**
      * Validate that value is not infinite, NAN or greater than Math.pow(2, 53).
      *
@@ -27,12 +29,12 @@ public class AttributesUtil {
      */
     public static boolean isValidNumber(Object value) {
         if (value instanceof Integer) {
-            return Math.abs((Integer) value) <= Math.pow(2, 53);
+            return Math.abs((Integer) value) <= MAX_NUMBER_LIMIT;
         } else if (value instanceof Double || value instanceof Float) {
-            Double doubleValue = ((Number) value).doubleValue();
-            return !(doubleValue.isNaN() || doubleValue.isInfinite() || Math.abs(doubleValue) > Math.pow(2, 53));
+            double doubleValue = ((Number) value).doubleValue();
+            return !(Double.isNaN(doubleValue) || Double.isInfinite(doubleValue) || Math.abs(doubleValue) > MAX_NUMBER_LIMIT);
         } else if (value instanceof Long) {
-            return Math.abs((Long) value) <= Math.pow(2, 53);
+            return Math.abs((Long) value) <= MAX_NUMBER_LIMIT;
         }
         return false;
     }
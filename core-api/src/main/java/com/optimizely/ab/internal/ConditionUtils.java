@@ -18,6 +18,7 @@ package com.optimizely.ab.internal;
 
 import com.google.gson.internal.LinkedTreeMap;
 import com.optimizely.ab.config.audience.AndCondition;
+import com.optimizely.ab.config.audience.Audience;
 import com.optimizely.ab.config.audience.AudienceIdCondition;
 import com.optimizely.ab.config.audience.Condition;
 import com.optimizely.ab.config.audience.NotCondition;
@@ -224,4 +225,42 @@ public class ConditionUtils {
 
         return condition;
     }
+
+    /**
+     * Returns a copy of the condition tree where every {@link AudienceIdCondition} is linked to its
+     * {@link Audience} so evaluation does not need to look the audience up in the ProjectConfig.
+     * Conditions that do not reference audiences are returned as is.
+     *
+     * @param condition         the parsed audience conditions of an experiment
+     * @param audienceIdMapping the audiences of the datafile by id
+     * @return the resolved condition tree
+     */
+    static public Condition resolveAudienceIdConditions(Condition condition, Map<String, Audience> audienceIdMapping) {
+        if (condition instanceof AudienceIdCondition) {
+            String audienceId = ((AudienceIdCondition) condition).getAudienceId();
+            return new AudienceIdCondition(audienceId, audienceIdMapping.get(audienceId));
+        } else if (condition instanceof AndCondition) {
+            return new AndCondition(resolveAudienceIdConditions(((AndCondition) condition).getConditions(), audienceIdMapping));
+        } else if (condition instanceof OrCondition) {
+            return new OrCondition(resolveAudienceIdConditions(((OrCondition) condition).getConditions(), audienceIdMapping));
+        } else if (condition instanceof NotCondition) {
+            Condition notCondition = ((NotCondition) condition).getCondition();
+            return new NotCondition(notCondition == null ? null : resolveAudienceIdConditions(notCondition, audienceIdMapping));
+        }
+
+        return condition;
+    }
+
+    static private List<Condition> resolveAudienceIdConditions(List<Condition> conditions, Map<String, Audience> audienceIdMapping) {
+        if (conditions == null) {
+            return null;
+        }
+
+        List<Condition> resolvedConditions = new ArrayList<Condition>(conditions.size());
+        for (Condition condition : conditions) {
+            resolvedConditions.add(resolveAudienceIdConditions(condition, audienceIdMapping));
+        }
+
+        return resolvedConditions;
+    }
 }
@@ -18,15 +18,13 @@ package com.optimizely.ab.internal;
 
 import com.optimizely.ab.config.Experiment;
 import com.optimizely.ab.config.ProjectConfig;
-import com.optimizely.ab.config.audience.AudienceIdCondition;
+import com.optimizely.ab.config.audience.AudienceEvaluationCache;
 import com.optimizely.ab.config.audience.Condition;
-import com.optimizely.ab.config.audience.OrCondition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -64,11 +62,28 @@ public final class ExperimentUtils {
     public static boolean isUserInExperiment(@Nonnull ProjectConfig projectConfig,
                                              @Nonnull Experiment experiment,
                                              @Nonnull Map<String, ?> attributes) {
+        return isUserInExperiment(projectConfig, experiment, attributes, null);
+    }
+
+    /**
+     * Determines whether a user satisfies audience conditions for the experiment, reusing the results of audiences
+     * already evaluated for the user.
+     *
+     * @param projectConfig the current projectConfig
+     * @param experiment    the experiment we are evaluating audiences for
+     * @param attributes    the attributes of the user
+     * @param cache         the audience results of the current decision, or null to evaluate every audience
+     * @return whether the user meets the criteria for the experiment
+     */
+    public static boolean isUserInExperiment(@Nonnull ProjectConfig projectConfig,
+                                             @Nonnull Experiment experiment,
+                                             @Nonnull Map<String, ?> attributes,
+                                             @Nullable AudienceEvaluationCache cache) {
         if (experiment.getAudienceConditions() != null) {
-            Boolean resolveReturn = evaluateAudienceConditions(projectConfig, experiment, attributes);
+            Boolean resolveReturn = evaluateAudienceConditions(projectConfig, experiment, attributes, cache);
             return resolveReturn == null ? false : resolveReturn;
         } else {
-            Boolean resolveReturn = evaluateAudience(projectConfig, experiment, attributes);
+            Boolean resolveReturn = evaluateAudience(projectConfig, experiment, attributes, cache);
             return Boolean.TRUE.equals(resolveReturn);
         }
     }
@@ -77,6 +92,14 @@ public final class ExperimentUtils {
     public static Boolean evaluateAudience(@Nonnull ProjectConfig projectConfig,
                                            @Nonnull Experiment experiment,
                                            @Nonnull Map<String, ?> attributes) {
+        return evaluateAudience(projectConfig, experiment, attributes, null);
+    }
+
+    @Nullable
+    private static Boolean evaluateAudience(@Nonnull ProjectConfig projectConfig,
+                                            @Nonnull Experiment experiment,
+                                            @Nonnull Map<String, ?> attributes,
+                                            @Nullable AudienceEvaluationCache cache) {
         List<String> experimentAudienceIds = experiment.getAudienceIds();
 
         // if there are no audiences, ALL users should be part of the experiment
@@ -85,17 +108,11 @@ public final class ExperimentUtils {
             return true;
         }
 
-        List<Condition> conditions = new ArrayList<>();
-        for (String audienceId : experimentAudienceIds) {
-            AudienceIdCondition condition = new AudienceIdCondition(audienceId);
-            conditions.add(condition);
-        }
-
-        OrCondition implicitOr = new OrCondition(conditions);
+        Condition implicitOr = experiment.getImplicitAudienceCondition();
 
-        logger.debug("Evaluating audiences for experiment \"{}\": \"{}\"", experiment.getKey(), conditions);
+        logger.debug("Evaluating audiences for experiment \"{}\": \"{}\"", experiment.getKey(), experimentAudienceIds);
 
-        Boolean result = implicitOr.evaluate(projectConfig, attributes);
+        Boolean result = evaluate(implicitOr, projectConfig, attributes, cache);
 
         logger.info("Audiences for experiment {} collectively evaluated to {}", experiment.getKey(), result);
 
@@ -106,12 +123,20 @@ public final class ExperimentUtils {
     public static Boolean evaluateAudienceConditions(@Nonnull ProjectConfig projectConfig,
                                                      @Nonnull Experiment experiment,
                                                      @Nonnull Map<String, ?> attributes) {
+        return evaluateAudienceConditions(projectConfig, experiment, attributes, null);
+    }
+
+    @Nullable
+    private static Boolean evaluateAudienceConditions(@Nonnull ProjectConfig projectConfig,
+                                                      @Nonnull Experiment experiment,
+                                                      @Nonnull Map<String, ?> attributes,
+                                                      @Nullable AudienceEvaluationCache cache) {
 
         Condition conditions = experiment.getAudienceConditions();
         if (conditions == null) return null;
-        logger.debug("Evaluating audiences for experiment \"{}\": \"{}\"", experiment.getKey(), conditions.toString());
+        logger.debug("Evaluating audiences for experiment \"{}\": \"{}\"", experiment.getKey(), conditions);
         try {
-            Boolean result = conditions.evaluate(projectConfig, attributes);
+            Boolean result = evaluate(conditions, projectConfig, attributes, cache);
             logger.info("Audiences for experiment {} collectively evaluated to {}", experiment.getKey(), result);
             return result;
         } catch (Exception e) {
@@ -120,5 +145,12 @@ public final class ExperimentUtils {
         }
     }
 
-
+    @Nullable
+    private static Boolean evaluate(@Nonnull Condition condition,
+                                    @Nonnull ProjectConfig projectConfig,
+                                    @Nonnull Map<String, ?> attributes,
+                                    @Nullable AudienceEvaluationCache cache) {
+        return cache == null ?
+            condition.evaluate(projectConfig, attributes) : condition.evaluate(projectConfig, attributes, cache);
+    }
 }
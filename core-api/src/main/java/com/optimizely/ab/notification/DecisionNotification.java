@@ -25,12 +25,14 @@ import com.optimizely.ab.config.Variation;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
  * DecisionNotification encapsulates the arguments and responses when using the following methods:
  *
  * activate {@link com.optimizely.ab.Optimizely#activate}
+ * getAllFeatureDecisions {@link com.optimizely.ab.Optimizely#getAllFeatureDecisions}
  * getEnabledFeatures {@link com.optimizely.ab.Optimizely#getEnabledFeatures}
  * getFeatureVariableBoolean {@link com.optimizely.ab.Optimizely#getFeatureVariableBoolean}
  * getFeatureVariableDouble {@link com.optimizely.ab.Optimizely#getFeatureVariableDouble}
@@ -333,4 +335,73 @@ public final class DecisionNotification {
                 decisionInfo);
         }
     }
+
+    public static AllFeaturesDecisionNotificationBuilder newAllFeaturesDecisionNotificationBuilder() {
+        return new AllFeaturesDecisionNotificationBuilder();
+    }
+
+    /**
+     * Builds a single notification for all the feature flags decided in one call. The decisionInfo maps
+     * {@link #FEATURES} to the decision info of each feature by feature key.
+     */
+    public static class AllFeaturesDecisionNotificationBuilder {
+
+        public static final String FEATURES = "features";
+        public static final String FEATURE_ENABLED = "featureEnabled";
+        public static final String SOURCE = "source";
+        public static final String SOURCE_INFO = "sourceInfo";
+        public static final String VARIABLE_VALUES = "variableValues";
+
+        private String userId;
+        private Map<String, ?> attributes;
+        private Map<String, Object> features = new LinkedHashMap<>();
+
+        protected AllFeaturesDecisionNotificationBuilder() {
+        }
+
+        public AllFeaturesDecisionNotificationBuilder withUserId(String userId) {
+            this.userId = userId;
+            return this;
+        }
+
+        public AllFeaturesDecisionNotificationBuilder withAttributes(Map<String, ?> attributes) {
+            this.attributes = attributes;
+            return this;
+        }
+
+        public AllFeaturesDecisionNotificationBuilder withFeature(String featureKey,
+                                                                  boolean featureEnabled,
+                                                                  FeatureDecision featureDecision,
+                                                                  Map<String, ?> variableValues) {
+            if (featureKey == null) {
+                throw new OptimizelyRuntimeException("featureKey not set");
+            }
+
+            SourceInfo sourceInfo = new RolloutSourceInfo();
+            FeatureDecision.DecisionSource source = FeatureDecision.DecisionSource.ROLLOUT;
+            if (featureDecision != null && FeatureDecision.DecisionSource.FEATURE_TEST.equals(featureDecision.decisionSource)) {
+                sourceInfo = new FeatureTestSourceInfo(featureDecision.experiment.getKey(), featureDecision.variation.getKey());
+                source = featureDecision.decisionSource;
+            }
+
+            Map<String, Object> featureInfo = new HashMap<>();
+            featureInfo.put(FEATURE_ENABLED, featureEnabled);
+            featureInfo.put(SOURCE, source.toString());
+            featureInfo.put(SOURCE_INFO, sourceInfo.get());
+            featureInfo.put(VARIABLE_VALUES, variableValues);
+            features.put(featureKey, featureInfo);
+            return this;
+        }
+
+        public DecisionNotification build() {
+            Map<String, Object> decisionInfo = new HashMap<>();
+            decisionInfo.put(FEATURES, features);
+
+            return new DecisionNotification(
+                NotificationCenter.DecisionNotificationType.ALL_FEATURES.toString(),
+                userId,
+                attributes,
+                decisionInfo);
+        }
+    }
 }
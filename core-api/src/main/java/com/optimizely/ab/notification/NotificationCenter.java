@@ -53,7 +53,8 @@ public class NotificationCenter {
         AB_TEST("ab-test"),
         FEATURE("feature"),
         FEATURE_TEST("feature-test"),
-        FEATURE_VARIABLE("feature-variable");
+        FEATURE_VARIABLE("feature-variable"),
+        ALL_FEATURES("all-features");
 
         private final String key;
 
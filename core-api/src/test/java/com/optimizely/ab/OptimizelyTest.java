@@ -24,8 +24,10 @@ import com.optimizely.ab.config.*;
 import com.optimizely.ab.error.NoOpErrorHandler;
 import com.optimizely.ab.error.RaiseExceptionErrorHandler;
 import com.optimizely.ab.event.EventHandler;
+import com.optimizely.ab.event.EventProcessor;
 import com.optimizely.ab.event.LogEvent;
 import com.optimizely.ab.event.internal.EventFactory;
+import com.optimizely.ab.event.internal.UserEvent;
 import com.optimizely.ab.internal.LogbackVerifier;
 import com.optimizely.ab.internal.ControlAttribute;
 import com.optimizely.ab.notification.*;
@@ -42,6 +44,7 @@ import org.mockito.junit.MockitoRule;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -230,6 +233,43 @@ public class OptimizelyTest {
         optimizely.close();
     }
 
+    @Test
+    public void testCloseEventProcessor() throws Exception {
+        EventProcessor mockAutoCloseableEventProcessor = mock(
+            EventProcessor.class,
+            withSettings().extraInterfaces(AutoCloseable.class)
+        );
+
+        Optimizely optimizely = optimizelyBuilder
+            .withEventProcessor(mockAutoCloseableEventProcessor)
+            .build();
+
+        optimizely.close();
+
+        verify((AutoCloseable) mockAutoCloseableEventProcessor).close();
+    }
+
+    /**
+     * Verify that events are handed to the configured {@link EventProcessor} rather than the {@link EventHandler}.
+     */
+    @Test
+    public void activateAndTrackWithEventProcessor() throws Exception {
+        EventProcessor mockEventProcessor = mock(EventProcessor.class);
+        Optimizely optimizely = optimizelyBuilder
+            .withEventHandler(mockEventHandler)
+            .withEventProcessor(mockEventProcessor)
+            .build();
+
+        Experiment activatedExperiment = validProjectConfig.getExperiments().get(0);
+        assertNotNull(optimizely.activate(activatedExperiment.getKey(), testUserId));
+
+        EventType eventType = validProjectConfig.getEventTypes().get(0);
+        optimizely.track(eventType.getKey(), testUserId);
+
+        verify(mockEventProcessor, times(2)).process(any(UserEvent.class));
+        verify(mockEventHandler, never()).dispatchEvent(any(LogEvent.class));
+    }
+
     //======== activate tests ========//
 
     /**
@@ -3291,6 +3331,36 @@ public class OptimizelyTest {
         eventHandler.expectImpression("1786133852", "1619235542", genericUserId);
     }
 
+    /**
+     * Verify {@link Optimizely#getAllFeatureDecisions(String, Map)} enables the same feature flags as
+     * {@link Optimizely#getEnabledFeatures(String, Map)} and sends a single decision notification.
+     */
+    @Test
+    public void getAllFeatureDecisionsWithValidUserId() throws Exception {
+        assumeTrue(datafileVersion >= Integer.parseInt(ProjectConfig.Version.V4.toString()));
+
+        Optimizely optimizely = optimizelyBuilder.build();
+        final List<DecisionNotification> decisionNotifications = new ArrayList<>();
+        int notificationId = optimizely.addDecisionNotificationHandler(decisionNotifications::add);
+
+        Map<String, FeatureFlagDecision> featureFlagDecisions =
+            optimizely.getAllFeatureDecisions(genericUserId, Collections.emptyMap(), false);
+
+        assertEquals(1, decisionNotifications.size());
+        assertEquals(NotificationCenter.DecisionNotificationType.ALL_FEATURES.toString(),
+            decisionNotifications.get(0).getType());
+        assertTrue(optimizely.notificationCenter.removeNotificationListener(notificationId));
+
+        List<String> enabledFeatures = optimizely.getEnabledFeatures(genericUserId, Collections.emptyMap(), false);
+        List<FeatureFlag> featureFlags = optimizely.getProjectConfig().getFeatureFlags();
+        assertEquals(featureFlags.size(), featureFlagDecisions.size());
+        for (FeatureFlag featureFlag : featureFlags) {
+            FeatureFlagDecision featureFlagDecision = featureFlagDecisions.get(featureFlag.getKey());
+            assertEquals(enabledFeatures.contains(featureFlag.getKey()), featureFlagDecision.isFeatureEnabled());
+            assertEquals(featureFlag.getVariables().size(), featureFlagDecision.getVariableValues().size());
+        }
+    }
+
     /**
      * Verify {@link Optimizely#getEnabledFeatures(String, Map)} calls into
      * {@link Optimizely#isFeatureEnabled(String, String, Map)} for each featureFlag sending
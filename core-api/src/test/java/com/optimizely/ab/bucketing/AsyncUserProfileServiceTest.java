@@ -0,0 +1,235 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.bucketing;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class AsyncUserProfileServiceTest {
+
+    private static final long TIMEOUT_MS = 5000;
+
+    private final CapturingUserProfileService userProfileService = new CapturingUserProfileService();
+    private AsyncUserProfileService asyncUserProfileService;
+
+    @After
+    public void tearDown() throws Exception {
+        if (asyncUserProfileService != null) {
+            asyncUserProfileService.close();
+        }
+    }
+
+    @Test
+    public void testSavesAreWrittenInBatches() throws Exception {
+        asyncUserProfileService = build(2, TimeUnit.HOURS.toMillis(1));
+        asyncUserProfileService.save(userProfile("user1", "exp1", "var1"));
+        asyncUserProfileService.save(userProfile("user2", "exp1", "var2"));
+
+        List<Map<String, Object>> batch = userProfileService.poll();
+        assertNotNull("batch was not written after reaching the batch size", batch);
+        assertEquals(2, batch.size());
+        assertEquals("user1", batch.get(0).get(UserProfileService.userIdKey));
+        assertEquals("user2", batch.get(1).get(UserProfileService.userIdKey));
+    }
+
+    @Test
+    public void testLatestProfileOfUserIsWrittenOnce() throws Exception {
+        asyncUserProfileService = build(10, TimeUnit.HOURS.toMillis(1));
+        asyncUserProfileService.save(userProfile("user1", "exp1", "var1"));
+        Map<String, Object> latest = userProfile("user1", "exp2", "var2");
+        asyncUserProfileService.save(latest);
+        asyncUserProfileService.flush();
+
+        List<Map<String, Object>> batch = userProfileService.poll();
+        assertEquals(Collections.singletonList(latest), batch);
+        assertNull(userProfileService.poll(100));
+    }
+
+    @Test
+    public void testLookupSeesPendingSave() throws Exception {
+        asyncUserProfileService = build(10, TimeUnit.HOURS.toMillis(1));
+        Map<String, Object> pending = userProfile("user1", "exp1", "var1");
+        asyncUserProfileService.save(pending);
+
+        assertEquals(pending, asyncUserProfileService.lookup("user1"));
+        assertEquals(Collections.singletonMap("user1", pending),
+            asyncUserProfileService.lookupAll(Collections.singletonList("user1")));
+        assertEquals(0, userProfileService.lookupCount.get());
+    }
+
+    @Test
+    public void testConcurrentLookupsAreCoalesced() throws Exception {
+        asyncUserProfileService = build(10, TimeUnit.HOURS.toMillis(1));
+        userProfileService.lookupLatch = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Map<String, Object>> first = executor.submit(() -> asyncUserProfileService.lookup("user1"));
+            while (userProfileService.lookupCount.get() == 0) {
+                Thread.sleep(1);
+            }
+            Future<Map<String, Object>> second = executor.submit(() -> asyncUserProfileService.lookup("user1"));
+            Thread.sleep(50);
+            userProfileService.lookupLatch.countDown();
+
+            assertEquals(first.get(TIMEOUT_MS, TimeUnit.MILLISECONDS), second.get(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+            assertEquals(1, userProfileService.lookupCount.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testDrainOnClose() throws Exception {
+        asyncUserProfileService = build(10, TimeUnit.HOURS.toMillis(1));
+        asyncUserProfileService.save(userProfile("user1", "exp1", "var1"));
+
+        asyncUserProfileService.close();
+        assertFalse(asyncUserProfileService.isRunning());
+
+        List<Map<String, Object>> batch = userProfileService.poll();
+        assertNotNull(batch);
+        assertEquals(1, batch.size());
+
+        // once closed profiles are saved synchronously
+        asyncUserProfileService.save(userProfile("user2", "exp1", "var1"));
+        assertEquals(1, userProfileService.poll(0).size());
+    }
+
+    @Test
+    public void testSavesSynchronouslyWhenQueueIsFull() throws Exception {
+        asyncUserProfileService = AsyncUserProfileService.builder()
+            .withUserProfileService(userProfileService)
+            .withSaveQueue(new LinkedBlockingQueue<>(1))
+            .withBatchSize(10)
+            .withFlushInterval(TimeUnit.HOURS.toMillis(1), TimeUnit.MILLISECONDS)
+            .build(false);
+        asyncUserProfileService.start();
+
+        asyncUserProfileService.save(userProfile("user1", "exp1", "var1"));
+        asyncUserProfileService.save(userProfile("user2", "exp1", "var1"));
+        asyncUserProfileService.save(userProfile("user3", "exp1", "var1"));
+
+        asyncUserProfileService.close();
+        int saved = 0;
+        List<Map<String, Object>> batch;
+        while ((batch = userProfileService.poll(0)) != null) {
+            saved += batch.size();
+        }
+        assertEquals(3, saved);
+    }
+
+    @Test
+    public void testFailedSaveIsRetried() throws Exception {
+        asyncUserProfileService = build(1, TimeUnit.HOURS.toMillis(1));
+        userProfileService.failuresLeft.set(1);
+        Map<String, Object> pending = userProfile("user1", "exp1", "var1");
+        asyncUserProfileService.save(pending);
+
+        while (userProfileService.failuresLeft.get() > 0) {
+            Thread.sleep(1);
+        }
+        // the profile stays pending after the failure
+        assertEquals(pending, asyncUserProfileService.lookup("user1"));
+
+        asyncUserProfileService.flush();
+        assertEquals(Collections.singletonList(pending), userProfileService.poll());
+        assertEquals(0, asyncUserProfileService.getDroppedSaveCount());
+    }
+
+    @Test
+    public void testFailedSaveIsDroppedAfterMaxAttempts() throws Exception {
+        asyncUserProfileService = build(10, TimeUnit.HOURS.toMillis(1));
+        userProfileService.failuresLeft.set(Integer.MAX_VALUE);
+        asyncUserProfileService.save(userProfile("user1", "exp1", "var1"));
+
+        asyncUserProfileService.close();
+        assertNull(userProfileService.poll(0));
+        assertEquals(Integer.MAX_VALUE - AsyncUserProfileService.MAX_SAVE_ATTEMPTS, userProfileService.failuresLeft.get());
+        assertEquals(1, asyncUserProfileService.getDroppedSaveCount());
+    }
+
+    private AsyncUserProfileService build(int batchSize, long flushInterval) {
+        return AsyncUserProfileService.builder()
+            .withUserProfileService(userProfileService)
+            .withBatchSize(batchSize)
+            .withFlushInterval(flushInterval, TimeUnit.MILLISECONDS)
+            .build();
+    }
+
+    private static Map<String, Object> userProfile(String userId, String experimentId, String variationId) {
+        Map<String, Decision> decisions = new HashMap<String, Decision>();
+        decisions.put(experimentId, new Decision(variationId));
+        return new UserProfile(userId, decisions).toMap();
+    }
+
+    private static class CapturingUserProfileService implements BatchUserProfileService {
+
+        private final BlockingQueue<List<Map<String, Object>>> batches = new LinkedBlockingQueue<>();
+        private final AtomicInteger lookupCount = new AtomicInteger();
+        private final AtomicInteger failuresLeft = new AtomicInteger();
+        private volatile CountDownLatch lookupLatch;
+
+        @Override
+        public Map<String, Object> lookup(String userId) throws Exception {
+            lookupCount.incrementAndGet();
+            if (lookupLatch != null) {
+                lookupLatch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            }
+            return userProfile(userId, "exp1", "var1");
+        }
+
+        @Override
+        public void save(Map<String, Object> userProfile) throws Exception {
+            saveAll(Collections.singletonList(userProfile));
+        }
+
+        @Override
+        public void saveAll(Collection<Map<String, Object>> userProfiles) throws Exception {
+            if (failuresLeft.get() > 0) {
+                failuresLeft.decrementAndGet();
+                throw new Exception("save failed");
+            }
+            batches.add(new ArrayList<>(userProfiles));
+        }
+
+        List<Map<String, Object>> poll() throws InterruptedException {
+            return poll(TIMEOUT_MS);
+        }
+
+        List<Map<String, Object>> poll(long timeoutMillis) throws InterruptedException {
+            return batches.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -104,6 +104,38 @@ public class BucketerTest {
         assertThat(Math.round(((double) lowerHalfCount / totalCount) * 100), is(50L));
     }
 
+    /**
+     * Verify that across the entire 32-bit hashCode space, {@link Bucketer#generateBucketValue(int)} produces the same
+     * bucket values as the original floating point implementation.
+     */
+    @Test
+    @Category(ExhaustiveTest.class)
+    public void generateBucketValueMatchesFloatingPointImplementation() throws Exception {
+        Assume.assumeTrue(Boolean.valueOf(System.getenv("CI")));
+        int mismatchCount = 0;
+
+        for (long i = Integer.MIN_VALUE; i <= Integer.MAX_VALUE; i++) {
+            int hashCode = (int) i;
+            double ratio = (double) (hashCode & 0xFFFFFFFFL) / Math.pow(2, 32);
+            if (algorithm.generateBucketValue(hashCode) != (int) Math.floor(Bucketer.MAX_TRAFFIC_VALUE * ratio)) {
+                mismatchCount++;
+            }
+        }
+
+        assertThat(mismatchCount, is(0));
+    }
+
+    /**
+     * Verify the bucket values at the edges of the hashCode space.
+     */
+    @Test
+    public void generateBucketValueBoundaries() throws Exception {
+        assertThat(algorithm.generateBucketValue(0), is(0));
+        assertThat(algorithm.generateBucketValue(Integer.MAX_VALUE), is(4999));
+        assertThat(algorithm.generateBucketValue(Integer.MIN_VALUE), is(5000));
+        assertThat(algorithm.generateBucketValue(-1), is(Bucketer.MAX_TRAFFIC_VALUE - 1));
+    }
+
     /**
      * Verify that generated bucket values match expected output.
      */
@@ -135,6 +167,9 @@ public class BucketerTest {
             "string" + experimentId;
         hashCode = MurmurHash3.murmurhash3_x86_32(combinedBucketId, 0, combinedBucketId.length(), MURMUR_HASH_SEED);
         assertThat(algorithm.generateBucketValue(hashCode), is(6128));
+
+        hashCode = MurmurHash3.murmurhash3_x86_32("ppid1", String.valueOf(experimentId), MURMUR_HASH_SEED);
+        assertThat(algorithm.generateBucketValue(hashCode), is(5254));
     }
 
     /**
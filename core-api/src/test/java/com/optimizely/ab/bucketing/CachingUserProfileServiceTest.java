@@ -0,0 +1,156 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.bucketing;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class CachingUserProfileServiceTest {
+
+    private final InMemoryUserProfileService userProfileService = new InMemoryUserProfileService();
+
+    @Test
+    public void testLookupIsCached() throws Exception {
+        userProfileService.profiles.put("user1", userProfile("user1", "exp1", "var1"));
+        CachingUserProfileService cachingUserProfileService = build(10, TimeUnit.HOURS.toMillis(1));
+
+        UserProfile userProfile = cachingUserProfileService.lookupUserProfile("user1");
+        assertEquals(UserProfileUtils.convertMapToUserProfile(userProfile("user1", "exp1", "var1")), userProfile);
+        assertEquals(userProfile("user1", "exp1", "var1"), cachingUserProfileService.lookup("user1"));
+
+        assertEquals(1, userProfileService.lookupCount);
+        assertEquals(1, cachingUserProfileService.getHitCount());
+        assertEquals(1, cachingUserProfileService.getMissCount());
+    }
+
+    @Test
+    public void testMissingProfileIsCached() throws Exception {
+        CachingUserProfileService cachingUserProfileService = build(10, TimeUnit.HOURS.toMillis(1));
+
+        assertNull(cachingUserProfileService.lookupUserProfile("user1"));
+        assertNull(cachingUserProfileService.lookupUserProfile("user1"));
+        assertEquals(1, userProfileService.lookupCount);
+    }
+
+    @Test
+    public void testLookupReturnsCopy() throws Exception {
+        userProfileService.profiles.put("user1", userProfile("user1", "exp1", "var1"));
+        CachingUserProfileService cachingUserProfileService = build(10, TimeUnit.HOURS.toMillis(1));
+
+        UserProfile userProfile = cachingUserProfileService.lookupUserProfile("user1");
+        userProfile.experimentBucketMap.get("exp1").variationId = "var2";
+        userProfile.experimentBucketMap.put("exp2", new Decision("var2"));
+
+        assertEquals(userProfile("user1", "exp1", "var1"), cachingUserProfileService.lookup("user1"));
+    }
+
+    @Test
+    public void testSaveIsWrittenThrough() throws Exception {
+        CachingUserProfileService cachingUserProfileService = build(10, TimeUnit.HOURS.toMillis(1));
+        assertNull(cachingUserProfileService.lookupUserProfile("user1"));
+
+        cachingUserProfileService.save(userProfile("user1", "exp1", "var1"));
+        assertEquals(userProfile("user1", "exp1", "var1"), userProfileService.profiles.get("user1"));
+        assertEquals(userProfile("user1", "exp1", "var1"), cachingUserProfileService.lookup("user1"));
+        assertEquals(1, userProfileService.lookupCount);
+    }
+
+    @Test
+    public void testLookupDoesNotReplaceConcurrentSave() throws Exception {
+        userProfileService.profiles.put("user1", userProfile("user1", "exp1", "var1"));
+        final CachingUserProfileService cachingUserProfileService = build(10, TimeUnit.HOURS.toMillis(1));
+        // the profile is saved after the lookup read the old one, but before it is cached
+        userProfileService.onLookup = () -> {
+            cachingUserProfileService.save(userProfile("user1", "exp1", "var2"));
+            return null;
+        };
+
+        assertEquals(userProfile("user1", "exp1", "var2"), cachingUserProfileService.lookup("user1"));
+        assertEquals(userProfile("user1", "exp1", "var2"), cachingUserProfileService.lookup("user1"));
+        assertEquals(1, userProfileService.lookupCount);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedProfileIsEvicted() throws Exception {
+        CachingUserProfileService cachingUserProfileService = build(2, TimeUnit.HOURS.toMillis(1));
+        cachingUserProfileService.lookupUserProfile("user1");
+        cachingUserProfileService.lookupUserProfile("user2");
+        cachingUserProfileService.lookupUserProfile("user1");
+        cachingUserProfileService.lookupUserProfile("user3");
+
+        assertEquals(2, cachingUserProfileService.size());
+        assertEquals(1, cachingUserProfileService.getEvictionCount());
+
+        cachingUserProfileService.lookupUserProfile("user1");
+        assertEquals(3, userProfileService.lookupCount);
+        cachingUserProfileService.lookupUserProfile("user2");
+        assertEquals(4, userProfileService.lookupCount);
+    }
+
+    @Test
+    public void testExpiredProfileIsReloaded() throws Exception {
+        CachingUserProfileService cachingUserProfileService = build(10, 1);
+        cachingUserProfileService.lookupUserProfile("user1");
+        Thread.sleep(10);
+        cachingUserProfileService.lookupUserProfile("user1");
+
+        assertEquals(2, userProfileService.lookupCount);
+        assertEquals(1, cachingUserProfileService.getEvictionCount());
+    }
+
+    private CachingUserProfileService build(int maxSize, long timeoutMillis) {
+        return CachingUserProfileService.builder()
+            .withUserProfileService(userProfileService)
+            .withMaxSize(maxSize)
+            .withTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+            .build();
+    }
+
+    private static Map<String, Object> userProfile(String userId, String experimentId, String variationId) {
+        Map<String, Decision> decisions = new HashMap<String, Decision>();
+        decisions.put(experimentId, new Decision(variationId));
+        return new UserProfile(userId, decisions).toMap();
+    }
+
+    private static class InMemoryUserProfileService implements UserProfileService {
+
+        private final Map<String, Map<String, Object>> profiles = new HashMap<String, Map<String, Object>>();
+        private int lookupCount;
+        private Callable<?> onLookup;
+
+        @Override
+        public Map<String, Object> lookup(String userId) throws Exception {
+            lookupCount++;
+            Map<String, Object> userProfile = profiles.get(userId);
+            if (onLookup != null) {
+                onLookup.call();
+            }
+            return userProfile;
+        }
+
+        @Override
+        public void save(Map<String, Object> userProfile) {
+            profiles.put((String) userProfile.get(userIdKey), userProfile);
+        }
+    }
+}
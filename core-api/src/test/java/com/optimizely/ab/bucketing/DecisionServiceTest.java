@@ -30,6 +30,7 @@ import com.optimizely.ab.internal.ControlAttribute;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnit;
 import org.mockito.junit.MockitoRule;
@@ -53,7 +54,7 @@ import static com.optimizely.ab.config.ValidProjectConfigV4.FEATURE_FLAG_MULTI_V
 import static com.optimizely.ab.config.ValidProjectConfigV4.FEATURE_FLAG_SINGLE_VARIABLE_INTEGER;
 import static com.optimizely.ab.config.ValidProjectConfigV4.FEATURE_MULTI_VARIATE_FEATURE_KEY;
 import static com.optimizely.ab.config.ValidProjectConfigV4.ROLLOUT_2;
-import static com.optimizely.ab.config.ValidProjectConfigV4.ROLLOUT_3_EVERYONE_ELSE_RULE;
+import static com.optimizely.ab.config.ValidProjectConfigV4.ROLLOUT_3;
 import static com.optimizely.ab.config.ValidProjectConfigV4.ROLLOUT_3_EVERYONE_ELSE_RULE_ENABLED_VARIATION;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -320,16 +321,14 @@ public class DecisionServiceTest {
         // do not bucket to any experiments
         doReturn(null).when(decisionService).getVariation(
             any(Experiment.class),
-            anyString(),
-            anyMapOf(String.class, String.class),
-            any(ProjectConfig.class)
+            any(ProjectConfig.class),
+            any(DecisionContext.class)
         );
         // do not bucket to any rollouts
         doReturn(new FeatureDecision(null, null, null)).when(decisionService).getVariationForFeatureInRollout(
             any(FeatureFlag.class),
-            anyString(),
-            anyMapOf(String.class, String.class),
-            any(ProjectConfig.class)
+            any(ProjectConfig.class),
+            any(DecisionContext.class)
         );
 
         // try to get a variation back from the decision service for the feature flag
@@ -361,16 +360,14 @@ public class DecisionServiceTest {
 
         doReturn(null).when(decisionService).getVariation(
             eq(ValidProjectConfigV4.EXPERIMENT_MUTEX_GROUP_EXPERIMENT_1),
-            anyString(),
-            anyMapOf(String.class, String.class),
-            any(ProjectConfig.class)
+            any(ProjectConfig.class),
+            any(DecisionContext.class)
         );
 
         doReturn(ValidProjectConfigV4.VARIATION_MUTEX_GROUP_EXP_2_VAR_1).when(decisionService).getVariation(
             eq(ValidProjectConfigV4.EXPERIMENT_MUTEX_GROUP_EXPERIMENT_2),
-            anyString(),
-            anyMapOf(String.class, String.class),
-            any(ProjectConfig.class)
+            any(ProjectConfig.class),
+            any(DecisionContext.class)
         );
 
         FeatureDecision featureDecision = decisionService.getVariationForFeature(
@@ -407,18 +404,16 @@ public class DecisionServiceTest {
         doReturn(experimentVariation)
             .when(decisionService).getVariation(
             eq(featureExperiment),
-            anyString(),
-            anyMapOf(String.class, String.class),
-            any(ProjectConfig.class)
+            any(ProjectConfig.class),
+            any(DecisionContext.class)
         );
 
         // return variation for rollout
         doReturn(new FeatureDecision(rolloutExperiment, rolloutVariation, FeatureDecision.DecisionSource.ROLLOUT))
             .when(decisionService).getVariationForFeatureInRollout(
             eq(featureFlag),
-            anyString(),
-            anyMapOf(String.class, String.class),
-            any(ProjectConfig.class)
+            any(ProjectConfig.class),
+            any(DecisionContext.class)
         );
 
         // make sure we get the right variation back
@@ -434,17 +429,15 @@ public class DecisionServiceTest {
         // make sure we do not even check for rollout bucketing
         verify(decisionService, never()).getVariationForFeatureInRollout(
             any(FeatureFlag.class),
-            anyString(),
-            anyMapOf(String.class, String.class),
-            any(ProjectConfig.class)
+            any(ProjectConfig.class),
+            any(DecisionContext.class)
         );
 
         // make sure we ask for experiment bucketing once
         verify(decisionService, times(1)).getVariation(
             any(Experiment.class),
-            anyString(),
-            anyMapOf(String.class, String.class),
-            any(ProjectConfig.class)
+            any(ProjectConfig.class),
+            any(DecisionContext.class)
         );
     }
 
@@ -467,18 +460,16 @@ public class DecisionServiceTest {
         doReturn(null)
             .when(decisionService).getVariation(
             eq(featureExperiment),
-            anyString(),
-            anyMapOf(String.class, String.class),
-            any(ProjectConfig.class)
+            any(ProjectConfig.class),
+            any(DecisionContext.class)
         );
 
         // return variation for rollout
         doReturn(new FeatureDecision(rolloutExperiment, rolloutVariation, FeatureDecision.DecisionSource.ROLLOUT))
             .when(decisionService).getVariationForFeatureInRollout(
             eq(featureFlag),
-            anyString(),
-            anyMapOf(String.class, String.class),
-            any(ProjectConfig.class)
+            any(ProjectConfig.class),
+            any(DecisionContext.class)
         );
 
         // make sure we get the right variation back
@@ -494,17 +485,15 @@ public class DecisionServiceTest {
         // make sure we do not even check for rollout bucketing
         verify(decisionService, times(1)).getVariationForFeatureInRollout(
             any(FeatureFlag.class),
-            anyString(),
-            anyMapOf(String.class, String.class),
-            any(ProjectConfig.class)
+            any(ProjectConfig.class),
+            any(DecisionContext.class)
         );
 
         // make sure we ask for experiment bucketing once
         verify(decisionService, times(1)).getVariation(
             any(Experiment.class),
-            anyString(),
-            anyMapOf(String.class, String.class),
-            any(ProjectConfig.class)
+            any(ProjectConfig.class),
+            any(DecisionContext.class)
         );
 
         logbackVerifier.expectMessage(
@@ -514,6 +503,61 @@ public class DecisionServiceTest {
         );
     }
 
+    /**
+     * Verify that {@link DecisionService#getVariationsForFeatures(List, String, Map, ProjectConfig)}
+     * returns the same decision as {@link DecisionService#getVariationForFeature(FeatureFlag, String, Map, ProjectConfig)}
+     * for every feature flag while looking up the user profile only once.
+     */
+    @Test
+    public void getVariationsForFeaturesLooksUpUserProfileOnce() throws Exception {
+        UserProfileService userProfileService = mock(UserProfileService.class);
+        DecisionService decisionService = new DecisionService(new Bucketer(), mockErrorHandler, userProfileService);
+        List<FeatureFlag> featureFlags = v4ProjectConfig.getFeatureFlags();
+
+        Map<String, FeatureDecision> featureDecisions = decisionService.getVariationsForFeatures(
+            featureFlags,
+            genericUserId,
+            Collections.<String, String>emptyMap(),
+            v4ProjectConfig
+        );
+
+        verify(userProfileService, times(1)).lookup(genericUserId);
+        assertEquals(featureFlags.size(), featureDecisions.size());
+        for (FeatureFlag featureFlag : featureFlags) {
+            FeatureDecision featureDecision = decisionService.getVariationForFeature(
+                featureFlag,
+                genericUserId,
+                Collections.<String, String>emptyMap(),
+                v4ProjectConfig
+            );
+            assertEquals(featureDecision, featureDecisions.get(featureFlag.getKey()));
+        }
+    }
+
+    /**
+     * Verify that {@link DecisionService#getVariationsForFeatures(List, String, Map, ProjectConfig)}
+     * saves the decisions of all the experiments the user is bucketed into with a single
+     * {@link UserProfileService#save(Map)}.
+     */
+    @Test
+    public void getVariationsForFeaturesSavesUserProfileOnce() throws Exception {
+        UserProfileService userProfileService = mock(UserProfileService.class);
+        DecisionService decisionService = new DecisionService(new Bucketer(), mockErrorHandler, userProfileService);
+
+        decisionService.getVariationsForFeatures(
+            v4ProjectConfig.getFeatureFlags(),
+            genericUserId,
+            Collections.singletonMap(ATTRIBUTE_HOUSE_KEY, AUDIENCE_GRYFFINDOR_VALUE),
+            v4ProjectConfig
+        );
+
+        ArgumentCaptor<Map> userProfileCaptor = ArgumentCaptor.forClass(Map.class);
+        verify(userProfileService, times(1)).save(userProfileCaptor.capture());
+        UserProfile savedUserProfile = UserProfileUtils.convertMapToUserProfile(userProfileCaptor.getValue());
+        // the multivariate experiment and one of the mutex group experiments
+        assertEquals(2, savedUserProfile.experimentBucketMap.size());
+    }
+
     //========== getVariationForFeatureInRollout tests ==========//
 
     /**
@@ -608,7 +652,7 @@ public class DecisionServiceTest {
     @Test
     public void getVariationForFeatureInRolloutReturnsVariationWhenUserFailsAllAudienceButSatisfiesTraffic() {
         Bucketer mockBucketer = mock(Bucketer.class);
-        Rollout rollout = ROLLOUT_2;
+        Rollout rollout = v4ProjectConfig.getRolloutIdMapping().get(ROLLOUT_2.getId());
         Experiment everyoneElseRule = rollout.getExperiments().get(rollout.getExperiments().size() - 1);
         Variation expectedVariation = everyoneElseRule.getVariations().get(0);
         when(mockBucketer.bucket(eq(everyoneElseRule), anyString(), any(ProjectConfig.class))).thenReturn(expectedVariation);
@@ -641,7 +685,7 @@ public class DecisionServiceTest {
     @Test
     public void getVariationForFeatureInRolloutReturnsVariationWhenUserFailsTrafficInRuleAndPassesInEveryoneElse() {
         Bucketer mockBucketer = mock(Bucketer.class);
-        Rollout rollout = ROLLOUT_2;
+        Rollout rollout = v4ProjectConfig.getRolloutIdMapping().get(ROLLOUT_2.getId());
         Experiment everyoneElseRule = rollout.getExperiments().get(rollout.getExperiments().size() - 1);
         Variation expectedVariation = everyoneElseRule.getVariations().get(0);
         when(mockBucketer.bucket(any(Experiment.class), anyString(), any(ProjectConfig.class))).thenReturn(null);
@@ -679,7 +723,7 @@ public class DecisionServiceTest {
     @Test
     public void getVariationForFeatureInRolloutReturnsVariationWhenUserFailsTrafficInRuleButWouldPassForAnotherRuleAndPassesInEveryoneElse() {
         Bucketer mockBucketer = mock(Bucketer.class);
-        Rollout rollout = ROLLOUT_2;
+        Rollout rollout = v4ProjectConfig.getRolloutIdMapping().get(ROLLOUT_2.getId());
         Experiment englishCitizensRule = rollout.getExperiments().get(2);
         Variation englishCitizenVariation = englishCitizensRule.getVariations().get(0);
         Experiment everyoneElseRule = rollout.getExperiments().get(rollout.getExperiments().size() - 1);
@@ -722,7 +766,7 @@ public class DecisionServiceTest {
     @Test
     public void getVariationForFeatureInRolloutReturnsVariationWhenUserFailsTargetingInPreviousRulesButPassesRule3() {
         Bucketer mockBucketer = mock(Bucketer.class);
-        Rollout rollout = ROLLOUT_2;
+        Rollout rollout = v4ProjectConfig.getRolloutIdMapping().get(ROLLOUT_2.getId());
         Experiment englishCitizensRule = rollout.getExperiments().get(2);
         Variation englishCitizenVariation = englishCitizensRule.getVariations().get(0);
         Experiment everyoneElseRule = rollout.getExperiments().get(rollout.getExperiments().size() - 1);
@@ -967,6 +1011,53 @@ public class DecisionServiceTest {
         verify(userProfileService).save(expectedUserProfile.toMap());
     }
 
+    /**
+     * Verify that {@link DecisionService} reads and saves the profile of a {@link TypedUserProfileService} through
+     * its typed methods, without converting the profile to a map.
+     */
+    @Test
+    public void getVariationUsesTypedUserProfileService() throws Exception {
+        final Experiment experiment = noAudienceProjectConfig.getExperiments().get(0);
+        final Variation variation = experiment.getVariations().get(0);
+        final UserProfile expectedUserProfile = new UserProfile(userProfileId,
+            Collections.singletonMap(experiment.getId(), new Decision(variation.getId())));
+
+        Bucketer bucketer = mock(Bucketer.class);
+        TypedUserProfileService userProfileService = mock(TypedUserProfileService.class);
+        DecisionService decisionService = new DecisionService(bucketer, mockErrorHandler, userProfileService);
+
+        when(bucketer.bucket(experiment, userProfileId, noAudienceProjectConfig)).thenReturn(variation);
+        when(userProfileService.lookupUserProfile(userProfileId)).thenReturn(null);
+
+        assertEquals(variation, decisionService.getVariation(experiment, userProfileId, Collections.<String, String>emptyMap(), noAudienceProjectConfig));
+        verify(userProfileService).lookupUserProfile(userProfileId);
+        verify(userProfileService).saveUserProfile(expectedUserProfile);
+        verify(userProfileService, never()).lookup(anyString());
+        verify(userProfileService, never()).save(anyMapOf(String.class, Object.class));
+    }
+
+    /**
+     * Verify that {@link DecisionService} returns the variation stored in the profile of a
+     * {@link TypedUserProfileService} without bucketing the user.
+     */
+    @Test
+    public void getVariationReturnsVariationStoredInTypedUserProfile() throws Exception {
+        final Experiment experiment = noAudienceProjectConfig.getExperiments().get(0);
+        final Variation variation = experiment.getVariations().get(0);
+        final UserProfile storedUserProfile = new UserProfile(userProfileId,
+            new HashMap<String, Decision>(Collections.singletonMap(experiment.getId(), new Decision(variation.getId()))));
+
+        Bucketer bucketer = mock(Bucketer.class);
+        TypedUserProfileService userProfileService = mock(TypedUserProfileService.class);
+        DecisionService decisionService = new DecisionService(bucketer, mockErrorHandler, userProfileService);
+
+        when(userProfileService.lookupUserProfile(userProfileId)).thenReturn(storedUserProfile);
+
+        assertEquals(variation, decisionService.getVariation(experiment, userProfileId, Collections.<String, String>emptyMap(), noAudienceProjectConfig));
+        verify(bucketer, never()).bucket(any(Experiment.class), anyString(), any(ProjectConfig.class));
+        verify(userProfileService, never()).lookup(anyString());
+    }
+
     @Test
     public void getVariationBucketingId() throws Exception {
         Bucketer bucketer = mock(Bucketer.class);
@@ -989,7 +1080,7 @@ public class DecisionServiceTest {
      */
     @Test
     public void getVariationForRolloutWithBucketingId() {
-        Experiment rolloutRuleExperiment = ROLLOUT_3_EVERYONE_ELSE_RULE;
+        Experiment rolloutRuleExperiment = v4ProjectConfig.getRolloutIdMapping().get(ROLLOUT_3.getId()).getExperiments().get(0);
         Variation rolloutVariation = ROLLOUT_3_EVERYONE_ELSE_RULE_ENABLED_VARIATION;
         FeatureFlag featureFlag = FEATURE_FLAG_SINGLE_VARIABLE_INTEGER;
         String bucketingId = "user_bucketing_id";
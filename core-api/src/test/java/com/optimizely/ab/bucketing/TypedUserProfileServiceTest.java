@@ -0,0 +1,94 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.bucketing;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class TypedUserProfileServiceTest {
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    private final InMemoryTypedUserProfileService userProfileService = new InMemoryTypedUserProfileService();
+
+    @Test
+    public void lookupReturnsTypedProfileAsMap() throws Exception {
+        UserProfile userProfile = userProfile("user1", "exp1", "var1");
+        userProfileService.userProfiles.put("user1", userProfile);
+
+        assertEquals(userProfile.toMap(), userProfileService.lookup("user1"));
+    }
+
+    @Test
+    public void lookupReturnsNullWithoutProfile() throws Exception {
+        assertNull(userProfileService.lookup("user1"));
+    }
+
+    @Test
+    public void saveStoresMapAsTypedProfile() throws Exception {
+        UserProfile userProfile = userProfile("user1", "exp1", "var1");
+        userProfileService.save(userProfile.toMap());
+
+        assertEquals(userProfile, userProfileService.userProfiles.get("user1"));
+    }
+
+    @Test
+    public void mapRoundTrip() throws Exception {
+        Map<String, Object> userProfileMap = userProfile("user1", "exp1", "var1").toMap();
+        userProfileService.save(userProfileMap);
+
+        assertEquals(userProfileMap, userProfileService.lookup("user1"));
+    }
+
+    @Test
+    public void saveRejectsInvalidMap() throws Exception {
+        Map<String, Object> userProfileMap = new HashMap<String, Object>();
+        userProfileMap.put(UserProfileService.userIdKey, "user1");
+
+        thrown.expect(IllegalArgumentException.class);
+        userProfileService.save(userProfileMap);
+    }
+
+    private static UserProfile userProfile(String userId, String experimentId, String variationId) {
+        Map<String, Decision> decisions = new HashMap<String, Decision>();
+        decisions.put(experimentId, new Decision(variationId));
+        return new UserProfile(userId, decisions);
+    }
+
+    private static class InMemoryTypedUserProfileService implements TypedUserProfileService {
+
+        private final Map<String, UserProfile> userProfiles = new HashMap<String, UserProfile>();
+
+        @Override
+        public UserProfile lookupUserProfile(String userId) {
+            return userProfiles.get(userId);
+        }
+
+        @Override
+        public void saveUserProfile(UserProfile userProfile) {
+            userProfiles.put(userProfile.userId, userProfile);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.bucketing;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class UserProfileCodecTest {
+
+    @Test
+    public void encodeDecodeRoundTrip() {
+        Map<String, Decision> experimentBucketMap = new HashMap<String, Decision>();
+        for (int i = 0; i < 200; i++) {
+            experimentBucketMap.put("exp" + i, new Decision("var" + i));
+        }
+        UserProfile userProfile = new UserProfile("user\u00e9", experimentBucketMap);
+
+        assertEquals(userProfile, UserProfileCodec.decode(UserProfileCodec.encode(userProfile)));
+    }
+
+    @Test
+    public void encodeDecodeEmptyProfile() {
+        UserProfile userProfile = new UserProfile("", Collections.<String, Decision>emptyMap());
+
+        assertEquals(userProfile, UserProfileCodec.decode(UserProfileCodec.encode(userProfile)));
+    }
+
+    @Test
+    public void decodeRejectsMalformedBytes() {
+        byte[] encoded = UserProfileCodec.encode(new UserProfile("user",
+            Collections.singletonMap("exp", new Decision("var"))));
+
+        assertMalformed(Arrays.copyOf(encoded, encoded.length - 1));
+        assertMalformed(new byte[0]);
+
+        byte[] unknownVersion = encoded.clone();
+        unknownVersion[0] = 42;
+        assertMalformed(unknownVersion);
+    }
+
+    private static void assertMalformed(byte[] encoded) {
+        try {
+            UserProfileCodec.decode(encoded);
+            fail("decoded malformed bytes");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.bucketing;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class UserProfileServiceAdapterTest {
+
+    private final InMemoryUserProfileService userProfileService = new InMemoryUserProfileService();
+    private final TypedUserProfileService adapter = UserProfileServiceAdapter.adapt(userProfileService);
+
+    @Test
+    public void adaptReturnsTypedServiceAsIs() {
+        CachingUserProfileService typedUserProfileService = CachingUserProfileService.builder()
+            .withUserProfileService(userProfileService)
+            .build();
+
+        assertSame(typedUserProfileService, UserProfileServiceAdapter.adapt(typedUserProfileService));
+        assertNotSame(userProfileService, adapter);
+    }
+
+    @Test
+    public void lookupUserProfileConvertsMap() throws Exception {
+        UserProfile userProfile = userProfile("user1", "exp1", "var1");
+        userProfileService.userProfiles.put("user1", userProfile.toMap());
+
+        assertEquals(userProfile, adapter.lookupUserProfile("user1"));
+    }
+
+    @Test
+    public void lookupUserProfileReturnsNullWithoutProfile() throws Exception {
+        assertNull(adapter.lookupUserProfile("user1"));
+    }
+
+    @Test
+    public void lookupUserProfileReturnsNullForInvalidMap() throws Exception {
+        Map<String, Object> userProfileMap = new HashMap<String, Object>();
+        userProfileMap.put(UserProfileService.userIdKey, "user1");
+        userProfileService.userProfiles.put("user1", userProfileMap);
+
+        assertNull(adapter.lookupUserProfile("user1"));
+    }
+
+    @Test
+    public void saveUserProfileStoresMap() throws Exception {
+        UserProfile userProfile = userProfile("user1", "exp1", "var1");
+        adapter.saveUserProfile(userProfile);
+
+        assertEquals(userProfile.toMap(), userProfileService.userProfiles.get("user1"));
+    }
+
+    @Test
+    public void typedRoundTrip() throws Exception {
+        UserProfile userProfile = userProfile("user1", "exp1", "var1");
+        adapter.saveUserProfile(userProfile);
+
+        assertEquals(userProfile, adapter.lookupUserProfile("user1"));
+    }
+
+    @Test
+    public void mapMethodsPassThrough() throws Exception {
+        Map<String, Object> userProfileMap = userProfile("user1", "exp1", "var1").toMap();
+        adapter.save(userProfileMap);
+
+        assertSame(userProfileMap, userProfileService.userProfiles.get("user1"));
+        assertSame(userProfileMap, adapter.lookup("user1"));
+    }
+
+    private static UserProfile userProfile(String userId, String experimentId, String variationId) {
+        Map<String, Decision> decisions = new HashMap<String, Decision>();
+        decisions.put(experimentId, new Decision(variationId));
+        return new UserProfile(userId, decisions);
+    }
+
+    private static class InMemoryUserProfileService implements UserProfileService {
+
+        private final Map<String, Map<String, Object>> userProfiles = new HashMap<String, Map<String, Object>>();
+
+        @Override
+        public Map<String, Object> lookup(String userId) {
+            return userProfiles.get(userId);
+        }
+
+        @Override
+        public void save(Map<String, Object> userProfile) {
+            userProfiles.put((String) userProfile.get(userIdKey), userProfile);
+        }
+    }
+}
@@ -120,9 +120,27 @@ public class MurmurHash3Test {
             doString(s);
             doString(middle);
             doString(s, pre, post);
+            doSaltedString(s);
         }
 
     }
+
+    private void doSaltedString(String s) {
+        int expected = MurmurHash3.murmurhash3_x86_32(s, 0, s.length(), 123456789);
+        for (int i = 0; i <= s.length(); i++) {
+            assertEquals(expected, MurmurHash3.murmurhash3_x86_32(s.substring(0, i), s.substring(i), 123456789));
+        }
+    }
+
+    @Test
+    public void testSaltedStringHash() {
+        doSaltedString("");
+        doSaltedString("ppid11886780721");
+        doSaltedString("\u0123\u2345");
+        // a surrogate pair split across the data and the salt is still hashed as a single code point
+        doSaltedString("user\uD83D\uDE00123");
+        doSaltedString("\uD83D");
+    }
 }
 
 
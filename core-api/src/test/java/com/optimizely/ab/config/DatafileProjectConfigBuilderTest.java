@@ -17,15 +17,27 @@
 package com.optimizely.ab.config;
 
 import com.optimizely.ab.config.parser.ConfigParseException;
+import com.optimizely.ab.config.audience.AudienceIdCondition;
+import com.optimizely.ab.config.audience.OrCondition;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
 import static com.optimizely.ab.config.DatafileProjectConfigTestUtils.invalidProjectConfigV5;
 import static com.optimizely.ab.config.DatafileProjectConfigTestUtils.validConfigJsonV4;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Tests for {@link DatafileProjectConfig.Builder}.
@@ -38,7 +50,7 @@ public class DatafileProjectConfigBuilderTest {
     public void withNullDatafile() throws Exception {
         thrown.expect(ConfigParseException.class);
         new DatafileProjectConfig.Builder()
-            .withDatafile(null)
+            .withDatafile((String) null)
             .build();
     }
 
@@ -59,6 +71,117 @@ public class DatafileProjectConfigBuilderTest {
         assertEquals("4", projectConfig.getVersion());
     }
 
+    @Test
+    public void withValidDatafileBytes() throws Exception {
+        ProjectConfig projectConfig = new DatafileProjectConfig.Builder()
+            .withDatafile(validConfigJsonV4().getBytes(StandardCharsets.UTF_8))
+            .build();
+        assertNotNull(projectConfig);
+        assertEquals("4", projectConfig.getVersion());
+    }
+
+    @Test
+    public void withEmptyDatafileBytes() throws Exception {
+        thrown.expect(ConfigParseException.class);
+        new DatafileProjectConfig.Builder()
+            .withDatafile(new byte[0])
+            .build();
+    }
+
+    @Test
+    public void withValidDatafileDirectByteBuffer() throws Exception {
+        byte[] datafile = validConfigJsonV4().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(datafile.length);
+        buffer.put(datafile).flip();
+
+        ProjectConfig projectConfig = new DatafileProjectConfig.Builder()
+            .withDatafile(buffer)
+            .build();
+        assertNotNull(projectConfig);
+        assertEquals("4", projectConfig.getVersion());
+        assertEquals(0, buffer.position());
+    }
+
+    @Test
+    public void withValidDatafileInputStream() throws Exception {
+        ProjectConfig projectConfig = new DatafileProjectConfig.Builder()
+            .withDatafile(new ByteArrayInputStream(validConfigJsonV4().getBytes(StandardCharsets.UTF_8)))
+            .build();
+        assertNotNull(projectConfig);
+        assertEquals("4", projectConfig.getVersion());
+    }
+
+    @Test
+    public void withPreviousConfigSharesUnchangedEntities() throws Exception {
+        DatafileProjectConfig previous = (DatafileProjectConfig) new DatafileProjectConfig.Builder()
+            .withDatafile(validConfigJsonV4())
+            .build();
+        DatafileProjectConfig projectConfig = (DatafileProjectConfig) new DatafileProjectConfig.Builder()
+            .withDatafile(validConfigJsonV4().replace("\"revision\": \"1480511547\"", "\"revision\": \"1480511548\""))
+            .withPreviousConfig(previous)
+            .build();
+
+        assertEquals("1480511548", projectConfig.getRevision());
+        assertEquals("1480511547", projectConfig.getChanges().getPreviousRevision());
+        assertTrue(projectConfig.getChanges().isEmpty());
+        for (Experiment experiment : projectConfig.getExperiments()) {
+            assertSame(previous.getExperimentKeyMapping().get(experiment.getKey()), experiment);
+        }
+        for (Rollout rollout : projectConfig.getRollouts()) {
+            assertSame(previous.getRolloutIdMapping().get(rollout.getId()), rollout);
+        }
+        for (Group group : projectConfig.getGroups()) {
+            assertSame(previous.getGroupIdMapping().get(group.getId()), group);
+        }
+        for (FeatureFlag featureFlag : projectConfig.getFeatureFlags()) {
+            assertSame(previous.getFeatureKeyMapping().get(featureFlag.getKey()), featureFlag);
+        }
+    }
+
+    @Test
+    public void withPreviousConfigReportsChangedExperiment() throws Exception {
+        DatafileProjectConfig previous = (DatafileProjectConfig) new DatafileProjectConfig.Builder()
+            .withDatafile(validConfigJsonV4())
+            .build();
+        DatafileProjectConfig projectConfig = (DatafileProjectConfig) new DatafileProjectConfig.Builder()
+            .withDatafile(validConfigJsonV4().replace("\"Tom Riddle\": \"B\"\n      }", "\"Tom Riddle\": \"A\"\n      }"))
+            .withPreviousConfig(previous)
+            .build();
+
+        assertEquals(Collections.singleton("basic_experiment"), projectConfig.getChanges().getChangedExperimentKeys());
+        assertTrue(projectConfig.getChanges().getChangedFeatureKeys().isEmpty());
+
+        Experiment experiment = projectConfig.getExperimentKeyMapping().get("basic_experiment");
+        assertNotSame(previous.getExperimentKeyMapping().get("basic_experiment"), experiment);
+        assertEquals("A", experiment.getUserIdToVariationKeyMap().get("Tom Riddle"));
+        assertSame(experiment, projectConfig.getExperimentIdMapping().get(experiment.getId()));
+        assertSame(previous.getExperimentKeyMapping().get("multivariate_experiment"),
+            projectConfig.getExperimentKeyMapping().get("multivariate_experiment"));
+    }
+
+    @Test
+    public void withPreviousConfigRelinksExperimentsOfChangedAudience() throws Exception {
+        DatafileProjectConfig previous = (DatafileProjectConfig) new DatafileProjectConfig.Builder()
+            .withDatafile(validConfigJsonV4())
+            .build();
+        DatafileProjectConfig projectConfig = (DatafileProjectConfig) new DatafileProjectConfig.Builder()
+            .withDatafile(validConfigJsonV4().replace("\"value\":\"Slytherin\"", "\"value\":\"Ravenclaw\""))
+            .withPreviousConfig(previous)
+            .build();
+
+        assertEquals(Collections.singleton("double_single_variable_feature_experiment"),
+            projectConfig.getChanges().getChangedExperimentKeys());
+        assertEquals(new HashSet<String>(Arrays.asList("double_single_variable_feature", "multi_variate_feature")),
+            projectConfig.getChanges().getChangedFeatureKeys());
+
+        // the experiment is linked to the new audience
+        Experiment experiment = projectConfig.getExperimentKeyMapping().get("double_single_variable_feature_experiment");
+        AudienceIdCondition condition = (AudienceIdCondition) ((OrCondition) experiment.getImplicitAudienceCondition())
+            .getConditions().get(0);
+        assertSame(projectConfig.getAudienceIdMapping().get("3988293898"), condition.getAudience());
+        assertNotSame(previous.getAudienceIdMapping().get("3988293898"), condition.getAudience());
+    }
+
     @Test
     public void withUnsupportedDatafile() throws Exception {
         thrown.expect(ConfigParseException.class);
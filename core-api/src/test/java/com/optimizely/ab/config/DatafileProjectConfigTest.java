@@ -18,6 +18,7 @@ package com.optimizely.ab.config;
 
 import ch.qos.logback.classic.Level;
 import com.optimizely.ab.config.audience.AndCondition;
+import com.optimizely.ab.config.audience.AudienceIdCondition;
 import com.optimizely.ab.config.audience.Condition;
 import com.optimizely.ab.config.audience.NotCondition;
 import com.optimizely.ab.config.audience.OrCondition;
@@ -125,6 +126,43 @@ public class DatafileProjectConfigTest {
         assertNull(projectConfig.getAudience("invalid_id"));
     }
 
+    /**
+     * Asserts that every {@link AudienceIdCondition} of the experiments and rollouts is linked to its audience
+     * when the config is constructed.
+     */
+    @Test
+    public void verifyAudienceIdConditionsAreResolvedOnConstruction() throws Exception {
+        ProjectConfig v4ProjectConfig = DatafileProjectConfigTestUtils.validProjectConfigV4();
+
+        List<Experiment> experiments = new ArrayList<Experiment>(v4ProjectConfig.getExperiments());
+        for (Rollout rollout : v4ProjectConfig.getRollouts()) {
+            experiments.addAll(rollout.getExperiments());
+        }
+
+        List<AudienceIdCondition> audienceIdConditions = new ArrayList<AudienceIdCondition>();
+        for (Experiment experiment : experiments) {
+            collectAudienceIdConditions(experiment.getAudienceConditions(), audienceIdConditions);
+            collectAudienceIdConditions(experiment.getImplicitAudienceCondition(), audienceIdConditions);
+        }
+
+        assertFalse(audienceIdConditions.isEmpty());
+        for (AudienceIdCondition audienceIdCondition : audienceIdConditions) {
+            assertSame(v4ProjectConfig.getAudience(audienceIdCondition.getAudienceId()), audienceIdCondition.getAudience());
+        }
+    }
+
+    /**
+     * Asserts that a resolved {@link AudienceIdCondition} evaluates without a ProjectConfig.
+     */
+    @Test
+    public void resolvedAudienceIdConditionEvaluatesWithoutConfig() throws Exception {
+        Experiment experiment = projectConfig.getExperimentIdMapping().get("118");
+        Condition condition = experiment.getImplicitAudienceCondition();
+
+        assertFalse(condition.evaluate(null, Collections.singletonMap("browser_type", "firefox")));
+        assertTrue(condition.evaluate(null, Collections.singletonMap("browser_type", "chrome")));
+    }
+
     /**
      * Asserts that anonymizeIP is set to false if not explicitly passed into the constructor (in the case of V2
      * projects).
@@ -170,4 +208,19 @@ public class DatafileProjectConfigTest {
             " has reserved prefix $opt_; using attribute ID instead of reserved attribute name.");
     }
 
+    private static void collectAudienceIdConditions(Condition condition, List<AudienceIdCondition> audienceIdConditions) {
+        if (condition instanceof AudienceIdCondition) {
+            audienceIdConditions.add((AudienceIdCondition) condition);
+        } else if (condition instanceof AndCondition) {
+            for (Condition nested : ((AndCondition<?>) condition).getConditions()) {
+                collectAudienceIdConditions(nested, audienceIdConditions);
+            }
+        } else if (condition instanceof OrCondition) {
+            for (Condition nested : ((OrCondition<?>) condition).getConditions()) {
+                collectAudienceIdConditions(nested, audienceIdConditions);
+            }
+        } else if (condition instanceof NotCondition) {
+            collectAudienceIdConditions(((NotCondition<?>) condition).getCondition(), audienceIdConditions);
+        }
+    }
 }
@@ -0,0 +1,76 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.config;
+
+import com.optimizely.ab.config.audience.Audience;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static com.optimizely.ab.config.DatafileProjectConfigTestUtils.validConfigJsonV4;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link ProjectConfigFootprint}.
+ */
+public class ProjectConfigFootprintTest {
+
+    @Test
+    public void footprintByEntityType() throws Exception {
+        ProjectConfig projectConfig = new DatafileProjectConfig.Builder().withDatafile(validConfigJsonV4()).build();
+        ProjectConfigFootprint footprint = ProjectConfigFootprint.of(projectConfig);
+
+        int experimentCount = projectConfig.getExperiments().size();
+        for (Rollout rollout : projectConfig.getRollouts()) {
+            experimentCount += rollout.getExperiments().size();
+        }
+
+        assertEquals(projectConfig.getRevision(), footprint.getRevision());
+        assertEquals(Integer.valueOf(experimentCount), footprint.getInstanceCounts().get("Experiment"));
+        assertEquals(Integer.valueOf(projectConfig.getFeatureFlags().size()), footprint.getInstanceCounts().get("FeatureFlag"));
+        assertEquals(Integer.valueOf(projectConfig.getRollouts().size()), footprint.getInstanceCounts().get("Rollout"));
+
+        long total = 0;
+        long previous = Long.MAX_VALUE;
+        for (Long bytes : footprint.getRetainedBytes().values()) {
+            assertTrue(bytes > 0);
+            assertTrue(bytes <= previous);
+            previous = bytes;
+            total += bytes;
+        }
+        assertEquals(total, footprint.getTotalBytes());
+        assertTrue(footprint.getRetainedBytes().containsKey("ProjectConfig"));
+    }
+
+    @Test
+    public void footprintCountsDuplicateStrings() {
+        String id = "1234";
+        Experiment experiment = new Experiment(id, "key", null, new String(id),
+            Collections.<String>emptyList(), null, Collections.<Variation>emptyList(),
+            Collections.<String, String>emptyMap(), Collections.<TrafficAllocation>emptyList());
+        ProjectConfig projectConfig = new DatafileProjectConfig("accountId", "projectId", "4", "1",
+            Collections.<Group>emptyList(), Arrays.asList(experiment), Collections.<Attribute>emptyList(),
+            Collections.<EventType>emptyList(), Collections.<Audience>emptyList());
+
+        ProjectConfigFootprint footprint = ProjectConfigFootprint.of(projectConfig);
+
+        assertEquals(1, footprint.getDuplicateStringCount());
+        assertTrue(footprint.getDuplicateStringBytes() > 0);
+    }
+}
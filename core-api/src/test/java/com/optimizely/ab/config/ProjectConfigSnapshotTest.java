@@ -0,0 +1,148 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.config;
+
+import com.optimizely.ab.config.parser.ConfigParseException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static com.optimizely.ab.config.DatafileProjectConfigTestUtils.validConfigJsonV2;
+import static com.optimizely.ab.config.DatafileProjectConfigTestUtils.validConfigJsonV3;
+import static com.optimizely.ab.config.DatafileProjectConfigTestUtils.validConfigJsonV4;
+import static com.optimizely.ab.config.DatafileProjectConfigTestUtils.verifyProjectConfig;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests for {@link ProjectConfigSnapshot}.
+ */
+public class ProjectConfigSnapshotTest {
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    private static ProjectConfig build(String datafile) throws ConfigParseException {
+        return new DatafileProjectConfig.Builder().withDatafile(datafile).build();
+    }
+
+    private static ProjectConfig roundTrip(ProjectConfig projectConfig) throws ConfigParseException {
+        byte[] snapshot = new ProjectConfigSnapshot(projectConfig, null).toByteArray();
+        return ProjectConfigSnapshot.read(ByteBuffer.wrap(snapshot)).getProjectConfig();
+    }
+
+    @Test
+    public void roundTripV2() throws Exception {
+        ProjectConfig projectConfig = build(validConfigJsonV2());
+        verifyProjectConfig(roundTrip(projectConfig), projectConfig);
+    }
+
+    @Test
+    public void roundTripV3() throws Exception {
+        ProjectConfig projectConfig = build(validConfigJsonV3());
+        verifyProjectConfig(roundTrip(projectConfig), projectConfig);
+    }
+
+    @Test
+    public void roundTripV4() throws Exception {
+        ProjectConfig projectConfig = build(validConfigJsonV4());
+        ProjectConfig restored = roundTrip(projectConfig);
+
+        verifyProjectConfig(restored, projectConfig);
+        assertEquals(projectConfig.getBotFiltering(), restored.getBotFiltering());
+        assertEquals(projectConfig.getAnonymizeIP(), restored.getAnonymizeIP());
+    }
+
+    @Test
+    public void roundTripKeepsCreationTimeAndDatafileHash() throws Exception {
+        byte[] hash = new byte[]{1, 2, 3};
+        ProjectConfigSnapshot snapshot = new ProjectConfigSnapshot(build(validConfigJsonV4()), hash);
+
+        ProjectConfigSnapshot restored = ProjectConfigSnapshot.read(ByteBuffer.wrap(snapshot.toByteArray()));
+
+        assertEquals(snapshot.getCreatedAt(), restored.getCreatedAt());
+        assertArrayEquals(hash, restored.getDatafileHash());
+    }
+
+    @Test
+    public void roundTripWithoutDatafileHash() throws Exception {
+        ProjectConfigSnapshot snapshot = new ProjectConfigSnapshot(build(validConfigJsonV4()), null);
+
+        assertNull(ProjectConfigSnapshot.read(ByteBuffer.wrap(snapshot.toByteArray())).getDatafileHash());
+    }
+
+    @Test
+    public void readFile() throws Exception {
+        ProjectConfig projectConfig = build(validConfigJsonV4());
+        Path file = Files.createTempFile("project-config", ".snapshot");
+        try {
+            new ProjectConfigSnapshot(projectConfig, null).writeTo(file);
+            verifyProjectConfig(ProjectConfigSnapshot.read(file).getProjectConfig(), projectConfig);
+
+            // the file is not held once read, so it can be replaced
+            new ProjectConfigSnapshot(projectConfig, null).writeTo(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void readMissingFile() throws Exception {
+        Path file = Files.createTempFile("project-config", ".snapshot");
+        Files.delete(file);
+
+        thrown.expect(ConfigParseException.class);
+        ProjectConfigSnapshot.read(file);
+    }
+
+    @Test
+    public void readCorruptSnapshot() throws Exception {
+        byte[] snapshot = new ProjectConfigSnapshot(build(validConfigJsonV4()), null).toByteArray();
+        snapshot[snapshot.length / 2] ^= 1;
+
+        thrown.expect(ConfigParseException.class);
+        ProjectConfigSnapshot.read(ByteBuffer.wrap(snapshot));
+    }
+
+    @Test
+    public void readTruncatedSnapshot() throws Exception {
+        byte[] snapshot = new ProjectConfigSnapshot(build(validConfigJsonV4()), null).toByteArray();
+
+        thrown.expect(ConfigParseException.class);
+        ProjectConfigSnapshot.read(ByteBuffer.wrap(snapshot, 0, snapshot.length - 1));
+    }
+
+    @Test
+    public void readOtherFormatVersion() throws Exception {
+        byte[] snapshot = new ProjectConfigSnapshot(build(validConfigJsonV4()), null).toByteArray();
+        // the format version follows the magic number
+        snapshot[5] = (byte) (ProjectConfigSnapshot.FORMAT_VERSION + 1);
+
+        thrown.expect(ConfigParseException.class);
+        ProjectConfigSnapshot.read(ByteBuffer.wrap(snapshot));
+    }
+
+    @Test
+    public void readDatafile() throws Exception {
+        thrown.expect(ConfigParseException.class);
+        ProjectConfigSnapshot.read(ByteBuffer.wrap(validConfigJsonV4().getBytes("UTF-8")));
+    }
+}
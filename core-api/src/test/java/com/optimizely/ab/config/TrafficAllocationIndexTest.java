@@ -0,0 +1,97 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.config;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests for {@link TrafficAllocationIndex}.
+ */
+public class TrafficAllocationIndexTest {
+
+    private static final List<Variation> VARIATIONS = Arrays.asList(
+        new Variation("1", "var1"),
+        new Variation("2", "var2"),
+        new Variation("3", "var3")
+    );
+
+    private static final Map<String, Variation> VARIATION_ID_MAPPING = ProjectConfigUtils.generateIdMapping(VARIATIONS);
+
+    /**
+     * Verify that bucket values are mapped to the entity of the first allocation whose end of range is greater.
+     */
+    @Test
+    public void lookupMapsBucketValuesToRanges() throws Exception {
+        TrafficAllocationIndex<Variation> index = TrafficAllocationIndex.create(Arrays.asList(
+            new TrafficAllocation("1", 1000),
+            new TrafficAllocation("2", 5000),
+            new TrafficAllocation("3", 10000)
+        ), VARIATION_ID_MAPPING);
+
+        assertThat(index.lookup(0), is(VARIATIONS.get(0)));
+        assertThat(index.lookup(999), is(VARIATIONS.get(0)));
+        assertThat(index.lookup(1000), is(VARIATIONS.get(1)));
+        assertThat(index.lookup(4999), is(VARIATIONS.get(1)));
+        assertThat(index.lookup(5000), is(VARIATIONS.get(2)));
+        assertThat(index.lookup(9999), is(VARIATIONS.get(2)));
+    }
+
+    /**
+     * Verify that unallocated traffic, de-allocated traffic and unknown entities resolve to null.
+     */
+    @Test
+    public void lookupReturnsNullForUnallocatedTraffic() throws Exception {
+        TrafficAllocationIndex<Variation> index = TrafficAllocationIndex.create(Arrays.asList(
+            new TrafficAllocation("1", 1000),
+            new TrafficAllocation("", 2000),
+            new TrafficAllocation("unknown", 3000)
+        ), VARIATION_ID_MAPPING);
+
+        assertNull(index.lookup(1500));
+        assertNull(index.lookup(2500));
+        assertNull(index.lookup(3000));
+
+        TrafficAllocationIndex<Variation> emptyIndex = TrafficAllocationIndex.create(
+            Collections.<TrafficAllocation>emptyList(), VARIATION_ID_MAPPING);
+        assertNull(emptyIndex.lookup(0));
+    }
+
+    /**
+     * Verify that out of order allocations resolve the same way as a linear scan of the allocations.
+     */
+    @Test
+    public void lookupMatchesLinearScanForUnorderedRanges() throws Exception {
+        TrafficAllocationIndex<Variation> index = TrafficAllocationIndex.create(Arrays.asList(
+            new TrafficAllocation("1", 5000),
+            new TrafficAllocation("2", 1000),
+            new TrafficAllocation("3", 10000)
+        ), VARIATION_ID_MAPPING);
+
+        assertThat(index.lookup(500), is(VARIATIONS.get(0)));
+        assertThat(index.lookup(4999), is(VARIATIONS.get(0)));
+        assertThat(index.lookup(5000), is(VARIATIONS.get(2)));
+    }
+}
@@ -118,6 +118,38 @@ public class AudienceConditionEvaluationTest {
             "Audience condition \"{name='browser_type', type='custom_attribute', match='blah', value='chrome'}\" uses an unknown match type. You may need to upgrade to a newer release of the Optimizely SDK");
     }
 
+    /**
+     * Verify that an invalid match type resolved at construction is still reported on every evaluation.
+     */
+    @Test
+    public void invalidMatchIsReportedOnEachEvaluation() throws Exception {
+        UserAttribute testInstance = new UserAttribute("browser_type", "custom_attribute", "blah", "chrome");
+        assertNull(testInstance.evaluate(null, testUserAttributes));
+        assertNull(testInstance.evaluate(null, testUserAttributes));
+        logbackVerifier.expectMessage(Level.WARN,
+            "Audience condition \"{name='browser_type', type='custom_attribute', match='blah', value='chrome'}\" uses an unknown match type. You may need to upgrade to a newer release of the Optimizely SDK",
+            2);
+    }
+
+    /**
+     * Verify that a UserAttribute can be evaluated repeatedly against numeric attributes of mixed types.
+     */
+    @Test
+    public void numericMatchConditionEvaluatesRepeatedly() throws Exception {
+        UserAttribute gtInstance = new UserAttribute("num_size", "custom_attribute", "gt", 3);
+        UserAttribute exactInstance = new UserAttribute("num_size", "custom_attribute", "exact", 3L);
+
+        for (Object attributeValue : new Object[]{3, 3L, 3.0, 3.0f}) {
+            Map<String, Object> attributes = Collections.singletonMap("num_size", attributeValue);
+            assertFalse(gtInstance.evaluate(null, attributes));
+            assertTrue(exactInstance.evaluate(null, attributes));
+        }
+
+        Map<String, Object> attributes = Collections.singletonMap("num_size", (Object) 3.5);
+        assertTrue(gtInstance.evaluate(null, attributes));
+        assertFalse(exactInstance.evaluate(null, attributes));
+    }
+
     /**
      * Verify that UserAttribute.evaluate returns null on invalid attribute type.
      */
@@ -916,4 +948,43 @@ public class AudienceConditionEvaluationTest {
         assertNull(nullValueAttribute.evaluate(null, Collections.singletonMap(attributeName, attributeValue)));
         assertNull(nullValueAttribute.evaluate(null, (Collections.singletonMap(attributeName, ""))));
     }
+
+    /**
+     * Verify that an audience referenced more than once in a condition tree is evaluated once per
+     * AudienceEvaluationCache.
+     */
+    @Test
+    public void audienceIdConditionEvaluatedOncePerCache() {
+        UserAttribute userAttribute = mock(UserAttribute.class);
+        when(userAttribute.evaluate(null, testUserAttributes)).thenReturn(false);
+        Audience audience = new Audience("1", "audience", userAttribute);
+
+        List<Condition> conditions = new ArrayList<Condition>();
+        conditions.add(new AudienceIdCondition("1", audience));
+        conditions.add(new NotCondition(new AudienceIdCondition("1", audience)));
+
+        AudienceEvaluationCache cache = new AudienceEvaluationCache();
+        OrCondition orCondition = new OrCondition(conditions);
+        assertTrue(orCondition.evaluate(null, testUserAttributes, cache));
+        assertFalse(new AudienceIdCondition("1", audience).evaluate(null, testUserAttributes, cache));
+
+        verify(userAttribute, times(1)).evaluate(null, testUserAttributes);
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    /**
+     * Verify that checking an AudienceEvaluationCache for a result doesn't count as a hit or a miss.
+     */
+    @Test
+    public void audienceEvaluationCacheCountsOnlyGetAndPut() {
+        AudienceEvaluationCache cache = new AudienceEvaluationCache();
+        assertFalse(cache.contains("1"));
+        cache.put("1", null);
+        assertTrue(cache.contains("1"));
+        assertNull(cache.get("1"));
+
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
 }
@@ -1,6 +1,6 @@
 /**
  *
- *    Copyright 2016-2017, Optimizely and contributors
+ *    Copyright 2016-2017, 2019, Optimizely and contributors
  *
  *    Licensed under the Apache License, Version 2.0 (the "License");
  *    you may not use this file except in compliance with the License.
@@ -16,8 +16,11 @@
  */
 package com.optimizely.ab.config.parser;
 
+import com.optimizely.ab.internal.PropertyUtils;
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
+
 /**
  * Tests for {@link DefaultConfigParser}.
  */
@@ -27,4 +30,19 @@ public class DefaultConfigParserTest {
     public void createThrowException() throws Exception {
         // FIXME - mdodsworth: hmmm, this isn't going to be the easiest thing to test
     }
+
+    @Test
+    public void createDatabindParserByDefault() throws Exception {
+        assertEquals(JacksonConfigParser.class, DefaultConfigParser.create().getClass());
+    }
+
+    @Test
+    public void createStreamingParserWhenEnabled() throws Exception {
+        PropertyUtils.set(DefaultConfigParser.CONFIG_STREAMING_PARSER, "true");
+        try {
+            assertEquals(JacksonStreamingConfigParser.class, DefaultConfigParser.create().getClass());
+        } finally {
+            PropertyUtils.clear(DefaultConfigParser.CONFIG_STREAMING_PARSER);
+        }
+    }
 }
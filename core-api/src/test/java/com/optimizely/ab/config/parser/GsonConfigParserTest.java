@@ -21,6 +21,7 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.reflect.TypeToken;
+import com.optimizely.ab.config.DatafileProjectConfig;
 import com.optimizely.ab.config.ProjectConfig;
 import com.optimizely.ab.config.audience.Audience;
 import com.optimizely.ab.config.audience.Condition;
@@ -43,6 +44,8 @@ import static com.optimizely.ab.config.DatafileProjectConfigTestUtils.validProje
 import static com.optimizely.ab.config.DatafileProjectConfigTestUtils.validProjectConfigV4;
 import static com.optimizely.ab.config.DatafileProjectConfigTestUtils.verifyProjectConfig;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Tests for {@link GsonConfigParser}.
@@ -79,6 +82,19 @@ public class GsonConfigParserTest {
         verifyProjectConfig(actual, expected);
     }
 
+    @Test
+    public void parseProjectConfigV4WithPreviousConfig() throws Exception {
+        GsonConfigParser parser = new GsonConfigParser();
+        ProjectConfig previous = parser.parseProjectConfig(validConfigJsonV4());
+        DatafileProjectConfig actual = (DatafileProjectConfig) parser.withPreviousConfig(previous)
+            .parseProjectConfig(validConfigJsonV4());
+
+        verifyProjectConfig(actual, validProjectConfigV4());
+        assertTrue(actual.getChanges().isEmpty());
+        assertSame(previous.getExperiments().get(0), actual.getExperiments().get(0));
+        assertSame(previous.getFeatureFlags().get(0), actual.getFeatureFlags().get(0));
+    }
+
     @Test
     public void parseNullFeatureEnabledProjectConfigV4() throws Exception {
         GsonConfigParser parser = new GsonConfigParser();
@@ -264,6 +280,6 @@ public class GsonConfigParserTest {
         thrown.expect(ConfigParseException.class);
 
         GsonConfigParser parser = new GsonConfigParser();
-        parser.parseProjectConfig(null);
+        parser.parseProjectConfig((String) null);
     }
 }
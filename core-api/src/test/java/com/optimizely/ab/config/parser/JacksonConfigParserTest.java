@@ -18,7 +18,12 @@ package com.optimizely.ab.config.parser;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.optimizely.ab.config.DatafileProjectConfig;
+import com.optimizely.ab.config.Experiment;
 import com.optimizely.ab.config.ProjectConfig;
+import com.optimizely.ab.config.ProjectConfigFootprint;
+import com.optimizely.ab.config.TrafficAllocation;
+import com.optimizely.ab.config.Variation;
 import com.optimizely.ab.config.audience.Audience;
 import com.optimizely.ab.config.audience.Condition;
 import com.optimizely.ab.config.audience.TypedAudience;
@@ -37,6 +42,8 @@ import static com.optimizely.ab.config.DatafileProjectConfigTestUtils.validProje
 import static com.optimizely.ab.config.DatafileProjectConfigTestUtils.validProjectConfigV4;
 import static com.optimizely.ab.config.DatafileProjectConfigTestUtils.verifyProjectConfig;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Tests for {@link JacksonConfigParser}.
@@ -73,6 +80,46 @@ public class JacksonConfigParserTest {
         verifyProjectConfig(actual, expected);
     }
 
+    @Test
+    public void parseProjectConfigV4SharesRepeatedStrings() throws Exception {
+        JacksonConfigParser parser = new JacksonConfigParser();
+        ProjectConfig actual = parser.parseProjectConfig(validConfigJsonV4());
+
+        for (Experiment experiment : actual.getExperiments()) {
+            for (TrafficAllocation trafficAllocation : experiment.getTrafficAllocation()) {
+                Variation variation = experiment.getVariationIdToVariationMap().get(trafficAllocation.getEntityId());
+                if (variation != null) {
+                    assertSame(variation.getId(), trafficAllocation.getEntityId());
+                }
+            }
+            for (String audienceId : experiment.getAudienceIds()) {
+                assertSame(actual.getAudience(audienceId).getId(), audienceId);
+            }
+        }
+    }
+
+    @Test
+    public void parseProjectConfigV4HoldsFewerDuplicateStringsThanGsonConfigParser() throws Exception {
+        ProjectConfig pooled = new JacksonConfigParser().parseProjectConfig(validConfigJsonV4());
+        ProjectConfig unpooled = new GsonConfigParser().parseProjectConfig(validConfigJsonV4());
+
+        assertTrue(ProjectConfigFootprint.of(pooled).getDuplicateStringCount()
+            < ProjectConfigFootprint.of(unpooled).getDuplicateStringCount());
+    }
+
+    @Test
+    public void parseProjectConfigV4WithPreviousConfig() throws Exception {
+        JacksonConfigParser parser = new JacksonConfigParser();
+        ProjectConfig previous = parser.parseProjectConfig(validConfigJsonV4());
+        DatafileProjectConfig actual = (DatafileProjectConfig) parser.withPreviousConfig(previous)
+            .parseProjectConfig(validConfigJsonV4());
+
+        verifyProjectConfig(actual, validProjectConfigV4());
+        assertTrue(actual.getChanges().isEmpty());
+        assertSame(previous.getExperiments().get(0), actual.getExperiments().get(0));
+        assertSame(previous.getFeatureFlags().get(0), actual.getFeatureFlags().get(0));
+    }
+
     @Test
     public void parseNullFeatureEnabledProjectConfigV4() throws Exception {
         JacksonConfigParser parser = new JacksonConfigParser();
@@ -257,6 +304,6 @@ public class JacksonConfigParserTest {
         thrown.expect(ConfigParseException.class);
 
         JacksonConfigParser parser = new JacksonConfigParser();
-        parser.parseProjectConfig(null);
+        parser.parseProjectConfig((String) null);
     }
 }
@@ -0,0 +1,347 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.config.parser;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.optimizely.ab.config.DatafileProjectConfig;
+import com.optimizely.ab.config.Experiment;
+import com.optimizely.ab.config.ProjectConfig;
+import com.optimizely.ab.config.ProjectConfigFootprint;
+import com.optimizely.ab.config.TrafficAllocation;
+import com.optimizely.ab.config.Variation;
+import com.optimizely.ab.config.audience.AndCondition;
+import com.optimizely.ab.config.audience.AudienceIdCondition;
+import com.optimizely.ab.config.audience.Condition;
+import com.optimizely.ab.config.audience.EmptyCondition;
+import com.optimizely.ab.config.audience.NotCondition;
+import com.optimizely.ab.config.audience.OrCondition;
+import com.optimizely.ab.config.audience.UserAttribute;
+import com.optimizely.ab.internal.InvalidAudienceCondition;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.optimizely.ab.config.DatafileProjectConfigTestUtils.nullFeatureEnabledConfigJsonV4;
+import static com.optimizely.ab.config.DatafileProjectConfigTestUtils.validConfigJsonV2;
+import static com.optimizely.ab.config.DatafileProjectConfigTestUtils.validConfigJsonV3;
+import static com.optimizely.ab.config.DatafileProjectConfigTestUtils.validConfigJsonV4;
+import static com.optimizely.ab.config.DatafileProjectConfigTestUtils.validProjectConfigV2;
+import static com.optimizely.ab.config.DatafileProjectConfigTestUtils.validProjectConfigV3;
+import static com.optimizely.ab.config.DatafileProjectConfigTestUtils.validProjectConfigV4;
+import static com.optimizely.ab.config.DatafileProjectConfigTestUtils.verifyProjectConfig;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link JacksonStreamingConfigParser}.
+ */
+public class JacksonStreamingConfigParserTest {
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    @Test
+    public void parseProjectConfigV2() throws Exception {
+        JacksonStreamingConfigParser parser = new JacksonStreamingConfigParser();
+        ProjectConfig actual = parser.parseProjectConfig(validConfigJsonV2());
+        ProjectConfig expected = validProjectConfigV2();
+
+        verifyProjectConfig(actual, expected);
+    }
+
+    @Test
+    public void parseProjectConfigV3() throws Exception {
+        JacksonStreamingConfigParser parser = new JacksonStreamingConfigParser();
+        ProjectConfig actual = parser.parseProjectConfig(validConfigJsonV3());
+        ProjectConfig expected = validProjectConfigV3();
+
+        verifyProjectConfig(actual, expected);
+    }
+
+    @Test
+    public void parseProjectConfigV4() throws Exception {
+        JacksonStreamingConfigParser parser = new JacksonStreamingConfigParser();
+        ProjectConfig actual = parser.parseProjectConfig(validConfigJsonV4());
+        ProjectConfig expected = validProjectConfigV4();
+
+        verifyProjectConfig(actual, expected);
+    }
+
+    @Test
+    public void parseProjectConfigV4WithPreviousConfig() throws Exception {
+        JacksonStreamingConfigParser parser = new JacksonStreamingConfigParser();
+        ProjectConfig previous = parser.parseProjectConfig(validConfigJsonV4());
+        DatafileProjectConfig actual = (DatafileProjectConfig) parser.withPreviousConfig(previous)
+            .parseProjectConfig(validConfigJsonV4());
+
+        verifyProjectConfig(actual, validProjectConfigV4());
+        assertTrue(actual.getChanges().isEmpty());
+        assertSame(previous.getExperiments().get(0), actual.getExperiments().get(0));
+        assertSame(previous.getFeatureFlags().get(0), actual.getFeatureFlags().get(0));
+    }
+
+    /**
+     * Verify that both Jackson parsers build the same config, conditions included.
+     */
+    @Test
+    public void parseProjectConfigV4SameAsJacksonConfigParser() throws Exception {
+        ProjectConfig actual = new JacksonStreamingConfigParser().parseProjectConfig(validConfigJsonV4());
+        ProjectConfig expected = new JacksonConfigParser().parseProjectConfig(validConfigJsonV4());
+
+        verifyProjectConfig(actual, expected);
+        assertEquals(expected.getTypedAudiences().toString(), actual.getTypedAudiences().toString());
+    }
+
+    @Test
+    public void parseProjectConfigV4SharesRepeatedStrings() throws Exception {
+        JacksonStreamingConfigParser parser = new JacksonStreamingConfigParser();
+        ProjectConfig actual = parser.parseProjectConfig(validConfigJsonV4());
+
+        for (Experiment experiment : actual.getExperiments()) {
+            for (TrafficAllocation trafficAllocation : experiment.getTrafficAllocation()) {
+                Variation variation = experiment.getVariationIdToVariationMap().get(trafficAllocation.getEntityId());
+                if (variation != null) {
+                    assertSame(variation.getId(), trafficAllocation.getEntityId());
+                }
+            }
+            for (String audienceId : experiment.getAudienceIds()) {
+                assertSame(actual.getAudience(audienceId).getId(), audienceId);
+            }
+        }
+    }
+
+    @Test
+    public void parseProjectConfigV4HoldsFewerDuplicateStringsThanGsonConfigParser() throws Exception {
+        ProjectConfig pooled = new JacksonStreamingConfigParser().parseProjectConfig(validConfigJsonV4());
+        ProjectConfig unpooled = new GsonConfigParser().parseProjectConfig(validConfigJsonV4());
+
+        assertTrue(ProjectConfigFootprint.of(pooled).getDuplicateStringCount()
+            < ProjectConfigFootprint.of(unpooled).getDuplicateStringCount());
+    }
+
+    @Test
+    public void parseProjectConfigV4FromBytes() throws Exception {
+        JacksonStreamingConfigParser parser = new JacksonStreamingConfigParser();
+        ProjectConfig actual = parser.parseProjectConfig(validConfigJsonV4().getBytes(StandardCharsets.UTF_8));
+
+        verifyProjectConfig(actual, validProjectConfigV4());
+    }
+
+    @Test
+    public void parseProjectConfigV4FromSlicedByteBuffer() throws Exception {
+        byte[] datafile = ("  " + validConfigJsonV4()).getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.wrap(datafile, 2, datafile.length - 2).slice();
+
+        JacksonStreamingConfigParser parser = new JacksonStreamingConfigParser();
+        ProjectConfig actual = parser.parseProjectConfig(buffer);
+
+        verifyProjectConfig(actual, validProjectConfigV4());
+        assertEquals(0, buffer.position());
+    }
+
+    @Test
+    public void parseProjectConfigV4FromInputStreamLeavesItOpen() throws Exception {
+        final AtomicBoolean closed = new AtomicBoolean();
+        InputStream datafile = new ByteArrayInputStream(validConfigJsonV4().getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public void close() throws IOException {
+                closed.set(true);
+                super.close();
+            }
+        };
+
+        JacksonStreamingConfigParser parser = new JacksonStreamingConfigParser();
+        ProjectConfig actual = parser.parseProjectConfig(datafile);
+
+        verifyProjectConfig(actual, validProjectConfigV4());
+        assertFalse(closed.get());
+    }
+
+    @Test
+    public void parseNullFeatureEnabledProjectConfigV4() throws Exception {
+        JacksonStreamingConfigParser parser = new JacksonStreamingConfigParser();
+        ProjectConfig actual = parser.parseProjectConfig(nullFeatureEnabledConfigJsonV4());
+
+        assertNotNull(actual);
+
+        assertNotNull(actual.getExperiments());
+
+        assertNotNull(actual.getFeatureFlags());
+    }
+
+    @Test
+    public void parseAudienceConditions() throws Exception {
+        Condition condition = parseCondition("[\"and\", \"12\", [\"not\", \"123\"]]", AudienceIdCondition.class);
+
+        assertTrue(condition instanceof AndCondition);
+        assertTrue(((AndCondition) condition).getConditions().get(0) instanceof AudienceIdCondition);
+        assertTrue(((AndCondition) condition).getConditions().get(1) instanceof NotCondition);
+    }
+
+    @Test
+    public void parseAudienceConditionsDefaultsToOr() throws Exception {
+        Condition condition = parseCondition("[\"12\", \"123\"]", AudienceIdCondition.class);
+
+        assertTrue(condition instanceof OrCondition);
+        assertEquals(2, ((OrCondition) condition).getConditions().size());
+    }
+
+    @Test
+    public void parseEmptyAudienceConditions() throws Exception {
+        assertTrue(parseCondition("[]", AudienceIdCondition.class) instanceof EmptyCondition);
+    }
+
+    @Test
+    public void parseUserAttributeValues() throws Exception {
+        OrCondition condition = (OrCondition) parseCondition("[\"or\", " +
+            "{\"name\": \"intKey\", \"type\": \"custom_attribute\", \"match\": \"exact\", \"value\": 100}, " +
+            "{\"name\": \"doubleKey\", \"type\": \"custom_attribute\", \"match\": \"lt\", \"value\": 100.0}, " +
+            "{\"name\": \"boolKey\", \"type\": \"custom_attribute\", \"value\": true}]", UserAttribute.class);
+
+        assertEquals(100, ((UserAttribute) condition.getConditions().get(0)).getValue());
+        assertEquals(100.0, ((UserAttribute) condition.getConditions().get(1)).getValue());
+        assertEquals(true, ((UserAttribute) condition.getConditions().get(2)).getValue());
+        assertEquals(null, ((UserAttribute) condition.getConditions().get(2)).getMatch());
+    }
+
+    @Test
+    public void parseInvalidAudience() throws Exception {
+        thrown.expect(InvalidAudienceCondition.class);
+
+        parseCondition("[\"and\", [\"or\", [\"or\", \"123\"]]]", UserAttribute.class);
+    }
+
+    @Test
+    public void parseInvalidAudienceConditions() throws Exception {
+        thrown.expect(InvalidAudienceCondition.class);
+
+        parseCondition("[\"and\", [\"or\", [\"or\", {\"name\": \"doubleKey\", \"type\": \"custom_attribute\", \"match\":\"lt\", \"value\":100.0}]]]",
+            AudienceIdCondition.class);
+    }
+
+    /**
+     * Verify that values that are not conditions compile to null, as with {@link JacksonConfigParser}.
+     */
+    @Test
+    public void parseUnexpectedConditionValueSameAsJacksonConfigParser() throws Exception {
+        assertEquals(null, parseCondition("5", AudienceIdCondition.class));
+
+        String datafile = validConfigJsonV4().replaceFirst("\"audienceIds\"",
+            "\"audienceConditions\": [\"or\", 5, null, \"3468206642\"], \"audienceIds\"");
+        Experiment actual = new JacksonStreamingConfigParser().parseProjectConfig(datafile).getExperiments().get(0);
+        Experiment expected = new JacksonConfigParser().parseProjectConfig(datafile).getExperiments().get(0);
+
+        assertEquals(expected.getAudienceConditions().toString(), actual.getAudienceConditions().toString());
+    }
+
+    /**
+     * Verify that a typed audience without conditions is kept, as with {@link JacksonConfigParser}.
+     */
+    @Test
+    public void parseTypedAudienceWithoutConditionsSameAsJacksonConfigParser() throws Exception {
+        String datafile = validConfigJsonV4().replaceFirst("\"typedAudiences\"\\s*:\\s*\\[",
+            "\"typedAudiences\": [{\"id\": \"999\", \"name\": \"no conditions\", \"conditions\": null},");
+        ProjectConfig actual = new JacksonStreamingConfigParser().parseProjectConfig(datafile);
+        ProjectConfig expected = new JacksonConfigParser().parseProjectConfig(datafile);
+
+        assertEquals(expected.getTypedAudiences().toString(), actual.getTypedAudiences().toString());
+        assertEquals(null, actual.getAudienceIdMapping().get("999").getConditions());
+    }
+
+    /**
+     * Verify that null audiences are rejected, as with {@link JacksonConfigParser}.
+     */
+    @Test
+    public void parseNullAudiencesSameAsJacksonConfigParser() throws Exception {
+        String datafile = validConfigJsonV4().replaceFirst("\"audiences\"\\s*:\\s*\\[",
+            "\"audiences\": null, \"ignored\": [");
+        try {
+            new JacksonConfigParser().parseProjectConfig(datafile);
+            fail("JacksonConfigParser accepted null audiences");
+        } catch (ConfigParseException e) {
+            // expected
+        }
+
+        thrown.expect(ConfigParseException.class);
+        new JacksonStreamingConfigParser().parseProjectConfig(datafile);
+    }
+
+    /**
+     * Verify that invalid JSON results in a {@link ConfigParseException} being thrown.
+     */
+    @Test
+    public void invalidJsonExceptionWrapping() throws Exception {
+        thrown.expect(ConfigParseException.class);
+
+        JacksonStreamingConfigParser parser = new JacksonStreamingConfigParser();
+        parser.parseProjectConfig("invalid config");
+    }
+
+    /**
+     * Verify that valid JSON without a required field results in a {@link ConfigParseException} being thrown.
+     */
+    @Test
+    public void validJsonRequiredFieldMissingExceptionWrapping() throws Exception {
+        thrown.expect(ConfigParseException.class);
+
+        JacksonStreamingConfigParser parser = new JacksonStreamingConfigParser();
+        parser.parseProjectConfig("{\"valid\": \"json\"}");
+    }
+
+    /**
+     * Verify that empty string JSON results in a {@link ConfigParseException} being thrown.
+     */
+    @Test
+    public void emptyJsonExceptionWrapping() throws Exception {
+        thrown.expect(ConfigParseException.class);
+
+        JacksonStreamingConfigParser parser = new JacksonStreamingConfigParser();
+        parser.parseProjectConfig("");
+    }
+
+    /**
+     * Verify that null JSON results in a {@link ConfigParseException} being thrown.
+     */
+    @Test
+    @SuppressFBWarnings(value = "NP_NONNULL_PARAM_VIOLATION", justification = "Testing nullness contract violation")
+    public void nullJsonExceptionWrapping() throws Exception {
+        thrown.expect(ConfigParseException.class);
+
+        JacksonStreamingConfigParser parser = new JacksonStreamingConfigParser();
+        parser.parseProjectConfig((String) null);
+    }
+
+    private static Condition parseCondition(String json, Class<?> clazz) throws IOException {
+        try (JsonParser parser = new JsonFactory().createParser(json)) {
+            parser.nextToken();
+            return JacksonStreamingConfigParser.parseCondition(parser, clazz);
+        }
+    }
+}
@@ -16,6 +16,7 @@
  */
 package com.optimizely.ab.config.parser;
 
+import com.optimizely.ab.config.DatafileProjectConfig;
 import com.optimizely.ab.config.ProjectConfig;
 
 import com.optimizely.ab.config.audience.AudienceIdCondition;
@@ -39,6 +40,8 @@ import static com.optimizely.ab.config.DatafileProjectConfigTestUtils.validProje
 import static com.optimizely.ab.config.DatafileProjectConfigTestUtils.validProjectConfigV4;
 import static com.optimizely.ab.config.DatafileProjectConfigTestUtils.verifyProjectConfig;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Tests for {@link JsonSimpleConfigParser}.
@@ -75,6 +78,19 @@ public class JsonSimpleConfigParserTest {
         verifyProjectConfig(actual, expected);
     }
 
+    @Test
+    public void parseProjectConfigV4WithPreviousConfig() throws Exception {
+        JsonSimpleConfigParser parser = new JsonSimpleConfigParser();
+        ProjectConfig previous = parser.parseProjectConfig(validConfigJsonV4());
+        DatafileProjectConfig actual = (DatafileProjectConfig) parser.withPreviousConfig(previous)
+            .parseProjectConfig(validConfigJsonV4());
+
+        verifyProjectConfig(actual, validProjectConfigV4());
+        assertTrue(actual.getChanges().isEmpty());
+        assertSame(previous.getExperiments().get(0), actual.getExperiments().get(0));
+        assertSame(previous.getFeatureFlags().get(0), actual.getFeatureFlags().get(0));
+    }
+
     @Test
     public void parseNullFeatureEnabledProjectConfigV4() throws Exception {
         JsonSimpleConfigParser parser = new JsonSimpleConfigParser();
@@ -208,6 +224,6 @@ public class JsonSimpleConfigParserTest {
         thrown.expect(ConfigParseException.class);
 
         JsonSimpleConfigParser parser = new JsonSimpleConfigParser();
-        parser.parseProjectConfig(null);
+        parser.parseProjectConfig((String) null);
     }
 }
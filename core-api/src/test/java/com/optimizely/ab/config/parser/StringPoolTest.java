@@ -0,0 +1,77 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.config.parser;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests for {@link StringPool}.
+ */
+public class StringPoolTest {
+
+    @Test
+    public void internReturnsPooledString() {
+        StringPool stringPool = new StringPool();
+        char[] chars = "[\"1234\", \"1234\"]".toCharArray();
+
+        String first = stringPool.intern(chars, 2, 4);
+        String second = stringPool.intern(chars, 10, 4);
+
+        assertEquals("1234", first);
+        assertSame(first, second);
+        assertSame(first, stringPool.intern("1234".toCharArray(), 0, 4));
+        assertEquals(1, stringPool.size());
+    }
+
+    @Test
+    public void internKeepsDistinctStrings() {
+        StringPool stringPool = new StringPool();
+        // equal hash codes
+        String first = stringPool.intern("Aa".toCharArray(), 0, 2);
+        String second = stringPool.intern("BB".toCharArray(), 0, 2);
+
+        assertEquals("BB", second);
+        assertNotSame(first, second);
+        assertEquals(2, stringPool.size());
+    }
+
+    @Test
+    public void internEmptyString() {
+        StringPool stringPool = new StringPool();
+
+        assertSame(stringPool.intern(new char[0], 0, 0), stringPool.intern("[]".toCharArray(), 1, 0));
+    }
+
+    @Test
+    public void internWhileGrowing() {
+        StringPool stringPool = new StringPool();
+        String[] pooled = new String[10000];
+        for (int i = 0; i < pooled.length; i++) {
+            pooled[i] = stringPool.intern(Integer.toString(i).toCharArray(), 0, Integer.toString(i).length());
+        }
+
+        for (int i = 0; i < pooled.length; i++) {
+            String string = "[" + i + "]";
+            assertSame(pooled[i], stringPool.intern(string.toCharArray(), 1, string.length() - 2));
+        }
+        assertEquals(pooled.length, stringPool.size());
+    }
+}
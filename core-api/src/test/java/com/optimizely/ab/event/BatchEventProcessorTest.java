@@ -0,0 +1,341 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.event;
+
+import com.optimizely.ab.config.Experiment;
+import com.optimizely.ab.config.ProjectConfig;
+import com.optimizely.ab.config.Variation;
+import com.optimizely.ab.event.internal.EventFactory;
+import com.optimizely.ab.event.internal.UserEvent;
+import com.optimizely.ab.event.internal.payload.EventBatch;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static com.optimizely.ab.config.DatafileProjectConfigTestUtils.validProjectConfigV4;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class BatchEventProcessorTest {
+
+    private static final int MAX_BATCH_SIZE = 10;
+    private static final long MAX_DURATION_MS = 1000;
+    private static final long TIMEOUT_MS = 5000;
+
+    private final EventFactory eventFactory = new EventFactory();
+    private final CapturingEventHandler eventHandler = new CapturingEventHandler();
+
+    private ProjectConfig projectConfig;
+    private BatchEventProcessor eventProcessor;
+
+    @Before
+    public void setUp() throws Exception {
+        projectConfig = validProjectConfigV4();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (eventProcessor != null) {
+            eventProcessor.close();
+        }
+    }
+
+    @Test
+    public void testDrainOnClose() throws Exception {
+        eventProcessor = setEventProcessor(MAX_BATCH_SIZE, MAX_DURATION_MS);
+        eventProcessor.process(buildConversionEvent(projectConfig, "user1"));
+        eventProcessor.process(buildConversionEvent(projectConfig, "user2"));
+
+        eventProcessor.close();
+        assertFalse(eventProcessor.isRunning());
+
+        LogEvent logEvent = eventHandler.poll();
+        assertNotNull(logEvent);
+        assertEquals(2, logEvent.getEventBatch().getVisitors().size());
+        assertNull(eventHandler.poll(0));
+    }
+
+    @Test
+    public void testFlushMaxBatchSize() throws Exception {
+        eventProcessor = setEventProcessor(MAX_BATCH_SIZE, TimeUnit.HOURS.toMillis(1));
+        for (int i = 0; i < MAX_BATCH_SIZE; i++) {
+            eventProcessor.process(buildConversionEvent(projectConfig, "user" + i));
+        }
+
+        LogEvent logEvent = eventHandler.poll();
+        assertNotNull("batch was not dispatched after reaching the max batch size", logEvent);
+
+        EventBatch eventBatch = logEvent.getEventBatch();
+        assertEquals(MAX_BATCH_SIZE, eventBatch.getVisitors().size());
+        assertEquals(projectConfig.getAccountId(), eventBatch.getAccountId());
+        assertEquals(projectConfig.getProjectId(), eventBatch.getProjectId());
+        assertEquals(projectConfig.getRevision(), eventBatch.getRevision());
+        assertEquals("user0", eventBatch.getVisitors().get(0).getVisitorId());
+        assertEquals("user9", eventBatch.getVisitors().get(MAX_BATCH_SIZE - 1).getVisitorId());
+    }
+
+    @Test
+    public void testFlushOnMaxTimeout() throws Exception {
+        eventProcessor = setEventProcessor(MAX_BATCH_SIZE, 100);
+        eventProcessor.process(buildConversionEvent(projectConfig, "user1"));
+
+        LogEvent logEvent = eventHandler.poll();
+        assertNotNull("batch was not dispatched after the flush interval", logEvent);
+        assertEquals(1, logEvent.getEventBatch().getVisitors().size());
+    }
+
+    @Test
+    public void testFlush() throws Exception {
+        eventProcessor = setEventProcessor(MAX_BATCH_SIZE, TimeUnit.HOURS.toMillis(1));
+        eventProcessor.process(buildConversionEvent(projectConfig, "user1"));
+        eventProcessor.flush();
+        assertEquals(1, eventHandler.poll().getEventBatch().getVisitors().size());
+
+        eventProcessor.process(buildImpressionEvent(projectConfig, "user2"));
+        eventProcessor.flush();
+        assertEquals(1, eventHandler.poll().getEventBatch().getVisitors().size());
+    }
+
+    @Test
+    public void testEventsAreGroupedByContext() throws Exception {
+        ProjectConfig otherRevision = mock(ProjectConfig.class);
+        when(otherRevision.getAccountId()).thenReturn(projectConfig.getAccountId());
+        when(otherRevision.getProjectId()).thenReturn(projectConfig.getProjectId());
+        when(otherRevision.getRevision()).thenReturn("other");
+        when(otherRevision.getAnonymizeIP()).thenReturn(projectConfig.getAnonymizeIP());
+        when(otherRevision.getEventNameMapping()).thenReturn(projectConfig.getEventNameMapping());
+
+        eventProcessor = setEventProcessor(2, TimeUnit.HOURS.toMillis(1));
+        eventProcessor.process(buildConversionEvent(projectConfig, "user1"));
+        eventProcessor.process(buildConversionEvent(otherRevision, "user2"));
+        eventProcessor.process(buildConversionEvent(projectConfig, "user3"));
+
+        LogEvent logEvent = eventHandler.poll();
+        assertNotNull(logEvent);
+        assertEquals(projectConfig.getRevision(), logEvent.getEventBatch().getRevision());
+        assertEquals(2, logEvent.getEventBatch().getVisitors().size());
+        assertEquals("user1", logEvent.getEventBatch().getVisitors().get(0).getVisitorId());
+        assertEquals("user3", logEvent.getEventBatch().getVisitors().get(1).getVisitorId());
+
+        eventProcessor.flush();
+        logEvent = eventHandler.poll();
+        assertNotNull(logEvent);
+        assertEquals("other", logEvent.getEventBatch().getRevision());
+        assertEquals(1, logEvent.getEventBatch().getVisitors().size());
+    }
+
+    @Test
+    public void testEventHandlerExceptionDoesNotStopProcessing() throws Exception {
+        eventHandler.throwOnNextDispatch = true;
+        eventProcessor = setEventProcessor(1, TimeUnit.HOURS.toMillis(1));
+        eventProcessor.process(buildConversionEvent(projectConfig, "user1"));
+        eventProcessor.process(buildConversionEvent(projectConfig, "user2"));
+
+        LogEvent logEvent = eventHandler.poll();
+        assertNotNull(logEvent);
+        assertEquals("user2", logEvent.getEventBatch().getVisitors().get(0).getVisitorId());
+    }
+
+    @Test
+    public void testProcessAfterCloseIsIgnored() throws Exception {
+        eventProcessor = setEventProcessor(MAX_BATCH_SIZE, MAX_DURATION_MS);
+        eventProcessor.close();
+
+        eventProcessor.process(buildConversionEvent(projectConfig, "user1"));
+        assertNull(eventHandler.poll(100));
+    }
+
+    @Test
+    public void testCloseLeavesEventHandlerOpen() throws Exception {
+        ClosableEventHandler closableEventHandler = new ClosableEventHandler();
+        eventProcessor = BatchEventProcessor.builder()
+            .withEventHandler(closableEventHandler)
+            .withCloseTimeout(TIMEOUT_MS, TimeUnit.MILLISECONDS)
+            .build();
+
+        eventProcessor.close();
+        assertFalse(closableEventHandler.closed);
+    }
+
+    @Test
+    public void testCloseDrainsWhenNeverStarted() throws Exception {
+        eventProcessor = BatchEventProcessor.builder()
+            .withEventHandler(eventHandler)
+            .withCloseTimeout(TIMEOUT_MS, TimeUnit.MILLISECONDS)
+            .build(false);
+        eventProcessor.process(buildConversionEvent(projectConfig, "user1"));
+        eventProcessor.process(buildConversionEvent(projectConfig, "user2"));
+
+        eventProcessor.close();
+        assertFalse(eventProcessor.isRunning());
+
+        LogEvent logEvent = eventHandler.poll(0);
+        assertNotNull(logEvent);
+        assertEquals(2, logEvent.getEventBatch().getVisitors().size());
+    }
+
+    @Test
+    public void testStartAfterCloseIsIgnored() throws Exception {
+        eventProcessor = BatchEventProcessor.builder()
+            .withEventHandler(eventHandler)
+            .withCloseTimeout(TIMEOUT_MS, TimeUnit.MILLISECONDS)
+            .build(false);
+
+        eventProcessor.close();
+        eventProcessor.start();
+        assertFalse(eventProcessor.isRunning());
+
+        eventProcessor.process(buildConversionEvent(projectConfig, "user1"));
+        assertNull(eventHandler.poll(100));
+    }
+
+    @Test
+    public void testCloseLeavesGivenExecutorRunning() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            eventProcessor = BatchEventProcessor.builder()
+                .withEventHandler(eventHandler)
+                .withExecutor(executor)
+                .withCloseTimeout(TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                .build();
+
+            eventProcessor.close();
+            assertFalse(executor.isShutdown());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCloseWithFullQueueAndNoConsumer() throws Exception {
+        // the only worker is kept busy so the consumer never runs
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CountDownLatch latch = new CountDownLatch(1);
+        executor.submit(() -> {
+            latch.await();
+            return null;
+        });
+
+        try {
+            eventProcessor = BatchEventProcessor.builder()
+                .withEventHandler(eventHandler)
+                .withExecutor(executor)
+                .withEventQueue(new ArrayBlockingQueue<Object>(1))
+                .withCloseTimeout(100, TimeUnit.MILLISECONDS)
+                .build();
+            eventProcessor.process(buildConversionEvent(projectConfig, "user1"));
+
+            long start = System.currentTimeMillis();
+            eventProcessor.close();
+            assertTrue(System.currentTimeMillis() - start < TIMEOUT_MS);
+            assertFalse(eventProcessor.isRunning());
+        } finally {
+            latch.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testInvalidBuilderValuesKeepDefaults() {
+        BatchEventProcessor.Builder builder = BatchEventProcessor.builder();
+        int batchSize = builder.batchSize;
+        long flushInterval = builder.flushInterval;
+        int queueCapacity = builder.queueCapacity;
+
+        builder.withBatchSize(-1).withFlushInterval(-1L, TimeUnit.SECONDS).withQueueCapacity(0);
+
+        assertEquals(batchSize, builder.batchSize);
+        assertEquals(flushInterval, builder.flushInterval);
+        assertEquals(queueCapacity, builder.queueCapacity);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBuildWithoutEventHandler() {
+        BatchEventProcessor.builder().build();
+    }
+
+    //======== Helper methods ========//
+
+    private BatchEventProcessor setEventProcessor(int batchSize, long flushIntervalMs) {
+        return BatchEventProcessor.builder()
+            .withEventHandler(eventHandler)
+            .withBatchSize(batchSize)
+            .withFlushInterval(flushIntervalMs, TimeUnit.MILLISECONDS)
+            .withCloseTimeout(TIMEOUT_MS, TimeUnit.MILLISECONDS)
+            .build();
+    }
+
+    private UserEvent buildConversionEvent(ProjectConfig projectConfig, String userId) {
+        return eventFactory.createConversionUserEvent(projectConfig, userId, "event_id", "basic_event",
+            Collections.<String, Object>emptyMap(), Collections.<String, Object>emptyMap());
+    }
+
+    private UserEvent buildImpressionEvent(ProjectConfig projectConfig, String userId) {
+        Experiment experiment = projectConfig.getExperiments().get(0);
+        Variation variation = experiment.getVariations().get(0);
+        return eventFactory.createImpressionUserEvent(projectConfig, experiment, variation, userId,
+            Collections.<String, Object>emptyMap());
+    }
+
+    private static class ClosableEventHandler implements EventHandler, AutoCloseable {
+
+        private volatile boolean closed = false;
+
+        @Override
+        public void dispatchEvent(LogEvent logEvent) {
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private static class CapturingEventHandler implements EventHandler {
+
+        private final BlockingQueue<LogEvent> logEvents = new LinkedBlockingQueue<>();
+        private volatile boolean throwOnNextDispatch = false;
+
+        @Override
+        public void dispatchEvent(LogEvent logEvent) throws Exception {
+            if (throwOnNextDispatch) {
+                throwOnNextDispatch = false;
+                throw new Exception("Test Exception");
+            }
+
+            logEvents.add(logEvent);
+        }
+
+        LogEvent poll() throws InterruptedException {
+            return poll(TIMEOUT_MS);
+        }
+
+        LogEvent poll(long timeoutMs) throws InterruptedException {
+            return logEvents.poll(timeoutMs, TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -236,6 +236,36 @@ public class EventFactoryTest {
         }
     }
 
+    /**
+     * Verify that {@link EventFactory#createLogEvent(List)} combines the visitors of several
+     * {@link UserEvent}s into a single {@link EventBatch}.
+     */
+    @Test
+    public void createLogEventWithMultipleUserEvents() throws Exception {
+        Experiment activatedExperiment = validProjectConfig.getExperiments().get(0);
+        Variation bucketedVariation = activatedExperiment.getVariations().get(0);
+        EventType eventType = validProjectConfig.getEventTypes().get(0);
+
+        UserEvent impression = factory.createImpressionUserEvent(validProjectConfig, activatedExperiment,
+            bucketedVariation, "user1", Collections.<String, String>emptyMap());
+        UserEvent conversion = factory.createConversionUserEvent(validProjectConfig, "user2", eventType.getId(),
+            eventType.getKey(), Collections.<String, String>emptyMap(), Collections.<String, String>emptyMap());
+
+        assertEquals(impression.getEventContext(), conversion.getEventContext());
+
+        LogEvent logEvent = EventFactory.createLogEvent(Arrays.asList(impression, conversion));
+        assertThat(logEvent.getRequestMethod(), is(LogEvent.RequestMethod.POST));
+        assertThat(logEvent.getEndpointUrl(), is(EventFactory.EVENT_ENDPOINT));
+
+        EventBatch eventBatch = gson.fromJson(logEvent.getBody(), EventBatch.class);
+        assertThat(eventBatch.getAccountId(), is(validProjectConfig.getAccountId()));
+        assertThat(eventBatch.getProjectId(), is(validProjectConfig.getProjectId()));
+        assertThat(eventBatch.getRevision(), is(validProjectConfig.getRevision()));
+        assertThat(eventBatch.getVisitors().size(), is(2));
+        assertThat(eventBatch.getVisitors().get(0).getVisitorId(), is("user1"));
+        assertThat(eventBatch.getVisitors().get(1).getVisitorId(), is("user2"));
+    }
+
     /**
      * Verify that passing through an list value attribute causes that attribute to be ignored, rather than
      * causing an exception to be thrown and passing only the valid attributes.
@@ -0,0 +1,155 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.event.internal.serializer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategy;
+import com.optimizely.ab.event.internal.payload.Event;
+import com.optimizely.ab.event.internal.payload.EventBatch;
+import com.optimizely.ab.event.internal.payload.Snapshot;
+import com.optimizely.ab.event.internal.payload.Visitor;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.optimizely.ab.event.internal.serializer.SerializerTestUtils.generateConversion;
+import static com.optimizely.ab.event.internal.serializer.SerializerTestUtils.generateConversionJson;
+import static com.optimizely.ab.event.internal.serializer.SerializerTestUtils.generateConversionWithSessionId;
+import static com.optimizely.ab.event.internal.serializer.SerializerTestUtils.generateConversionWithSessionIdJson;
+import static com.optimizely.ab.event.internal.serializer.SerializerTestUtils.generateImpression;
+import static com.optimizely.ab.event.internal.serializer.SerializerTestUtils.generateImpressionJson;
+import static com.optimizely.ab.event.internal.serializer.SerializerTestUtils.generateImpressionWithSessionId;
+import static com.optimizely.ab.event.internal.serializer.SerializerTestUtils.generateImpressionWithSessionIdJson;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+public class EventBatchWriterTest {
+
+    private ObjectMapper mapper =
+        new ObjectMapper().setPropertyNamingStrategy(
+            PropertyNamingStrategy.SNAKE_CASE);
+
+    @Test
+    public void writeImpression() throws IOException {
+        EventBatch actual = read(EventBatchWriter.write(generateImpression()));
+        EventBatch expected = mapper.readValue(generateImpressionJson(), EventBatch.class);
+
+        assertThat(actual, is(expected));
+    }
+
+    @Test
+    public void writeImpressionWithSessionId() throws IOException {
+        EventBatch actual = read(EventBatchWriter.write(generateImpressionWithSessionId()));
+        EventBatch expected = mapper.readValue(generateImpressionWithSessionIdJson(), EventBatch.class);
+
+        assertThat(actual, is(expected));
+    }
+
+    @Test
+    public void writeConversion() throws IOException {
+        EventBatch actual = read(EventBatchWriter.write(generateConversion()));
+        EventBatch expected = mapper.readValue(generateConversionJson(), EventBatch.class);
+
+        assertThat(actual, is(expected));
+    }
+
+    @Test
+    public void writeConversionWithSessionId() throws IOException {
+        EventBatch actual = read(EventBatchWriter.write(generateConversionWithSessionId()));
+        EventBatch expected = mapper.readValue(generateConversionWithSessionIdJson(), EventBatch.class);
+
+        assertThat(actual, is(expected));
+    }
+
+    @Test
+    public void writeEmptyBatch() {
+        assertEquals("{}", new String(EventBatchWriter.write(new EventBatch()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void writeMatchesJacksonSerializer() throws IOException {
+        Map<String, Object> tags = new LinkedHashMap<String, Object>();
+        tags.put("quote\"back\\slash", "line\nbreak\ttab\u0001");
+        tags.put("unicode", "caf\u00e9 \u20ac \ud83d\ude00");
+        tags.put("integer", 42);
+        tags.put("double", 4.2);
+        tags.put("boolean", true);
+        Event event = new Event.Builder()
+            .setTimestamp(12345L)
+            .setUuid("uuid")
+            .setKey("key")
+            .setEntityId("7")
+            .setRevenue(100L)
+            .setTags(tags)
+            .setType("key")
+            .build();
+        Visitor visitor = new Visitor.Builder()
+            .setVisitorId("visitor")
+            .setAttributes(Collections.emptyList())
+            .setSnapshots(Collections.singletonList(new Snapshot.Builder()
+                .setEvents(Collections.singletonList(event))
+                .build()))
+            .build();
+        EventBatch eventBatch = new EventBatch.Builder()
+            .setAccountId("1")
+            .setProjectId("2")
+            .setRevision("3")
+            .setAnonymizeIp(true)
+            .setVisitors(Collections.singletonList(visitor))
+            .build();
+
+        assertWritesLikeJacksonSerializer(eventBatch);
+    }
+
+    @Test
+    public void writeReusesEnvelopeOnlyWhenItMatches() throws IOException {
+        EventBatch first = generateImpression();
+        EventBatch second = generateConversion();
+        second.setRevision("2");
+
+        assertWritesLikeJacksonSerializer(first);
+        assertWritesLikeJacksonSerializer(second);
+        assertWritesLikeJacksonSerializer(first);
+    }
+
+    @Test
+    public void writeInterleavedProjects() throws IOException {
+        // more projects than envelope slots, so some share a slot
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < 40; i++) {
+                EventBatch eventBatch = i % 2 == 0 ? generateImpression() : generateConversion();
+                eventBatch.setProjectId("project" + i);
+                assertWritesLikeJacksonSerializer(eventBatch);
+            }
+        }
+    }
+
+    private void assertWritesLikeJacksonSerializer(EventBatch eventBatch) throws IOException {
+        // compare trees since field orders could vary
+        assertEquals(mapper.readTree(new JacksonSerializer().serialize(eventBatch)),
+            mapper.readTree(EventBatchWriter.write(eventBatch)));
+    }
+
+    private EventBatch read(byte[] json) throws IOException {
+        return mapper.readValue(json, EventBatch.class);
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.event;
+
+import com.optimizely.ab.event.internal.payload.EventBatch;
+import com.sun.net.httpserver.HttpServer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * JMH benchmark of the event throughput of {@link AsyncEventHandler} in each {@link AsyncEventHandler.DispatchMode},
+ * against a local stub endpoint that answers after a fixed latency.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AsyncEventHandlerBenchmark {
+
+    private static final int EVENTS_PER_INVOCATION = 1000;
+
+    @Param({"WORKERS", "VIRTUAL_THREADS"})
+    private AsyncEventHandler.DispatchMode dispatchMode;
+
+    @Param({"5"})
+    private int latencyMillis;
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private final AtomicLong received = new AtomicLong();
+
+    private AsyncEventHandler eventHandler;
+    private LogEvent logEvent;
+
+    @Setup
+    public void setup() throws IOException {
+        serverExecutor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        server.setExecutor(serverExecutor);
+        server.createContext("/", exchange -> {
+            try (InputStream body = exchange.getRequestBody()) {
+                while (body.read() != -1) {
+                    // drain the request so the connection can be reused
+                }
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(latencyMillis));
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+            received.incrementAndGet();
+        });
+        server.start();
+
+        eventHandler = AsyncEventHandler.builder()
+            .withDispatchMode(dispatchMode)
+            .withQueueCapacity(EVENTS_PER_INVOCATION)
+            .withMaxAttempts(1)
+            .build();
+
+        EventBatch eventBatch = new EventBatch.Builder()
+            .setAccountId("1")
+            .setProjectId("2")
+            .setRevision("3")
+            .build();
+        logEvent = new LogEvent(LogEvent.RequestMethod.POST,
+            "http://127.0.0.1:" + server.getAddress().getPort() + "/events",
+            Collections.<String, String>emptyMap(),
+            eventBatch);
+    }
+
+    @TearDown
+    public void tearDown() {
+        eventHandler.shutdownAndAwaitTermination(10, TimeUnit.SECONDS);
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS_PER_INVOCATION)
+    public void dispatchEvents() {
+        long target = received.get() + EVENTS_PER_INVOCATION;
+        for (int i = 0; i < EVENTS_PER_INVOCATION; i++) {
+            eventHandler.dispatchEvent(logEvent);
+        }
+        while (received.get() < target) {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+    }
+}
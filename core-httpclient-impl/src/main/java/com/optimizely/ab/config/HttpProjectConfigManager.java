@@ -24,18 +24,33 @@ import com.optimizely.ab.notification.NotificationCenter;
 import org.apache.http.*;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.entity.ContentType;
 import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
 
 /**
  * HttpProjectConfigManager is an implementation of a {@link PollingProjectConfigManager}
  * backed by a datafile. Currently this is loosely tied to Apache HttpClient
  * implementation which is the client of choice in this package.
+ *
+ * Requests are conditional on the ETag and the last modified time of the previous datafile, and a datafile
+ * served again with the same content, as a CDN may do, is recognized by its hash before it is parsed.
+ *
+ * When a snapshot file is configured, every new config is also written to it as a {@link ProjectConfigSnapshot},
+ * which the next manager built with the same file starts from instead of parsing the fallback datafile.
  */
 public class HttpProjectConfigManager extends PollingProjectConfigManager {
 
@@ -44,22 +59,32 @@ public class HttpProjectConfigManager extends PollingProjectConfigManager {
     public static final String CONFIG_BLOCKING_DURATION = "http.project.config.manager.blocking.duration";
     public static final String CONFIG_BLOCKING_UNIT     = "http.project.config.manager.blocking.unit";
     public static final String CONFIG_SDK_KEY           = "http.project.config.manager.sdk.key";
+    public static final String CONFIG_SNAPSHOT_FILE     = "http.project.config.manager.snapshot.file";
+    public static final String CONFIG_SNAPSHOT_MAX_AGE_DURATION = "http.project.config.manager.snapshot.max.age.duration";
+    public static final String CONFIG_SNAPSHOT_MAX_AGE_UNIT     = "http.project.config.manager.snapshot.max.age.unit";
 
     public static final long DEFAULT_POLLING_DURATION  = 5;
     public static final TimeUnit DEFAULT_POLLING_UNIT  = TimeUnit.MINUTES;
     public static final long DEFAULT_BLOCKING_DURATION = 10;
     public static final TimeUnit DEFAULT_BLOCKING_UNIT = TimeUnit.SECONDS;
+    public static final long DEFAULT_SNAPSHOT_MAX_AGE_DURATION = 1;
+    public static final TimeUnit DEFAULT_SNAPSHOT_MAX_AGE_UNIT = TimeUnit.DAYS;
 
     private static final Logger logger = LoggerFactory.getLogger(HttpProjectConfigManager.class);
 
     private final OptimizelyHttpClient httpClient;
     private final URI uri;
+    private final Path snapshotFile;
     private String datafileLastModified;
+    private String datafileETag;
+    // SHA-256 of the last datafile handed out for parsing
+    private byte[] datafileHash;
 
-    private HttpProjectConfigManager(long period, TimeUnit timeUnit, OptimizelyHttpClient httpClient, String url, long blockingTimeoutPeriod, TimeUnit blockingTimeoutUnit, NotificationCenter notificationCenter) {
+    private HttpProjectConfigManager(long period, TimeUnit timeUnit, OptimizelyHttpClient httpClient, String url, long blockingTimeoutPeriod, TimeUnit blockingTimeoutUnit, NotificationCenter notificationCenter, Path snapshotFile) {
         super(period, timeUnit, blockingTimeoutPeriod, blockingTimeoutUnit, notificationCenter);
         this.httpClient = httpClient;
         this.uri = URI.create(url);
+        this.snapshotFile = snapshotFile;
     }
 
     public URI getUri() {
@@ -70,7 +95,19 @@ public class HttpProjectConfigManager extends PollingProjectConfigManager {
         return datafileLastModified;
     }
 
+    public String getETag() {
+        return datafileETag;
+    }
+
     public String getDatafileFromResponse(HttpResponse response) throws NullPointerException, IOException {
+        byte[] datafile = getDatafileBytesFromResponse(response);
+        return datafile == null ? null : new String(datafile, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the UTF-8 encoded datafile of a successful response, or null when it has not changed.
+     */
+    byte[] getDatafileBytesFromResponse(HttpResponse response) throws NullPointerException, IOException {
         StatusLine statusLine = response.getStatusLine();
 
         if (statusLine == null) {
@@ -92,12 +129,95 @@ public class HttpProjectConfigManager extends PollingProjectConfigManager {
             if (lastModifiedHeader != null) {
                 datafileLastModified = lastModifiedHeader.getValue();
             }
-            return EntityUtils.toString(entity, "UTF-8");
+            Header eTagHeader = response.getFirstHeader(HttpHeaders.ETAG);
+            if (eTagHeader != null) {
+                datafileETag = eTagHeader.getValue();
+            }
+
+            byte[] body = EntityUtils.toByteArray(entity);
+            if (!updateDatafileHash(body)) {
+                logger.debug("Not updating ProjectConfig as datafile content has not changed");
+                return null;
+            }
+
+            ContentType contentType = ContentType.get(entity);
+            Charset charset = contentType == null || contentType.getCharset() == null
+                ? StandardCharsets.UTF_8
+                : contentType.getCharset();
+            // the CDN serves UTF-8, which is then parsed as is
+            return charset.equals(StandardCharsets.UTF_8) ? body : new String(body, charset).getBytes(StandardCharsets.UTF_8);
         } else {
             throw new ClientProtocolException("unexpected response when trying to fetch datafile, status: " + status);
         }
     }
 
+    /**
+     * @return whether the given datafile differs from the previous one, which it then replaces.
+     */
+    private synchronized boolean updateDatafileHash(byte[] datafile) {
+        byte[] hash;
+        try {
+            hash = MessageDigest.getInstance("SHA-256").digest(datafile);
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform supports SHA-256, parse every datafile otherwise
+            return true;
+        }
+
+        if (Arrays.equals(hash, datafileHash)) {
+            return false;
+        }
+
+        datafileHash = hash;
+        return true;
+    }
+
+    /**
+     * Starts from the config in the snapshot file, unless it is missing, older than the given age or unreadable.
+     *
+     * @return whether the snapshot was used.
+     */
+    boolean restoreSnapshot(long maxAge, TimeUnit maxAgeUnit) {
+        if (snapshotFile == null || !Files.isRegularFile(snapshotFile)) {
+            return false;
+        }
+
+        try {
+            ProjectConfigSnapshot snapshot = ProjectConfigSnapshot.read(snapshotFile);
+            long age = System.currentTimeMillis() - snapshot.getCreatedAt();
+            if (age > maxAgeUnit.toMillis(maxAge)) {
+                logger.info("Ignoring project config snapshot {} written {} ms ago.", snapshotFile, age);
+                return false;
+            }
+
+            setConfig(snapshot.getProjectConfig());
+            synchronized (this) {
+                // the datafile the snapshot was taken from needs no parsing when it is fetched again
+                datafileHash = snapshot.getDatafileHash();
+            }
+            return true;
+        } catch (ConfigParseException e) {
+            logger.warn("Error reading project config snapshot {}.", snapshotFile, e);
+            return false;
+        }
+    }
+
+    private void writeSnapshot(ProjectConfig projectConfig) {
+        if (snapshotFile == null) {
+            return;
+        }
+
+        byte[] hash;
+        synchronized (this) {
+            hash = datafileHash;
+        }
+
+        try {
+            new ProjectConfigSnapshot(projectConfig, hash).writeTo(snapshotFile);
+        } catch (IOException | IllegalArgumentException e) {
+            logger.warn("Error writing project config snapshot {}.", snapshotFile, e);
+        }
+    }
+
     static ProjectConfig parseProjectConfig(String datafile) throws ConfigParseException {
         return new DatafileProjectConfig.Builder().withDatafile(datafile).build();
     }
@@ -109,15 +229,24 @@ public class HttpProjectConfigManager extends PollingProjectConfigManager {
         if (datafileLastModified != null) {
             httpGet.setHeader(HttpHeaders.IF_MODIFIED_SINCE, datafileLastModified);
         }
+        if (datafileETag != null) {
+            httpGet.setHeader(HttpHeaders.IF_NONE_MATCH, datafileETag);
+        }
 
         logger.info("Fetching datafile from: {}", httpGet.getURI());
         try {
             HttpResponse response = httpClient.execute(httpGet);
-            String datafile = getDatafileFromResponse(response);
+            byte[] datafile = getDatafileBytesFromResponse(response);
             if (datafile == null) {
                 return null;
             }
-            return parseProjectConfig(datafile);
+            // share the entities that did not change with the config in use
+            ProjectConfig projectConfig = new DatafileProjectConfig.Builder()
+                .withDatafile(datafile)
+                .withPreviousConfig(getCachedConfig())
+                .build();
+            writeSnapshot(projectConfig);
+            return projectConfig;
         } catch (ConfigParseException | IOException e) {
             logger.error("Error fetching datafile", e);
         }
@@ -143,6 +272,10 @@ public class HttpProjectConfigManager extends PollingProjectConfigManager {
         long blockingTimeoutPeriod = PropertyUtils.getLong(CONFIG_BLOCKING_DURATION, DEFAULT_BLOCKING_DURATION);
         TimeUnit blockingTimeoutUnit = PropertyUtils.getEnum(CONFIG_BLOCKING_UNIT, TimeUnit.class, DEFAULT_BLOCKING_UNIT);
 
+        String snapshotFile = PropertyUtils.get(CONFIG_SNAPSHOT_FILE);
+        long snapshotMaxAge = PropertyUtils.getLong(CONFIG_SNAPSHOT_MAX_AGE_DURATION, DEFAULT_SNAPSHOT_MAX_AGE_DURATION);
+        TimeUnit snapshotMaxAgeUnit = PropertyUtils.getEnum(CONFIG_SNAPSHOT_MAX_AGE_UNIT, TimeUnit.class, DEFAULT_SNAPSHOT_MAX_AGE_UNIT);
+
         public Builder withDatafile(String datafile) {
             this.datafile = datafile;
             return this;
@@ -218,6 +351,41 @@ public class HttpProjectConfigManager extends PollingProjectConfigManager {
             return this;
         }
 
+        /**
+         * File the latest config is kept in as a {@link ProjectConfigSnapshot}, so that a restarted application
+         * can start from it before the first datafile is fetched. A snapshot takes precedence over the datafile
+         * given to {@link #withDatafile(String)}, which is only parsed when there is no recent and valid snapshot.
+         */
+        public Builder withSnapshotFile(String snapshotFile) {
+            this.snapshotFile = snapshotFile;
+            return this;
+        }
+
+        /**
+         * Configure the age past which a snapshot is considered stale and is not used.
+         */
+        public Builder withSnapshotMaxAge(Long period, TimeUnit timeUnit) {
+            if (timeUnit == null) {
+                logger.warn("TimeUnit cannot be null. Keeping default period: {} and time unit: {}", this.snapshotMaxAge, this.snapshotMaxAgeUnit);
+                return this;
+            }
+
+            if (period == null) {
+                logger.warn("Max age cannot be null. Keeping default period: {} and time unit: {}", this.snapshotMaxAge, this.snapshotMaxAgeUnit);
+                return this;
+            }
+
+            if (period <= 0) {
+                logger.warn("Max age cannot be <= 0. Keeping default period: {} and time unit: {}", this.snapshotMaxAge, this.snapshotMaxAgeUnit);
+                return this;
+            }
+
+            this.snapshotMaxAge = period;
+            this.snapshotMaxAgeUnit = timeUnit;
+
+            return this;
+        }
+
         public Builder withNotificationCenter(NotificationCenter notificationCenter) {
             this.notificationCenter = notificationCenter;
             return this;
@@ -268,12 +436,24 @@ public class HttpProjectConfigManager extends PollingProjectConfigManager {
                 notificationCenter = new NotificationCenter();
             }
 
-            HttpProjectConfigManager httpProjectManager = new HttpProjectConfigManager(period, timeUnit, httpClient, url, blockingTimeoutPeriod, blockingTimeoutUnit, notificationCenter);
+            if (snapshotMaxAge <= 0) {
+                logger.warn("Invalid snapshot max age {}, {}. Defaulting to {}, {}",
+                    snapshotMaxAge, snapshotMaxAgeUnit, DEFAULT_SNAPSHOT_MAX_AGE_DURATION, DEFAULT_SNAPSHOT_MAX_AGE_UNIT);
+                snapshotMaxAge = DEFAULT_SNAPSHOT_MAX_AGE_DURATION;
+                snapshotMaxAgeUnit = DEFAULT_SNAPSHOT_MAX_AGE_UNIT;
+            }
+
+            HttpProjectConfigManager httpProjectManager = new HttpProjectConfigManager(period, timeUnit, httpClient, url,
+                blockingTimeoutPeriod, blockingTimeoutUnit, notificationCenter, snapshotFile == null ? null : Paths.get(snapshotFile));
 
-            if (datafile != null) {
+            if (httpProjectManager.restoreSnapshot(snapshotMaxAge, snapshotMaxAgeUnit)) {
+                logger.info("Starting from project config snapshot {}.", snapshotFile);
+            } else if (datafile != null) {
                 try {
                     ProjectConfig projectConfig = HttpProjectConfigManager.parseProjectConfig(datafile);
                     httpProjectManager.setConfig(projectConfig);
+                    // the CDN usually serves the same datafile, which then needs no parsing
+                    httpProjectManager.updateDatafileHash(datafile.getBytes(StandardCharsets.UTF_8));
                 } catch (ConfigParseException e) {
                     logger.warn("Error parsing fallback datafile.", e);
                 }
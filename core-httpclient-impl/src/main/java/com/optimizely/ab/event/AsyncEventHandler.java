@@ -28,25 +28,62 @@ import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.client.utils.URIBuilder;
-import org.apache.http.entity.StringEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.InvocationTargetException;
 import java.net.URISyntaxException;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 
 /**
  * {@link EventHandler} implementation that queues events and has a separate pool of threads responsible
  * for the dispatch.
+ *
+ * When configured with an event log directory, every event is appended to an {@link EventLog} before it is queued
+ * and acknowledged once the endpoint responds with a 2xx status, or once it is dropped. Only the position of a
+ * logged event is kept in memory, and events left unacknowledged by a previous process are dispatched again on
+ * startup.
+ *
+ * Dispatches that fail with a connection error or a 408, 429 or 5xx status are retried with exponential backoff,
+ * as allowed by a {@link RetryPolicy}. Events that are not retried are handed to the {@link DeadLetterHandler}.
+ *
+ * What happens to events that do not fit in the worker queue is decided by the {@link OverflowPolicy}, whether or
+ * not they are logged, and each outcome is counted so that the queue can be sized from the observed load.
+ *
+ * By default a few {@link DispatchMode#WORKERS} each block on one request at a time, which caps throughput at the
+ * number of workers divided by the round-trip latency. {@link DispatchMode#VIRTUAL_THREADS} instead keeps up to
+ * a maximum number of requests in flight.
+ *
+ * With adaptive concurrency, a {@link ConcurrencyLimit} lowers the number of requests in flight below the number of
+ * dispatch threads while the endpoint slows down or fails, and raises it back once the endpoint recovers.
+ *
+ * Queue size, latencies, response statuses, bytes sent and dropped events are reported to {@link DispatchMetrics}.
  */
 public class AsyncEventHandler implements EventHandler, AutoCloseable {
 
@@ -55,15 +92,48 @@ public class AsyncEventHandler implements EventHandler, AutoCloseable {
     public static final String CONFIG_MAX_CONNECTIONS           = "async.event.handler.max.connections";
     public static final String CONFIG_MAX_PER_ROUTE             = "async.event.handler.event.max.per.route";
     public static final String CONFIG_VALIDATE_AFTER_INACTIVITY = "async.event.handler.validate.after";
+    public static final String CONFIG_GZIP_ENABLED              = "async.event.handler.gzip.enabled";
+    public static final String CONFIG_LOG_DIRECTORY             = "async.event.handler.log.dir";
+    public static final String CONFIG_LOG_SEGMENT_SIZE          = "async.event.handler.log.segment.size";
+    public static final String CONFIG_LOG_RETENTION             = "async.event.handler.log.retention";
+    public static final String CONFIG_MAX_ATTEMPTS              = "async.event.handler.retry.max.attempts";
+    public static final String CONFIG_RETRY_BACKOFF             = "async.event.handler.retry.backoff";
+    public static final String CONFIG_MAX_RETRY_BACKOFF         = "async.event.handler.retry.max.backoff";
+    public static final String CONFIG_RETRY_BUDGET_PERCENT      = "async.event.handler.retry.budget.percent";
+    public static final String CONFIG_RETRY_BUDGET_MIN          = "async.event.handler.retry.budget.min";
+    public static final String CONFIG_OVERFLOW_POLICY           = "async.event.handler.overflow.policy";
+    public static final String CONFIG_OVERFLOW_BLOCK_TIMEOUT    = "async.event.handler.overflow.block.timeout";
+    public static final String CONFIG_OVERFLOW_SAMPLE_INTERVAL  = "async.event.handler.overflow.sample.interval";
+    public static final String CONFIG_OVERFLOW_SPILL_CAPACITY   = "async.event.handler.overflow.spill.capacity";
+    public static final String CONFIG_DISPATCH_MODE             = "async.event.handler.dispatch.mode";
+    public static final String CONFIG_MAX_IN_FLIGHT             = "async.event.handler.max.in.flight";
+    public static final String CONFIG_ADAPTIVE_CONCURRENCY      = "async.event.handler.adaptive.concurrency";
+    public static final String CONFIG_MIN_CONCURRENCY           = "async.event.handler.adaptive.concurrency.min";
+    public static final String CONFIG_CLOSE_TIMEOUT             = "async.event.handler.close.timeout";
 
     public static final int DEFAULT_QUEUE_CAPACITY = 10000;
     public static final int DEFAULT_NUM_WORKERS = 2;
     public static final int DEFAULT_MAX_CONNECTIONS = 200;
     public static final int DEFAULT_MAX_PER_ROUTE = 20;
     public static final int DEFAULT_VALIDATE_AFTER_INACTIVITY = 5000;
+    public static final int DEFAULT_LOG_SEGMENT_SIZE = 4 * 1024 * 1024;
+    public static final long DEFAULT_LOG_RETENTION = 64L * 1024 * 1024;
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+    public static final long DEFAULT_RETRY_BACKOFF = TimeUnit.SECONDS.toMillis(1);
+    public static final long DEFAULT_MAX_RETRY_BACKOFF = TimeUnit.SECONDS.toMillis(30);
+    public static final int DEFAULT_RETRY_BUDGET_PERCENT = 10;
+    public static final int DEFAULT_RETRY_BUDGET_MIN = 10;
+    public static final OverflowPolicy DEFAULT_OVERFLOW_POLICY = OverflowPolicy.DROP_NEWEST;
+    public static final long DEFAULT_OVERFLOW_BLOCK_TIMEOUT = 100;
+    public static final int DEFAULT_OVERFLOW_SAMPLE_INTERVAL = 10;
+    public static final int DEFAULT_OVERFLOW_SPILL_CAPACITY = 100000;
+    public static final DispatchMode DEFAULT_DISPATCH_MODE = DispatchMode.WORKERS;
+    public static final int DEFAULT_MAX_IN_FLIGHT = 64;
+    public static final int DEFAULT_MIN_CONCURRENCY = 1;
+    public static final long DEFAULT_CLOSE_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
 
     private static final Logger logger = LoggerFactory.getLogger(AsyncEventHandler.class);
-    private static final ProjectConfigResponseHandler EVENT_RESPONSE_HANDLER = new ProjectConfigResponseHandler();
+    private static final DeadLetterHandler DROPPING_DEAD_LETTER_HANDLER = (logEvent, cause) -> { };
 
     private final OptimizelyHttpClient httpClient;
     private final ExecutorService workerExecutor;
@@ -71,6 +141,42 @@ public class AsyncEventHandler implements EventHandler, AutoCloseable {
     private final long closeTimeout;
     private final TimeUnit closeTimeoutUnit;
 
+    private final boolean gzipEnabled;
+    // idle encoders, each one compresses into a buffer it reuses for every event it encodes
+    private final BlockingQueue<GzipBodyEncoder> gzipEncoders;
+    private volatile boolean isShutdown;
+
+    @Nullable
+    private final EventLog eventLog;
+    // logged events that were rejected by the full worker queue, oldest first
+    private final BlockingDeque<EventLog.Record> spilledRecords;
+
+    private final RetryPolicy retryPolicy;
+    @Nullable
+    private final ScheduledExecutorService retryExecutor;
+    private final DeadLetterHandler deadLetterHandler;
+    // dispatchers waiting for a retry, claimed by whichever of the retry thread or shutdown removes them first
+    private final Set<EventDispatcher> pendingRetries = ConcurrentHashMap.newKeySet();
+
+    private final OverflowPolicy overflowPolicy;
+    private final long overflowBlockTimeout;
+    private final int overflowSampleInterval;
+    private final AtomicLong sampleCounter = new AtomicLong();
+
+    private final LongAdder queuedCount = new LongAdder();
+    private final LongAdder blockedCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder droppedOldestCount = new LongAdder();
+    private final LongAdder sampledOutCount = new LongAdder();
+    private final LongAdder spilledCount = new LongAdder();
+    private final LongAdder deliveredCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final AtomicInteger inFlightCount = new AtomicInteger();
+
+    @Nullable
+    private final ConcurrencyLimit concurrencyLimit;
+    private final DispatchMetrics metrics;
+
     /**
      * @deprecated Use the builder {@link Builder}
      */
@@ -99,122 +205,784 @@ public class AsyncEventHandler implements EventHandler, AutoCloseable {
                              int validateAfter,
                              long closeTimeout,
                              TimeUnit closeTimeoutUnit) {
+        this(queueCapacity, numWorkers, maxConnections, connectionsPerRoute, validateAfter, closeTimeout, closeTimeoutUnit, false);
+    }
 
-        queueCapacity       = validateInput("queueCapacity", queueCapacity, DEFAULT_QUEUE_CAPACITY);
-        numWorkers          = validateInput("numWorkers", numWorkers, DEFAULT_NUM_WORKERS);
-        maxConnections      = validateInput("maxConnections", maxConnections, DEFAULT_MAX_CONNECTIONS);
-        connectionsPerRoute = validateInput("connectionsPerRoute", connectionsPerRoute, DEFAULT_MAX_PER_ROUTE);
-        validateAfter       = validateInput("validateAfter", validateAfter, DEFAULT_VALIDATE_AFTER_INACTIVITY);
+    /**
+     * @param gzipEnabled whether POST bodies are sent compressed with {@code Content-Encoding: gzip}
+     */
+    public AsyncEventHandler(int queueCapacity,
+                             int numWorkers,
+                             int maxConnections,
+                             int connectionsPerRoute,
+                             int validateAfter,
+                             long closeTimeout,
+                             TimeUnit closeTimeoutUnit,
+                             boolean gzipEnabled) {
+        this(builder(queueCapacity, numWorkers, maxConnections, connectionsPerRoute, validateAfter, closeTimeout, closeTimeoutUnit, gzipEnabled), null);
+    }
+
+    private AsyncEventHandler(Builder builder, @Nullable EventLog eventLog) {
+        this(createHttpClient(builder), createWorkerExecutor(builder), builder, eventLog);
+    }
 
-        this.httpClient = OptimizelyHttpClient.builder()
+    @VisibleForTesting
+    public AsyncEventHandler(OptimizelyHttpClient httpClient, ExecutorService workerExecutor) {
+        this(httpClient, workerExecutor, builder().withMaxAttempts(1), null);
+    }
+
+    @VisibleForTesting
+    AsyncEventHandler(OptimizelyHttpClient httpClient,
+                      ExecutorService workerExecutor,
+                      Builder builder,
+                      @Nullable EventLog eventLog) {
+        this.httpClient = httpClient;
+        this.workerExecutor = workerExecutor;
+        this.closeTimeout = builder.closeTimeout;
+        this.closeTimeoutUnit = builder.closeTimeoutUnit;
+        this.gzipEnabled = builder.gzipEnabled;
+        // keep no more encoders than there are workers, virtual threads beyond that end the ones they create
+        this.gzipEncoders = new ArrayBlockingQueue<GzipBodyEncoder>(
+            builder.numWorkers > 0 ? builder.numWorkers : DEFAULT_NUM_WORKERS);
+        this.eventLog = eventLog;
+        this.retryPolicy = new RetryPolicy(builder.maxAttempts, builder.retryBackoff, builder.maxRetryBackoff,
+            builder.retryBudgetPercent, builder.retryBudgetMin);
+        this.retryExecutor = createRetryExecutor(retryPolicy);
+        this.deadLetterHandler = builder.deadLetterHandler == null ? DROPPING_DEAD_LETTER_HANDLER : builder.deadLetterHandler;
+        this.overflowPolicy = builder.overflowPolicy;
+        this.overflowBlockTimeout = builder.overflowBlockTimeout;
+        this.overflowSampleInterval = builder.overflowSampleInterval;
+        this.spilledRecords = new LinkedBlockingDeque<EventLog.Record>(builder.overflowSpillCapacity);
+        this.concurrencyLimit = createConcurrencyLimit(builder);
+        this.metrics = builder.metrics == null ? DispatchMetrics.NOOP : builder.metrics;
+        metrics.registerQueueSize(this::getQueueSize);
+    }
+
+    private static Builder builder(int queueCapacity,
+                                   int numWorkers,
+                                   int maxConnections,
+                                   int connectionsPerRoute,
+                                   int validateAfter,
+                                   long closeTimeout,
+                                   TimeUnit closeTimeoutUnit,
+                                   boolean gzipEnabled) {
+        // set directly, the constructors validate these values themselves
+        Builder builder = builder();
+        builder.queueCapacity = queueCapacity;
+        builder.numWorkers = numWorkers;
+        builder.maxTotalConnections = maxConnections;
+        builder.maxPerRoute = connectionsPerRoute;
+        builder.validateAfterInactivity = validateAfter;
+        builder.closeTimeout = closeTimeout;
+        builder.closeTimeoutUnit = closeTimeoutUnit;
+        builder.gzipEnabled = gzipEnabled;
+        return builder;
+    }
+
+    private static OptimizelyHttpClient createHttpClient(Builder builder) {
+        int maxConnections = validateInput("maxConnections", builder.maxTotalConnections, DEFAULT_MAX_CONNECTIONS);
+        int connectionsPerRoute = validateInput("connectionsPerRoute", builder.maxPerRoute, DEFAULT_MAX_PER_ROUTE);
+        if (builder.dispatchMode == DispatchMode.VIRTUAL_THREADS) {
+            // requests beyond the connection pool would only wait for a connection inside the client
+            int maxInFlight = validateInput("maxInFlight", builder.maxInFlight, DEFAULT_MAX_IN_FLIGHT);
+            maxConnections = Math.max(maxConnections, maxInFlight);
+            connectionsPerRoute = Math.max(connectionsPerRoute, maxInFlight);
+        }
+
+        return OptimizelyHttpClient.builder()
             .withMaxTotalConnections(maxConnections)
             .withMaxPerRoute(connectionsPerRoute)
-            .withValidateAfterInactivity(validateAfter)
+            .withValidateAfterInactivity(validateInput("validateAfter", builder.validateAfterInactivity, DEFAULT_VALIDATE_AFTER_INACTIVITY))
             .build();
+    }
 
-        this.workerExecutor = new ThreadPoolExecutor(numWorkers, numWorkers,
+    @VisibleForTesting
+    static ThreadPoolExecutor createWorkerExecutor(Builder builder) {
+        int queueCapacity = validateInput("queueCapacity", builder.queueCapacity, DEFAULT_QUEUE_CAPACITY);
+
+        if (builder.dispatchMode == DispatchMode.VIRTUAL_THREADS) {
+            int maxInFlight = validateInput("maxInFlight", builder.maxInFlight, DEFAULT_MAX_IN_FLIGHT);
+            ThreadFactory threadFactory = virtualThreadFactory("optimizely-event-dispatcher-virtual-thread-");
+            if (threadFactory == null) {
+                logger.info("virtual threads are not available, dispatching with up to {} platform threads", maxInFlight);
+                threadFactory = new NamedThreadFactory("optimizely-event-dispatcher-thread-%s", true);
+            }
+
+            // one cheap thread per request in flight, idle ones are let go
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(maxInFlight, maxInFlight,
+                60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity),
+                threadFactory);
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        }
+
+        int numWorkers = validateInput("numWorkers", builder.numWorkers, DEFAULT_NUM_WORKERS);
+
+        return new ThreadPoolExecutor(numWorkers, numWorkers,
             0L, TimeUnit.MILLISECONDS,
             new ArrayBlockingQueue<Runnable>(queueCapacity),
             new NamedThreadFactory("optimizely-event-dispatcher-thread-%s", true));
+    }
 
-        this.closeTimeout = closeTimeout;
-        this.closeTimeoutUnit = closeTimeoutUnit;
+    /**
+     * @return a factory of virtual threads, or null when the JDK does not support them. Looked up reflectively
+     * since the SDK targets Java 8.
+     */
+    @Nullable
+    static ThreadFactory virtualThreadFactory(String namePrefix) {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object threadBuilder = Thread.class.getMethod("ofVirtual").invoke(null);
+            threadBuilder = builderClass.getMethod("name", String.class, long.class).invoke(threadBuilder, namePrefix, 1L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(threadBuilder);
+        } catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            return null;
+        }
     }
 
-    @VisibleForTesting
-    public AsyncEventHandler(OptimizelyHttpClient httpClient, ExecutorService workerExecutor) {
-        this.httpClient = httpClient;
-        this.workerExecutor = workerExecutor;
-        this.closeTimeout = Long.MAX_VALUE;
-        this.closeTimeoutUnit = TimeUnit.MILLISECONDS;
+    @Nullable
+    private static ConcurrencyLimit createConcurrencyLimit(Builder builder) {
+        if (!builder.adaptiveConcurrency) {
+            return null;
+        }
+
+        // adapts below the number of dispatch threads, which bounds the requests in flight anyway
+        int maxLimit = builder.dispatchMode == DispatchMode.VIRTUAL_THREADS
+            ? validateInput("maxInFlight", builder.maxInFlight, DEFAULT_MAX_IN_FLIGHT)
+            : validateInput("numWorkers", builder.numWorkers, DEFAULT_NUM_WORKERS);
+        return new ConcurrencyLimit(builder.minConcurrency, maxLimit);
+    }
+
+    @Nullable
+    private static ScheduledExecutorService createRetryExecutor(RetryPolicy retryPolicy) {
+        if (!retryPolicy.isEnabled()) {
+            return null;
+        }
+
+        return Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("optimizely-event-retry-thread-%s", true));
     }
 
     @Override
     public void dispatchEvent(LogEvent logEvent) {
+        BlockingQueue<Runnable> workerQueue = getWorkerQueue();
+        if (overflowPolicy == OverflowPolicy.SAMPLE && workerQueue != null && !sample(workerQueue)) {
+            sampledOutCount.increment();
+            metrics.recordDropped(DispatchMetrics.DropReason.SAMPLED_OUT);
+            return;
+        }
+
+        EventLog.Record record = eventLog == null ? null : appendToEventLog(logEvent);
+        EventDispatcher dispatcher = record == null ? new EventDispatcher(logEvent) : new EventDispatcher(record);
+        if (record != null && overflowPolicy == OverflowPolicy.SPILL_TO_DISK && !spilledRecords.isEmpty()) {
+            // keep the order of events that are already waiting on disk
+            boolean accepted = handleOverflow(dispatcher, workerQueue);
+            redriveSpilledRecords();
+            if (accepted) {
+                retryPolicy.recordDispatch();
+            }
+            return;
+        }
+
+        boolean accepted;
         try {
             // attempt to enqueue the log event for processing
-            workerExecutor.execute(new EventDispatcher(logEvent));
+            workerExecutor.execute(dispatcher);
+            queuedCount.increment();
+            accepted = true;
         } catch (RejectedExecutionException e) {
+            accepted = handleOverflow(dispatcher, workerQueue);
+        }
+
+        // only events that will be sent earn retries, dropped ones would inflate the budget
+        if (accepted) {
+            retryPolicy.recordDispatch();
+        }
+    }
+
+    /**
+     * @return whether the event was queued or spilled to disk, false when it was dropped.
+     */
+    private boolean handleOverflow(EventDispatcher dispatcher, @Nullable BlockingQueue<Runnable> workerQueue) {
+        if (workerQueue != null && !workerExecutor.isShutdown()) {
+            switch (overflowPolicy) {
+                case BLOCK:
+                    if (block(dispatcher, workerQueue)) {
+                        blockedCount.increment();
+                        return true;
+                    }
+                    break;
+                case DROP_OLDEST:
+                    if (dropOldest(dispatcher, workerQueue)) {
+                        return true;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        if (dispatcher.record != null && overflowPolicy == OverflowPolicy.SPILL_TO_DISK) {
+            if (spillRecord(dispatcher.record)) {
+                return true;
+            }
+            droppedCount.increment();
+            metrics.recordDropped(DispatchMetrics.DropReason.QUEUE_FULL);
+            logger.error("event dispatch rejected, too many events are waiting on disk. "
+                + "Keeping the event in the event log until the next startup");
+            return false;
+        }
+
+        droppedCount.increment();
+        metrics.recordDropped(DispatchMetrics.DropReason.QUEUE_FULL);
+        logger.error("event dispatch rejected");
+        if (dispatcher.record != null) {
+            // dropped by the overflow policy, so it is not replayed on the next startup either
+            eventLog.acknowledge(dispatcher.record);
+        }
+        return false;
+    }
+
+    /**
+     * Waits up to the block timeout for room in the worker queue.
+     */
+    private boolean block(EventDispatcher dispatcher, BlockingQueue<Runnable> workerQueue) {
+        try {
+            if (!workerQueue.offer(dispatcher, overflowBlockTimeout, TimeUnit.MILLISECONDS)) {
+                return false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        // the queue is bypassed, so make sure a shutdown in the meantime does not strand the event
+        return !workerExecutor.isShutdown() || !workerQueue.remove(dispatcher);
+    }
+
+    /**
+     * Makes room by evicting the event at the head of the worker queue.
+     */
+    private boolean dropOldest(EventDispatcher dispatcher, BlockingQueue<Runnable> workerQueue) {
+        Runnable oldest = workerQueue.poll();
+        if (oldest != null) {
+            droppedOldestCount.increment();
+            metrics.recordDropped(DispatchMetrics.DropReason.EVICTED);
+            logger.error("event dispatch rejected, dropping the oldest queued event");
+            if (oldest instanceof EventDispatcher && ((EventDispatcher) oldest).record != null) {
+                eventLog.acknowledge(((EventDispatcher) oldest).record);
+            }
+        }
+
+        try {
+            workerExecutor.execute(dispatcher);
+            queuedCount.increment();
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Once the worker queue is half full, only queues one in every sample interval events.
+     */
+    private boolean sample(BlockingQueue<Runnable> workerQueue) {
+        int size = workerQueue.size();
+        if (size < (size + workerQueue.remainingCapacity()) / 2) {
+            return true;
+        }
+
+        return sampleCounter.getAndIncrement() % overflowSampleInterval == 0;
+    }
+
+    @Nullable
+    private BlockingQueue<Runnable> getWorkerQueue() {
+        return workerExecutor instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) workerExecutor).getQueue() : null;
+    }
+
+    @Nullable
+    private EventLog.Record appendToEventLog(LogEvent logEvent) {
+        byte[] body = logEvent.getRequestMethod() == LogEvent.RequestMethod.POST ? logEvent.getBodyBytes() : null;
+        try {
+            EventLog.Record record = eventLog.append(logEvent.getRequestMethod(), logEvent.getEndpointUrl(),
+                logEvent.getRequestParams(), body);
+            if (record == null) {
+                logger.warn("event is larger than an event log segment, dispatching it from memory");
+            }
+            return record;
+        } catch (IOException e) {
+            logger.error("unable to append event to the event log, dispatching it from memory", e);
+            return null;
+        }
+    }
+
+    private void replayEventLog() {
+        if (eventLog == null) {
+            return;
+        }
+
+        List<EventLog.Record> records = eventLog.pending();
+        if (!records.isEmpty()) {
+            logger.info("dispatching {} events recovered from the event log", records.size());
+        }
+
+        // events that do not fit are not dropped, as they were accepted by a previous process
+        int deferred = 0;
+        for (EventLog.Record record : records) {
+            if (!spilledRecords.isEmpty() || !replayRecord(record)) {
+                if (overflowPolicy != OverflowPolicy.SPILL_TO_DISK || !spillRecord(record)) {
+                    deferred++;
+                }
+            }
+        }
+        if (deferred > 0) {
+            logger.warn("{} recovered events do not fit in the queue, keeping them in the event log until the next startup",
+                deferred);
+        }
+    }
+
+    private boolean replayRecord(EventLog.Record record) {
+        try {
+            workerExecutor.execute(new EventDispatcher(record));
+            queuedCount.increment();
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Keeps a logged event on disk until a worker has room for it, or until the next startup.
+     *
+     * @return false if the spill capacity is used up.
+     */
+    private boolean spillRecord(EventLog.Record record) {
+        if (!spilledRecords.offerLast(record)) {
+            return false;
+        }
+        spilledCount.increment();
+        return true;
+    }
+
+    private void redriveSpilledRecords() {
+        EventLog.Record record;
+        while ((record = spilledRecords.pollFirst()) != null) {
+            try {
+                workerExecutor.execute(new EventDispatcher(record));
+            } catch (RejectedExecutionException e) {
+                if (!spilledRecords.offerFirst(record)) {
+                    logger.warn("too many events are waiting on disk, keeping the event in the event log until the next startup");
+                }
+                return;
+            }
+        }
+    }
+
+    private void resubmit(EventDispatcher dispatcher) {
+        dispatcher.queuedNanos = System.nanoTime();
+        try {
+            workerExecutor.execute(dispatcher);
+        } catch (RejectedExecutionException e) {
+            // logged events outlive a shutdown on disk
+            boolean keep = overflowPolicy == OverflowPolicy.SPILL_TO_DISK || workerExecutor.isShutdown();
+            if (dispatcher.record != null && keep && spillRecord(dispatcher.record)) {
+                return;
+            }
             logger.error("event dispatch rejected");
+            dispatcher.deadLetter(dispatcher.record == null ? dispatcher.logEvent : eventLog.read(dispatcher.record), e);
         }
     }
 
     /**
      * Attempts to gracefully terminate all event dispatch workers and close all resources.
-     * This method blocks, awaiting the completion of any queued or ongoing event dispatches.
+     * This method blocks, awaiting the completion of any scheduled retries and of any queued or ongoing event
+     * dispatches.
      * <p>
      * Note: termination of ongoing event dispatching is best-effort.
      *
      * @param timeout maximum time to wait for event dispatches to complete
      * @param unit    the time unit of the timeout argument
+     * @see #flushAndShutdown(long, TimeUnit, Consumer)
      */
     public void shutdownAndAwaitTermination(long timeout, TimeUnit unit) {
+        flushAndShutdown(timeout, unit, null);
+    }
+
+    /**
+     * Dispatches the pending events until the deadline, then terminates all event dispatch workers and closes all
+     * resources. Pending retries are dispatched right away instead of after their backoff, so that they drain
+     * along with the queued events. Events accepted after this method is called are dropped.
+     * <p>
+     * Events still queued at the deadline are abandoned: logged events stay in the event log, to be dispatched by
+     * the next event handler using it, and the others are handed to the spill sink, if any. Dispatches in flight
+     * at the deadline are interrupted on a best-effort basis and counted as abandoned.
+     *
+     * @param timeout   maximum time to wait for event dispatches to complete
+     * @param unit      the time unit of the timeout argument
+     * @param spillSink receives the abandoned events that are not in the event log, may be null
+     * @return the outcome of the events pending when this method was called
+     */
+    public FlushResult flushAndShutdown(long timeout, TimeUnit unit, @Nullable Consumer<LogEvent> spillSink) {
 
         // Disable new tasks from being submitted
         logger.info("event handler shutting down. Attempting to dispatch previously submitted events");
-        workerExecutor.shutdown();
+
+        long start = System.nanoTime();
+        long timeoutNanos = unit.toNanos(timeout);
+        long delivered = deliveredCount.sum();
+        long failed = failedCount.sum();
+        long abandoned = 0;
 
         try {
-            // Wait a while for existing tasks to terminate
-            if (!workerExecutor.awaitTermination(timeout, unit)) {
-                int unprocessedCount = workerExecutor.shutdownNow().size();
-                logger.warn("timed out waiting for previously submitted events to be dispatched. "
-                    + "{} events were dropped. "
-                    + "Interrupting dispatch worker(s)", unprocessedCount);
-                // Cancel currently executing tasks
-                // Wait a while for tasks to respond to being cancelled
-                if (!workerExecutor.awaitTermination(timeout, unit)) {
-                    logger.error("unable to gracefully shutdown event handler");
+            // Let pending retries reach the workers before those stop accepting events
+            if (retryExecutor != null) {
+                retryExecutor.shutdownNow();
+                for (EventDispatcher dispatcher : pendingRetries) {
+                    if (pendingRetries.remove(dispatcher)) {
+                        resubmit(dispatcher);
+                    }
                 }
             }
+
+            workerExecutor.shutdown();
+
+            // Wait until the deadline for existing tasks to terminate
+            long remaining = timeoutNanos - (System.nanoTime() - start);
+            if (!workerExecutor.awaitTermination(remaining, TimeUnit.NANOSECONDS)) {
+                abandoned = inFlightCount.get() + abandon(workerExecutor.shutdownNow(), spillSink);
+                logger.warn("timed out waiting for previously submitted events to be dispatched. "
+                    + "{} events were abandoned. "
+                    + "Interrupting dispatch worker(s)", abandoned);
+            }
         } catch (InterruptedException ie) {
             // (Re-)Cancel if current thread also interrupted
-            workerExecutor.shutdownNow();
+            abandoned = inFlightCount.get() + abandon(workerExecutor.shutdownNow(), spillSink);
             // Preserve interrupt status
             Thread.currentThread().interrupt();
         } finally {
+            isShutdown = true;
+            endGzipEncoders();
+            // logged events that never reached a worker wait on disk
+            abandoned += spilledRecords.size();
             try {
                 httpClient.close();
             } catch (IOException e) {
                 logger.error("unable to close event dispatcher http client", e);
             }
+            if (eventLog != null) {
+                // events that were not dispatched are replayed by the next event handler using this log
+                eventLog.close();
+            }
         }
 
-        logger.info("event handler shutdown complete");
+        FlushResult result = new FlushResult(deliveredCount.sum() - delivered, failedCount.sum() - failed, abandoned);
+        logger.info("event handler shutdown complete: {}", result);
+        return result;
+    }
+
+    private GzipBodyEncoder acquireGzipEncoder() {
+        GzipBodyEncoder encoder = gzipEncoders.poll();
+        return encoder == null ? new GzipBodyEncoder() : encoder;
+    }
+
+    private void releaseGzipEncoder(GzipBodyEncoder encoder) {
+        if (!gzipEncoders.offer(encoder)) {
+            encoder.end();
+        } else if (isShutdown) {
+            // a worker that outlived the shutdown returned its encoder after the pool was drained
+            endGzipEncoders();
+        }
+    }
+
+    private void endGzipEncoders() {
+        GzipBodyEncoder encoder;
+        while ((encoder = gzipEncoders.poll()) != null) {
+            encoder.end();
+        }
+    }
+
+    /**
+     * Hands the queued events that are not in the event log to the spill sink.
+     *
+     * @return the number of queued events.
+     */
+    private int abandon(@Nullable List<Runnable> queued, @Nullable Consumer<LogEvent> spillSink) {
+        if (queued == null) {
+            return 0;
+        }
+
+        for (Runnable runnable : queued) {
+            if (!(runnable instanceof EventDispatcher) || ((EventDispatcher) runnable).logEvent == null) {
+                // kept in the event log
+                continue;
+            }
+
+            if (spillSink == null) {
+                metrics.recordDropped(DispatchMetrics.DropReason.ABANDONED);
+                continue;
+            }
+            try {
+                spillSink.accept(((EventDispatcher) runnable).logEvent);
+            } catch (RuntimeException e) {
+                metrics.recordDropped(DispatchMetrics.DropReason.ABANDONED);
+                logger.warn("spill sink failed", e);
+            }
+        }
+        return queued.size();
     }
 
     @Override
     public void close() {
-        shutdownAndAwaitTermination(closeTimeout, closeTimeoutUnit);
+        flushAndShutdown(closeTimeout, closeTimeoutUnit, null);
+    }
+
+    /**
+     * @return the number of events handed to the workers without waiting.
+     */
+    public long getQueuedCount() {
+        return queuedCount.sum();
+    }
+
+    /**
+     * @return the number of events queued after waiting for room, see {@link OverflowPolicy#BLOCK}.
+     */
+    public long getBlockedCount() {
+        return blockedCount.sum();
+    }
+
+    /**
+     * @return the number of events dropped because they did not fit in the queue.
+     */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    /**
+     * @return the number of queued events evicted to make room, see {@link OverflowPolicy#DROP_OLDEST}.
+     */
+    public long getDroppedOldestCount() {
+        return droppedOldestCount.sum();
+    }
+
+    /**
+     * @return the number of events left out by {@link OverflowPolicy#SAMPLE}.
+     */
+    public long getSampledOutCount() {
+        return sampledOutCount.sum();
+    }
+
+    /**
+     * @return the number of logged events that waited on disk for room in the queue.
+     */
+    public long getSpilledCount() {
+        return spilledCount.sum();
+    }
+
+    /**
+     * @return the number of events waiting for a dispatch thread, in the queue or on disk.
+     */
+    public int getQueueSize() {
+        BlockingQueue<Runnable> workerQueue = getWorkerQueue();
+        return (workerQueue == null ? 0 : workerQueue.size()) + spilledRecords.size();
+    }
+
+    /**
+     * @return the current limit of requests in flight, or 0 when adaptive concurrency is disabled.
+     */
+    public int getConcurrencyLimit() {
+        return concurrencyLimit == null ? 0 : concurrencyLimit.getLimit();
     }
 
     //======== Helper classes ========//
 
+    /**
+     * How events are dispatched.
+     */
+    public enum DispatchMode {
+        /**
+         * A fixed number of platform threads, each blocking on one request at a time.
+         */
+        WORKERS,
+        /**
+         * A thread per request in flight, up to the maximum in flight. Uses virtual threads when the JDK supports
+         * them and falls back to platform threads otherwise. The connection pool grows to the maximum in flight.
+         */
+        VIRTUAL_THREADS
+    }
+
+    /**
+     * What to do with an event when the worker queue is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Waits up to the block timeout for room in the queue, then drops the event. Slows down the calling thread.
+         */
+        BLOCK,
+        /**
+         * Drops the oldest queued event to make room, favoring fresh events.
+         */
+        DROP_OLDEST,
+        /**
+         * Drops the event that does not fit.
+         */
+        DROP_NEWEST,
+        /**
+         * Once the queue is half full, only queues one in every sample interval events, shedding load gradually
+         * before the queue fills up. Events that still do not fit are dropped.
+         */
+        SAMPLE,
+        /**
+         * Keeps events that do not fit in the event log until a worker frees up, up to the spill capacity. Events
+         * beyond it stay in the event log until the next startup. Requires an event log.
+         */
+        SPILL_TO_DISK
+    }
+
     /**
      * Wrapper runnable for the actual event dispatch.
      */
     private class EventDispatcher implements Runnable {
 
+        @Nullable
         private final LogEvent logEvent;
+        @Nullable
+        private final EventLog.Record record;
+        // only touched by the thread running this dispatcher, hand-offs through the executors order the updates
+        private int attempt = 1;
+        private long queuedNanos = System.nanoTime();
 
         EventDispatcher(LogEvent logEvent) {
             this.logEvent = logEvent;
+            this.record = null;
+        }
+
+        EventDispatcher(EventLog.Record record) {
+            this.logEvent = null;
+            this.record = record;
         }
 
         @Override
         public void run() {
+            inFlightCount.incrementAndGet();
             try {
-                HttpRequestBase request;
-                if (logEvent.getRequestMethod() == LogEvent.RequestMethod.GET) {
-                    request = generateGetRequest(logEvent);
-                } else {
-                    request = generatePostRequest(logEvent);
+                LogEvent event = record == null ? logEvent : eventLog.read(record);
+                if (event == null) {
+                    // dropped from the event log by retention
+                    metrics.recordDropped(DispatchMetrics.DropReason.EXPIRED);
+                    return;
+                }
+
+                GzipBodyEncoder encoder = null;
+                try {
+                    HttpRequestBase request;
+                    if (event.getRequestMethod() == LogEvent.RequestMethod.GET) {
+                        request = generateGetRequest(event);
+                    } else {
+                        if (gzipEnabled) {
+                            encoder = acquireGzipEncoder();
+                        }
+                        request = generatePostRequest(event, encoder);
+                    }
+                    execute(request);
+                    deliveredCount.increment();
+                    if (record != null) {
+                        eventLog.acknowledge(record);
+                    }
+                } catch (IOException e) {
+                    retryOrDeadLetter(event, e);
+                } catch (URISyntaxException e) {
+                    logger.error("unable to parse generated URI", e);
+                    deadLetter(event, e);
+                } finally {
+                    if (encoder != null) {
+                        releaseGzipEncoder(encoder);
+                    }
+                }
+            } finally {
+                inFlightCount.decrementAndGet();
+                if (eventLog != null) {
+                    redriveSpilledRecords();
+                }
+            }
+        }
+
+        /**
+         * Executes the request within the concurrency limit, feeding its latency and outcome back to the limit and
+         * to the metrics.
+         */
+        private void execute(HttpRequestBase request) throws IOException {
+            if (concurrencyLimit != null) {
+                try {
+                    concurrencyLimit.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("interrupted while waiting for the concurrency limit");
                 }
-                httpClient.execute(request, EVENT_RESPONSE_HANDLER);
+            }
+
+            long start = System.nanoTime();
+            metrics.recordQueueLatency(start - queuedNanos);
+            ProjectConfigResponseHandler responseHandler = new ProjectConfigResponseHandler();
+            boolean overloaded = true;
+            try {
+                httpClient.execute(request, responseHandler);
+                overloaded = false;
             } catch (IOException e) {
-                logger.error("event dispatch failed", e);
-            } catch (URISyntaxException e) {
-                logger.error("unable to parse generated URI", e);
+                overloaded = isRetriable(e);
+                throw e;
+            } finally {
+                long end = System.nanoTime();
+                if (concurrencyLimit != null) {
+                    concurrencyLimit.release(start, end, overloaded);
+                }
+                metrics.recordRequest(end - start, responseHandler.status, getContentLength(request));
+            }
+        }
+
+        private void retryOrDeadLetter(LogEvent event, IOException cause) {
+            if (!isRetriable(cause) || !retryPolicy.tryRetry(attempt)) {
+                logger.error("event dispatch failed", cause);
+                deadLetter(event, cause);
+                return;
+            }
+
+            long delay = retryPolicy.backoffMillis(attempt);
+            attempt++;
+            pendingRetries.add(this);
+            try {
+                retryExecutor.schedule(() -> {
+                    if (pendingRetries.remove(this)) {
+                        resubmit(this);
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+                logger.warn("event dispatch failed: {}. Retrying in {} ms (attempt {} of {})",
+                    cause.getMessage(), delay, attempt, retryPolicy.getMaxAttempts());
+            } catch (RejectedExecutionException e) {
+                if (!pendingRetries.remove(this)) {
+                    // already resubmitted by the shutdown
+                    return;
+                }
+                if (record != null) {
+                    // shutting down, the event is dispatched again from the event log on the next startup
+                    failedCount.increment();
+                    logger.warn("event dispatch failed while shutting down, keeping the event in the event log", cause);
+                    return;
+                }
+                logger.error("event dispatch failed", cause);
+                deadLetter(event, cause);
+            }
+        }
+
+        private void deadLetter(LogEvent event, Exception cause) {
+            failedCount.increment();
+            metrics.recordDropped(DispatchMetrics.DropReason.FAILED);
+            try {
+                deadLetterHandler.handle(event, cause);
+            } catch (RuntimeException e) {
+                logger.warn("dead letter handler failed", e);
+            }
+            if (record != null) {
+                eventLog.acknowledge(record);
             }
         }
 
@@ -231,29 +999,78 @@ public class AsyncEventHandler implements EventHandler, AutoCloseable {
             return new HttpGet(builder.build());
         }
 
-        private HttpPost generatePostRequest(LogEvent event) throws UnsupportedEncodingException {
+        /**
+         * Helper method that generates the event request for the given {@link LogEvent}. The body is sent as the
+         * already encoded UTF-8 bytes, compressed into the buffer of the given encoder when gzip is enabled. The
+         * encoder goes back to the pool only once the request has been executed, as dispatch is synchronous.
+         */
+        private HttpPost generatePostRequest(LogEvent event, @Nullable GzipBodyEncoder encoder) {
             HttpPost post = new HttpPost(event.getEndpointUrl());
-            post.setEntity(new StringEntity(event.getBody()));
+            byte[] body = event.getBodyBytes();
+            if (encoder != null) {
+                encoder.encode(body);
+                post.setEntity(new ByteArrayEntity(encoder.buffer(), 0, encoder.length(), ContentType.APPLICATION_JSON));
+                post.addHeader("Content-Encoding", "gzip");
+            } else {
+                post.setEntity(new ByteArrayEntity(body, ContentType.APPLICATION_JSON));
+            }
             post.addHeader("Content-Type", "application/json");
             return post;
         }
     }
 
+    private static long getContentLength(HttpRequestBase request) {
+        if (request instanceof HttpPost && ((HttpPost) request).getEntity() != null) {
+            return ((HttpPost) request).getEntity().getContentLength();
+        }
+        return 0;
+    }
+
+    /**
+     * Connection errors and statuses that signal an overloaded or unavailable endpoint are worth retrying, any
+     * other status means the endpoint rejected the event itself.
+     */
+    private static boolean isRetriable(IOException e) {
+        if (!(e instanceof UnexpectedStatusException)) {
+            return true;
+        }
+
+        int status = ((UnexpectedStatusException) e).status;
+        return status >= 500 || status == 408 || status == 429;
+    }
+
     /**
-     * Handler for the event request.
+     * Thrown for non-2xx responses of the event endpoint.
+     */
+    private static final class UnexpectedStatusException extends ClientProtocolException {
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        UnexpectedStatusException(int status) {
+            super("unexpected response from event endpoint, status: " + status);
+            this.status = status;
+        }
+    }
+
+    /**
+     * Handler for the event request. Remembers the status of the response, so one is created for each request.
      */
     private static final class ProjectConfigResponseHandler implements ResponseHandler<Void> {
 
+        // 0 until a response is received
+        private int status;
+
         @Override
         @CheckForNull
         public Void handleResponse(HttpResponse response) throws IOException {
-            int status = response.getStatusLine().getStatusCode();
+            status = response.getStatusLine().getStatusCode();
             if (status >= 200 && status < 300) {
                 // read the response, so we can close the connection
                 response.getEntity();
                 return null;
             } else {
-                throw new ClientProtocolException("unexpected response from event endpoint, status: " + status);
+                throw new UnexpectedStatusException(status);
             }
         }
     }
@@ -269,8 +1086,27 @@ public class AsyncEventHandler implements EventHandler, AutoCloseable {
         int maxTotalConnections = PropertyUtils.getInteger(CONFIG_MAX_CONNECTIONS, DEFAULT_MAX_CONNECTIONS);
         int maxPerRoute = PropertyUtils.getInteger(CONFIG_MAX_PER_ROUTE, DEFAULT_MAX_PER_ROUTE);
         int validateAfterInactivity = PropertyUtils.getInteger(CONFIG_VALIDATE_AFTER_INACTIVITY, DEFAULT_VALIDATE_AFTER_INACTIVITY);
-        private long closeTimeout = Long.MAX_VALUE;
-        private TimeUnit closeTimeoutUnit = TimeUnit.MILLISECONDS;
+        long closeTimeout = PropertyUtils.getLong(CONFIG_CLOSE_TIMEOUT, DEFAULT_CLOSE_TIMEOUT);
+        TimeUnit closeTimeoutUnit = TimeUnit.MILLISECONDS;
+        boolean gzipEnabled = Boolean.parseBoolean(PropertyUtils.get(CONFIG_GZIP_ENABLED));
+        File eventLogDirectory = PropertyUtils.get(CONFIG_LOG_DIRECTORY) == null ? null : new File(PropertyUtils.get(CONFIG_LOG_DIRECTORY));
+        int eventLogSegmentSize = PropertyUtils.getInteger(CONFIG_LOG_SEGMENT_SIZE, DEFAULT_LOG_SEGMENT_SIZE);
+        long eventLogRetention = PropertyUtils.getLong(CONFIG_LOG_RETENTION, DEFAULT_LOG_RETENTION);
+        int maxAttempts = PropertyUtils.getInteger(CONFIG_MAX_ATTEMPTS, DEFAULT_MAX_ATTEMPTS);
+        long retryBackoff = PropertyUtils.getLong(CONFIG_RETRY_BACKOFF, DEFAULT_RETRY_BACKOFF);
+        long maxRetryBackoff = PropertyUtils.getLong(CONFIG_MAX_RETRY_BACKOFF, DEFAULT_MAX_RETRY_BACKOFF);
+        int retryBudgetPercent = PropertyUtils.getInteger(CONFIG_RETRY_BUDGET_PERCENT, DEFAULT_RETRY_BUDGET_PERCENT);
+        int retryBudgetMin = PropertyUtils.getInteger(CONFIG_RETRY_BUDGET_MIN, DEFAULT_RETRY_BUDGET_MIN);
+        DeadLetterHandler deadLetterHandler;
+        OverflowPolicy overflowPolicy = PropertyUtils.getEnum(CONFIG_OVERFLOW_POLICY, OverflowPolicy.class, DEFAULT_OVERFLOW_POLICY);
+        long overflowBlockTimeout = PropertyUtils.getLong(CONFIG_OVERFLOW_BLOCK_TIMEOUT, DEFAULT_OVERFLOW_BLOCK_TIMEOUT);
+        int overflowSampleInterval = PropertyUtils.getInteger(CONFIG_OVERFLOW_SAMPLE_INTERVAL, DEFAULT_OVERFLOW_SAMPLE_INTERVAL);
+        int overflowSpillCapacity = PropertyUtils.getInteger(CONFIG_OVERFLOW_SPILL_CAPACITY, DEFAULT_OVERFLOW_SPILL_CAPACITY);
+        DispatchMode dispatchMode = PropertyUtils.getEnum(CONFIG_DISPATCH_MODE, DispatchMode.class, DEFAULT_DISPATCH_MODE);
+        int maxInFlight = PropertyUtils.getInteger(CONFIG_MAX_IN_FLIGHT, DEFAULT_MAX_IN_FLIGHT);
+        boolean adaptiveConcurrency = Boolean.parseBoolean(PropertyUtils.get(CONFIG_ADAPTIVE_CONCURRENCY));
+        int minConcurrency = PropertyUtils.getInteger(CONFIG_MIN_CONCURRENCY, DEFAULT_MIN_CONCURRENCY);
+        DispatchMetrics metrics;
 
         public Builder withQueueCapacity(int queueCapacity) {
             if (queueCapacity <= 0) {
@@ -307,26 +1143,248 @@ public class AsyncEventHandler implements EventHandler, AutoCloseable {
             return this;
         }
 
+        /**
+         * Sets the deadline of {@link AsyncEventHandler#close()} to dispatch the pending events, see
+         * {@link AsyncEventHandler#flushAndShutdown(long, TimeUnit, Consumer)}.
+         */
         public Builder withCloseTimeout(long closeTimeout, TimeUnit unit) {
             this.closeTimeout = closeTimeout;
             this.closeTimeoutUnit = unit;
             return this;
         }
 
+        /**
+         * Compresses POST bodies with gzip. Worthwhile for batched payloads, which shrink to a fraction of their
+         * size, as long as the event endpoint accepts {@code Content-Encoding: gzip}.
+         */
+        public Builder withGzip(boolean gzipEnabled) {
+            this.gzipEnabled = gzipEnabled;
+            return this;
+        }
+
+        /**
+         * Keeps pending events in an append-only log in the given directory, so that they are dispatched after a
+         * crash or a restart and so that spikes beyond the queue capacity wait on disk instead of being dropped.
+         * The directory must not be shared between event handlers.
+         */
+        public Builder withEventLog(File eventLogDirectory) {
+            this.eventLogDirectory = eventLogDirectory;
+            return this;
+        }
+
+        public Builder withEventLogSegmentSize(int eventLogSegmentSize) {
+            if (eventLogSegmentSize <= 0) {
+                logger.warn("Event log segment size cannot be <= 0. Keeping default value: {}", this.eventLogSegmentSize);
+                return this;
+            }
+
+            this.eventLogSegmentSize = eventLogSegmentSize;
+            return this;
+        }
+
+        /**
+         * @param eventLogRetention the number of bytes the event log may take on disk before its oldest events
+         *                          are dropped
+         */
+        public Builder withEventLogRetention(long eventLogRetention) {
+            if (eventLogRetention <= 0) {
+                logger.warn("Event log retention cannot be <= 0. Keeping default value: {}", this.eventLogRetention);
+                return this;
+            }
+
+            this.eventLogRetention = eventLogRetention;
+            return this;
+        }
+
+        /**
+         * @param maxAttempts the number of attempts for each event, including the first one. 1 disables retries.
+         */
+        public Builder withMaxAttempts(int maxAttempts) {
+            if (maxAttempts <= 0) {
+                logger.warn("Max attempts cannot be <= 0. Keeping default value: {}", this.maxAttempts);
+                return this;
+            }
+
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * Sets the delay before the first retry, doubled for each following one up to the max backoff.
+         */
+        public Builder withRetryBackoff(long retryBackoff, TimeUnit unit) {
+            if (retryBackoff <= 0) {
+                logger.warn("Retry backoff cannot be <= 0. Keeping default value: {}", this.retryBackoff);
+                return this;
+            }
+
+            this.retryBackoff = unit.toMillis(retryBackoff);
+            return this;
+        }
+
+        public Builder withMaxRetryBackoff(long maxRetryBackoff, TimeUnit unit) {
+            if (maxRetryBackoff <= 0) {
+                logger.warn("Max retry backoff cannot be <= 0. Keeping default value: {}", this.maxRetryBackoff);
+                return this;
+            }
+
+            this.maxRetryBackoff = unit.toMillis(maxRetryBackoff);
+            return this;
+        }
+
+        /**
+         * Caps retries at the given percentage of new events, plus a reserve of retries for bursts. Without a
+         * reserve retries are only allowed once new events have earned them.
+         */
+        public Builder withRetryBudget(int percent, int minRetries) {
+            if (percent < 0 || minRetries < 0) {
+                logger.warn("Retry budget cannot be < 0. Keeping default values: {}%, {}", this.retryBudgetPercent, this.retryBudgetMin);
+                return this;
+            }
+
+            this.retryBudgetPercent = percent;
+            this.retryBudgetMin = minRetries;
+            return this;
+        }
+
+        /**
+         * Receives the events that could not be dispatched. Without one those events are dropped.
+         */
+        public Builder withDeadLetterHandler(DeadLetterHandler deadLetterHandler) {
+            this.deadLetterHandler = deadLetterHandler;
+            return this;
+        }
+
+        /**
+         * Sets what happens to events that do not fit in the queue. {@link OverflowPolicy#SPILL_TO_DISK} requires
+         * an event log.
+         */
+        public Builder withOverflowPolicy(OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+            return this;
+        }
+
+        /**
+         * Sets how long {@link OverflowPolicy#BLOCK} waits for room in the queue.
+         */
+        public Builder withOverflowBlockTimeout(long overflowBlockTimeout, TimeUnit unit) {
+            if (overflowBlockTimeout < 0) {
+                logger.warn("Overflow block timeout cannot be < 0. Keeping default value: {}", this.overflowBlockTimeout);
+                return this;
+            }
+
+            this.overflowBlockTimeout = unit.toMillis(overflowBlockTimeout);
+            return this;
+        }
+
+        /**
+         * Sets the share of events, one in every {@code overflowSampleInterval}, that {@link OverflowPolicy#SAMPLE}
+         * keeps once the queue is half full.
+         */
+        public Builder withOverflowSampleInterval(int overflowSampleInterval) {
+            if (overflowSampleInterval <= 0) {
+                logger.warn("Overflow sample interval cannot be <= 0. Keeping default value: {}", this.overflowSampleInterval);
+                return this;
+            }
+
+            this.overflowSampleInterval = overflowSampleInterval;
+            return this;
+        }
+
+        /**
+         * Sets how many events {@link OverflowPolicy#SPILL_TO_DISK} keeps waiting on disk. Only their positions in
+         * the event log are held in memory.
+         */
+        public Builder withOverflowSpillCapacity(int overflowSpillCapacity) {
+            if (overflowSpillCapacity <= 0) {
+                logger.warn("Overflow spill capacity cannot be <= 0. Keeping default value: {}", this.overflowSpillCapacity);
+                return this;
+            }
+
+            this.overflowSpillCapacity = overflowSpillCapacity;
+            return this;
+        }
+
+        public Builder withDispatchMode(DispatchMode dispatchMode) {
+            this.dispatchMode = dispatchMode;
+            return this;
+        }
+
+        /**
+         * Sets the number of requests {@link DispatchMode#VIRTUAL_THREADS} keeps in flight at most.
+         */
+        public Builder withMaxInFlight(int maxInFlight) {
+            if (maxInFlight <= 0) {
+                logger.warn("Max in flight cannot be <= 0. Keeping default value: {}", this.maxInFlight);
+                return this;
+            }
+
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        /**
+         * Adapts the number of requests in flight to the latency and errors of the endpoint, between the minimum
+         * concurrency and the number of dispatch threads: the number of workers, or the max in flight for
+         * {@link DispatchMode#VIRTUAL_THREADS}, which leaves the most room to adapt. Events wait in the queue
+         * instead of piling up on a slow endpoint.
+         */
+        public Builder withAdaptiveConcurrency(boolean adaptiveConcurrency) {
+            this.adaptiveConcurrency = adaptiveConcurrency;
+            return this;
+        }
+
+        /**
+         * Sets the number of requests in flight that adaptive concurrency never goes below.
+         */
+        public Builder withMinConcurrency(int minConcurrency) {
+            if (minConcurrency <= 0) {
+                logger.warn("Min concurrency cannot be <= 0. Keeping default value: {}", this.minConcurrency);
+                return this;
+            }
+
+            this.minConcurrency = minConcurrency;
+            return this;
+        }
+
+        /**
+         * Reports the queue size, latencies, response statuses, bytes sent and dropped events to the given
+         * metrics, see {@link InMemoryDispatchMetrics}.
+         */
+        public Builder withMetrics(DispatchMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * @throws IllegalStateException if {@link OverflowPolicy#SPILL_TO_DISK} is set without an event log, or if
+         *                               its event log cannot be opened
+         */
         public AsyncEventHandler build() {
-            return new AsyncEventHandler(
-                queueCapacity,
-                numWorkers,
-                maxTotalConnections,
-                maxPerRoute,
-                validateAfterInactivity,
-                closeTimeout,
-                closeTimeoutUnit
-            );
+            if (overflowPolicy == OverflowPolicy.SPILL_TO_DISK && eventLogDirectory == null) {
+                throw new IllegalStateException("Overflow policy " + OverflowPolicy.SPILL_TO_DISK + " requires an event log");
+            }
+
+            EventLog eventLog = null;
+            if (eventLogDirectory != null) {
+                try {
+                    eventLog = EventLog.open(eventLogDirectory, eventLogSegmentSize, eventLogRetention);
+                } catch (IOException e) {
+                    if (overflowPolicy == OverflowPolicy.SPILL_TO_DISK) {
+                        throw new IllegalStateException("Unable to open event log in " + eventLogDirectory, e);
+                    }
+                    logger.error("unable to open event log in {}, events will only be queued in memory", eventLogDirectory, e);
+                }
+            }
+
+            AsyncEventHandler eventHandler = new AsyncEventHandler(this, eventLog);
+            // only once constructed, as the workers pick the recovered events up right away
+            eventHandler.replayEventLog();
+            return eventHandler;
         }
     }
 
-    private int validateInput(String name, int input, int fallback) {
+    private static int validateInput(String name, int input, int fallback) {
         if (input <= 0) {
             logger.warn("Invalid value for {}: {}. Defaulting to {}", name, input, fallback);
             return fallback;
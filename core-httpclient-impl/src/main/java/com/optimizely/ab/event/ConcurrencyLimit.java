@@ -0,0 +1,108 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.event;
+
+/**
+ * Limits the number of event dispatches in flight, adapting the limit to the latency and errors of the endpoint.
+ *
+ * The limit starts at its maximum. It is cut multiplicatively when a dispatch fails because the endpoint is
+ * overloaded or unavailable, or when the recent latency rises well above the long-term latency, and grows back
+ * additively, by about one per limit worth of dispatches, while the latency stays flat and the limit is in use.
+ * Only dispatches started after the last cut can cut it again, so that a burst of failures caused by one slowdown
+ * counts once.
+ */
+final class ConcurrencyLimit {
+
+    // the recent latency may reach this multiple of the long-term latency before the limit is cut
+    private static final double LATENCY_TOLERANCE = 2.0;
+    private static final double BACKOFF_RATIO = 0.9;
+    // smoothing factors of exponential moving averages over about 10 and 500 samples
+    private static final double SHORT_SMOOTHING = 2.0 / 11;
+    private static final double LONG_SMOOTHING = 2.0 / 501;
+    // samples needed before the latency is trusted to cut the limit
+    private static final int WARMUP_SAMPLES = 10;
+
+    private final int minLimit;
+    private final int maxLimit;
+
+    // guarded by this
+    private double limit;
+    private int inFlight;
+    private long samples;
+    private double shortLatency;
+    private double longLatency;
+    private long lastCutNanos;
+
+    ConcurrencyLimit(int minLimit, int maxLimit) {
+        this.minLimit = Math.max(1, Math.min(minLimit, maxLimit));
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = this.maxLimit;
+        this.lastCutNanos = System.nanoTime();
+    }
+
+    /**
+     * Waits until fewer dispatches than the limit are in flight.
+     */
+    synchronized void acquire() throws InterruptedException {
+        while (inFlight >= getLimit()) {
+            wait();
+        }
+        inFlight++;
+    }
+
+    /**
+     * Records the outcome of a dispatch acquired with {@link #acquire()} and adapts the limit.
+     *
+     * @param startNanos the {@link System#nanoTime()} at which the request was sent
+     * @param endNanos   the {@link System#nanoTime()} at which it completed
+     * @param overloaded whether the request failed in a way that signals an overloaded or unavailable endpoint
+     */
+    synchronized void release(long startNanos, long endNanos, boolean overloaded) {
+        // the limit was in use if at least half of it was in flight
+        boolean utilized = 2 * inFlight >= getLimit();
+        inFlight--;
+
+        double latency = endNanos - startNanos;
+        if (samples++ == 0) {
+            shortLatency = latency;
+            longLatency = latency;
+        } else {
+            shortLatency += SHORT_SMOOTHING * (latency - shortLatency);
+            longLatency += LONG_SMOOTHING * (latency - longLatency);
+        }
+
+        boolean slow = samples >= WARMUP_SAMPLES && shortLatency > LATENCY_TOLERANCE * longLatency;
+        if (overloaded || slow) {
+            if (startNanos - lastCutNanos > 0) {
+                limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+                lastCutNanos = endNanos;
+            }
+        } else if (utilized) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+
+        notifyAll();
+    }
+
+    synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    synchronized int getInFlight() {
+        return inFlight;
+    }
+}
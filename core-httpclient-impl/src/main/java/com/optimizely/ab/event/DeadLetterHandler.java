@@ -0,0 +1,26 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.event;
+
+/**
+ * Receives the events that {@link AsyncEventHandler} gave up on dispatching, because the endpoint rejected them,
+ * every retry failed or the retry budget ran out. Called from a dispatch worker thread, so implementations should
+ * hand the event off rather than block.
+ */
+public interface DeadLetterHandler {
+    void handle(LogEvent logEvent, Exception cause);
+}
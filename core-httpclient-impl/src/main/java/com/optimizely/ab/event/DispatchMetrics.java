@@ -0,0 +1,89 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.event;
+
+import java.util.function.IntSupplier;
+
+/**
+ * Receives measurements of the event dispatches of {@link AsyncEventHandler}, to be forwarded to whatever metrics
+ * library the application uses. {@link InMemoryDispatchMetrics} keeps them in memory instead.
+ *
+ * Every method does nothing by default, so an implementation only overrides the measurements it reports. Methods
+ * are called from the threads that dispatch or queue events, so they must be thread safe, fast and must not throw.
+ */
+public interface DispatchMetrics {
+
+    DispatchMetrics NOOP = new DispatchMetrics() { };
+
+    /**
+     * Why an event was never delivered.
+     */
+    enum DropReason {
+        /**
+         * The event did not fit in the queue.
+         */
+        QUEUE_FULL,
+        /**
+         * The event was evicted from the queue to make room for a newer one.
+         */
+        EVICTED,
+        /**
+         * The event was left out while the queue was over half full.
+         */
+        SAMPLED_OUT,
+        /**
+         * The endpoint rejected the event, or every attempt to dispatch it failed.
+         */
+        FAILED,
+        /**
+         * The event was dropped from the event log by retention before it could be dispatched.
+         */
+        EXPIRED,
+        /**
+         * The event was still queued when the event handler shut down, and was neither logged nor spilled.
+         */
+        ABANDONED
+    }
+
+    /**
+     * Called once, when the event handler is created, with a gauge of the number of events waiting for dispatch.
+     */
+    default void registerQueueSize(IntSupplier queueSize) {
+    }
+
+    /**
+     * Records the time an event waited between being queued, or queued again for a retry, and being sent.
+     */
+    default void recordQueueLatency(long nanos) {
+    }
+
+    /**
+     * Records a request sent to the event endpoint.
+     *
+     * @param nanos  the time until the response or the failure
+     * @param status the status of the response, or 0 when none was received
+     * @param bytes  the size of the request body as sent, compressed or not
+     */
+    default void recordRequest(long nanos, int status, long bytes) {
+    }
+
+    /**
+     * Records an event that was dropped.
+     */
+    default void recordDropped(DropReason reason) {
+    }
+}
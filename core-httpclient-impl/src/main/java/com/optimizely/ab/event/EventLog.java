@@ -0,0 +1,470 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.event;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of events awaiting dispatch, kept in memory-mapped segment files so that events survive a crash
+ * or a hard shutdown of the JVM.
+ *
+ * Each record is a header of the payload length, the CRC32 of the payload and an acknowledgement flag, followed by
+ * the payload. The length is written last, so a record is only visible once it is complete. A segment is deleted as
+ * soon as every record in it has been acknowledged and no more records will be appended to it. When the log outgrows
+ * its retention the oldest segment is dropped, along with any events that were never acknowledged.
+ *
+ * Segments are flushed to the storage device when they are full and when the log is closed. Writes in between live
+ * in the page cache of the operating system, which outlives the JVM but not the machine. A segment is unmapped as
+ * soon as it is deleted or the log is closed, so records are no longer readable once the log is closed.
+ */
+final class EventLog implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventLog.class);
+
+    private static final String SEGMENT_PREFIX = "events-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final int HEADER_SIZE = 9;
+    private static final int CRC_OFFSET = 4;
+    private static final int FLAG_OFFSET = 8;
+    private static final byte PENDING = 0;
+    private static final byte ACKNOWLEDGED = 1;
+
+    private static final int VERSION = 1;
+
+    private final File directory;
+    private final int segmentSize;
+    private final int maxSegments;
+
+    // oldest first, the last segment is the one being appended to
+    private final Deque<Segment> segments = new ArrayDeque<Segment>();
+    private final CRC32 crc = new CRC32();
+    private long nextSegmentId;
+    private boolean closed;
+
+    private EventLog(File directory, int segmentSize, long retention) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = (int) Math.max(2, Math.min(Integer.MAX_VALUE, retention / segmentSize));
+    }
+
+    /**
+     * Opens the log kept in the given directory, recovering the segments left behind by a previous process.
+     *
+     * @param segmentSize the size in bytes of each segment file
+     * @param retention   the number of bytes the segments may take on disk before the oldest one is dropped
+     */
+    @Nonnull
+    static EventLog open(@Nonnull File directory, int segmentSize, long retention) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create event log directory " + directory);
+        }
+
+        EventLog eventLog = new EventLog(directory, segmentSize, retention);
+        eventLog.recover();
+        return eventLog;
+    }
+
+    private void recover() throws IOException {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            throw new IOException("Unable to list event log directory " + directory);
+        }
+
+        Arrays.sort(files);
+        for (File file : files) {
+            long id = parseSegmentId(file.getName());
+            if (id < 0) {
+                continue;
+            }
+
+            nextSegmentId = Math.max(nextSegmentId, id + 1);
+            Segment segment;
+            try {
+                segment = Segment.map(file, (int) Math.min(file.length(), Integer.MAX_VALUE));
+            } catch (IOException e) {
+                logger.warn("Unable to recover event log segment {}.", file, e);
+                continue;
+            }
+
+            scan(segment);
+            if (segment.pending == 0) {
+                delete(segment);
+            } else {
+                segments.addLast(segment);
+            }
+        }
+    }
+
+    /**
+     * Counts the pending records of a recovered segment. The scan stops at the first incomplete record, nothing is
+     * appended to a recovered segment.
+     */
+    private void scan(Segment segment) {
+        ByteBuffer buffer = segment.buffer;
+        int offset = 0;
+        while (offset + HEADER_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || length > buffer.capacity() - offset - HEADER_SIZE) {
+                break;
+            }
+            if (buffer.getInt(offset + CRC_OFFSET) != checksum(buffer, offset + HEADER_SIZE, length)) {
+                logger.warn("Ignoring the incomplete tail of event log segment {}.", segment.file);
+                break;
+            }
+            if (buffer.get(offset + FLAG_OFFSET) == PENDING) {
+                segment.pending++;
+            }
+            offset += HEADER_SIZE + length;
+        }
+        segment.position = segment.buffer.capacity();
+    }
+
+    /**
+     * @return every record that has not been acknowledged, oldest first.
+     */
+    @Nonnull
+    synchronized List<Record> pending() {
+        List<Record> records = new ArrayList<Record>();
+        if (closed) {
+            return records;
+        }
+
+        for (Segment segment : segments) {
+            ByteBuffer buffer = segment.buffer;
+            int offset = 0;
+            int remaining = segment.pending;
+            while (remaining > 0) {
+                if (buffer.get(offset + FLAG_OFFSET) == PENDING) {
+                    records.add(new Record(segment, offset));
+                    remaining--;
+                }
+                offset += HEADER_SIZE + buffer.getInt(offset);
+            }
+        }
+
+        return records;
+    }
+
+    /**
+     * Appends the event to the log.
+     *
+     * @return the record to read and acknowledge it with, or null if the event is larger than a segment.
+     */
+    @CheckForNull
+    synchronized Record append(@Nonnull LogEvent.RequestMethod requestMethod,
+                               @Nonnull String endpointUrl,
+                               @Nonnull Map<String, String> requestParams,
+                               @Nullable byte[] body) throws IOException {
+        if (closed) {
+            throw new IOException("The event log is closed.");
+        }
+
+        byte[] payload = encode(requestMethod, endpointUrl, requestParams, body);
+        int size = HEADER_SIZE + payload.length;
+        if (size > segmentSize) {
+            return null;
+        }
+
+        Segment segment = segments.peekLast();
+        if (segment == null || segment.buffer.capacity() - segment.position < size) {
+            segment = roll(segment);
+        }
+
+        int offset = segment.position;
+        ByteBuffer buffer = segment.buffer.duplicate();
+        buffer.position(offset + HEADER_SIZE);
+        buffer.put(payload);
+        crc.reset();
+        crc.update(payload, 0, payload.length);
+        segment.buffer.putInt(offset + CRC_OFFSET, (int) crc.getValue());
+        segment.buffer.put(offset + FLAG_OFFSET, PENDING);
+        segment.buffer.putInt(offset, payload.length);
+
+        segment.position += size;
+        segment.pending++;
+        return new Record(segment, offset);
+    }
+
+    private Segment roll(@Nullable Segment active) throws IOException {
+        if (active != null) {
+            active.buffer.force();
+            active.position = active.buffer.capacity();
+            if (active.pending == 0) {
+                segments.remove(active);
+                delete(active);
+            }
+        }
+
+        long id = nextSegmentId++;
+        Segment segment = Segment.map(new File(directory, segmentName(id)), segmentSize);
+        segments.addLast(segment);
+
+        while (segments.size() > maxSegments) {
+            Segment oldest = segments.removeFirst();
+            logger.warn("Event log retention exceeded. Dropping {} events that were never dispatched.", oldest.pending);
+            delete(oldest);
+        }
+
+        return segment;
+    }
+
+    /**
+     * @return the event of the record, or null if its segment was dropped or the log closed in the meantime.
+     */
+    @CheckForNull
+    synchronized LogEvent read(@Nonnull Record record) {
+        if (record.segment.deleted || closed) {
+            return null;
+        }
+
+        ByteBuffer buffer = record.segment.buffer;
+        byte[] payload = new byte[buffer.getInt(record.offset)];
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(record.offset + HEADER_SIZE);
+        duplicate.get(payload);
+
+        try {
+            return decode(payload);
+        } catch (IOException e) {
+            logger.warn("Unable to read event log record.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Marks the record as dispatched, deleting its segment once it holds no more pending records. Records
+     * acknowledged after the log is closed stay pending and are replayed when the log is opened again.
+     */
+    synchronized void acknowledge(@Nonnull Record record) {
+        Segment segment = record.segment;
+        if (segment.deleted || closed || segment.buffer.get(record.offset + FLAG_OFFSET) == ACKNOWLEDGED) {
+            return;
+        }
+
+        segment.buffer.put(record.offset + FLAG_OFFSET, ACKNOWLEDGED);
+        segment.pending--;
+        if (segment.pending == 0 && segment != segments.peekLast()) {
+            segments.remove(segment);
+            delete(segment);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        for (Segment segment : segments) {
+            segment.buffer.force();
+            segment.release();
+        }
+    }
+
+    private static void delete(Segment segment) {
+        segment.deleted = true;
+        // a file that is still mapped cannot be deleted on every platform
+        segment.release();
+        if (!segment.file.delete()) {
+            logger.warn("Unable to delete event log segment {}.", segment.file);
+        }
+    }
+
+    private int checksum(ByteBuffer buffer, int offset, int length) {
+        byte[] payload = new byte[length];
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(offset);
+        duplicate.get(payload);
+        crc.reset();
+        crc.update(payload, 0, length);
+        return (int) crc.getValue();
+    }
+
+    private static String segmentName(long id) {
+        return String.format("%s%020d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX);
+    }
+
+    private static long parseSegmentId(String name) {
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+            return -1;
+        }
+
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static byte[] encode(LogEvent.RequestMethod requestMethod,
+                                 String endpointUrl,
+                                 Map<String, String> requestParams,
+                                 @Nullable byte[] body) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + (body == null ? 0 : body.length));
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(VERSION);
+        out.writeUTF(requestMethod.name());
+        out.writeUTF(endpointUrl);
+        out.writeInt(requestParams.size());
+        for (Map.Entry<String, String> param : requestParams.entrySet()) {
+            out.writeUTF(param.getKey());
+            out.writeUTF(param.getValue());
+        }
+        if (body == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(body.length);
+            out.write(body);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static LogEvent decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported event log record version " + version + ".");
+        }
+
+        LogEvent.RequestMethod requestMethod;
+        try {
+            requestMethod = LogEvent.RequestMethod.valueOf(in.readUTF());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unknown request method.", e);
+        }
+        String endpointUrl = in.readUTF();
+        int size = in.readInt();
+        Map<String, String> requestParams = size == 0
+            ? Collections.<String, String>emptyMap()
+            : new HashMap<String, String>();
+        for (int i = 0; i < size; i++) {
+            String key = in.readUTF();
+            requestParams.put(key, in.readUTF());
+        }
+        int length = in.readInt();
+        byte[] body = new byte[Math.max(length, 0)];
+        in.readFully(body);
+
+        return LogEvent.fromBody(requestMethod, endpointUrl, requestParams, body);
+    }
+
+    /**
+     * Unmaps the buffer right away rather than once it is garbage collected. There is no public API for this, so
+     * the cleaner is invoked through {@code sun.misc.Unsafe} on Java 9 and later, and through the buffer on Java 8.
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            try {
+                Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            } catch (NoSuchMethodException e) {
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.debug("Unable to unmap event log segment, it is released once garbage collected.", e);
+        }
+    }
+
+    //======== Helper classes ========//
+
+    /**
+     * Position of an event in the log.
+     */
+    static final class Record {
+        private final Segment segment;
+        private final int offset;
+
+        private Record(Segment segment, int offset) {
+            this.segment = segment;
+            this.offset = offset;
+        }
+    }
+
+    private static final class Segment {
+        private final File file;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int position;
+        private int pending;
+        private boolean deleted;
+
+        private Segment(File file, FileChannel channel, MappedByteBuffer buffer) {
+            this.file = file;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        /**
+         * Closes the file and unmaps the buffer, which must not be touched afterwards.
+         */
+        void release() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.warn("Unable to close event log segment {}.", file, e);
+            }
+            unmap(buffer);
+        }
+
+        static Segment map(File file, int size) throws IOException {
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+            FileChannel channel = randomAccessFile.getChannel();
+            try {
+                return new Segment(file, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+    }
+}
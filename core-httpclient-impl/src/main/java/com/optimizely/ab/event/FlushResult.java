@@ -0,0 +1,72 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.event;
+
+/**
+ * Accounts for the events pending when {@link AsyncEventHandler#flushAndShutdown} was called.
+ */
+public final class FlushResult {
+
+    private final long delivered;
+    private final long failed;
+    private final long abandoned;
+
+    FlushResult(long delivered, long failed, long abandoned) {
+        this.delivered = delivered;
+        this.failed = failed;
+        this.abandoned = abandoned;
+    }
+
+    /**
+     * @return the number of events accepted by the endpoint before the deadline.
+     */
+    public long getDelivered() {
+        return delivered;
+    }
+
+    /**
+     * @return the number of events whose last attempt failed before the deadline. They were handed to the
+     * {@link DeadLetterHandler}, or kept in the event log to be dispatched again on the next startup.
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    /**
+     * @return the number of events that were still queued, waiting on disk or in flight at the deadline. Logged
+     * events stay in the event log, the others are handed to the spill sink if one was given.
+     */
+    public long getAbandoned() {
+        return abandoned;
+    }
+
+    /**
+     * @return whether every pending event was delivered or failed before the deadline.
+     */
+    public boolean isComplete() {
+        return abandoned == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "FlushResult{" +
+            "delivered=" + delivered +
+            ", failed=" + failed +
+            ", abandoned=" + abandoned +
+            '}';
+    }
+}
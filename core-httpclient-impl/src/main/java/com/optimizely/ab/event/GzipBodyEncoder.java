@@ -0,0 +1,107 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.event;
+
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Gzip encoder that keeps its {@link Deflater} and output buffer between calls, so that a dispatch worker
+ * compresses every event body without allocating. Instances are not thread safe and are meant to be used by
+ * one dispatch at a time. The native memory of the deflater is only released by {@link #end()}.
+ */
+final class GzipBodyEncoder {
+
+    private static final int HEADER_SIZE = 10;
+    private static final int TRAILER_SIZE = 8;
+
+    // buffers grown past this size by an unusually large body are not kept around
+    static final int MAX_RETAINED_SIZE = 256 * 1024;
+
+    private static final byte[] HEADER = {
+        (byte) 0x1f, (byte) 0x8b, // magic
+        Deflater.DEFLATED,        // compression method
+        0,                        // flags
+        0, 0, 0, 0,               // modification time
+        0,                        // extra flags
+        (byte) 0xff               // unknown operating system
+    };
+
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    private final CRC32 crc = new CRC32();
+    private byte[] buffer = new byte[4096];
+    private int length;
+
+    /**
+     * Compresses the given bytes. The result is available from {@link #buffer()} and {@link #length()} until the
+     * next call.
+     */
+    void encode(byte[] input) {
+        deflater.reset();
+        crc.reset();
+        crc.update(input, 0, input.length);
+
+        if (buffer.length > MAX_RETAINED_SIZE) {
+            buffer = new byte[4096];
+        }
+
+        System.arraycopy(HEADER, 0, buffer, 0, HEADER_SIZE);
+        int position = HEADER_SIZE;
+
+        deflater.setInput(input, 0, input.length);
+        deflater.finish();
+        while (!deflater.finished()) {
+            if (position == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            position += deflater.deflate(buffer, position, buffer.length - position);
+        }
+
+        if (buffer.length - position < TRAILER_SIZE) {
+            buffer = Arrays.copyOf(buffer, position + TRAILER_SIZE);
+        }
+        position = writeInt(buffer, position, (int) crc.getValue());
+        position = writeInt(buffer, position, input.length);
+
+        length = position;
+    }
+
+    byte[] buffer() {
+        return buffer;
+    }
+
+    int length() {
+        return length;
+    }
+
+    /**
+     * Releases the deflater, the encoder cannot be used afterwards.
+     */
+    void end() {
+        deflater.end();
+    }
+
+    private static int writeInt(byte[] buffer, int position, int value) {
+        // gzip stores its trailer in little endian order
+        buffer[position] = (byte) value;
+        buffer[position + 1] = (byte) (value >>> 8);
+        buffer[position + 2] = (byte) (value >>> 16);
+        buffer[position + 3] = (byte) (value >>> 24);
+        return position + 4;
+    }
+}
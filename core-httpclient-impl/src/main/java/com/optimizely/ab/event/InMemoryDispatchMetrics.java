@@ -0,0 +1,191 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.event;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * {@link DispatchMetrics} that keeps counters and latency histograms in memory, for applications without a metrics
+ * library or to be polled by one.
+ */
+public class InMemoryDispatchMetrics implements DispatchMetrics {
+
+    private volatile IntSupplier queueSize = () -> 0;
+
+    private final Histogram queueLatency = new Histogram();
+    private final Histogram requestLatency = new Histogram();
+    private final ConcurrentMap<Integer, LongAdder> statusCounts = new ConcurrentHashMap<Integer, LongAdder>();
+    private final LongAdder bytesSent = new LongAdder();
+    private final Map<DropReason, LongAdder> droppedCounts = new EnumMap<DropReason, LongAdder>(DropReason.class);
+
+    public InMemoryDispatchMetrics() {
+        for (DropReason reason : DropReason.values()) {
+            droppedCounts.put(reason, new LongAdder());
+        }
+    }
+
+    @Override
+    public void registerQueueSize(IntSupplier queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    @Override
+    public void recordQueueLatency(long nanos) {
+        queueLatency.record(nanos);
+    }
+
+    @Override
+    public void recordRequest(long nanos, int status, long bytes) {
+        requestLatency.record(nanos);
+        statusCounts.computeIfAbsent(status, key -> new LongAdder()).increment();
+        bytesSent.add(bytes);
+    }
+
+    @Override
+    public void recordDropped(DropReason reason) {
+        droppedCounts.get(reason).increment();
+    }
+
+    public int getQueueSize() {
+        return queueSize.getAsInt();
+    }
+
+    /**
+     * @return the time events waited between being queued and being sent.
+     */
+    public Histogram getQueueLatency() {
+        return queueLatency;
+    }
+
+    /**
+     * @return the time requests took to complete, successfully or not.
+     */
+    public Histogram getRequestLatency() {
+        return requestLatency;
+    }
+
+    /**
+     * @return the number of requests that received the given status, 0 counting the requests that received no
+     * response.
+     */
+    public long getStatusCount(int status) {
+        LongAdder count = statusCounts.get(status);
+        return count == null ? 0 : count.sum();
+    }
+
+    /**
+     * @return the number of requests by status, in ascending order of status.
+     */
+    public Map<Integer, Long> getStatusCounts() {
+        Map<Integer, Long> counts = new TreeMap<Integer, Long>();
+        for (Map.Entry<Integer, LongAdder> entry : statusCounts.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().sum());
+        }
+        return counts;
+    }
+
+    /**
+     * @return the number of body bytes sent, including those of failed requests.
+     */
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    public long getDroppedCount(DropReason reason) {
+        return droppedCounts.get(reason).sum();
+    }
+
+    /**
+     * @return the number of events dropped for any reason.
+     */
+    public long getDroppedCount() {
+        long count = 0;
+        for (LongAdder adder : droppedCounts.values()) {
+            count += adder.sum();
+        }
+        return count;
+    }
+
+    /**
+     * Histogram of durations in nanoseconds, with one bucket per power of two. Percentiles are thus reported with
+     * a precision of a factor of two, which is enough to tell a slowdown apart from noise, in constant memory and
+     * without locking.
+     */
+    public static final class Histogram {
+
+        private final LongAdder[] buckets = new LongAdder[Long.SIZE];
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        Histogram() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long nanos) {
+            nanos = Math.max(0, nanos);
+            // bucket i holds the values of i significant bits, up to 2^i - 1
+            buckets[Long.SIZE - Long.numberOfLeadingZeros(nanos)].increment();
+            count.increment();
+            sum.add(nanos);
+            max.accumulate(nanos);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getMax() {
+            return max.get();
+        }
+
+        public double getMean() {
+            long count = getCount();
+            return count == 0 ? 0 : (double) sum.sum() / count;
+        }
+
+        /**
+         * @param quantile between 0 and 1, 0.99 for the 99th percentile
+         * @return an upper bound, within a factor of two, of the given percentile, or 0 when nothing was recorded.
+         */
+        public long getPercentile(double quantile) {
+            long count = getCount();
+            if (count == 0) {
+                return 0;
+            }
+
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i].sum();
+                if (seen >= rank) {
+                    return Math.min((1L << i) - 1, getMax());
+                }
+            }
+            return getMax();
+        }
+    }
+}
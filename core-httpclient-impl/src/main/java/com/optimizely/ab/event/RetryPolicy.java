@@ -0,0 +1,121 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.event;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides whether and when a failed event dispatch is retried.
+ *
+ * Delays grow exponentially from the initial backoff up to the maximum backoff, and each one is drawn at random
+ * from its upper half so that events that failed together do not retry together. Retries are also limited by a
+ * budget: every dispatch of a new event earns a fraction of a retry, every retry spends a whole one, and the unspent
+ * balance is capped at a reserve for bursts plus what the last hundred new events earned. Retry traffic thus stays
+ * within that fraction of the fresh traffic, plus the reserve, however long the endpoint keeps failing.
+ */
+final class RetryPolicy {
+
+    // the budget is kept in thousandths of a retry
+    private static final long RETRY_COST = 1000;
+    // the number of new events whose earnings the budget keeps on top of the reserve
+    private static final int EARNING_WINDOW = 100;
+
+    private final int maxAttempts;
+    private final long backoffMillis;
+    private final long maxBackoffMillis;
+    private final long budgetPerDispatch;
+    private final long maxBudget;
+
+    private final AtomicLong budget;
+
+    /**
+     * @param maxAttempts      the number of attempts for each event, including the first one
+     * @param backoffMillis    the delay before the first retry
+     * @param maxBackoffMillis the longest delay between two attempts
+     * @param budgetPercent    the number of retries, per hundred new events, that the budget allows
+     * @param minRetries       the number of retries the budget allows in a burst, without new events, may be zero
+     */
+    RetryPolicy(int maxAttempts, long backoffMillis, long maxBackoffMillis, int budgetPercent, int minRetries) {
+        this.maxAttempts = maxAttempts;
+        this.backoffMillis = backoffMillis;
+        this.maxBackoffMillis = Math.max(backoffMillis, maxBackoffMillis);
+        this.budgetPerDispatch = budgetPercent * RETRY_COST / 100;
+        long reserve = minRetries * RETRY_COST;
+        this.maxBudget = reserve + budgetPerDispatch * EARNING_WINDOW;
+        this.budget = new AtomicLong(reserve);
+    }
+
+    int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    boolean isEnabled() {
+        return maxAttempts > 1;
+    }
+
+    /**
+     * Credits the budget for a newly dispatched event.
+     */
+    void recordDispatch() {
+        if (budgetPerDispatch == 0) {
+            return;
+        }
+
+        long current;
+        do {
+            current = budget.get();
+            if (current >= maxBudget) {
+                return;
+            }
+        } while (!budget.compareAndSet(current, Math.min(maxBudget, current + budgetPerDispatch)));
+    }
+
+    /**
+     * @return whether another attempt is allowed after the given failed attempt, spending a retry of the budget
+     * if it is.
+     */
+    boolean tryRetry(int attempt) {
+        if (attempt >= maxAttempts) {
+            return false;
+        }
+
+        long current;
+        do {
+            current = budget.get();
+            if (current < RETRY_COST) {
+                return false;
+            }
+        } while (!budget.compareAndSet(current, current - RETRY_COST));
+
+        return true;
+    }
+
+    /**
+     * @return the delay before the attempt that follows the given failed attempt.
+     */
+    long backoffMillis(int attempt) {
+        long delay = backoffMillis;
+        for (int i = 1; i < attempt && delay < maxBackoffMillis; i++) {
+            delay *= 2;
+        }
+        delay = Math.min(delay, maxBackoffMillis);
+
+        long half = delay / 2;
+        return half + ThreadLocalRandom.current().nextLong(delay - half + 1);
+    }
+}
@@ -33,18 +33,23 @@ import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.concurrent.TimeUnit;
 
 import static com.optimizely.ab.config.HttpProjectConfigManager.*;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.junit.Assert.*;
 import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -225,6 +230,146 @@ public class HttpProjectConfigManagerTest {
         assertNull(datafile);
     }
 
+    @Test
+    public void testGetDatafileHttpResponseWithUnchangedContent() throws Exception {
+        HttpResponse getResponse = new BasicHttpResponse(new ProtocolVersion("TEST", 0, 0), 200, "TEST");
+        getResponse.setEntity(new StringEntity("{\"revision\": \"1\"}"));
+        assertNotNull(projectConfigManager.getDatafileFromResponse(getResponse));
+
+        // the same content is not handed out for parsing again
+        assertNull(projectConfigManager.getDatafileFromResponse(getResponse));
+
+        getResponse.setEntity(new StringEntity("{\"revision\": \"2\"}"));
+        assertNotNull(projectConfigManager.getDatafileFromResponse(getResponse));
+    }
+
+    @Test
+    public void testGetDatafileHttpResponseSameAsFallbackDatafile() throws Exception {
+        projectConfigManager = builder()
+            .withOptimizelyHttpClient(mockHttpClient)
+            .withSdkKey("sdk-key")
+            .withDatafile(datafileString)
+            .build();
+
+        HttpResponse getResponse = new BasicHttpResponse(new ProtocolVersion("TEST", 0, 0), 200, "TEST");
+        getResponse.setEntity(new StringEntity(datafileString));
+        assertNull(projectConfigManager.getDatafileFromResponse(getResponse));
+    }
+
+    @Test
+    public void testPollWritesSnapshot() throws Exception {
+        Path snapshotFile = Files.createTempFile("project-config", ".snapshot");
+        try {
+            projectConfigManager = builder()
+                .withOptimizelyHttpClient(mockHttpClient)
+                .withSdkKey("sdk-key")
+                .withSnapshotFile(snapshotFile.toString())
+                .build();
+
+            assertEquals("1480511547", projectConfigManager.getConfig().getRevision());
+            assertEquals("1480511547", ProjectConfigSnapshot.read(snapshotFile).getProjectConfig().getRevision());
+        } finally {
+            Files.delete(snapshotFile);
+        }
+    }
+
+    @Test
+    public void testBuildFromSnapshot() throws Exception {
+        Path snapshotFile = Files.createTempFile("project-config", ".snapshot");
+        try {
+            writeSnapshot(snapshotFile, "42");
+            mockInvalidPayload();
+
+            projectConfigManager = builder()
+                .withOptimizelyHttpClient(mockHttpClient)
+                .withSdkKey("sdk-key")
+                .withDatafile(datafileString)
+                .withSnapshotFile(snapshotFile.toString())
+                .build(true);
+
+            assertEquals("42", projectConfigManager.getConfig().getRevision());
+        } finally {
+            Files.delete(snapshotFile);
+        }
+    }
+
+    @Test
+    public void testBuildFromStaleSnapshot() throws Exception {
+        Path snapshotFile = Files.createTempFile("project-config", ".snapshot");
+        try {
+            writeSnapshot(snapshotFile, "42");
+            mockInvalidPayload();
+            Thread.sleep(10);
+
+            projectConfigManager = builder()
+                .withOptimizelyHttpClient(mockHttpClient)
+                .withSdkKey("sdk-key")
+                .withDatafile(datafileString)
+                .withSnapshotFile(snapshotFile.toString())
+                .withSnapshotMaxAge(1L, TimeUnit.MILLISECONDS)
+                .build(true);
+
+            assertEquals("1480511547", projectConfigManager.getConfig().getRevision());
+        } finally {
+            Files.delete(snapshotFile);
+        }
+    }
+
+    @Test
+    public void testBuildFromCorruptSnapshot() throws Exception {
+        Path snapshotFile = Files.createTempFile("project-config", ".snapshot");
+        try {
+            Files.write(snapshotFile, "I am an invalid snapshot!".getBytes("UTF-8"));
+            mockInvalidPayload();
+
+            projectConfigManager = builder()
+                .withOptimizelyHttpClient(mockHttpClient)
+                .withSdkKey("sdk-key")
+                .withDatafile(datafileString)
+                .withSnapshotFile(snapshotFile.toString())
+                .build(true);
+
+            assertEquals("1480511547", projectConfigManager.getConfig().getRevision());
+        } finally {
+            Files.delete(snapshotFile);
+        }
+    }
+
+    private void writeSnapshot(Path snapshotFile, String revision) throws Exception {
+        ProjectConfig projectConfig = new DatafileProjectConfig.Builder()
+            .withDatafile(datafileString.replace("1480511547", revision))
+            .build();
+        new ProjectConfigSnapshot(projectConfig, null).writeTo(snapshotFile);
+    }
+
+    private void mockInvalidPayload() throws Exception {
+        reset(mockHttpClient);
+        CloseableHttpResponse invalidPayloadResponse = mock(CloseableHttpResponse.class);
+        StatusLine statusLine = mock(StatusLine.class);
+
+        when(statusLine.getStatusCode()).thenReturn(200);
+        when(invalidPayloadResponse.getStatusLine()).thenReturn(statusLine);
+        when(invalidPayloadResponse.getEntity()).thenReturn(new StringEntity("I am an invalid response!"));
+
+        when(mockHttpClient.execute(any(HttpGet.class)))
+            .thenReturn(invalidPayloadResponse);
+    }
+
+    @Test
+    public void testPollSendsETag() throws Exception {
+        String eTag = "\"5cbe5a1c-2f1c\"";
+        HttpResponse getResponse = new BasicHttpResponse(new ProtocolVersion("TEST", 0, 0), 200, "TEST");
+        getResponse.setEntity(new StringEntity(datafileString));
+        getResponse.setHeader(HttpHeaders.ETAG, eTag);
+        projectConfigManager.getDatafileFromResponse(getResponse);
+        assertEquals(eTag, projectConfigManager.getETag());
+
+        projectConfigManager.poll();
+        ArgumentCaptor<HttpGet> httpGet = ArgumentCaptor.forClass(HttpGet.class);
+        verify(mockHttpClient, atLeastOnce()).execute(httpGet.capture());
+        assertEquals(eTag, httpGet.getValue().getFirstHeader(HttpHeaders.IF_NONE_MATCH).getValue());
+    }
+
     @Test(expected = ClientProtocolException.class)
     public void testGetDatafileHttpResponse4XX() throws Exception {
         HttpResponse getResponse = new BasicHttpResponse(new ProtocolVersion("TEST", 0, 0), 400, "TEST");
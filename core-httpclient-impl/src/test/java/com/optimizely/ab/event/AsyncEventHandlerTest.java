@@ -20,33 +20,53 @@ import com.google.common.util.concurrent.MoreExecutors;
 
 import com.optimizely.ab.OptimizelyHttpClient;
 import com.optimizely.ab.event.internal.payload.EventBatch;
+import org.apache.http.HttpVersion;
 import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.message.BasicHttpResponse;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnit;
 import org.mockito.junit.MockitoRule;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.mockito.runners.MockitoJUnitRunner;
 
 import static com.optimizely.ab.event.AsyncEventHandler.builder;
+import static com.optimizely.ab.event.StreamTestUtils.readAll;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -61,6 +81,11 @@ public class AsyncEventHandlerTest {
     @Mock
     ExecutorService mockExecutorService;
 
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     @Test
     public void testDispatch() throws Exception {
         AsyncEventHandler eventHandler = new AsyncEventHandler(mockHttpClient, MoreExecutors.newDirectExecutorService());
@@ -68,6 +93,32 @@ public class AsyncEventHandlerTest {
         verify(mockHttpClient).execute(any(HttpGet.class), any(ResponseHandler.class));
     }
 
+    @Test
+    public void testDispatchPostSendsBodyBytes() throws Exception {
+        AsyncEventHandler eventHandler = new AsyncEventHandler(mockHttpClient, MoreExecutors.newDirectExecutorService());
+        LogEvent logEvent = createPostLogEvent();
+        eventHandler.dispatchEvent(logEvent);
+
+        ArgumentCaptor<HttpPost> post = ArgumentCaptor.forClass(HttpPost.class);
+        verify(mockHttpClient).execute(post.capture(), any(ResponseHandler.class));
+        assertFalse(post.getValue().containsHeader("Content-Encoding"));
+        assertArrayEquals(logEvent.getBodyBytes(), readAll(post.getValue().getEntity().getContent()));
+    }
+
+    @Test
+    public void testDispatchPostWithGzip() throws Exception {
+        AsyncEventHandler eventHandler = new AsyncEventHandler(mockHttpClient, MoreExecutors.newDirectExecutorService(),
+            builder().withMaxAttempts(1).withGzip(true), null);
+        LogEvent logEvent = createPostLogEvent();
+        eventHandler.dispatchEvent(logEvent);
+
+        ArgumentCaptor<HttpPost> post = ArgumentCaptor.forClass(HttpPost.class);
+        verify(mockHttpClient).execute(post.capture(), any(ResponseHandler.class));
+        assertEquals("gzip", post.getValue().getFirstHeader("Content-Encoding").getValue());
+        assertArrayEquals(logEvent.getBodyBytes(),
+            readAll(new GZIPInputStream(post.getValue().getEntity().getContent())));
+    }
+
     /**
      * Verify that {@link RejectedExecutionException}s are caught, rather than being propagated.
      */
@@ -93,6 +144,295 @@ public class AsyncEventHandlerTest {
         verify(mockHttpClient).execute(any(HttpGet.class), any(ResponseHandler.class));
     }
 
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testFailedDispatchIsRetried() throws Exception {
+        List<LogEvent> deadLetters = new CopyOnWriteArrayList<LogEvent>();
+        AsyncEventHandler eventHandler = new AsyncEventHandler(mockHttpClient, MoreExecutors.newDirectExecutorService(),
+            retryingBuilder().withDeadLetterHandler((logEvent, cause) -> deadLetters.add(logEvent)), null);
+
+        when(mockHttpClient.execute(any(HttpGet.class), any(ResponseHandler.class))).thenThrow(IOException.class);
+        LogEvent logEvent = createLogEvent();
+        eventHandler.dispatchEvent(logEvent);
+
+        verify(mockHttpClient, timeout(1000).times(3)).execute(any(HttpGet.class), any(ResponseHandler.class));
+        eventHandler.shutdownAndAwaitTermination(1, TimeUnit.SECONDS);
+        assertEquals(Collections.singletonList(logEvent), deadLetters);
+    }
+
+    /**
+     * Verify that events dropped on overflow do not earn retries for the events that are sent.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testDroppedEventsDoNotEarnRetries() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch deadLetter = new CountDownLatch(1);
+        // a worker without a queue, so events are dropped while one is in flight
+        ExecutorService workerExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new SynchronousQueue<Runnable>());
+        AsyncEventHandler eventHandler = new AsyncEventHandler(mockHttpClient, workerExecutor,
+            retryingBuilder().withMaxAttempts(2).withRetryBackoff(1, TimeUnit.MINUTES)
+                .withMaxRetryBackoff(1, TimeUnit.MINUTES).withRetryBudget(50, 0)
+                .withOverflowPolicy(AsyncEventHandler.OverflowPolicy.DROP_NEWEST)
+                .withDeadLetterHandler((logEvent, cause) -> deadLetter.countDown()), null);
+
+        when(mockHttpClient.execute(any(HttpGet.class), any(ResponseHandler.class))).thenAnswer(invocation -> {
+            release.await();
+            throw new IOException();
+        });
+        eventHandler.dispatchEvent(createLogEvent());
+        verify(mockHttpClient, timeout(1000)).execute(any(HttpGet.class), any(ResponseHandler.class));
+        eventHandler.dispatchEvent(createLogEvent());
+        assertEquals(1, eventHandler.getDroppedCount());
+        release.countDown();
+
+        // half a retry was earned, so the failed event goes to the dead letter handler right away
+        assertTrue(deadLetter.await(1, TimeUnit.SECONDS));
+        verify(mockHttpClient, times(1)).execute(any(HttpGet.class), any(ResponseHandler.class));
+        eventHandler.shutdownAndAwaitTermination(1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Verify that events the endpoint rejects with a client error go straight to the dead letter handler.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testClientErrorIsNotRetried() throws Exception {
+        List<LogEvent> deadLetters = new CopyOnWriteArrayList<LogEvent>();
+        AsyncEventHandler eventHandler = new AsyncEventHandler(mockHttpClient, MoreExecutors.newDirectExecutorService(),
+            retryingBuilder().withDeadLetterHandler((logEvent, cause) -> deadLetters.add(logEvent)), null);
+
+        when(mockHttpClient.execute(any(HttpGet.class), any(ResponseHandler.class))).thenAnswer(invocation ->
+            invocation.getArgumentAt(1, ResponseHandler.class)
+                .handleResponse(new BasicHttpResponse(HttpVersion.HTTP_1_1, 400, "Bad Request")));
+        LogEvent logEvent = createLogEvent();
+        eventHandler.dispatchEvent(logEvent);
+
+        verify(mockHttpClient, times(1)).execute(any(HttpGet.class), any(ResponseHandler.class));
+        assertEquals(Collections.singletonList(logEvent), deadLetters);
+    }
+
+    /**
+     * Verify that adaptive concurrency lowers the limit of requests in flight when the endpoint fails.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testAdaptiveConcurrencyShrinksOnFailures() throws Exception {
+        AsyncEventHandler eventHandler = new AsyncEventHandler(mockHttpClient, MoreExecutors.newDirectExecutorService(),
+            builder().withMaxAttempts(1).withNumWorkers(10).withAdaptiveConcurrency(true), null);
+        assertEquals(10, eventHandler.getConcurrencyLimit());
+
+        when(mockHttpClient.execute(any(HttpGet.class), any(ResponseHandler.class))).thenThrow(IOException.class);
+        for (int i = 0; i < 3; i++) {
+            eventHandler.dispatchEvent(createLogEvent());
+        }
+
+        assertTrue(eventHandler.getConcurrencyLimit() < 10);
+        assertEquals(0, new AsyncEventHandler(mockHttpClient, mockExecutorService).getConcurrencyLimit());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testDispatchMetrics() throws Exception {
+        InMemoryDispatchMetrics metrics = new InMemoryDispatchMetrics();
+        AsyncEventHandler eventHandler = new AsyncEventHandler(mockHttpClient, MoreExecutors.newDirectExecutorService(),
+            builder().withMaxAttempts(1).withMetrics(metrics), null);
+
+        when(mockHttpClient.execute(any(HttpPost.class), any(ResponseHandler.class))).thenAnswer(invocation ->
+            invocation.getArgumentAt(1, ResponseHandler.class)
+                .handleResponse(new BasicHttpResponse(HttpVersion.HTTP_1_1, 204, "No Content")));
+        LogEvent logEvent = createPostLogEvent();
+        eventHandler.dispatchEvent(logEvent);
+
+        assertEquals(1, metrics.getStatusCount(204));
+        assertEquals(logEvent.getBodyBytes().length, metrics.getBytesSent());
+        assertEquals(1, metrics.getQueueLatency().getCount());
+        assertEquals(1, metrics.getRequestLatency().getCount());
+        assertEquals(0, metrics.getDroppedCount());
+        assertEquals(0, metrics.getQueueSize());
+    }
+
+    @Test
+    public void testDroppedEventsAreReported() throws Exception {
+        InMemoryDispatchMetrics metrics = new InMemoryDispatchMetrics();
+        AsyncEventHandler eventHandler = new AsyncEventHandler(mockHttpClient, mockExecutorService,
+            builder().withMaxAttempts(1).withMetrics(metrics), null);
+        doThrow(RejectedExecutionException.class).when(mockExecutorService).execute(any(Runnable.class));
+
+        eventHandler.dispatchEvent(createLogEvent());
+        assertEquals(1, metrics.getDroppedCount(DispatchMetrics.DropReason.QUEUE_FULL));
+    }
+
+    @Test
+    public void testDropNewestOnOverflow() throws Exception {
+        CountDownLatch release = blockDispatches();
+        AsyncEventHandler eventHandler = new AsyncEventHandler(mockHttpClient, singleWorkerExecutor(1),
+            builder().withMaxAttempts(1).withOverflowPolicy(AsyncEventHandler.OverflowPolicy.DROP_NEWEST), null);
+
+        for (int i = 0; i < 3; i++) {
+            eventHandler.dispatchEvent(createLogEvent());
+        }
+        release.countDown();
+        eventHandler.shutdownAndAwaitTermination(1, TimeUnit.SECONDS);
+
+        assertEquals(2, eventHandler.getQueuedCount());
+        assertEquals(1, eventHandler.getDroppedCount());
+        verify(mockHttpClient, times(2)).execute(any(HttpGet.class), any(ResponseHandler.class));
+    }
+
+    @Test
+    public void testDropOldestOnOverflow() throws Exception {
+        CountDownLatch release = blockDispatches();
+        AsyncEventHandler eventHandler = new AsyncEventHandler(mockHttpClient, singleWorkerExecutor(1),
+            builder().withMaxAttempts(1).withOverflowPolicy(AsyncEventHandler.OverflowPolicy.DROP_OLDEST), null);
+
+        for (int i = 0; i < 3; i++) {
+            eventHandler.dispatchEvent(createLogEvent());
+        }
+        release.countDown();
+        eventHandler.shutdownAndAwaitTermination(1, TimeUnit.SECONDS);
+
+        assertEquals(3, eventHandler.getQueuedCount());
+        assertEquals(1, eventHandler.getDroppedOldestCount());
+        assertEquals(0, eventHandler.getDroppedCount());
+        verify(mockHttpClient, times(2)).execute(any(HttpGet.class), any(ResponseHandler.class));
+    }
+
+    @Test
+    public void testBlockOnOverflow() throws Exception {
+        CountDownLatch release = blockDispatches();
+        AsyncEventHandler eventHandler = new AsyncEventHandler(mockHttpClient, singleWorkerExecutor(1),
+            builder().withMaxAttempts(1).withOverflowPolicy(AsyncEventHandler.OverflowPolicy.BLOCK)
+                .withOverflowBlockTimeout(10, TimeUnit.MILLISECONDS), null);
+
+        eventHandler.dispatchEvent(createLogEvent());
+        eventHandler.dispatchEvent(createLogEvent());
+        // times out while the worker is busy
+        eventHandler.dispatchEvent(createLogEvent());
+        assertEquals(1, eventHandler.getDroppedCount());
+
+        new Thread(() -> {
+            sleep(50);
+            release.countDown();
+        }).start();
+        eventHandler.shutdownAndAwaitTermination(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testBlockWaitsForRoom() throws Exception {
+        CountDownLatch release = blockDispatches();
+        AsyncEventHandler eventHandler = new AsyncEventHandler(mockHttpClient, singleWorkerExecutor(1),
+            builder().withMaxAttempts(1).withOverflowPolicy(AsyncEventHandler.OverflowPolicy.BLOCK)
+                .withOverflowBlockTimeout(5, TimeUnit.SECONDS), null);
+
+        eventHandler.dispatchEvent(createLogEvent());
+        eventHandler.dispatchEvent(createLogEvent());
+        new Thread(() -> {
+            sleep(50);
+            release.countDown();
+        }).start();
+        eventHandler.dispatchEvent(createLogEvent());
+        eventHandler.shutdownAndAwaitTermination(1, TimeUnit.SECONDS);
+
+        assertEquals(1, eventHandler.getBlockedCount());
+        assertEquals(0, eventHandler.getDroppedCount());
+        verify(mockHttpClient, times(3)).execute(any(HttpGet.class), any(ResponseHandler.class));
+    }
+
+    @Test
+    public void testSampleOnceQueueIsHalfFull() throws Exception {
+        CountDownLatch release = blockDispatches();
+        AsyncEventHandler eventHandler = new AsyncEventHandler(mockHttpClient, singleWorkerExecutor(4),
+            builder().withMaxAttempts(1).withOverflowPolicy(AsyncEventHandler.OverflowPolicy.SAMPLE)
+                .withOverflowSampleInterval(2), null);
+
+        // one event runs, two fill half the queue, then every other event is kept
+        for (int i = 0; i < 7; i++) {
+            eventHandler.dispatchEvent(createLogEvent());
+        }
+        release.countDown();
+        eventHandler.shutdownAndAwaitTermination(1, TimeUnit.SECONDS);
+
+        assertEquals(5, eventHandler.getQueuedCount());
+        assertEquals(2, eventHandler.getSampledOutCount());
+        assertEquals(0, eventHandler.getDroppedCount());
+    }
+
+    @Test
+    public void testLoggedEventsFollowOverflowPolicy() throws Exception {
+        CountDownLatch release = blockDispatches();
+        File directory = temporaryFolder.newFolder();
+        AsyncEventHandler eventHandler = new AsyncEventHandler(mockHttpClient, singleWorkerExecutor(1),
+            builder().withMaxAttempts(1).withOverflowPolicy(AsyncEventHandler.OverflowPolicy.DROP_NEWEST),
+            EventLog.open(directory, 4096, 1024 * 1024));
+
+        for (int i = 0; i < 3; i++) {
+            eventHandler.dispatchEvent(createLogEvent());
+        }
+        release.countDown();
+        eventHandler.shutdownAndAwaitTermination(1, TimeUnit.SECONDS);
+
+        assertEquals(1, eventHandler.getDroppedCount());
+        assertEquals(0, eventHandler.getSpilledCount());
+        verify(mockHttpClient, times(2)).execute(any(HttpGet.class), any(ResponseHandler.class));
+
+        // the dropped event is not replayed either
+        EventLog eventLog = EventLog.open(directory, 4096, 1024 * 1024);
+        assertTrue(eventLog.pending().isEmpty());
+        eventLog.close();
+    }
+
+    @Test
+    public void testSpillToDiskOnOverflow() throws Exception {
+        CountDownLatch release = blockDispatches();
+        AsyncEventHandler eventHandler = new AsyncEventHandler(mockHttpClient, singleWorkerExecutor(1),
+            builder().withMaxAttempts(1).withOverflowPolicy(AsyncEventHandler.OverflowPolicy.SPILL_TO_DISK),
+            EventLog.open(temporaryFolder.newFolder(), 4096, 1024 * 1024));
+
+        for (int i = 0; i < 4; i++) {
+            eventHandler.dispatchEvent(createLogEvent());
+        }
+        assertEquals(2, eventHandler.getSpilledCount());
+        assertEquals(3, eventHandler.getQueueSize());
+
+        release.countDown();
+        // spilled events are queued again as the worker frees up
+        for (int i = 0; i < 100 && eventHandler.getQueueSize() > 0; i++) {
+            sleep(10);
+        }
+        eventHandler.shutdownAndAwaitTermination(1, TimeUnit.SECONDS);
+
+        assertEquals(0, eventHandler.getDroppedCount());
+        verify(mockHttpClient, times(4)).execute(any(HttpGet.class), any(ResponseHandler.class));
+    }
+
+    @Test
+    public void testSpillToDiskRequiresEventLog() {
+        thrown.expect(IllegalStateException.class);
+        builder().withOverflowPolicy(AsyncEventHandler.OverflowPolicy.SPILL_TO_DISK).build();
+    }
+
+    @Test
+    public void testVirtualThreadsDispatchModeKeepsRequestsInFlight() throws Exception {
+        ThreadPoolExecutor executor = AsyncEventHandler.createWorkerExecutor(builder()
+            .withDispatchMode(AsyncEventHandler.DispatchMode.VIRTUAL_THREADS)
+            .withMaxInFlight(8));
+        assertEquals(8, executor.getMaximumPoolSize());
+        assertTrue(executor.allowsCoreThreadTimeOut());
+
+        CountDownLatch release = blockDispatches();
+        AsyncEventHandler eventHandler = new AsyncEventHandler(mockHttpClient, executor, builder().withMaxAttempts(1), null);
+        for (int i = 0; i < 20; i++) {
+            eventHandler.dispatchEvent(createLogEvent());
+        }
+
+        verify(mockHttpClient, timeout(1000).times(8)).execute(any(HttpGet.class), any(ResponseHandler.class));
+        release.countDown();
+        eventHandler.shutdownAndAwaitTermination(1, TimeUnit.SECONDS);
+        verify(mockHttpClient, times(20)).execute(any(HttpGet.class), any(ResponseHandler.class));
+    }
+
     /**
      * Verifies the case where all queued events could be processed before the timeout is exceeded.
      */
@@ -124,6 +464,75 @@ public class AsyncEventHandlerTest {
         verify(mockHttpClient).close();
     }
 
+    @Test
+    public void testFlushAndShutdownDeliversPendingEvents() throws Exception {
+        CountDownLatch release = blockDispatches();
+        // the events are counted from the call on, so hold them until flushAndShutdown stops the worker
+        ExecutorService workerExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<Runnable>(10)) {
+            @Override
+            public void shutdown() {
+                super.shutdown();
+                release.countDown();
+            }
+        };
+        AsyncEventHandler eventHandler = new AsyncEventHandler(mockHttpClient, workerExecutor,
+            builder().withMaxAttempts(1), null);
+        for (int i = 0; i < 5; i++) {
+            eventHandler.dispatchEvent(createLogEvent());
+        }
+        verify(mockHttpClient, timeout(1000)).execute(any(HttpGet.class), any(ResponseHandler.class));
+
+        FlushResult result = eventHandler.flushAndShutdown(1, TimeUnit.SECONDS, null);
+        assertEquals(5, result.getDelivered());
+        assertEquals(0, result.getFailed());
+        assertTrue(result.isComplete());
+    }
+
+    /**
+     * Verify that events still pending at the deadline are counted and handed to the spill sink.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testFlushAndShutdownSpillsAbandonedEvents() throws Exception {
+        CountDownLatch release = blockDispatches();
+        AsyncEventHandler eventHandler = new AsyncEventHandler(mockHttpClient, singleWorkerExecutor(10),
+            builder().withMaxAttempts(1), null);
+        for (int i = 0; i < 5; i++) {
+            eventHandler.dispatchEvent(createLogEvent());
+        }
+        verify(mockHttpClient, timeout(1000)).execute(any(HttpGet.class), any(ResponseHandler.class));
+
+        List<LogEvent> spilled = new CopyOnWriteArrayList<LogEvent>();
+        FlushResult result = eventHandler.flushAndShutdown(50, TimeUnit.MILLISECONDS, spilled::add);
+        release.countDown();
+
+        assertEquals(0, result.getDelivered());
+        assertEquals(5, result.getAbandoned());
+        assertFalse(result.isComplete());
+        // the event in flight is not spilled, it may still be delivered
+        assertEquals(4, spilled.size());
+    }
+
+    /**
+     * Verify that pending retries are dispatched right away instead of after their backoff.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testFlushAndShutdownDispatchesPendingRetries() throws Exception {
+        AsyncEventHandler eventHandler = new AsyncEventHandler(mockHttpClient, MoreExecutors.newDirectExecutorService(),
+            retryingBuilder().withRetryBackoff(1, TimeUnit.MINUTES).withMaxRetryBackoff(1, TimeUnit.MINUTES), null);
+        when(mockHttpClient.execute(any(HttpGet.class), any(ResponseHandler.class)))
+            .thenThrow(IOException.class)
+            .thenReturn(null);
+        eventHandler.dispatchEvent(createLogEvent());
+
+        FlushResult result = eventHandler.flushAndShutdown(1, TimeUnit.SECONDS, null);
+        verify(mockHttpClient, times(2)).execute(any(HttpGet.class), any(ResponseHandler.class));
+        assertEquals(1, result.getDelivered());
+        assertTrue(result.isComplete());
+    }
+
     @Test
     public void testInvalidQueueCapacity() {
         AsyncEventHandler.Builder builder = builder();
@@ -142,9 +551,48 @@ public class AsyncEventHandlerTest {
 
     //======== Helper methods ========//
 
+    private static AsyncEventHandler.Builder retryingBuilder() {
+        return builder()
+            .withMaxAttempts(3)
+            .withRetryBackoff(1, TimeUnit.MILLISECONDS)
+            .withMaxRetryBackoff(1, TimeUnit.MILLISECONDS)
+            .withRetryBudget(0, 10);
+    }
+
+    @SuppressWarnings("unchecked")
+    private CountDownLatch blockDispatches() throws IOException {
+        CountDownLatch release = new CountDownLatch(1);
+        when(mockHttpClient.execute(any(HttpGet.class), any(ResponseHandler.class))).thenAnswer(invocation -> {
+            release.await();
+            return null;
+        });
+        return release;
+    }
+
+    private static ExecutorService singleWorkerExecutor(int queueCapacity) {
+        return new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(queueCapacity));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     private LogEvent createLogEvent() {
         Map<String, String> testParams = new HashMap<String, String>();
         testParams.put("test", "params");
         return new LogEvent(LogEvent.RequestMethod.GET, "test_url", testParams, new EventBatch());
     }
+
+    private LogEvent createPostLogEvent() {
+        EventBatch eventBatch = new EventBatch.Builder()
+            .setAccountId("1")
+            .setProjectId("2")
+            .setRevision("3")
+            .build();
+        return new LogEvent(LogEvent.RequestMethod.POST, "http://localhost/events", new HashMap<String, String>(), eventBatch);
+    }
 }
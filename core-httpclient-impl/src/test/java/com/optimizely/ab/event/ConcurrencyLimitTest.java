@@ -0,0 +1,148 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.event;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrencyLimitTest {
+
+    private static final long LATENCY = TimeUnit.MILLISECONDS.toNanos(10);
+
+    // a clock well past the creation of the limit, so that every dispatch may cut it
+    private long now = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void overloadCutsTheLimitOncePerRoundTrip() throws InterruptedException {
+        ConcurrencyLimit concurrencyLimit = new ConcurrencyLimit(1, 10);
+        assertEquals(10, concurrencyLimit.getLimit());
+
+        // dispatches sent together fail together, only the first one cuts the limit
+        long start = now;
+        for (int i = 0; i < 5; i++) {
+            concurrencyLimit.acquire();
+        }
+        now += LATENCY;
+        for (int i = 0; i < 5; i++) {
+            concurrencyLimit.release(start, now, true);
+        }
+        assertEquals(9, concurrencyLimit.getLimit());
+
+        // a dispatch sent after the cut cuts it again
+        dispatch(concurrencyLimit, LATENCY, true);
+        assertEquals(8, concurrencyLimit.getLimit());
+    }
+
+    @Test
+    public void limitNeverGoesBelowMinimum() throws InterruptedException {
+        ConcurrencyLimit concurrencyLimit = new ConcurrencyLimit(3, 10);
+        for (int i = 0; i < 100; i++) {
+            dispatch(concurrencyLimit, LATENCY, true);
+        }
+        assertEquals(3, concurrencyLimit.getLimit());
+    }
+
+    @Test
+    public void limitGrowsBackWhileLatencyIsFlat() throws InterruptedException {
+        ConcurrencyLimit concurrencyLimit = new ConcurrencyLimit(1, 4);
+        for (int i = 0; i < 100; i++) {
+            dispatch(concurrencyLimit, LATENCY, true);
+        }
+        assertEquals(1, concurrencyLimit.getLimit());
+
+        // while the whole limit is in use
+        for (int i = 0; i < 100; i++) {
+            dispatchBatch(concurrencyLimit, concurrencyLimit.getLimit());
+        }
+        assertEquals(4, concurrencyLimit.getLimit());
+    }
+
+    @Test
+    public void limitDoesNotGrowWhenUnused() throws InterruptedException {
+        ConcurrencyLimit concurrencyLimit = new ConcurrencyLimit(1, 10);
+        for (int i = 0; i < 5; i++) {
+            dispatch(concurrencyLimit, LATENCY, true);
+        }
+        int limit = concurrencyLimit.getLimit();
+
+        // one dispatch at a time is less than half of the limit
+        for (int i = 0; i < 100; i++) {
+            dispatch(concurrencyLimit, LATENCY, false);
+        }
+        assertEquals(limit, concurrencyLimit.getLimit());
+    }
+
+    @Test
+    public void risingLatencyCutsTheLimit() throws InterruptedException {
+        ConcurrencyLimit concurrencyLimit = new ConcurrencyLimit(1, 10);
+        for (int i = 0; i < 100; i++) {
+            dispatch(concurrencyLimit, LATENCY, false);
+        }
+        assertEquals(10, concurrencyLimit.getLimit());
+
+        for (int i = 0; i < 20; i++) {
+            dispatch(concurrencyLimit, 10 * LATENCY, false);
+        }
+        assertTrue(concurrencyLimit.getLimit() < 10);
+    }
+
+    @Test
+    public void acquireWaitsForRoom() throws InterruptedException {
+        ConcurrencyLimit concurrencyLimit = new ConcurrencyLimit(1, 1);
+        concurrencyLimit.acquire();
+
+        CountDownLatch acquired = new CountDownLatch(1);
+        Thread thread = new Thread(() -> {
+            try {
+                concurrencyLimit.acquire();
+                acquired.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        thread.start();
+
+        assertFalse(acquired.await(50, TimeUnit.MILLISECONDS));
+        concurrencyLimit.release(now, now + LATENCY, false);
+        assertTrue(acquired.await(1, TimeUnit.SECONDS));
+        assertEquals(1, concurrencyLimit.getInFlight());
+    }
+
+    private void dispatch(ConcurrencyLimit concurrencyLimit, long latency, boolean overloaded) throws InterruptedException {
+        concurrencyLimit.acquire();
+        long start = ++now;
+        now += latency;
+        concurrencyLimit.release(start, now, overloaded);
+    }
+
+    private void dispatchBatch(ConcurrencyLimit concurrencyLimit, int size) throws InterruptedException {
+        for (int i = 0; i < size; i++) {
+            concurrencyLimit.acquire();
+        }
+        long start = ++now;
+        now += LATENCY;
+        for (int i = 0; i < size; i++) {
+            concurrencyLimit.release(start, now, false);
+        }
+    }
+}
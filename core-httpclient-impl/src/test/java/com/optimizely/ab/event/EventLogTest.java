@@ -0,0 +1,181 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.event;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EventLogTest {
+
+    private static final int SEGMENT_SIZE = 256;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File directory;
+    private EventLog eventLog;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = temporaryFolder.newFolder();
+        eventLog = EventLog.open(directory, SEGMENT_SIZE, 1024 * 1024);
+    }
+
+    @After
+    public void tearDown() {
+        eventLog.close();
+    }
+
+    @Test
+    public void appendAndRead() throws IOException {
+        Map<String, String> params = Collections.singletonMap("key", "value");
+        EventLog.Record post = eventLog.append(LogEvent.RequestMethod.POST, "http://localhost/events",
+            Collections.<String, String>emptyMap(), body("{\"account_id\":\"1\"}"));
+        EventLog.Record get = eventLog.append(LogEvent.RequestMethod.GET, "http://localhost/events", params, null);
+
+        LogEvent logEvent = eventLog.read(post);
+        assertEquals(LogEvent.RequestMethod.POST, logEvent.getRequestMethod());
+        assertEquals("http://localhost/events", logEvent.getEndpointUrl());
+        assertEquals(Collections.emptyMap(), logEvent.getRequestParams());
+        assertArrayEquals(body("{\"account_id\":\"1\"}"), logEvent.getBodyBytes());
+
+        logEvent = eventLog.read(get);
+        assertEquals(LogEvent.RequestMethod.GET, logEvent.getRequestMethod());
+        assertEquals(params, logEvent.getRequestParams());
+        assertEquals(0, logEvent.getBodyBytes().length);
+    }
+
+    @Test
+    public void pendingEventsAreRecoveredOnOpen() throws IOException {
+        List<EventLog.Record> records = new ArrayList<EventLog.Record>();
+        for (int i = 0; i < 10; i++) {
+            records.add(append("http://localhost/" + i));
+        }
+        for (int i = 0; i < 10; i += 2) {
+            eventLog.acknowledge(records.get(i));
+        }
+        eventLog.close();
+
+        eventLog = EventLog.open(directory, SEGMENT_SIZE, 1024 * 1024);
+        List<EventLog.Record> pending = eventLog.pending();
+        assertEquals(5, pending.size());
+        for (int i = 0; i < pending.size(); i++) {
+            assertEquals("http://localhost/" + (2 * i + 1), eventLog.read(pending.get(i)).getEndpointUrl());
+        }
+    }
+
+    @Test
+    public void acknowledgedSegmentsAreDeleted() throws IOException {
+        for (int i = 0; i < 50; i++) {
+            eventLog.acknowledge(append("http://localhost/" + i));
+        }
+
+        assertEquals(1, segmentFiles().length);
+        assertTrue(eventLog.pending().isEmpty());
+    }
+
+    @Test
+    public void retentionDropsOldestSegments() throws IOException {
+        eventLog.close();
+        eventLog = EventLog.open(directory, SEGMENT_SIZE, 2 * SEGMENT_SIZE);
+
+        EventLog.Record first = append("http://localhost/first");
+        for (int i = 0; i < 50; i++) {
+            append("http://localhost/" + i);
+        }
+
+        assertNull(eventLog.read(first));
+        assertEquals(2, segmentFiles().length);
+        eventLog.acknowledge(first);
+    }
+
+    @Test
+    public void eventLargerThanSegmentIsNotLogged() throws IOException {
+        assertNull(eventLog.append(LogEvent.RequestMethod.POST, "http://localhost/events",
+            Collections.<String, String>emptyMap(), new byte[SEGMENT_SIZE]));
+    }
+
+    @Test
+    public void incompleteRecordIsIgnoredOnOpen() throws IOException {
+        append("http://localhost/complete");
+        append("http://localhost/torn");
+        eventLog.close();
+
+        // corrupt the last byte of the second record
+        RandomAccessFile file = new RandomAccessFile(segmentFiles()[0], "rw");
+        try {
+            int firstLength = file.readInt();
+            file.seek(9 + firstLength);
+            int secondLength = file.readInt();
+            long last = 9 + firstLength + 9 + secondLength - 1;
+            file.seek(last);
+            int value = file.read();
+            file.seek(last);
+            file.write(value ^ 0xff);
+        } finally {
+            file.close();
+        }
+
+        eventLog = EventLog.open(directory, SEGMENT_SIZE, 1024 * 1024);
+        List<EventLog.Record> pending = eventLog.pending();
+        assertEquals(1, pending.size());
+        assertEquals("http://localhost/complete", eventLog.read(pending.get(0)).getEndpointUrl());
+    }
+
+    @Test
+    public void recordsAreReleasedOnClose() throws IOException {
+        EventLog.Record record = append("http://localhost/events");
+        eventLog.close();
+
+        assertNull(eventLog.read(record));
+        assertTrue(eventLog.pending().isEmpty());
+        eventLog.acknowledge(record);
+
+        eventLog = EventLog.open(directory, SEGMENT_SIZE, 1024 * 1024);
+        assertEquals(1, eventLog.pending().size());
+    }
+
+    private EventLog.Record append(String endpointUrl) throws IOException {
+        return eventLog.append(LogEvent.RequestMethod.POST, endpointUrl,
+            Collections.<String, String>emptyMap(), body("{}"));
+    }
+
+    private File[] segmentFiles() {
+        return directory.listFiles();
+    }
+
+    private static byte[] body(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.event;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import static com.optimizely.ab.event.StreamTestUtils.readAll;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GzipBodyEncoderTest {
+
+    private final GzipBodyEncoder encoder = new GzipBodyEncoder();
+
+    @Test
+    public void encodeIsReadableByGzipInputStream() throws IOException {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 1000; i++) {
+            json.append("{\"entity_id\":\"").append(i).append("\",\"key\":\"purchase\"},");
+        }
+        byte[] body = json.append("{}]").toString().getBytes(StandardCharsets.UTF_8);
+
+        encoder.encode(body);
+
+        assertArrayEquals(body, decode());
+        assertTrue(encoder.length() < body.length / 4);
+    }
+
+    @Test
+    public void encodeReusesEncoderAcrossBodies() throws IOException {
+        Random random = new Random(42);
+        byte[] incompressible = new byte[3 * GzipBodyEncoder.MAX_RETAINED_SIZE];
+        random.nextBytes(incompressible);
+
+        byte[][] bodies = {
+            new byte[0],
+            "{\"account_id\":\"1\"}".getBytes(StandardCharsets.UTF_8),
+            incompressible,
+            "{\"account_id\":\"2\"}".getBytes(StandardCharsets.UTF_8)
+        };
+        for (byte[] body : bodies) {
+            encoder.encode(body);
+            assertArrayEquals(body, decode());
+        }
+    }
+
+    private byte[] decode() throws IOException {
+        return readAll(new GZIPInputStream(new ByteArrayInputStream(encoder.buffer(), 0, encoder.length())));
+    }
+}
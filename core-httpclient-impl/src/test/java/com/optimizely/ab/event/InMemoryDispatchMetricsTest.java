@@ -0,0 +1,94 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.event;
+
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class InMemoryDispatchMetricsTest {
+
+    private final InMemoryDispatchMetrics metrics = new InMemoryDispatchMetrics();
+
+    @Test
+    public void percentilesAreBoundedWithinAFactorOfTwo() {
+        InMemoryDispatchMetrics.Histogram histogram = metrics.getRequestLatency();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1000);
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(100000, histogram.getMax());
+        assertEquals(50500, histogram.getMean(), 0.001);
+        assertBetween(50000, 100000, histogram.getPercentile(0.5));
+        assertBetween(99000, 100000, histogram.getPercentile(0.99));
+        assertEquals(100000, histogram.getPercentile(1));
+    }
+
+    @Test
+    public void emptyHistogram() {
+        InMemoryDispatchMetrics.Histogram histogram = metrics.getQueueLatency();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(0.99));
+        assertEquals(0, histogram.getMean(), 0);
+    }
+
+    @Test
+    public void requestsAreCountedByStatus() {
+        metrics.recordRequest(1000, 204, 10);
+        metrics.recordRequest(1000, 204, 20);
+        metrics.recordRequest(1000, 503, 30);
+        metrics.recordRequest(1000, 0, 40);
+
+        Map<Integer, Long> expected = new LinkedHashMap<Integer, Long>();
+        expected.put(0, 1L);
+        expected.put(204, 2L);
+        expected.put(503, 1L);
+        assertEquals(expected, metrics.getStatusCounts());
+        assertEquals(2, metrics.getStatusCount(204));
+        assertEquals(0, metrics.getStatusCount(400));
+        assertEquals(100, metrics.getBytesSent());
+        assertEquals(4, metrics.getRequestLatency().getCount());
+    }
+
+    @Test
+    public void droppedEventsAreCountedByReason() {
+        metrics.recordDropped(DispatchMetrics.DropReason.QUEUE_FULL);
+        metrics.recordDropped(DispatchMetrics.DropReason.QUEUE_FULL);
+        metrics.recordDropped(DispatchMetrics.DropReason.FAILED);
+
+        assertEquals(2, metrics.getDroppedCount(DispatchMetrics.DropReason.QUEUE_FULL));
+        assertEquals(1, metrics.getDroppedCount(DispatchMetrics.DropReason.FAILED));
+        assertEquals(0, metrics.getDroppedCount(DispatchMetrics.DropReason.EVICTED));
+        assertEquals(3, metrics.getDroppedCount());
+    }
+
+    @Test
+    public void queueSizeIsReadFromTheRegisteredGauge() {
+        assertEquals(0, metrics.getQueueSize());
+        metrics.registerQueueSize(() -> 42);
+        assertEquals(42, metrics.getQueueSize());
+    }
+
+    private static void assertBetween(long min, long max, long actual) {
+        assertTrue(actual + " is not within [" + min + ", " + max + "]", actual >= min && actual <= max);
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ *
+ *    Copyright 2019, Optimizely and contributors
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package com.optimizely.ab.event;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RetryPolicyTest {
+
+    @Test
+    public void backoffGrowsExponentiallyWithJitter() {
+        RetryPolicy retryPolicy = new RetryPolicy(10, 100, 1000, 0, 0);
+
+        for (int i = 0; i < 100; i++) {
+            assertBetween(50, 100, retryPolicy.backoffMillis(1));
+            assertBetween(100, 200, retryPolicy.backoffMillis(2));
+            assertBetween(200, 400, retryPolicy.backoffMillis(3));
+            assertBetween(500, 1000, retryPolicy.backoffMillis(5));
+            assertBetween(500, 1000, retryPolicy.backoffMillis(Integer.MAX_VALUE));
+        }
+    }
+
+    @Test
+    public void retriesStopAtMaxAttempts() {
+        RetryPolicy retryPolicy = new RetryPolicy(3, 1, 1, 0, 10);
+
+        assertTrue(retryPolicy.tryRetry(1));
+        assertTrue(retryPolicy.tryRetry(2));
+        assertFalse(retryPolicy.tryRetry(3));
+    }
+
+    @Test
+    public void budgetLimitsRetriesToFractionOfDispatches() {
+        RetryPolicy retryPolicy = new RetryPolicy(100, 1, 1, 10, 2);
+
+        // the reserve allows a burst of retries
+        assertTrue(retryPolicy.tryRetry(1));
+        assertTrue(retryPolicy.tryRetry(1));
+        assertFalse(retryPolicy.tryRetry(1));
+
+        // then one retry for every ten new events
+        for (int i = 0; i < 9; i++) {
+            retryPolicy.recordDispatch();
+        }
+        assertFalse(retryPolicy.tryRetry(1));
+        retryPolicy.recordDispatch();
+        assertTrue(retryPolicy.tryRetry(1));
+        assertFalse(retryPolicy.tryRetry(1));
+
+        // and the balance never exceeds the reserve plus what a hundred new events earn
+        for (int i = 0; i < 1000; i++) {
+            retryPolicy.recordDispatch();
+        }
+        for (int i = 0; i < 12; i++) {
+            assertTrue(retryPolicy.tryRetry(1));
+        }
+        assertFalse(retryPolicy.tryRetry(1));
+    }
+
+    @Test
+    public void budgetWithoutReserveRetriesOnceEarned() {
+        RetryPolicy retryPolicy = new RetryPolicy(100, 1, 1, 10, 0);
+
+        assertFalse(retryPolicy.tryRetry(1));
+        for (int i = 0; i < 10; i++) {
+            retryPolicy.recordDispatch();
+        }
+        assertTrue(retryPolicy.tryRetry(1));
+        assertFalse(retryPolicy.tryRetry(1));
+
+        for (int i = 0; i < 1000; i++) {
+            retryPolicy.recordDispatch();
+        }
+        for (int i = 0; i < 10; i++) {
+            assertTrue(retryPolicy.tryRetry(1));
+        }
+        assertFalse(retryPolicy.tryRetry(1));
+    }
+
+    @Test
+    public void singleAttemptNeverRetries() {
+        RetryPolicy retryPolicy = new RetryPolicy(1, 0, 0, 10, 10);
+
+        assertFalse(retryPolicy.isEnabled());
+        assertFalse(retryPolicy.tryRetry(1));
+    }
+
+    private static void assertBetween(long min, long max, long actual) {
+        assertTrue(actual + " is not within [" + min + ", " + max + "]", actual >= min && actual <= max);
+    }
+}